@@ -39,6 +39,8 @@ public class CorsConfig {
 
         configuration.setExposedHeaders(Arrays.asList(
                 "Authorization",
+                "ETag",
+                "X-Menu-Version",
                 "Access-Control-Allow-Origin",
                 "Access-Control-Allow-Credentials"
         ));
@@ -0,0 +1,59 @@
+package com.cafelimon.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración de personalización del menú por ubicación de mesa y franja horaria
+ *
+ * Un producto incluido en alguna regla solo se muestra cuando al menos una de sus reglas
+ * aplica a la mesa (por ubicación) y a la hora actual. Los productos sin reglas se
+ * muestran siempre.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.menu")
+@Getter
+@Setter
+public class MenuOverlayProperties {
+
+    private List<Overlay> overlays = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Overlay {
+
+        private String name;                              // Ej: "Solo terraza", "Happy hour"
+        private List<String> productIds = new ArrayList<>();
+        private List<String> locations = new ArrayList<>(); // Vacío = todas las ubicaciones
+        private LocalTime availableFrom;                  // Opcional
+        private LocalTime availableUntil;                 // Opcional, puede cruzar medianoche
+
+        public boolean appliesTo(String location, LocalTime time) {
+            return matchesLocation(location) && matchesTime(time);
+        }
+
+        private boolean matchesLocation(String location) {
+            if (locations.isEmpty()) {
+                return true;
+            }
+            return location != null && locations.stream()
+                    .anyMatch(allowed -> allowed.trim().equalsIgnoreCase(location.trim()));
+        }
+
+        private boolean matchesTime(LocalTime time) {
+            if (availableFrom == null || availableUntil == null) {
+                return true;
+            }
+            if (availableFrom.isAfter(availableUntil)) {
+                return !time.isBefore(availableFrom) || time.isBefore(availableUntil);
+            }
+            return !time.isBefore(availableFrom) && time.isBefore(availableUntil);
+        }
+    }
+}
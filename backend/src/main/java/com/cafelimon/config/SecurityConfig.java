@@ -68,6 +68,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.GET, "/api/orders/{id}").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/orders/active").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/orders/table/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/events/replay").permitAll()
 
                         // Actuator (health checks)
                         .requestMatchers("/actuator/health/**", "/actuator/health").permitAll()
@@ -0,0 +1,82 @@
+package com.cafelimon.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración de las estadísticas de ventas
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.stats")
+@Getter
+@Setter
+public class StatsProperties {
+
+    private Rollup rollup = new Rollup();
+    private StatusCounts statusCounts = new StatusCounts();
+    private Executor executor = new Executor();
+    private Cache cache = new Cache();
+    private PreparationTimes preparationTimes = new PreparationTimes();
+
+    /**
+     * Acumulados de ventas por hora
+     */
+    @Getter
+    @Setter
+    public static class Rollup {
+
+        private long flushMs = 5000;             // Cada cuánto se escriben los cambios acumulados en memoria
+        private String rebuildCron = "0 15 4 * * *"; // Recalcula las últimas horas cerradas desde las órdenes
+        private int rebuildDays = 2;             // Días hacia atrás que cubre el recálculo
+        private long rebuildLeaseMs = 600000;    // Turno de un nodo para recalcular; otro lo toma si no se renueva
+    }
+
+    /**
+     * Contadores en memoria de órdenes por estado
+     */
+    @Getter
+    @Setter
+    public static class StatusCounts {
+
+        private long reconcileMs = 30000;        // Cada cuánto se comparan con la base de datos
+        private long pushDelayMs = 100;          // Cambios dentro de esta ventana se envían en un solo mensaje
+    }
+
+    /**
+     * Hilos que ejecutan en paralelo las consultas de un mismo pedido de estadísticas
+     */
+    @Getter
+    @Setter
+    public static class Executor {
+
+        private int threads = 3;                 // 0: una consulta tras otra en el hilo de la petición
+        private int queueCapacity = 100;         // Al llenarse, la consulta corre en el hilo de la petición
+    }
+
+    /**
+     * Resultados por rango guardados en memoria
+     */
+    @Getter
+    @Setter
+    public static class Cache {
+
+        private long openRangeTtlMs = 300000;    // Rangos que llegan al presente se recalculan tras este tiempo
+        private int maxEntries = 200;            // Al superarse se descarta el rango calculado hace más tiempo
+    }
+
+    /**
+     * Histogramas de tiempos de preparación y entrega
+     */
+    @Getter
+    @Setter
+    public static class PreparationTimes {
+
+        private long flushMs = 5000;             // Cada cuánto se escriben los cambios acumulados en memoria
+        private String rebuildCron = "0 20 4 * * *"; // Recalcula los últimos días y recarga los de otros nodos
+        private int rebuildDays = 2;             // Días hacia atrás que cubre el recálculo
+        private long rebuildLeaseMs = 600000;    // Turno de un nodo para recalcular; otro lo toma si no se renueva
+        private int hours = 48;                  // Horas de creación con percentiles propios
+    }
+}
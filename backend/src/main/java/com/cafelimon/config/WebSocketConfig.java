@@ -1,10 +1,17 @@
 package com.cafelimon.config;
 
+import com.cafelimon.service.WebSocketSessionMonitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 /**
  * Configuración de WebSocket para notificaciones en tiempo real
@@ -13,10 +20,28 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final WebSocketProperties properties;
+    private final WebSocketSessionMonitor sessionMonitor;
+    private TaskScheduler heartbeatScheduler;
+
+    public WebSocketConfig(WebSocketProperties properties, WebSocketSessionMonitor sessionMonitor) {
+        this.properties = properties;
+        this.sessionMonitor = sessionMonitor;
+    }
+
+    // Lazy: el scheduler lo crea la misma configuración de mensajería que usa esta clase
+    @Autowired
+    public void setHeartbeatScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler scheduler) {
+        this.heartbeatScheduler = scheduler;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // Habilita un broker de mensajes simple para enviar mensajes a clientes
-        config.enableSimpleBroker("/topic", "/queue");
+        WebSocketProperties.Heartbeat heartbeat = properties.getHeartbeat();
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{heartbeat.getServerMs(), heartbeat.getClientMs()})
+                .setTaskScheduler(heartbeatScheduler);
 
         // Define el prefijo para los mensajes destinados a métodos anotados con @MessageMapping
         config.setApplicationDestinationPrefixes("/app");
@@ -33,4 +58,33 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*");
     }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Un cliente lento no acumula más de este tiempo o buffer: se cierra su sesión
+        WebSocketProperties.Transport transport = properties.getTransport();
+        registration.setSendTimeLimit(transport.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(transport.getSendBufferSizeLimit())
+                .setMessageSizeLimit(transport.getMessageSizeLimit())
+                .addDecoratorFactory(sessionMonitor);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configurePool(registration, properties.getInboundChannel());
+        registration.interceptors(sessionMonitor.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configurePool(registration, properties.getOutboundChannel());
+        registration.interceptors(sessionMonitor.outboundInterceptor());
+    }
+
+    private static void configurePool(ChannelRegistration registration, WebSocketProperties.ChannelPool pool) {
+        registration.taskExecutor()
+                .corePoolSize(pool.getCorePoolSize())
+                .maxPoolSize(pool.getMaxPoolSize())
+                .queueCapacity(pool.getQueueCapacity());
+    }
 }
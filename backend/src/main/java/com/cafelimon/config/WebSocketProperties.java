@@ -0,0 +1,113 @@
+package com.cafelimon.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuración de las notificaciones en tiempo real
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app.websocket")
+@Getter
+@Setter
+public class WebSocketProperties {
+
+    /**
+     * Si además del delta en /topic/orders/status se envía la orden completa a /topic/orders/updates
+     */
+    private boolean fullStatusUpdates = true;
+
+    private Dispatch dispatch = new Dispatch();
+    private Replay replay = new Replay();
+    private Relay relay = new Relay();
+    private Transport transport = new Transport();
+    private Heartbeat heartbeat = new Heartbeat();
+    private ChannelPool inboundChannel = new ChannelPool();
+    private ChannelPool outboundChannel = new ChannelPool();
+    private Sse sse = new Sse();
+
+    /**
+     * Envío de notificaciones de órdenes fuera de la transacción
+     */
+    @Getter
+    @Setter
+    public static class Dispatch {
+
+        private int threads = 1;             // Con un hilo se conserva el orden de los eventos
+        private int queueCapacity = 1000;    // Al llenarse, las notificaciones nuevas se descartan
+        private long coalesceWindowMs = 100; // Espera antes de enviar un cambio de estado; 0 lo envía de inmediato
+    }
+
+    /**
+     * Historial de mensajes por destino para reenviar a clientes que se reconectan
+     */
+    @Getter
+    @Setter
+    public static class Replay {
+
+        private int bufferSize = 256;        // Mensajes guardados por destino; más atrás se pide snapshot
+    }
+
+    /**
+     * Reenvío de mensajes entre nodos del backend
+     */
+    @Getter
+    @Setter
+    public static class Relay {
+
+        private String type = "in-process";  // in-process (un nodo o pruebas) | postgres (LISTEN/NOTIFY)
+        private String channel = "cafelimon_ws";
+        private long reconnectDelayMs = 2000;
+        private long largeMessageRetentionMs = 10 * 60 * 1000; // Mensajes grandes guardados para que otros nodos los lean
+    }
+
+    /**
+     * Límites por sesión; la sesión que los supera se cierra (status 4500) y el cliente debe reconectarse
+     */
+    @Getter
+    @Setter
+    public static class Transport {
+
+        private int sendTimeLimitMs = 5000;           // Tiempo máximo de un envío a un cliente lento
+        private int sendBufferSizeLimit = 256 * 1024; // Bytes en espera por sesión mientras un envío está en curso
+        private int messageSizeLimit = 64 * 1024;     // Tamaño máximo de un mensaje entrante
+    }
+
+    /**
+     * Heartbeats STOMP del broker simple; 0 los desactiva
+     */
+    @Getter
+    @Setter
+    public static class Heartbeat {
+
+        private long serverMs = 10000;       // Cada cuánto el servidor avisa que sigue vivo
+        private long clientMs = 10000;       // Cada cuánto se espera un heartbeat del cliente
+    }
+
+    /**
+     * Pool de hilos de clientInboundChannel o clientOutboundChannel
+     */
+    @Getter
+    @Setter
+    public static class ChannelPool {
+
+        private int corePoolSize = 4;
+        private int maxPoolSize = 8;         // Solo se pasa de corePoolSize cuando la cola está llena
+        private int queueCapacity = 1000;    // Al llenarse, los mensajes se rechazan
+    }
+
+    /**
+     * Server-Sent Events de GET /api/orders/table/{tableId}/stream
+     */
+    @Getter
+    @Setter
+    public static class Sse {
+
+        private long timeoutMs = 30 * 60 * 1000; // Al vencer se cierra y EventSource reconecta con Last-Event-ID
+        private long heartbeatMs = 15000;    // Comentario periódico para que proxies no cierren conexiones ociosas
+        private int queueCapacity = 1000;    // Envíos pendientes por conexión; al llenarse se cierra la conexión
+        private int sendThreads = 4;         // Hilos compartidos que envían a las conexiones
+    }
+}
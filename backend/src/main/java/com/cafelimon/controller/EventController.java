@@ -0,0 +1,38 @@
+package com.cafelimon.controller;
+
+import com.cafelimon.dto.ApiResponse;
+import com.cafelimon.dto.websocket.TopicReplayResponse;
+import com.cafelimon.service.EventReplayService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller para recuperar mensajes WebSocket tras una reconexión
+ */
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Eventos", description = "Endpoints para recuperar notificaciones en tiempo real perdidas")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class EventController {
+
+    private final EventReplayService eventReplayService;
+
+    @GetMapping("/replay")
+    @Operation(summary = "Reenviar mensajes de un tópico desde un número de secuencia",
+            description = "Usa las cabeceras seq y epoch del último mensaje recibido. Si ya no están en el "
+                    + "historial retorna snapshotRequired=true con las órdenes actuales del tópico")
+    public ResponseEntity<ApiResponse<TopicReplayResponse>> replay(
+            @RequestParam String topic,
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) String epoch) {
+        log.info("GET /api/events/replay?topic={}&since={}", topic, since);
+        TopicReplayResponse replay = eventReplayService.replay(topic, since, epoch);
+        return ResponseEntity.ok(ApiResponse.success(replay));
+    }
+}
@@ -1,12 +1,18 @@
 package com.cafelimon.controller;
 
 import com.cafelimon.dto.ApiResponse;
+import com.cafelimon.dto.menu.MenuChangesResponse;
 import com.cafelimon.dto.menu.MenuResponse;
 import com.cafelimon.service.MenuService;
+import com.cafelimon.service.MenuSnapshot;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,14 +27,87 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*", maxAge = 3600)
 public class MenuController {
 
+    static final String MENU_VERSION_HEADER = "X-Menu-Version";
+
     private final MenuService menuService;
 
     @GetMapping
-    @Operation(summary = "Obtener menú completo", description = "Retorna todas las categorías y productos activos")
-    public ResponseEntity<ApiResponse<MenuResponse>> getFullMenu() {
+    @Operation(summary = "Obtener menú completo",
+            description = "Retorna todas las categorías y productos activos. Soporta ETag/If-None-Match y gzip. "
+                    + "El timestamp de la respuesta es el momento en que se construyó esta versión del menú")
+    public ResponseEntity<byte[]> getFullMenu(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("GET /api/menu");
-        MenuResponse menu = menuService.getFullMenu();
-        return ResponseEntity.ok(ApiResponse.success(menu));
+        MenuSnapshot snapshot = menuService.getSnapshot();
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(snapshot.getEtag(gzip))
+                    .cacheControl(CacheControl.noCache())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(snapshot.getEtag(gzip))
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(MENU_VERSION_HEADER, snapshot.getVersionToken())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(snapshot.getGzippedJson());
+        }
+        return response.body(snapshot.getJson());
+    }
+
+    /**
+     * Indica si Accept-Encoding admite gzip, respetando q=0 como rechazo; "*" vale para gzip
+     * salvo que gzip aparezca con su propio valor
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double anyQuality = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0.0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzipQuality = quality;
+            } else if (coding.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return anyQuality != null && anyQuality > 0;
+    }
+
+    @GetMapping("/changes")
+    @Operation(summary = "Obtener cambios del menú desde una versión",
+            description = "Retorna solo los productos y categorías agregados, modificados, no disponibles o eliminados. "
+                    + "since es el token de la cabecera X-Menu-Version; uno de otro arranque pide recarga completa")
+    public ResponseEntity<ApiResponse<MenuChangesResponse>> getMenuChanges(@RequestParam String since) {
+        log.info("GET /api/menu/changes?since={}", since);
+        MenuChangesResponse changes = menuService.getChangesSince(since);
+        return ResponseEntity.ok(ApiResponse.success(changes));
     }
 
     @GetMapping("/table/{tableId}")
@@ -6,6 +6,7 @@ import com.cafelimon.dto.order.OrderResponse;
 import com.cafelimon.dto.order.UpdateOrderStatusRequest;
 import com.cafelimon.model.OrderStatus;
 import com.cafelimon.service.OrderService;
+import com.cafelimon.service.OrderStreamRegistry;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -16,8 +17,10 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -34,6 +37,7 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderStreamRegistry orderStreamRegistry;
 
     @GetMapping
     @SecurityRequirement(name = "bearer-key")
@@ -70,6 +74,17 @@ public class OrderController {
         return ResponseEntity.ok(ApiResponse.success(orders));
     }
 
+    @GetMapping(value = "/table/{tableId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Seguir las órdenes de una mesa con Server-Sent Events",
+            description = "Eventos 'order' con la orden completa en cada cambio. Al reconectar con "
+                    + "Last-Event-ID se reenvía lo perdido, o un evento 'snapshot' con las órdenes de la mesa")
+    public SseEmitter streamOrdersByTable(
+            @PathVariable String tableId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("GET /api/orders/table/{}/stream", tableId);
+        return orderStreamRegistry.open(tableId, lastEventId);
+    }
+
     @GetMapping("/date-range")
     @SecurityRequirement(name = "bearer-key")
     @Operation(summary = "Obtener órdenes por rango de fechas", description = "Requiere autenticación")
@@ -3,7 +3,10 @@ package com.cafelimon.controller;
 import com.cafelimon.dto.ApiResponse;
 import com.cafelimon.dto.product.ProductRequest;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.product.ProductSuggestion;
+import com.cafelimon.service.ProductSearchService;
 import com.cafelimon.service.ProductService;
+import com.cafelimon.service.TopProductsRanking;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -28,6 +31,8 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final TopProductsRanking topProductsRanking;
 
     @GetMapping
     @Operation(summary = "Obtener todos los productos")
@@ -64,22 +69,36 @@ public class ProductController {
     }
 
     @GetMapping("/search")
-    @Operation(summary = "Buscar productos por nombre")
+    @Operation(summary = "Buscar productos por nombre o descripción",
+            description = "Ignora tildes y mayúsculas; los resultados se ordenan por relevancia")
     public ResponseEntity<ApiResponse<List<ProductResponse>>> searchProducts(
-            @RequestParam String query,
-            @RequestParam(required = false, defaultValue = "false") boolean availableOnly) {
-        log.info("GET /api/products/search?query={}&availableOnly={}", query, availableOnly);
-        List<ProductResponse> products = availableOnly
-                ? productService.searchAvailableProducts(query)
-                : productService.searchProducts(query);
+            @RequestParam(required = false) String query,
+            @RequestParam(name = "q", required = false) String q,
+            @RequestParam(required = false, defaultValue = "false") boolean availableOnly,
+            @RequestParam(required = false, defaultValue = "" + ProductSearchService.DEFAULT_LIMIT) int limit) {
+        String term = query != null ? query : q;
+        log.info("GET /api/products/search?query={}&availableOnly={}&limit={}", term, availableOnly, limit);
+        List<ProductResponse> products = productSearchService.search(term, availableOnly, limit);
         return ResponseEntity.ok(ApiResponse.success(products));
     }
 
+    @GetMapping("/suggest")
+    @Operation(summary = "Autocompletar productos",
+            description = "Productos cuyo nombre empieza con el texto ingresado, ordenados por popularidad")
+    public ResponseEntity<ApiResponse<List<ProductSuggestion>>> suggestProducts(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "" + ProductSearchService.DEFAULT_SUGGESTIONS) int limit) {
+        log.debug("GET /api/products/suggest?q={}&limit={}", q, limit);
+        List<ProductSuggestion> suggestions = productSearchService.suggest(q, limit);
+        return ResponseEntity.ok(ApiResponse.success(suggestions));
+    }
+
     @GetMapping("/top")
     @Operation(summary = "Obtener productos más vendidos")
-    public ResponseEntity<ApiResponse<List<ProductResponse>>> getTopProducts() {
-        log.info("GET /api/products/top");
-        List<ProductResponse> products = productService.getTopProducts();
+    public ResponseEntity<ApiResponse<List<ProductResponse>>> getTopProducts(
+            @RequestParam(required = false, defaultValue = "10") int limit) {
+        log.info("GET /api/products/top?limit={}", limit);
+        List<ProductResponse> products = topProductsRanking.getTopProducts(limit);
         return ResponseEntity.ok(ApiResponse.success(products));
     }
 
@@ -1,7 +1,9 @@
 package com.cafelimon.controller;
 
 import com.cafelimon.dto.ApiResponse;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
 import com.cafelimon.dto.stats.StatsResponse;
+import com.cafelimon.dto.stats.StatusCountsResponse;
 import com.cafelimon.dto.stats.TopProductDTO;
 import com.cafelimon.service.StatsService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -64,6 +66,24 @@ public class StatsController {
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
 
+    @GetMapping("/status-counts")
+    @Operation(summary = "Obtener la cantidad actual de órdenes por estado",
+            description = "Requiere autenticación. Los cambios se publican en /topic/stats/status-counts")
+    public ResponseEntity<ApiResponse<StatusCountsResponse>> getStatusCounts() {
+        log.info("GET /api/stats/status-counts");
+        StatusCountsResponse counts = statsService.getStatusCounts();
+        return ResponseEntity.ok(ApiResponse.success(counts));
+    }
+
+    @GetMapping("/preparation-times")
+    @Operation(summary = "Obtener percentiles de tiempos de preparación y entrega",
+            description = "Requiere autenticación. p50/p90/p99 en minutos, en total, por producto, por categoría y por hora de creación")
+    public ResponseEntity<ApiResponse<PreparationTimesResponse>> getPreparationTimes() {
+        log.info("GET /api/stats/preparation-times");
+        PreparationTimesResponse times = statsService.getPreparationTimes();
+        return ResponseEntity.ok(ApiResponse.success(times));
+    }
+
     @GetMapping("/top-products")
     @Operation(summary = "Obtener productos más vendidos", description = "Requiere autenticación")
     public ResponseEntity<ApiResponse<List<TopProductDTO>>> getTopProducts(
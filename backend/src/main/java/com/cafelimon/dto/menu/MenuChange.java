@@ -0,0 +1,37 @@
+package com.cafelimon.dto.menu;
+
+import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para un cambio puntual del menú entre dos versiones
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuChange {
+
+    public enum EntityType {
+        PRODUCT,
+        CATEGORY
+    }
+
+    public enum ChangeType {
+        ADDED,
+        UPDATED,
+        UNAVAILABLE,
+        DELETED
+    }
+
+    private long version;
+    private EntityType entityType;
+    private ChangeType changeType;
+    private String id;
+    private ProductResponse product;    // Solo para ADDED/UPDATED de productos
+    private CategoryResponse category;  // Solo para ADDED/UPDATED de categorías
+}
@@ -0,0 +1,23 @@
+package com.cafelimon.dto.menu;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para respuesta de sincronización incremental del menú
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MenuChangesResponse {
+
+    private String sinceVersion;         // Token de versión enviado por el cliente
+    private String currentVersion;       // Token de la versión vigente, <epoch>.<versión>
+    private boolean fullReloadRequired;  // El cliente debe volver a pedir GET /api/menu
+    private List<MenuChange> changes;
+}
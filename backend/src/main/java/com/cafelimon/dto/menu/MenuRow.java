@@ -0,0 +1,39 @@
+package com.cafelimon.dto.menu;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Proyección plana categoría + producto para cargar el menú en una sola consulta
+ *
+ * Los campos de producto son nulos cuando la categoría no tiene productos disponibles.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class MenuRow {
+
+    private final String categoryId;
+    private final String categoryName;
+    private final String categoryDescription;
+    private final String categoryIcon;
+    private final Integer categoryOrderIndex;
+    private final Boolean categoryActive;
+    private final LocalDateTime categoryCreatedAt;
+    private final LocalDateTime categoryUpdatedAt;
+
+    private final String productId;
+    private final String productName;
+    private final String productDescription;
+    private final BigDecimal productPrice;
+    private final String productImageUrl;
+    private final Integer productPreparationTime;
+    private final Boolean productAvailable;
+    private final Long productOrderCount;
+    private final LocalDateTime productCreatedAt;
+    private final LocalDateTime productUpdatedAt;
+}
@@ -0,0 +1,29 @@
+package com.cafelimon.dto.order;
+
+import com.cafelimon.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO compacto con el cambio de estado de una orden, para clientes que ya tienen la orden completa
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderStatusDelta {
+
+    private long seq;
+    private String orderId;
+    private String tableId;
+    private OrderStatus oldStatus;
+    private OrderStatus newStatus;
+    private LocalDateTime createdAt;
+    private LocalDateTime readyAt;
+    private LocalDateTime deliveredAt;
+    private LocalDateTime updatedAt;
+}
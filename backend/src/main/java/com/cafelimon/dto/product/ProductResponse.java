@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
  * DTO para respuesta de producto
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductResponse {
@@ -0,0 +1,25 @@
+package com.cafelimon.dto.product;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO liviano para el autocompletado de productos
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSuggestion {
+
+    private String id;
+    private String name;
+    private String categoryName;
+    private BigDecimal price;
+    private String imageUrl;
+    private Boolean available;
+}
@@ -0,0 +1,22 @@
+package com.cafelimon.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO con los tiempos de preparación y entrega de las órdenes creadas en una hora
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HourlyPreparationTime {
+
+    private LocalDateTime hour;
+    private TimePercentiles preparation;
+    private TimePercentiles delivery;
+}
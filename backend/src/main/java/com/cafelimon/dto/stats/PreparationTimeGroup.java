@@ -0,0 +1,21 @@
+package com.cafelimon.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con los tiempos de preparación y entrega de las órdenes de un producto o una categoría
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PreparationTimeGroup {
+
+    private String id;
+    private String name;
+    private TimePercentiles preparation;  // De creada a lista
+    private TimePercentiles delivery;     // De lista a entregada
+}
@@ -0,0 +1,25 @@
+package com.cafelimon.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO con los percentiles de tiempos de preparación y entrega: de todas las órdenes, por producto,
+ * por categoría y por hora de creación de las últimas horas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PreparationTimesResponse {
+
+    private TimePercentiles preparation;
+    private TimePercentiles delivery;
+    private List<PreparationTimeGroup> byProduct;
+    private List<PreparationTimeGroup> byCategory;
+    private List<HourlyPreparationTime> byHour;
+}
@@ -0,0 +1,22 @@
+package com.cafelimon.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con la cantidad actual de órdenes en cada estado
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatusCountsResponse {
+
+    private Long pendingOrders;
+    private Long preparingOrders;
+    private Long readyOrders;
+    private Long deliveredOrders;
+    private Long cancelledOrders;
+}
@@ -0,0 +1,21 @@
+package com.cafelimon.dto.stats;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO con percentiles de un tiempo en minutos, con precisión de dos cifras significativas
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimePercentiles {
+
+    private Long count;   // Órdenes medidas
+    private Double p50;
+    private Double p90;
+    private Double p99;
+}
@@ -0,0 +1,22 @@
+package com.cafelimon.dto.websocket;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para un mensaje ya enviado a un destino WebSocket
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicEvent {
+
+    private long seq;
+
+    @JsonRawValue
+    private String payload;  // El mismo JSON que recibieron los suscriptores
+}
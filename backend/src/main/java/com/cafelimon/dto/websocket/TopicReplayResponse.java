@@ -0,0 +1,27 @@
+package com.cafelimon.dto.websocket;
+
+import com.cafelimon.dto.order.OrderResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO para respuesta de reenvío de mensajes WebSocket perdidos
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicReplayResponse {
+
+    private String topic;
+    private String epoch;
+    private long sinceSeq;
+    private long currentSeq;
+    private boolean snapshotRequired;     // Los mensajes ya no están: usar snapshot y seguir desde currentSeq
+    private List<TopicEvent> events;      // Solo si snapshotRequired es false
+    private List<OrderResponse> snapshot; // Solo si snapshotRequired es true
+}
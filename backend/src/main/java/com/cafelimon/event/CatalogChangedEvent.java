@@ -0,0 +1,46 @@
+package com.cafelimon.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Evento publicado cuando cambia el catálogo (productos o categorías)
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CatalogChangedEvent {
+
+    public enum EntityType {
+        PRODUCT,
+        CATEGORY
+    }
+
+    public enum Action {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final EntityType entityType;
+    private final Action action;
+    private final String entityId;
+
+    /**
+     * Si llegó de otro nodo; esos no se vuelven a reenviar
+     */
+    private final boolean relayed;
+
+    public CatalogChangedEvent(EntityType entityType, Action action, String entityId) {
+        this(entityType, action, entityId, false);
+    }
+
+    public static CatalogChangedEvent product(Action action, String productId) {
+        return new CatalogChangedEvent(EntityType.PRODUCT, action, productId);
+    }
+
+    public static CatalogChangedEvent category(Action action, String categoryId) {
+        return new CatalogChangedEvent(EntityType.CATEGORY, action, categoryId);
+    }
+}
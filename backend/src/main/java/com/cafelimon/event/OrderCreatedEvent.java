@@ -0,0 +1,30 @@
+package com.cafelimon.event;
+
+import com.cafelimon.dto.order.OrderResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Evento publicado cuando se crea una orden
+ */
+@Getter
+@ToString(exclude = "order")
+@AllArgsConstructor
+public class OrderCreatedEvent {
+
+    private final String orderId;
+    private final String tableId;
+
+    /**
+     * Productos pedidos, uno por ítem de la orden
+     */
+    private final List<String> productIds;
+
+    /**
+     * Orden ya mapeada dentro de la transacción, lista para notificar
+     */
+    private final OrderResponse order;
+}
@@ -0,0 +1,36 @@
+package com.cafelimon.event;
+
+import com.cafelimon.dto.order.OrderResponse;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Evento publicado cuando se elimina una orden
+ */
+@Getter
+@ToString(exclude = "order")
+@AllArgsConstructor
+public class OrderDeletedEvent {
+
+    private final String orderId;
+    private final String tableId;
+
+    /**
+     * Orden tal como estaba antes de eliminarse, mapeada dentro de la transacción
+     */
+    private final OrderResponse order;
+
+    private final LocalDateTime deletedAt;
+
+    /**
+     * Si llegó de otro nodo; esos no se vuelven a reenviar
+     */
+    private final boolean relayed;
+
+    public OrderDeletedEvent(String orderId, String tableId, OrderResponse order, LocalDateTime deletedAt) {
+        this(orderId, tableId, order, deletedAt, false);
+    }
+}
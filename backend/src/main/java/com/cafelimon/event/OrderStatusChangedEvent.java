@@ -0,0 +1,45 @@
+package com.cafelimon.event;
+
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Evento publicado cuando cambia el estado de una orden
+ */
+@Getter
+@ToString(exclude = "order")
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+
+    private final String orderId;
+    private final String tableId;
+    private final OrderStatus previousStatus;
+    private final OrderStatus newStatus;
+
+    /**
+     * Orden ya mapeada dentro de la transacción, lista para notificar
+     */
+    private final OrderResponse order;
+
+    /**
+     * Si este cambio marcó la orden como lista por primera vez (puso {@code readyAt})
+     */
+    private final boolean firstReady;
+
+    /**
+     * Si este cambio marcó la orden como entregada por primera vez (puso {@code deliveredAt})
+     */
+    private final boolean firstDelivered;
+
+    /**
+     * Combina este cambio aún no notificado con uno posterior de la misma orden:
+     * conserva el estado de partida y toma el resto del más reciente
+     */
+    public OrderStatusChangedEvent followedBy(OrderStatusChangedEvent next) {
+        return new OrderStatusChangedEvent(orderId, next.tableId, previousStatus, next.newStatus, next.order,
+                firstReady || next.firstReady, firstDelivered || next.firstDelivered);
+    }
+}
@@ -0,0 +1,25 @@
+package com.cafelimon.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Evento publicado cuando se modifica o elimina una mesa
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class TableChangedEvent {
+
+    private final String tableId;
+
+    /**
+     * Si llegó de otro nodo; esos no se vuelven a reenviar
+     */
+    private final boolean relayed;
+
+    public TableChangedEvent(String tableId) {
+        this(tableId, false);
+    }
+}
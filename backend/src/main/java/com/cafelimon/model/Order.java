@@ -6,6 +6,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
@@ -22,7 +23,8 @@ import java.util.List;
  * Entidad Order - Pedidos de los clientes
  */
 @Entity
-@jakarta.persistence.Table(name = "orders")
+@jakarta.persistence.Table(name = "orders",
+        indexes = @Index(name = "idx_orders_created_at", columnList = "created_at"))
 @Getter
 @Setter
 @NoArgsConstructor
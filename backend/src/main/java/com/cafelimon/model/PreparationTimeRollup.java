@@ -0,0 +1,42 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad PreparationTimeRollup - Histogramas de tiempos de preparación y entrega por hora de
+ * creación de las órdenes, para un producto o para todas las órdenes
+ */
+@Entity
+@jakarta.persistence.Table(name = "preparation_time_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_preparation_time_rollups_bucket_product",
+                columnNames = {"bucket_start", "product_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PreparationTimeRollup extends BaseEntity {
+
+    /**
+     * product_id de la fila con todas las órdenes de la hora; no es null para que la clave única
+     * también la cubra en PostgreSQL
+     */
+    public static final String ALL_PRODUCTS = "*";
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;  // Inicio de la hora
+
+    @Column(name = "product_id", nullable = false)
+    private String productId;  // ALL_PRODUCTS: todas las órdenes de la hora, cada una una vez
+
+    @Column(name = "preparation_histogram", length = 16384)
+    private byte[] preparationHistogram;  // Segundos de creada a lista, HdrHistogram comprimido
+
+    @Column(name = "delivery_histogram", length = 16384)
+    private byte[] deliveryHistogram;  // Segundos de lista a entregada
+}
@@ -50,7 +50,9 @@ public class Product extends BaseEntity {
     @Column(name = "preparation_time")
     private Integer preparationTime;  // Tiempo en minutos
 
-    @Column(name = "order_count")
+    // Solo lo cambia ProductOrderCounters con UPDATE ... + :delta; guardar la entidad no lo
+    // sobrescribe con el valor leído
+    @Column(name = "order_count", updatable = false)
     @Builder.Default
     private Long orderCount = 0L;  // Contador de veces ordenado
 }
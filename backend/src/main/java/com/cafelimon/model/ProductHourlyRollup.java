@@ -0,0 +1,33 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad ProductHourlyRollup - Unidades pedidas de cada producto por hora de creación de las órdenes
+ */
+@Entity
+@jakarta.persistence.Table(name = "product_hourly_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_product_hourly_rollups_bucket_product",
+                columnNames = {"bucket_start", "product_id"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductHourlyRollup extends BaseEntity {
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;  // Inicio de la hora
+
+    @Column(name = "product_id", nullable = false)
+    private String productId;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long quantity = 0L;
+}
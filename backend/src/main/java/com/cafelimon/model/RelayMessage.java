@@ -0,0 +1,25 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import lombok.*;
+
+/**
+ * Entidad RelayMessage - Mensaje WebSocket demasiado grande para NOTIFY, guardado para que
+ * los demás nodos lo lean por su id
+ */
+@Entity
+@jakarta.persistence.Table(name = "relay_messages")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RelayMessage extends BaseEntity {
+
+    @Column(nullable = false)
+    private String destination;  // Destino STOMP del mensaje
+
+    @Column(nullable = false, length = 1048576)
+    private byte[] payload;  // JSON tal como se publicó localmente
+}
@@ -0,0 +1,35 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad RollupLock - Turno de los nodos para recalcular unos acumulados y número de la última
+ * generación entregada a un recálculo
+ */
+@Entity
+@jakarta.persistence.Table(name = "rollup_locks",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rollup_locks_name", columnNames = "name"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RollupLock extends BaseEntity {
+
+    @Column(nullable = false, length = 50)
+    private String name;  // Acumulados que protege, ver RollupLockService
+
+    private String owner;  // Nodo que está recalculando; null si ninguno
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;  // El turno vence si no se renueva antes
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long generation = 0L;  // Última generación entregada
+}
@@ -0,0 +1,34 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entidad RollupRebuild - Horas que un recálculo reescribió desde las órdenes y su generación
+ */
+@Entity
+@jakarta.persistence.Table(name = "rollup_rebuilds",
+        indexes = @Index(name = "idx_rollup_rebuilds_name_generation", columnList = "name, generation"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RollupRebuild extends BaseEntity {
+
+    @Column(nullable = false, length = 50)
+    private String name;  // Acumulados recalculados, como en RollupLock
+
+    @Column(nullable = false)
+    private Long generation;
+
+    @Column(name = "from_bucket", nullable = false)
+    private LocalDateTime fromBucket;  // Primera hora recalculada
+
+    @Column(name = "until_bucket", nullable = false)
+    private LocalDateTime untilBucket;  // Hora siguiente a la última recalculada
+}
@@ -0,0 +1,42 @@
+package com.cafelimon.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Entidad SalesHourlyRollup - Ventas acumuladas por hora de creación de las órdenes
+ */
+@Entity
+@jakarta.persistence.Table(name = "sales_hourly_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_sales_hourly_rollups_bucket", columnNames = "bucket_start"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesHourlyRollup extends BaseEntity {
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;  // Inicio de la hora
+
+    @Column(name = "order_count", nullable = false)
+    @Builder.Default
+    private Long orderCount = 0L;  // Órdenes creadas, incluidas las canceladas
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;  // Total de las órdenes no canceladas
+
+    @Column(name = "cancelled_count", nullable = false)
+    @Builder.Default
+    private Long cancelledCount = 0L;
+
+    @Column(name = "cancelled_amount", nullable = false, precision = 12, scale = 2)
+    @Builder.Default
+    private BigDecimal cancelledAmount = BigDecimal.ZERO;
+}
@@ -1,7 +1,9 @@
 package com.cafelimon.repository;
 
+import com.cafelimon.dto.menu.MenuRow;
 import com.cafelimon.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -20,4 +22,16 @@ public interface CategoryRepository extends JpaRepository<Category, String> {
     Optional<Category> findByName(String name);
 
     Boolean existsByName(String name);
+
+    /**
+     * Carga categorías activas y sus productos disponibles en una sola consulta
+     */
+    @Query("SELECT new com.cafelimon.dto.menu.MenuRow(" +
+           "c.id, c.name, c.description, c.icon, c.orderIndex, c.active, c.createdAt, c.updatedAt, " +
+           "p.id, p.name, p.description, p.price, p.imageUrl, p.preparationTime, p.available, p.orderCount, " +
+           "p.createdAt, p.updatedAt) " +
+           "FROM Category c LEFT JOIN c.products p ON p.available = true " +
+           "WHERE c.active = true " +
+           "ORDER BY c.orderIndex ASC, c.name ASC, p.name ASC")
+    List<MenuRow> findActiveMenuRows();
 }
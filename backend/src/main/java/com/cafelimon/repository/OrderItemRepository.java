@@ -25,6 +25,26 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, String> {
     List<Object[]> getTopSellingProducts(@Param("startDate") LocalDateTime startDate,
                                          @Param("endDate") LocalDateTime endDate);
 
+    // Filtrar por subconsulta hace que se recorran solo los ítems de las órdenes de la ventana
+    // (por idx_orders_created_at); con el join el plan podía partir de productos y leer todos los ítems
+    @Query("SELECT oi.product.id, oi.product.name, SUM(oi.quantity) as totalQuantity " +
+           "FROM OrderItem oi " +
+           "WHERE oi.order.id IN (SELECT o.id FROM Order o WHERE o.createdAt >= :from AND o.createdAt < :until) " +
+           "GROUP BY oi.product.id, oi.product.name")
+    List<Object[]> getProductQuantitiesByCreatedWindow(@Param("from") LocalDateTime from,
+                                                       @Param("until") LocalDateTime until);
+
+    @Query("SELECT oi.order.createdAt, oi.product.id, oi.quantity FROM OrderItem oi " +
+           "WHERE oi.order.createdAt >= :from AND oi.order.createdAt < :until")
+    List<Object[]> findQuantitiesByCreatedWindow(@Param("from") LocalDateTime from,
+                                                 @Param("until") LocalDateTime until);
+
+    @Query("SELECT DISTINCT oi.order.id, oi.product.id FROM OrderItem oi " +
+           "WHERE oi.order.id IN (SELECT o.id FROM Order o " +
+           "WHERE o.createdAt >= :from AND o.createdAt < :until AND o.readyAt IS NOT NULL)")
+    List<Object[]> findProductIdsOfReadyOrdersByCreatedWindow(@Param("from") LocalDateTime from,
+                                                              @Param("until") LocalDateTime until);
+
     @Query("SELECT COUNT(oi) FROM OrderItem oi " +
            "WHERE oi.product.id = :productId")
     Long countByProductId(@Param("productId") String productId);
@@ -4,35 +4,61 @@ import com.cafelimon.model.Order;
 import com.cafelimon.model.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para la entidad Order
+ *
+ * Los finders que devuelven órdenes para mapear a respuestas cargan en el mismo SELECT
+ * la mesa, los ítems, sus productos y las categorías. La consulta paginada solo trae la
+ * mesa (paginar con un JOIN a la colección obligaría a paginar en memoria); sus ítems se
+ * cargan por lotes según {@code hibernate.default_batch_fetch_size}.
  */
 @Repository
 public interface OrderRepository extends JpaRepository<Order, String> {
 
+    @Override
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
+    List<Order> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
+    Optional<Order> findById(String id);
+
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
     List<Order> findByStatus(OrderStatus status);
 
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
     List<Order> findByTableId(String tableId);
 
     List<Order> findByTableIdAndStatusIn(String tableId, List<OrderStatus> statuses);
 
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
     @Query("SELECT o FROM Order o WHERE o.status IN :statuses ORDER BY o.createdAt ASC")
     List<Order> findActiveOrders(@Param("statuses") List<OrderStatus> statuses);
 
+    @EntityGraph(attributePaths = {"table", "items", "items.product", "items.product.category"})
     @Query("SELECT o FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate")
     List<Order> findByDateRange(@Param("startDate") LocalDateTime startDate,
                                 @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT o FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate " +
-           "ORDER BY o.createdAt DESC")
+    @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate")
+    Long countByDateRange(@Param("startDate") LocalDateTime startDate,
+                          @Param("endDate") LocalDateTime endDate);
+
+    @EntityGraph(attributePaths = "table")
+    @Query(value = "SELECT o FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate " +
+                   "ORDER BY o.createdAt DESC",
+           countQuery = "SELECT COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate")
     Page<Order> findByDateRangePageable(@Param("startDate") LocalDateTime startDate,
                                         @Param("endDate") LocalDateTime endDate,
                                         Pageable pageable);
@@ -40,13 +66,37 @@ public interface OrderRepository extends JpaRepository<Order, String> {
     @Query("SELECT COUNT(o) FROM Order o WHERE o.status = :status")
     Long countByStatus(@Param("status") OrderStatus status);
 
-    @Query("SELECT AVG(FUNCTION('TIMESTAMPDIFF', MINUTE, o.createdAt, o.readyAt)) " +
-           "FROM Order o WHERE o.readyAt IS NOT NULL")
-    Double getAveragePreparationTimeInMinutes();
+    @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
+    List<Object[]> countGroupedByStatus();
 
     @Query("SELECT SUM(o.totalAmount) FROM Order o " +
            "WHERE o.createdAt BETWEEN :startDate AND :endDate " +
            "AND o.status NOT IN ('CANCELADO')")
     Double getTotalRevenueByDateRange(@Param("startDate") LocalDateTime startDate,
                                       @Param("endDate") LocalDateTime endDate);
+
+    // Ventanas [from, until) para completar los acumulados por hora (SalesRollupService)
+
+    @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt >= :from AND o.createdAt < :until")
+    Long countByCreatedWindow(@Param("from") LocalDateTime from,
+                              @Param("until") LocalDateTime until);
+
+    @Query("SELECT SUM(o.totalAmount) FROM Order o " +
+           "WHERE o.createdAt >= :from AND o.createdAt < :until " +
+           "AND o.status NOT IN ('CANCELADO')")
+    BigDecimal getRevenueByCreatedWindow(@Param("from") LocalDateTime from,
+                                         @Param("until") LocalDateTime until);
+
+    @Query("SELECT o.createdAt, o.totalAmount, o.status FROM Order o " +
+           "WHERE o.createdAt >= :from AND o.createdAt < :until")
+    List<Object[]> findSalesByCreatedWindow(@Param("from") LocalDateTime from,
+                                            @Param("until") LocalDateTime until);
+
+    @Query("SELECT o.id, o.createdAt, o.readyAt, o.deliveredAt FROM Order o " +
+           "WHERE o.createdAt >= :from AND o.createdAt < :until AND o.readyAt IS NOT NULL")
+    List<Object[]> findPreparationTimesByCreatedWindow(@Param("from") LocalDateTime from,
+                                                       @Param("until") LocalDateTime until);
+
+    @Query("SELECT MIN(o.createdAt) FROM Order o")
+    LocalDateTime findOldestCreatedAt();
 }
@@ -0,0 +1,40 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.PreparationTimeRollup;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Repositorio para la entidad PreparationTimeRollup
+ *
+ * Los rangos son de horas completas: desde {@code from} inclusive hasta {@code until} exclusive.
+ */
+@Repository
+public interface PreparationTimeRollupRepository extends JpaRepository<PreparationTimeRollup, String> {
+
+    /**
+     * Fila de la hora y el producto, bloqueada hasta el fin de la transacción para que dos nodos
+     * no sumen a la vez sobre el mismo histograma
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<PreparationTimeRollup> findByBucketStartAndProductId(LocalDateTime bucketStart, String productId);
+
+    // Sin entidades administradas: al cargar todas las filas no se acumulan en la sesión
+    @Query("SELECT r.bucketStart, r.productId, r.preparationHistogram, r.deliveryHistogram " +
+           "FROM PreparationTimeRollup r")
+    Stream<Object[]> streamHistograms();
+
+    @Modifying
+    @Query("DELETE FROM PreparationTimeRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :until")
+    int deleteByBucketRange(@Param("from") LocalDateTime from,
+                            @Param("until") LocalDateTime until);
+}
@@ -0,0 +1,42 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.ProductHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio para la entidad ProductHourlyRollup
+ *
+ * Los rangos son de horas completas: desde {@code from} inclusive hasta {@code until} exclusive.
+ */
+@Repository
+public interface ProductHourlyRollupRepository extends JpaRepository<ProductHourlyRollup, String> {
+
+    /**
+     * Suma unidades a la fila de la hora y el producto; devuelve 0 si la fila aún no existe
+     */
+    @Modifying
+    @Query("UPDATE ProductHourlyRollup r SET r.quantity = r.quantity + :quantity " +
+           "WHERE r.bucketStart = :bucket AND r.productId = :productId")
+    int increment(@Param("bucket") LocalDateTime bucket,
+                  @Param("productId") String productId,
+                  @Param("quantity") long quantity);
+
+    @Query("SELECT r.productId, p.name, SUM(r.quantity) FROM ProductHourlyRollup r " +
+           "JOIN Product p ON p.id = r.productId " +
+           "WHERE r.bucketStart >= :from AND r.bucketStart < :until " +
+           "GROUP BY r.productId, p.name")
+    List<Object[]> sumQuantitiesByBucketRange(@Param("from") LocalDateTime from,
+                                              @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("DELETE FROM ProductHourlyRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :until")
+    int deleteByBucketRange(@Param("from") LocalDateTime from,
+                            @Param("until") LocalDateTime until);
+}
@@ -1,34 +1,53 @@
 package com.cafelimon.repository;
 
 import com.cafelimon.model.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio para la entidad Product
+ *
+ * Las consultas de listado cargan la categoría en el mismo SELECT para evitar
+ * una consulta adicional por producto al mapear las respuestas.
  */
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
 
+    @Override
+    @EntityGraph(attributePaths = "category")
+    List<Product> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    Optional<Product> findById(String id);
+
+    @Override
+    @EntityGraph(attributePaths = "category")
+    List<Product> findAllById(Iterable<String> ids);
+
+    @EntityGraph(attributePaths = "category")
     List<Product> findByCategoryId(String categoryId);
 
+    @EntityGraph(attributePaths = "category")
     List<Product> findByAvailableTrue();
 
+    @EntityGraph(attributePaths = "category")
     List<Product> findByCategoryIdAndAvailableTrue(String categoryId);
 
-    @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Product> searchByName(@Param("query") String query);
-
-    @Query("SELECT p FROM Product p WHERE p.available = true " +
-           "AND LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))")
-    List<Product> searchByNameAndAvailable(@Param("query") String query);
-
-    @Query("SELECT p FROM Product p ORDER BY p.orderCount DESC")
-    List<Product> findTopProducts();
+    /**
+     * Suma {@code delta} al contador de pedidos de varios productos en una sola sentencia
+     */
+    @Modifying
+    @Query("UPDATE Product p SET p.orderCount = COALESCE(p.orderCount, 0) + :delta WHERE p.id IN :ids")
+    int incrementOrderCounts(@Param("ids") Collection<String> ids, @Param("delta") long delta);
 
     @Query("SELECT p FROM Product p WHERE p.category.id = :categoryId ORDER BY p.name")
     List<Product> findByCategoryIdOrderByName(@Param("categoryId") String categoryId);
@@ -0,0 +1,23 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.RelayMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositorio para la entidad RelayMessage
+ */
+@Repository
+public interface RelayMessageRepository extends JpaRepository<RelayMessage, String> {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RelayMessage m WHERE m.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,35 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.RollupLock;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repositorio para la entidad RollupLock
+ */
+@Repository
+public interface RollupLockRepository extends JpaRepository<RollupLock, String> {
+
+    /**
+     * Fila bloqueada hasta el fin de la transacción, para tomar el turno o entregar una generación
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<RollupLock> findByName(String name);
+
+    /**
+     * Fila bloqueada en modo compartido: los vaciados de varios nodos no se esperan entre sí,
+     * pero sí a un recálculo que la tenga bloqueada
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT l FROM RollupLock l WHERE l.name = :name")
+    Optional<RollupLock> findSharedByName(@Param("name") String name);
+
+    @Query("SELECT l.generation FROM RollupLock l WHERE l.name = :name")
+    Optional<Long> findGenerationByName(@Param("name") String name);
+}
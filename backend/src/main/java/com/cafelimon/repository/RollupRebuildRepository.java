@@ -0,0 +1,26 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.RollupRebuild;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repositorio para la entidad RollupRebuild
+ */
+@Repository
+public interface RollupRebuildRepository extends JpaRepository<RollupRebuild, String> {
+
+    /**
+     * Si la hora se recalculó con una generación posterior a {@code generation}
+     */
+    @Query("SELECT CASE WHEN COUNT(r) > 0 THEN true ELSE false END FROM RollupRebuild r " +
+           "WHERE r.name = :name AND r.generation > :generation " +
+           "AND r.fromBucket <= :bucket AND r.untilBucket > :bucket")
+    boolean existsNewer(@Param("name") String name,
+                        @Param("bucket") LocalDateTime bucket,
+                        @Param("generation") long generation);
+}
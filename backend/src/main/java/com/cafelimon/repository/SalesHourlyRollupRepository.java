@@ -0,0 +1,46 @@
+package com.cafelimon.repository;
+
+import com.cafelimon.model.SalesHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repositorio para la entidad SalesHourlyRollup
+ *
+ * Los rangos son de horas completas: desde {@code from} inclusive hasta {@code until} exclusive.
+ */
+@Repository
+public interface SalesHourlyRollupRepository extends JpaRepository<SalesHourlyRollup, String> {
+
+    /**
+     * Suma los cambios a la fila de la hora; devuelve 0 si la fila aún no existe
+     */
+    @Modifying
+    @Query("UPDATE SalesHourlyRollup r SET r.orderCount = r.orderCount + :orders, " +
+           "r.revenue = r.revenue + :revenue, " +
+           "r.cancelledCount = r.cancelledCount + :cancelled, " +
+           "r.cancelledAmount = r.cancelledAmount + :cancelledAmount " +
+           "WHERE r.bucketStart = :bucket")
+    int increment(@Param("bucket") LocalDateTime bucket,
+                  @Param("orders") long orders,
+                  @Param("revenue") BigDecimal revenue,
+                  @Param("cancelled") long cancelled,
+                  @Param("cancelledAmount") BigDecimal cancelledAmount);
+
+    @Query("SELECT COALESCE(SUM(r.orderCount), 0), COALESCE(SUM(r.revenue), 0) FROM SalesHourlyRollup r " +
+           "WHERE r.bucketStart >= :from AND r.bucketStart < :until")
+    List<Object[]> sumByBucketRange(@Param("from") LocalDateTime from,
+                                    @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("DELETE FROM SalesHourlyRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :until")
+    int deleteByBucketRange(@Param("from") LocalDateTime from,
+                            @Param("until") LocalDateTime until);
+}
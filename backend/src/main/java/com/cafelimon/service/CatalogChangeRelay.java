@@ -0,0 +1,71 @@
+package com.cafelimon.service;
+
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.TableChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lleva a los demás nodos los cambios del catálogo y de las mesas
+ *
+ * El menú, la búsqueda, el ranking y las ubicaciones de las mesas se guardan en memoria en cada
+ * nodo y se actualizan con {@link CatalogChangedEvent} y {@link TableChangedEvent}. Cada evento
+ * confirmado aquí se reenvía por {@link ClusterEventRelay}, y los que llegan de otro nodo se
+ * vuelven a publicar en este marcados como {@code relayed}, así sus oyentes no cambian y nada
+ * rebota entre nodos.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogChangeRelay {
+
+    static final String CATALOG_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "catalog";
+    static final String TABLES_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "tables";
+
+    private final ClusterEventRelay relay;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!event.isRelayed()) {
+            relay.publish(CATALOG_DESTINATION, bytes(event.getEntityType() + ":" + event.getAction()
+                    + ":" + event.getEntityId()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTableChanged(TableChangedEvent event) {
+        if (!event.isRelayed()) {
+            relay.publish(TABLES_DESTINATION, bytes(event.getTableId()));
+        }
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    void onRelayedMessage(String destination, byte[] payload) {
+        try {
+            if (CATALOG_DESTINATION.equals(destination)) {
+                String[] parts = new String(payload, StandardCharsets.UTF_8).split(":", 3);
+                eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.EntityType.valueOf(parts[0]),
+                        CatalogChangedEvent.Action.valueOf(parts[1]), parts[2], true));
+            } else if (TABLES_DESTINATION.equals(destination)) {
+                eventPublisher.publishEvent(new TableChangedEvent(new String(payload, StandardCharsets.UTF_8), true));
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudo aplicar un cambio de catálogo de otro nodo en {}: {}", destination, e.getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
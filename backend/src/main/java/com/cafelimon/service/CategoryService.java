@@ -2,11 +2,13 @@ package com.cafelimon.service;
 
 import com.cafelimon.dto.category.CategoryRequest;
 import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.event.CatalogChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Category;
 import com.cafelimon.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +25,7 @@ import java.util.stream.Collectors;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<CategoryResponse> getAllCategories() {
         return categoryRepository.findAll().stream()
@@ -58,6 +61,7 @@ public class CategoryService {
 
         category = categoryRepository.save(category);
         log.info("Categoría creada con ID: {}", category.getId());
+        eventPublisher.publishEvent(CatalogChangedEvent.category(CatalogChangedEvent.Action.CREATED, category.getId()));
 
         return toResponse(category);
     }
@@ -80,6 +84,7 @@ public class CategoryService {
 
         category = categoryRepository.save(category);
         log.info("Categoría actualizada: {}", category.getId());
+        eventPublisher.publishEvent(CatalogChangedEvent.category(CatalogChangedEvent.Action.UPDATED, category.getId()));
 
         return toResponse(category);
     }
@@ -89,6 +94,7 @@ public class CategoryService {
         Category category = findCategoryById(id);
         categoryRepository.delete(category);
         log.info("Categoría eliminada: {}", id);
+        eventPublisher.publishEvent(CatalogChangedEvent.category(CatalogChangedEvent.Action.DELETED, id));
     }
 
     private Category findCategoryById(String id) {
@@ -96,7 +102,10 @@ public class CategoryService {
                 .orElseThrow(() -> new ResourceNotFoundException("Categoría no encontrada con ID: " + id));
     }
 
-    private CategoryResponse toResponse(Category category) {
+    /**
+     * Convierte una categoría ya cargada sin volver a consultarla
+     */
+    public CategoryResponse toResponse(Category category) {
         return CategoryResponse.builder()
                 .id(category.getId())
                 .name(category.getName())
@@ -0,0 +1,28 @@
+package com.cafelimon.service;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Reenvía a los demás nodos del backend los mensajes WebSocket publicados en este
+ *
+ * Cada nodo tiene su propio broker STOMP en memoria, así que un cliente conectado a un nodo
+ * solo ve lo que ese nodo envía. El relay lleva cada mensaje ya serializado a los otros nodos,
+ * que lo publican a sus suscriptores locales. Se elige con {@code app.websocket.relay.type}.
+ *
+ * Los destinos que empiezan con {@link #INTERNAL_PREFIX} no son de WebSocket: llevan eventos
+ * entre nodos para mantener al día lo que cada uno guarda en memoria.
+ */
+public interface ClusterEventRelay {
+
+    String INTERNAL_PREFIX = "/internal/";
+
+    /**
+     * Envía a los demás nodos un mensaje ya publicado localmente; nunca lo entrega a este nodo
+     */
+    void publish(String destination, byte[] payload);
+
+    /**
+     * Registra quién recibe los mensajes publicados por otros nodos
+     */
+    void subscribe(BiConsumer<String, byte[]> listener);
+}
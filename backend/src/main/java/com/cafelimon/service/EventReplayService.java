@@ -0,0 +1,78 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.websocket.TopicEvent;
+import com.cafelimon.dto.websocket.TopicReplayResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Servicio para reenviar a un cliente reconectado los mensajes WebSocket que no recibió
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EventReplayService {
+
+    private static final Set<String> ORDER_TOPICS = Set.of(
+            WebSocketService.NEW_ORDERS_TOPIC,
+            WebSocketService.ORDER_UPDATES_TOPIC,
+            WebSocketService.ORDER_STATUS_TOPIC,
+            WebSocketService.KITCHEN_TOPIC);
+    private static final Pattern TABLE_TOPIC = Pattern.compile("/topic/tables/([^/]+)/orders");
+
+    private final WebSocketEventLog eventLog;
+    private final OrderService orderService;
+
+    /**
+     * Retorna los mensajes del tópico posteriores a {@code since}
+     *
+     * Si ya salieron del historial, o el cliente los numeró en un arranque anterior, se
+     * responde con el estado actual de las órdenes del tópico. El número actual se toma antes
+     * del snapshot, así un mensaje intermedio puede llegar repetido pero nunca perderse.
+     */
+    public TopicReplayResponse replay(String topic, long since, String epoch) {
+        Supplier<List<OrderResponse>> snapshot = snapshotFor(topic);
+        long currentSeq = eventLog.currentSeq(topic);
+        boolean sameEpoch = epoch == null || epoch.isBlank() || epoch.equals(eventLog.getEpoch());
+        Optional<List<WebSocketEventLog.Entry>> events = sameEpoch
+                ? eventLog.eventsSince(topic, since)
+                : Optional.empty();
+
+        TopicReplayResponse.TopicReplayResponseBuilder response = TopicReplayResponse.builder()
+                .topic(topic)
+                .epoch(eventLog.getEpoch())
+                .sinceSeq(since);
+        if (events.isPresent()) {
+            List<TopicEvent> replayed = events.get().stream()
+                    .map(entry -> new TopicEvent(entry.seq(), new String(entry.payload(), StandardCharsets.UTF_8)))
+                    .toList();
+            long lastSeq = replayed.isEmpty() ? since : replayed.get(replayed.size() - 1).getSeq();
+            return response.currentSeq(lastSeq).events(replayed).build();
+        }
+
+        log.debug("Historial insuficiente para {} desde {}, se envía snapshot", topic, since);
+        return response.currentSeq(currentSeq).snapshotRequired(true).snapshot(snapshot.get()).build();
+    }
+
+    private Supplier<List<OrderResponse>> snapshotFor(String topic) {
+        if (ORDER_TOPICS.contains(topic)) {
+            return orderService::getActiveOrders;
+        }
+        Matcher table = TABLE_TOPIC.matcher(topic);
+        if (table.matches()) {
+            String tableId = table.group(1);
+            return () -> orderService.getOrdersByTable(tableId);
+        }
+        throw new IllegalArgumentException("Tópico sin historial de mensajes: " + topic);
+    }
+}
@@ -0,0 +1,62 @@
+package com.cafelimon.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Relay entre contextos de la misma JVM
+ *
+ * Es el relay por defecto: con un solo nodo no hay a quién reenviar y no tiene costo. En
+ * pruebas permite levantar varios contextos en la misma JVM y verlos comportarse como nodos.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.websocket.relay", name = "type", havingValue = "in-process",
+        matchIfMissing = true)
+@Slf4j
+public class InProcessClusterEventRelay implements ClusterEventRelay {
+
+    private static final List<InProcessClusterEventRelay> NODES = new CopyOnWriteArrayList<>();
+
+    private final List<BiConsumer<String, byte[]>> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void join() {
+        NODES.add(this);
+    }
+
+    @PreDestroy
+    public void leave() {
+        NODES.remove(this);
+    }
+
+    @Override
+    public void publish(String destination, byte[] payload) {
+        for (InProcessClusterEventRelay node : NODES) {
+            if (node != this) {
+                node.deliver(destination, payload);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(BiConsumer<String, byte[]> listener) {
+        listeners.add(listener);
+    }
+
+    private void deliver(String destination, byte[] payload) {
+        for (BiConsumer<String, byte[]> listener : listeners) {
+            try {
+                listener.accept(destination, payload);
+            } catch (RuntimeException e) {
+                log.error("Error publicando mensaje reenviado a {}: {}", destination, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.menu.MenuChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Registro acotado de cambios del menú por versión
+ *
+ * Guarda los cambios de las últimas versiones hasta un máximo de entradas. Los cambios
+ * de una misma versión se agregan y se descartan juntos, así una consulta nunca
+ * recibe una versión a medias.
+ */
+@Component
+public class MenuChangeLog {
+
+    private final int capacity;
+    private final Deque<VersionChanges> versions = new ArrayDeque<>();
+    private int size;
+    private long baseVersion;
+
+    public MenuChangeLog(@Value("${app.menu.change-log-size:500}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Fija la versión inicial a partir de la cual se pueden calcular deltas
+     */
+    public synchronized void reset(long version) {
+        versions.clear();
+        size = 0;
+        baseVersion = version;
+    }
+
+    /**
+     * Registra los cambios que produjeron la versión indicada
+     */
+    public synchronized void append(long version, List<MenuChange> changes) {
+        if (!changes.isEmpty()) {
+            versions.addLast(new VersionChanges(version, List.copyOf(changes)));
+            size += changes.size();
+        }
+        while (size > capacity && versions.size() > 1) {
+            VersionChanges evicted = versions.removeFirst();
+            size -= evicted.changes().size();
+            baseVersion = evicted.version();
+        }
+    }
+
+    /**
+     * Retorna los cambios posteriores a {@code since}, o vacío si ya no están en el registro
+     */
+    public synchronized Optional<List<MenuChange>> changesSince(long since, long currentVersion) {
+        if (since < baseVersion || since > currentVersion) {
+            return Optional.empty();
+        }
+        List<MenuChange> result = new ArrayList<>();
+        Iterator<VersionChanges> iterator = versions.descendingIterator();
+        List<VersionChanges> newer = new ArrayList<>();
+        while (iterator.hasNext()) {
+            VersionChanges entry = iterator.next();
+            if (entry.version() <= since) {
+                break;
+            }
+            newer.add(entry);
+        }
+        for (int i = newer.size() - 1; i >= 0; i--) {
+            result.addAll(newer.get(i).changes());
+        }
+        return Optional.of(result);
+    }
+
+    private record VersionChanges(long version, List<MenuChange> changes) {
+    }
+}
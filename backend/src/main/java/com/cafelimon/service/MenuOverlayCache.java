@@ -0,0 +1,112 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.MenuOverlayProperties;
+import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.menu.MenuResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Segundo nivel de caché del menú: vistas por ubicación sobre la instantánea base
+ *
+ * Cada vista reutiliza los mismos objetos de la instantánea y solo crea listas nuevas
+ * para las categorías donde se oculta algún producto. Las vistas se indexan por el
+ * conjunto de productos ocultos, de modo que las mesas de una misma zona comparten vista
+ * y al cambiar de franja horaria se usa otra entrada sin recalcular nada.
+ */
+@Component
+@RequiredArgsConstructor
+public class MenuOverlayCache {
+
+    private final MenuOverlayProperties overlayProperties;
+
+    private final AtomicReference<VersionedViews> views = new AtomicReference<>(new VersionedViews(-1L));
+
+    public boolean hasOverlays() {
+        return !overlayProperties.getOverlays().isEmpty();
+    }
+
+    /**
+     * Retorna el menú de la instantánea base con las reglas de la ubicación aplicadas
+     */
+    public MenuResponse apply(MenuSnapshot base, String location, LocalTime time) {
+        Set<String> hidden = hiddenProductIds(location, time);
+        if (hidden.isEmpty()) {
+            return base.getMenu();
+        }
+
+        VersionedViews current = views.get();
+        if (current.version < base.getVersion()) {
+            VersionedViews fresh = new VersionedViews(base.getVersion());
+            current = views.compareAndSet(current, fresh) ? fresh : views.get();
+        }
+        if (current.version != base.getVersion()) {
+            return merge(base.getMenu(), hidden);
+        }
+        return current.byHiddenSet.computeIfAbsent(String.join(",", hidden), key -> merge(base.getMenu(), hidden));
+    }
+
+    private Set<String> hiddenProductIds(String location, LocalTime time) {
+        Set<String> restricted = new TreeSet<>();
+        Set<String> allowed = new TreeSet<>();
+        for (MenuOverlayProperties.Overlay overlay : overlayProperties.getOverlays()) {
+            (overlay.appliesTo(location, time) ? allowed : restricted).addAll(overlay.getProductIds());
+        }
+        restricted.removeAll(allowed);
+        return restricted;
+    }
+
+    private MenuResponse merge(MenuResponse base, Set<String> hidden) {
+        Map<String, List<ProductResponse>> productsByCategory = new LinkedHashMap<>();
+        base.getProductsByCategory().forEach((categoryId, products) -> {
+            boolean affected = products.stream().anyMatch(product -> hidden.contains(product.getId()));
+            if (!affected) {
+                productsByCategory.put(categoryId, products);
+                return;
+            }
+            List<ProductResponse> visible = products.stream()
+                    .filter(product -> !hidden.contains(product.getId()))
+                    .collect(Collectors.toUnmodifiableList());
+            if (!visible.isEmpty()) {
+                productsByCategory.put(categoryId, visible);
+            }
+        });
+
+        // Una categoría sin productos visibles no se muestra
+        List<CategoryResponse> categories = productsByCategory.size() == base.getProductsByCategory().size()
+                ? base.getCategories()
+                : base.getCategories().stream()
+                        .filter(category -> productsByCategory.containsKey(category.getId()))
+                        .collect(Collectors.toUnmodifiableList());
+
+        return MenuResponse.builder()
+                .categories(categories)
+                .productsByCategory(Collections.unmodifiableMap(productsByCategory))
+                .products(base.getProducts().stream()
+                        .filter(product -> !hidden.contains(product.getId()))
+                        .collect(Collectors.toUnmodifiableList()))
+                .build();
+    }
+
+    private static final class VersionedViews {
+
+        private final long version;
+        private final Map<String, MenuResponse> byHiddenSet = new ConcurrentHashMap<>();
+
+        private VersionedViews(long version) {
+            this.version = version;
+        }
+    }
+}
@@ -1,44 +1,207 @@
 package com.cafelimon.service;
 
 import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.menu.MenuChange;
+import com.cafelimon.dto.menu.MenuChangesResponse;
 import com.cafelimon.dto.menu.MenuResponse;
+import com.cafelimon.dto.menu.MenuRow;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.TableChangedEvent;
+import com.cafelimon.model.Table;
+import com.cafelimon.repository.CategoryRepository;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Servicio para gestión del menú
+ *
+ * El menú se sirve desde una instantánea en memoria ({@link MenuSnapshot}) que solo
+ * se reconstruye cuando cambia el catálogo, de modo que las lecturas no consultan la base de datos.
+ * Las versiones se numeran desde 1 en cada arranque; {@code epoch} identifica el arranque y va
+ * en el token de versión, así un token de antes de reiniciar o de otro nodo pide recarga completa.
+ * Los cambios de catálogo y de mesas hechos en otros nodos llegan por {@link CatalogChangeRelay}.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Transactional(readOnly = true)
 public class MenuService {
 
-    private final CategoryService categoryService;
-    private final ProductService productService;
+    private final CategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final MenuChangeLog changeLog;
+    private final MenuOverlayCache overlayCache;
+    private final TableRepository tableRepository;
+
+    private final AtomicReference<MenuSnapshot> snapshot = new AtomicReference<>();
+    private final Map<String, String> tableLocations = new ConcurrentHashMap<>();
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36)
+            + Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36), 36);
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Object rebuildLock = new Object();
 
     /**
      * Obtiene el menú completo con categorías y productos activos
      */
     public MenuResponse getFullMenu() {
-        log.info("Obteniendo menú completo");
+        return getSnapshot().getMenu();
+    }
+
+    /**
+     * Obtiene la instantánea vigente del menú, construyéndola si aún no existe
+     */
+    public MenuSnapshot getSnapshot() {
+        MenuSnapshot current = snapshot.get();
+        if (current != null) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            current = snapshot.get();
+            return current != null ? current : rebuild(null);
+        }
+    }
+
+    /**
+     * Obtiene los cambios del menú posteriores al token de versión conocido por el cliente;
+     * un token de otro arranque u otro nodo siempre pide recarga completa
+     */
+    public MenuChangesResponse getChangesSince(String sinceToken) {
+        MenuSnapshot current = getSnapshot();
+        OptionalLong since = current.versionOf(sinceToken);
+        Optional<List<MenuChange>> changes = since.isPresent()
+                ? changeLog.changesSince(since.getAsLong(), current.getVersion())
+                : Optional.empty();
+        return changes
+                .map(delta -> MenuChangesResponse.builder()
+                        .sinceVersion(sinceToken)
+                        .currentVersion(current.getVersionToken())
+                        .fullReloadRequired(false)
+                        .changes(delta)
+                        .build())
+                .orElseGet(() -> MenuChangesResponse.builder()
+                        .sinceVersion(sinceToken)
+                        .currentVersion(current.getVersionToken())
+                        .fullReloadRequired(true)
+                        .changes(List.of())
+                        .build());
+    }
+
+    /**
+     * Obtiene el menú para una mesa específica
+     */
+    public MenuResponse getMenuForTable(String tableId) {
+        return getMenuForTable(tableId, LocalTime.now());
+    }
+
+    MenuResponse getMenuForTable(String tableId, LocalTime time) {
+        log.info("Obteniendo menú para mesa: {}", tableId);
+        MenuSnapshot base = getSnapshot();
+        if (!overlayCache.hasOverlays()) {
+            return base.getMenu();
+        }
+        return overlayCache.apply(base, getTableLocation(tableId), time);
+    }
 
-        List<CategoryResponse> categories = categoryService.getActiveCategories();
+    /**
+     * Reconstruye la instantánea del menú y la publica atómicamente
+     */
+    @Transactional(readOnly = true)
+    public MenuSnapshot refreshMenu() {
+        synchronized (rebuildLock) {
+            return rebuild(null);
+        }
+    }
+
+    /**
+     * Reconstruye el menú una vez confirmada la transacción que modificó el catálogo
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        log.info("Catálogo modificado ({}), reconstruyendo menú", event);
+        synchronized (rebuildLock) {
+            rebuild(event);
+        }
+    }
+
+    /**
+     * Descarta la ubicación en caché de una mesa modificada o eliminada
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTableChanged(TableChangedEvent event) {
+        tableLocations.remove(event.getTableId());
+    }
+
+    private String getTableLocation(String tableId) {
+        // Solo se guardan mesas existentes (las sin ubicación como ""), así el mapa no crece con
+        // ids inventados y una mesa creada después se encuentra en la siguiente consulta
+        String location = tableLocations.get(tableId);
+        if (location == null) {
+            Optional<Table> table = tableRepository.findById(tableId);
+            if (table.isEmpty()) {
+                return null;
+            }
+            location = table.get().getLocation() != null ? table.get().getLocation() : "";
+            tableLocations.put(tableId, location);
+        }
+        return location.isEmpty() ? null : location;
+    }
+
+    private MenuSnapshot rebuild(CatalogChangedEvent cause) {
+        MenuSnapshot previous = snapshot.get();
+        MenuSnapshot next = MenuSnapshot.of(epoch, versionSequence.incrementAndGet(), buildMenu(), objectMapper);
+        if (previous == null) {
+            changeLog.reset(next.getVersion());
+        } else {
+            changeLog.append(next.getVersion(), diff(previous.getMenu(), next.getMenu(), next.getVersion(), cause));
+        }
+        snapshot.set(next);
+        log.info("Menú reconstruido - versión {} con {} productos ({} bytes, {} bytes gzip)",
+                next.getVersion(), next.getMenu().getProducts().size(),
+                next.getJson().length, next.getGzippedJson().length);
+        return next;
+    }
+
+    /**
+     * Construye el menú a partir de una única consulta categoría + producto
+     */
+    private MenuResponse buildMenu() {
+        List<CategoryResponse> categories = new ArrayList<>();
         Map<String, List<ProductResponse>> productsByCategory = new LinkedHashMap<>();
-        List<ProductResponse> allProducts = new java.util.ArrayList<>();
+        List<ProductResponse> allProducts = new ArrayList<>();
 
-        for (CategoryResponse category : categories) {
-            List<ProductResponse> products = productService.getAvailableProductsByCategory(category.getId());
-            if (!products.isEmpty()) {
-                productsByCategory.put(category.getId(), products);
-                allProducts.addAll(products);
+        CategoryResponse currentCategory = null;
+        for (MenuRow row : categoryRepository.findActiveMenuRows()) {
+            if (currentCategory == null || !currentCategory.getId().equals(row.getCategoryId())) {
+                currentCategory = toCategoryResponse(row);
+                categories.add(currentCategory);
+            }
+            if (row.getProductId() != null) {
+                ProductResponse product = toProductResponse(row, currentCategory);
+                productsByCategory.computeIfAbsent(currentCategory.getId(), id -> new ArrayList<>()).add(product);
+                allProducts.add(product);
             }
         }
 
@@ -49,13 +212,86 @@ public class MenuService {
                 .build();
     }
 
-    /**
-     * Obtiene el menú para una mesa específica
-     */
-    public MenuResponse getMenuForTable(String tableId) {
-        log.info("Obteniendo menú para mesa: {}", tableId);
-        // Por ahora retornamos el mismo menú para todas las mesas
-        // En el futuro se podría personalizar según la mesa
-        return getFullMenu();
+    private CategoryResponse toCategoryResponse(MenuRow row) {
+        return CategoryResponse.builder()
+                .id(row.getCategoryId())
+                .name(row.getCategoryName())
+                .description(row.getCategoryDescription())
+                .icon(row.getCategoryIcon())
+                .orderIndex(row.getCategoryOrderIndex())
+                .active(row.getCategoryActive())
+                .createdAt(row.getCategoryCreatedAt())
+                .updatedAt(row.getCategoryUpdatedAt())
+                .build();
+    }
+
+    private ProductResponse toProductResponse(MenuRow row, CategoryResponse category) {
+        return ProductResponse.builder()
+                .id(row.getProductId())
+                .name(row.getProductName())
+                .description(row.getProductDescription())
+                .price(row.getProductPrice())
+                .category(category)
+                .imageUrl(row.getProductImageUrl())
+                .preparationTime(row.getProductPreparationTime())
+                .available(row.getProductAvailable())
+                .orderCount(row.getProductOrderCount())
+                .createdAt(row.getProductCreatedAt())
+                .updatedAt(row.getProductUpdatedAt())
+                .build();
+    }
+
+    private List<MenuChange> diff(MenuResponse previous, MenuResponse next, long version, CatalogChangedEvent cause) {
+        List<MenuChange> changes = new ArrayList<>();
+        diffEntities(previous.getCategories(), next.getCategories(), CategoryResponse::getId,
+                MenuChange.EntityType.CATEGORY, MenuChange.MenuChangeBuilder::category,
+                deletedIds(cause, CatalogChangedEvent.EntityType.CATEGORY), version, changes);
+        diffEntities(previous.getProducts(), next.getProducts(), ProductResponse::getId,
+                MenuChange.EntityType.PRODUCT, MenuChange.MenuChangeBuilder::product,
+                deletedIds(cause, CatalogChangedEvent.EntityType.PRODUCT), version, changes);
+        return changes;
+    }
+
+    private static <T> void diffEntities(List<T> previous, List<T> next, Function<T, String> idExtractor,
+                                         MenuChange.EntityType entityType,
+                                         BiConsumer<MenuChange.MenuChangeBuilder, T> payload,
+                                         Set<String> deletedIds, long version, List<MenuChange> changes) {
+        Map<String, T> oldItems = indexById(previous, idExtractor);
+        Map<String, T> newItems = indexById(next, idExtractor);
+
+        newItems.forEach((id, item) -> {
+            T old = oldItems.get(id);
+            if (old == null || !old.equals(item)) {
+                MenuChange.MenuChangeBuilder change = MenuChange.builder()
+                        .version(version)
+                        .entityType(entityType)
+                        .changeType(old == null ? MenuChange.ChangeType.ADDED : MenuChange.ChangeType.UPDATED)
+                        .id(id);
+                payload.accept(change, item);
+                changes.add(change.build());
+            }
+        });
+
+        oldItems.keySet().stream()
+                .filter(id -> !newItems.containsKey(id))
+                .forEach(id -> changes.add(MenuChange.builder()
+                        .version(version)
+                        .entityType(entityType)
+                        .changeType(deletedIds.contains(id)
+                                ? MenuChange.ChangeType.DELETED : MenuChange.ChangeType.UNAVAILABLE)
+                        .id(id)
+                        .build()));
+    }
+
+    private static <T> Map<String, T> indexById(List<T> items, Function<T, String> idExtractor) {
+        return items.stream().collect(Collectors.toMap(idExtractor, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+    }
+
+    private static Set<String> deletedIds(CatalogChangedEvent cause, CatalogChangedEvent.EntityType entityType) {
+        if (cause != null && cause.getEntityType() == entityType
+                && cause.getAction() == CatalogChangedEvent.Action.DELETED) {
+            return Set.of(cause.getEntityId());
+        }
+        return Set.of();
     }
 }
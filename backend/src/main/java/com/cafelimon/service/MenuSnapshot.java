@@ -0,0 +1,158 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.ApiResponse;
+import com.cafelimon.dto.menu.MenuResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Instantánea inmutable y versionada del menú
+ *
+ * Se construye completa fuera de línea y se publica con un único swap atómico,
+ * por lo que los lectores nunca ven un menú a medio construir. Incluye la respuesta
+ * ya serializada a JSON (plana y comprimida con gzip) y el ETag de cada una, para que el
+ * controller no tenga que volver a serializar el menú en cada petición. Por eso el
+ * {@code timestamp} de esa respuesta es el momento en que se construyó la instantánea
+ * ({@link #getBuiltAt()}), no el de cada petición.
+ *
+ * La versión se numera desde 1 en cada arranque del nodo, así que por sí sola no identifica un
+ * menú: el token de versión ({@link #getVersionToken()}) y el ETag la acompañan del
+ * {@code epoch} del proceso que la generó.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class MenuSnapshot {
+
+    private final String epoch;
+    private final long version;
+    private final MenuResponse menu;
+    private final LocalDateTime builtAt;
+    private final String etag;
+    private final String gzipEtag;
+    private final byte[] json;
+    private final byte[] gzippedJson;
+
+    public static MenuSnapshot of(String epoch, long version, MenuResponse menu, ObjectMapper objectMapper) {
+        Map<String, List<ProductResponse>> productsByCategory = new LinkedHashMap<>();
+        menu.getProductsByCategory().forEach((categoryId, products) ->
+                productsByCategory.put(categoryId, List.copyOf(products)));
+
+        MenuResponse frozen = MenuResponse.builder()
+                .categories(List.copyOf(menu.getCategories()))
+                .productsByCategory(Collections.unmodifiableMap(productsByCategory))
+                .products(List.copyOf(menu.getProducts()))
+                .build();
+
+        LocalDateTime builtAt = LocalDateTime.now();
+        try {
+            byte[] menuJson = objectMapper.writeValueAsBytes(frozen);
+            byte[] payload = objectMapper.writeValueAsBytes(ApiResponse.<MenuResponse>builder()
+                    .success(true)
+                    .data(frozen)
+                    .timestamp(builtAt)
+                    .build());
+            String tag = versionToken(epoch, version) + "-" + contentHash(menuJson);
+            return new MenuSnapshot(epoch, version, frozen, builtAt, "\"" + tag + "\"", "\"" + tag + "-gz\"",
+                    payload, gzip(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No fue posible serializar el menú", e);
+        }
+    }
+
+    /**
+     * Versión con el epoch del proceso, de la forma {@code <epoch>.<versión>}
+     */
+    public String getVersionToken() {
+        return versionToken(epoch, version);
+    }
+
+    /**
+     * Versión contenida en un token de este mismo proceso; vacío si es de otro arranque u otro
+     * nodo, o si no se puede leer
+     */
+    public OptionalLong versionOf(String token) {
+        if (token == null) {
+            return OptionalLong.empty();
+        }
+        int separator = token.lastIndexOf('.');
+        if (separator < 0 || !token.substring(0, separator).equals(epoch)) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(token.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * ETag de la representación plana o de la comprimida; son bytes distintos y no comparten uno
+     */
+    public String getEtag(boolean gzipped) {
+        return gzipped ? gzipEtag : etag;
+    }
+
+    /**
+     * Indica si el valor de la cabecera If-None-Match coincide con el ETag de esta versión, en
+     * cualquiera de sus codificaciones
+     *
+     * If-None-Match usa comparación débil (RFC 9110 §13.1.2): se ignora el prefijo {@code W/}
+     * que agregan algunos intermediarios.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String versionToken(String epoch, long version) {
+        return epoch + "." + version;
+    }
+
+    private static String contentHash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No fue posible comprimir el menú", e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Lleva a los demás nodos las órdenes eliminadas
+ *
+ * Como {@link CatalogChangeRelay}: cada {@link OrderDeletedEvent} confirmado aquí se reenvía por
+ * {@link ClusterEventRelay} con la orden completa, y los que llegan de otro nodo se vuelven a
+ * publicar en este marcados como {@code relayed}. Sus oyentes restan la orden de lo que guardan en
+ * memoria; los acumulados en la base de datos los corrige solo el nodo que la eliminó.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrderDeletionRelay {
+
+    static final String RELAY_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "orders/deleted";
+
+    private final ClusterEventRelay relay;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderDeleted(OrderDeletedEvent event) {
+        if (event.isRelayed()) {
+            return;
+        }
+        try {
+            relay.publish(RELAY_DESTINATION, objectMapper.writeValueAsBytes(
+                    new Deletion(event.getTableId(), event.getOrder(), event.getDeletedAt())));
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo enviar la eliminación de la orden {} a otros nodos: {}",
+                    event.getOrderId(), e.getMessage());
+        }
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    void onRelayedMessage(String destination, byte[] payload) {
+        if (!RELAY_DESTINATION.equals(destination)) {
+            return;
+        }
+        try {
+            Deletion deletion = objectMapper.readValue(payload, Deletion.class);
+            eventPublisher.publishEvent(new OrderDeletedEvent(deletion.order().getId(), deletion.tableId(),
+                    deletion.order(), deletion.deletedAt(), true));
+        } catch (IOException | RuntimeException e) {
+            log.error("No se pudo aplicar una orden eliminada en otro nodo: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lo que se envía de cada orden eliminada
+     */
+    record Deletion(String tableId, OrderResponse order, LocalDateTime deletedAt) {
+    }
+}
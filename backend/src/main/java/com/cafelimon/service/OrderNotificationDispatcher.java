@@ -0,0 +1,141 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envía las notificaciones WebSocket de órdenes una vez confirmada la transacción
+ *
+ * Los envíos se encolan en un executor acotado propio, así la petición HTTP y la
+ * transacción nunca esperan al broker y los clientes no ven órdenes que luego se revierten.
+ * Los cambios de estado de una orden esperan una ventana corta ({@code coalesce-window-ms})
+ * antes de encolarse; los que llegan mientras tanto, o mientras el envío sigue en cola,
+ * reemplazan al pendiente en lugar de encolar otro. Si la cola está llena, la notificación
+ * se descarta.
+ */
+@Component
+@Slf4j
+public class OrderNotificationDispatcher {
+
+    private final WebSocketService webSocketService;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor coalescer;
+    private final long coalesceWindowMs;
+    private final Map<String, OrderStatusChangedEvent> pendingStatusUpdates = new ConcurrentHashMap<>();
+    private final Counter dispatched;
+    private final Counter merged;
+    private final Counter dropped;
+
+    public OrderNotificationDispatcher(WebSocketService webSocketService, WebSocketProperties properties,
+                                       MeterRegistry meterRegistry) {
+        this.webSocketService = webSocketService;
+
+        WebSocketProperties.Dispatch dispatch = properties.getDispatch();
+        this.executor = new ThreadPoolExecutor(dispatch.getThreads(), dispatch.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(dispatch.getQueueCapacity()),
+                new CustomizableThreadFactory("ws-dispatch-"));
+        this.coalesceWindowMs = dispatch.getCoalesceWindowMs();
+        this.coalescer = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("ws-coalesce-"));
+
+        Gauge.builder("cafelimon.notifications.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Notificaciones de órdenes en espera de envío")
+                .register(meterRegistry);
+        Gauge.builder("cafelimon.notifications.queue.remaining", executor,
+                        pool -> pool.getQueue().remainingCapacity())
+                .description("Espacio libre en la cola de notificaciones")
+                .register(meterRegistry);
+        this.dispatched = Counter.builder("cafelimon.notifications.dispatched")
+                .description("Notificaciones de órdenes enviadas al broker")
+                .register(meterRegistry);
+        this.merged = Counter.builder("cafelimon.notifications.merged")
+                .description("Actualizaciones de estado reemplazadas por una más reciente antes de enviarse")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("cafelimon.notifications.dropped")
+                .description("Notificaciones descartadas por cola llena")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Avisa la nueva orden al panel, a cocina y a la mesa
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        submit(() -> webSocketService.notifyOrderCreated(event.getTableId(), event.getOrder()),
+                event.getOrderId(), () -> { });
+    }
+
+    /**
+     * Avisa el cambio de estado; si la orden ya tiene un aviso en cola, solo se actualiza su contenido
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        String orderId = event.getOrderId();
+        OrderStatusChangedEvent pending = pendingStatusUpdates.compute(orderId,
+                (id, queued) -> queued == null ? event : queued.followedBy(event));
+        if (pending != event) {
+            // El envío ya encolado tomará este estado al ejecutarse
+            merged.increment();
+            return;
+        }
+        Runnable enqueue = () -> submit(() -> {
+            OrderStatusChangedEvent latest = pendingStatusUpdates.remove(orderId);
+            if (latest != null) {
+                webSocketService.notifyOrderStatusChanged(latest.getTableId(), latest.getPreviousStatus(),
+                        latest.getOrder());
+            }
+        }, orderId, () -> pendingStatusUpdates.remove(orderId));
+        if (coalesceWindowMs <= 0) {
+            enqueue.run();
+        } else {
+            coalescer.schedule(enqueue, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Se espera a que cierren las ventanas abiertas para que sus envíos pasen a la cola
+        coalescer.shutdown();
+        coalescer.awaitTermination(coalesceWindowMs + 1000, TimeUnit.MILLISECONDS);
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Se descartan {} notificaciones pendientes al detener la aplicación",
+                    executor.shutdownNow().size());
+        }
+    }
+
+    private void submit(Runnable send, String orderId, Runnable onDrop) {
+        try {
+            executor.execute(() -> {
+                try {
+                    send.run();
+                    dispatched.increment();
+                } catch (RuntimeException e) {
+                    log.error("Error enviando notificación de la orden {}: {}", orderId, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            onDrop.run();
+            dropped.increment();
+            log.warn("Cola de notificaciones llena, se descarta la notificación de la orden {}", orderId);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.cafelimon.service;
 
 import com.cafelimon.dto.order.CreateOrderRequest;
+import com.cafelimon.dto.order.OrderItemRequest;
 import com.cafelimon.dto.order.OrderItemResponse;
 import com.cafelimon.dto.order.OrderResponse;
 import com.cafelimon.dto.order.UpdateOrderStatusRequest;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.*;
 import com.cafelimon.repository.OrderItemRepository;
@@ -12,6 +16,7 @@ import com.cafelimon.repository.ProductRepository;
 import com.cafelimon.repository.TableRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -20,7 +25,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -38,7 +46,7 @@ public class OrderService {
     private final ProductRepository productRepository;
     private final ProductService productService;
     private final TableService tableService;
-    private final WebSocketService webSocketService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<OrderResponse> getAllOrders() {
         return orderRepository.findAll().stream()
@@ -102,10 +110,18 @@ public class OrderService {
                 .notes(request.getNotes())
                 .build();
 
+        // Resolver todos los productos de la orden en una sola consulta
+        Map<String, Product> products = productRepository.findAllById(request.getItems().stream()
+                        .map(OrderItemRequest::getProductId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
         // Crear items de la orden
         for (var itemRequest : request.getItems()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado con ID: " + itemRequest.getProductId()));
+            Product product = products.get(itemRequest.getProductId());
+            if (product == null) {
+                throw new ResourceNotFoundException("Producto no encontrado con ID: " + itemRequest.getProductId());
+            }
 
             if (!product.getAvailable()) {
                 throw new IllegalArgumentException("Producto no disponible: " + product.getName());
@@ -121,9 +137,6 @@ public class OrderService {
 
             orderItem.calculateSubtotal();
             order.getItems().add(orderItem);
-
-            // Incrementar contador de pedidos del producto
-            productService.incrementOrderCount(product.getId());
         }
 
         // Calcular total
@@ -134,10 +147,9 @@ public class OrderService {
 
         OrderResponse orderResponse = toResponse(order);
 
-        // Enviar notificaciones WebSocket
-        webSocketService.notifyNewOrder(orderResponse);
-        webSocketService.notifyKitchen(orderResponse);
-        webSocketService.notifyOrderUpdateToTable(order.getTable().getId(), orderResponse);
+        // Contadores, ranking y notificaciones WebSocket se procesan al confirmar la transacción
+        eventPublisher.publishEvent(new OrderCreatedEvent(order.getId(), table.getId(),
+                order.getItems().stream().map(item -> item.getProduct().getId()).toList(), orderResponse));
 
         return orderResponse;
     }
@@ -147,6 +159,8 @@ public class OrderService {
 
         Order order = findOrderById(id);
         OrderStatus previousStatus = order.getStatus();
+        boolean wasReady = order.getReadyAt() != null;
+        boolean wasDelivered = order.getDeliveredAt() != null;
         order.setStatus(request.getStatus());
 
         // Actualizar timestamps según el estado
@@ -168,14 +182,16 @@ public class OrderService {
                 break;
         }
 
-        order = orderRepository.save(order);
+        // Se escribe ya para que la respuesta y el evento lleven el updatedAt que queda guardado
+        order = orderRepository.saveAndFlush(order);
         log.info("Orden {} actualizada de {} a {}", id, previousStatus, request.getStatus());
 
         OrderResponse orderResponse = toResponse(order);
 
-        // Enviar notificaciones WebSocket
-        webSocketService.notifyOrderStatusUpdate(orderResponse);
-        webSocketService.notifyOrderUpdateToTable(order.getTable().getId(), orderResponse);
+        // Las notificaciones WebSocket se envían al confirmar la transacción
+        eventPublisher.publishEvent(new OrderStatusChangedEvent(order.getId(), order.getTable().getId(),
+                previousStatus, order.getStatus(), orderResponse,
+                !wasReady && order.getReadyAt() != null, !wasDelivered && order.getDeliveredAt() != null));
 
         return orderResponse;
     }
@@ -183,17 +199,29 @@ public class OrderService {
     public void deleteOrder(String id) {
         log.info("Eliminando orden con ID: {}", id);
         Order order = findOrderById(id);
+        OrderResponse orderResponse = toResponse(order);
         orderRepository.delete(order);
         log.info("Orden eliminada: {}", id);
+
+        // Las estadísticas en memoria y los acumulados la restan al confirmar la transacción
+        eventPublisher.publishEvent(new OrderDeletedEvent(order.getId(), order.getTable().getId(), orderResponse,
+                LocalDateTime.now()));
     }
 
     public Long countOrdersByStatus(OrderStatus status) {
         return orderRepository.countByStatus(status);
     }
 
-    public Double getAveragePreparationTime() {
-        Double avgTime = orderRepository.getAveragePreparationTimeInMinutes();
-        return avgTime != null ? avgTime : 0.0;
+    /**
+     * Cantidad de órdenes en cada estado, en una sola consulta
+     */
+    @Transactional(readOnly = true)
+    public Map<OrderStatus, Long> countOrdersGroupedByStatus() {
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        for (Object[] row : orderRepository.countGroupedByStatus()) {
+            counts.put((OrderStatus) row[0], (Long) row[1]);
+        }
+        return counts;
     }
 
     private Order findOrderById(String id) {
@@ -204,7 +232,7 @@ public class OrderService {
     private OrderResponse toResponse(Order order) {
         return OrderResponse.builder()
                 .id(order.getId())
-                .table(tableService.getTableById(order.getTable().getId()))
+                .table(tableService.toSummary(order.getTable()))
                 .customerName(order.getCustomerName())
                 .status(order.getStatus())
                 .items(order.getItems().stream()
@@ -222,7 +250,7 @@ public class OrderService {
     private OrderItemResponse toItemResponse(OrderItem item) {
         return OrderItemResponse.builder()
                 .id(item.getId())
-                .product(productService.getProductById(item.getProduct().getId()))
+                .product(productService.toResponse(item.getProduct()))
                 .quantity(item.getQuantity())
                 .unitPrice(item.getUnitPrice())
                 .subtotal(item.getSubtotal())
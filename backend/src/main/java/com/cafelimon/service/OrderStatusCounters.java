@@ -0,0 +1,259 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.OrderStatusDelta;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cantidad de órdenes en cada estado, mantenida en memoria
+ *
+ * Se actualiza con cada orden creada, eliminada o cambio de estado confirmado en este nodo, y con
+ * los de otros nodos que llegan por {@link ClusterEventRelay}. Cada cambio reemplaza el arreglo de
+ * contadores completo bajo un bloqueo, así una lectura nunca ve una orden contada en dos estados
+ * ni en ninguno. Periódicamente se comparan con una consulta agrupada por estado, que corrige lo
+ * que no llega como evento (notificaciones descartadas). Cada cambio trae el {@code updatedAt} de
+ * la orden, o el momento en que se eliminó: los anteriores al inicio de la consulta ya están en su
+ * resultado y se ignoran aunque lleguen después (las notificaciones de otros nodos llegan tras
+ * confirmarse allá); los demás se suman encima. Los cambios se publican en {@link WebSocketService#STATUS_COUNTS_TOPIC},
+ * agrupando los de {@code push-delay-ms}.
+ */
+@Component
+@Slf4j
+public class OrderStatusCounters {
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final OrderService orderService;
+    private final WebSocketService webSocketService;
+    private final ClusterEventRelay relay;
+    private final ObjectMapper objectMapper;
+    private final long pushDelayMs;
+    private final ScheduledThreadPoolExecutor pusher;
+    private final AtomicBoolean pushScheduled = new AtomicBoolean();
+    private final Counter corrected;
+
+    private final Object lock = new Object();
+    // Nunca se modifica una vez publicado; cada cambio crea uno nuevo
+    private volatile long[] counts = new long[STATUSES.length];
+    // Inicio de la última consulta aplicada; los cambios anteriores ya están en los contadores
+    private LocalDateTime coveredUntil;
+    // Cambios aplicados mientras corre la consulta; null fuera de ella
+    private List<Change> duringReconcile;
+
+    public OrderStatusCounters(OrderService orderService, WebSocketService webSocketService,
+                               ClusterEventRelay relay, ObjectMapper objectMapper,
+                               StatsProperties properties, MeterRegistry meterRegistry) {
+        this.orderService = orderService;
+        this.webSocketService = webSocketService;
+        this.relay = relay;
+        this.objectMapper = objectMapper;
+        this.pushDelayMs = properties.getStatusCounts().getPushDelayMs();
+        this.pusher = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("status-counts-"));
+
+        for (OrderStatus status : STATUSES) {
+            Gauge.builder("cafelimon.orders.status", this, counters -> counters.counts[status.ordinal()])
+                    .description("Órdenes en cada estado según los contadores en memoria")
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+        this.corrected = Counter.builder("cafelimon.orders.status.corrected")
+                .description("Reconciliaciones en las que los contadores no coincidían con la base de datos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cantidades actuales, sin consultar la base de datos
+     */
+    public StatusCountsResponse getCounts() {
+        long[] current = counts;
+        return StatusCountsResponse.builder()
+                .pendingOrders(current[OrderStatus.PENDING.ordinal()])
+                .preparingOrders(current[OrderStatus.EN_PREPARACION.ordinal()])
+                .readyOrders(current[OrderStatus.LISTO.ordinal()])
+                .deliveredOrders(current[OrderStatus.ENTREGADO.ordinal()])
+                .cancelledOrders(current[OrderStatus.CANCELADO.ordinal()])
+                .build();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        OrderResponse order = event.getOrder();
+        OrderStatus status = order != null ? order.getStatus() : null;
+        apply(null, status != null ? status : OrderStatus.PENDING, order != null ? order.getUpdatedAt() : null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        apply(event.getPreviousStatus(), event.getNewStatus(),
+                event.getOrder() != null ? event.getOrder().getUpdatedAt() : null);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderDeleted(OrderDeletedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (order != null && order.getStatus() != null) {
+            apply(order.getStatus(), null, event.getDeletedAt());
+        }
+    }
+
+    /**
+     * Compara los contadores con la base de datos y los corrige si difieren
+     */
+    @Scheduled(fixedDelayString = "${app.stats.status-counts.reconcile-ms:30000}")
+    public void reconcile() {
+        LocalDateTime readStart = LocalDateTime.now();
+        synchronized (lock) {
+            duringReconcile = new ArrayList<>();
+        }
+        Map<OrderStatus, Long> persisted;
+        try {
+            persisted = orderService.countOrdersGroupedByStatus();
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                duringReconcile = null;
+            }
+            log.error("No se pudieron reconciliar los contadores de órdenes por estado: {}", e.getMessage());
+            return;
+        }
+
+        boolean changed;
+        synchronized (lock) {
+            long[] next = new long[STATUSES.length];
+            persisted.forEach((status, count) -> next[status.ordinal()] = count);
+            // Lo confirmado antes de la consulta ya está en su resultado; lo posterior se suma encima
+            for (Change change : duringReconcile) {
+                if (!isBefore(change.updatedAt(), readStart)) {
+                    move(next, change.from(), change.to());
+                }
+            }
+            duringReconcile = null;
+            coveredUntil = readStart;
+            changed = !Arrays.equals(next, counts);
+            if (changed) {
+                log.debug("Contadores de órdenes corregidos de {} a {}", Arrays.toString(counts), Arrays.toString(next));
+                counts = next;
+                corrected.increment();
+            }
+        }
+        if (changed) {
+            schedulePush();
+        }
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pusher.shutdownNow();
+    }
+
+    /**
+     * Cuenta las órdenes creadas y los cambios de estado de otros nodos a partir de sus notificaciones
+     */
+    void onRelayedMessage(String destination, byte[] payload) {
+        try {
+            if (WebSocketService.NEW_ORDERS_TOPIC.equals(destination)) {
+                JsonNode order = objectMapper.readTree(payload);
+                JsonNode status = order.get("status");
+                apply(null, status != null ? OrderStatus.valueOf(status.asText()) : OrderStatus.PENDING,
+                        objectMapper.treeToValue(order.get("updatedAt"), LocalDateTime.class));
+            } else if (WebSocketService.ORDER_STATUS_TOPIC.equals(destination)) {
+                OrderStatusDelta delta = objectMapper.readValue(payload, OrderStatusDelta.class);
+                apply(delta.getOldStatus(), delta.getNewStatus(), delta.getUpdatedAt());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Notificación de otro nodo sin estado legible en {}: {}", destination, e.getMessage());
+        }
+    }
+
+    /**
+     * Mueve una orden de estado salvo que el cambio sea anterior a la última consulta aplicada
+     */
+    private void apply(@Nullable OrderStatus from, @Nullable OrderStatus to, @Nullable LocalDateTime updatedAt) {
+        if (from == to) {
+            return;
+        }
+        synchronized (lock) {
+            if (isBefore(updatedAt, coveredUntil)) {
+                return;
+            }
+            long[] next = counts.clone();
+            move(next, from, to);
+            counts = next;
+            if (duringReconcile != null) {
+                duringReconcile.add(new Change(from, to, updatedAt));
+            }
+        }
+        schedulePush();
+    }
+
+    /**
+     * Sin fecha de la orden el cambio se toma como posterior a cualquier consulta
+     */
+    private static boolean isBefore(@Nullable LocalDateTime updatedAt, @Nullable LocalDateTime instant) {
+        return updatedAt != null && instant != null && updatedAt.isBefore(instant);
+    }
+
+    private static void move(long[] target, @Nullable OrderStatus from, @Nullable OrderStatus to) {
+        if (from != null) {
+            target[from.ordinal()]--;
+        }
+        if (to != null) {
+            target[to.ordinal()]++;
+        }
+    }
+
+    private void schedulePush() {
+        if (!pushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            pusher.schedule(() -> {
+                // Se libera antes de leer: un cambio posterior programa otro envío
+                pushScheduled.set(false);
+                try {
+                    webSocketService.notifyStatusCounts(getCounts());
+                } catch (RuntimeException e) {
+                    log.error("Error enviando contadores de órdenes por estado: {}", e.getMessage());
+                }
+            }, pushDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // Aplicación deteniéndose
+            pushScheduled.set(false);
+        }
+    }
+
+    private record Change(@Nullable OrderStatus from, @Nullable OrderStatus to, @Nullable LocalDateTime updatedAt) {
+    }
+}
@@ -0,0 +1,343 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.dto.websocket.TopicEvent;
+import com.cafelimon.dto.websocket.TopicReplayResponse;
+import com.cafelimon.exception.ResourceNotFoundException;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Conexiones Server-Sent Events que siguen las órdenes de una mesa
+ *
+ * Cada conexión recibe lo mismo que /topic/tables/{id}/orders, con {@code epoch:seq} como id del
+ * evento; EventSource lo devuelve en Last-Event-ID al reconectar y se reenvía lo perdido desde
+ * {@link WebSocketEventLog}, o un snapshot si ya no está. Lo perdido se lee en el hilo de la
+ * petición, antes de entregar la conexión. Cada conexión tiene su propia cola acotada, que un
+ * pool compartido vacía de a una tarea por conexión para conservar el orden de sus eventos; si
+ * un cliente no consume y su cola se llena, se cierra esa conexión sin frenar a las demás.
+ */
+@Component
+@Slf4j
+public class OrderStreamRegistry {
+
+    static final String ORDER_EVENT = "order";
+    static final String SNAPSHOT_EVENT = "snapshot";
+    private static final String TABLE_TOPIC_PREFIX = "/topic/tables/";
+
+    private final EventReplayService eventReplayService;
+    private final WebSocketEventLog eventLog;
+    private final TableRepository tableRepository;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMs;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor heartbeat;
+    private final Map<String, Set<TableStream>> streamsByTopic = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter evicted;
+
+    public OrderStreamRegistry(EventReplayService eventReplayService, WebSocketEventLog eventLog,
+                               TableRepository tableRepository, ObjectMapper objectMapper,
+                               WebSocketProperties properties, MeterRegistry meterRegistry) {
+        this.eventReplayService = eventReplayService;
+        this.eventLog = eventLog;
+        this.tableRepository = tableRepository;
+        this.objectMapper = objectMapper;
+
+        WebSocketProperties.Sse sse = properties.getSse();
+        this.timeoutMs = sse.getTimeoutMs();
+        this.queueCapacity = sse.getQueueCapacity();
+        // Como mucho una tarea por conexión en la cola del pool
+        this.executor = new ThreadPoolExecutor(sse.getSendThreads(), sse.getSendThreads(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("sse-orders-"));
+        this.heartbeat = new ScheduledThreadPoolExecutor(1, new CustomizableThreadFactory("sse-heartbeat-"));
+        if (sse.getHeartbeatMs() > 0) {
+            heartbeat.scheduleAtFixedRate(this::sendHeartbeats,
+                    sse.getHeartbeatMs(), sse.getHeartbeatMs(), TimeUnit.MILLISECONDS);
+        }
+
+        Gauge.builder("cafelimon.orders.stream.connections", connections, AtomicInteger::get)
+                .description("Conexiones SSE abiertas siguiendo órdenes de mesas")
+                .register(meterRegistry);
+        Gauge.builder("cafelimon.orders.stream.queue.size", this, OrderStreamRegistry::pendingSends)
+                .description("Envíos SSE en espera, sumando todas las conexiones")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("cafelimon.orders.stream.evicted")
+                .description("Conexiones SSE cerradas por llenar su cola de envíos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Abre una conexión para las órdenes de la mesa, retomando desde Last-Event-ID si viene
+     */
+    public SseEmitter open(String tableId, @Nullable String lastEventId) {
+        if (!tableRepository.existsById(tableId)) {
+            throw new ResourceNotFoundException("Mesa no encontrada con ID: " + tableId);
+        }
+        TableStream stream = new TableStream(WebSocketService.tableTopic(tableId), new SseEmitter(timeoutMs));
+        stream.emitter.onCompletion(() -> remove(stream));
+        stream.emitter.onTimeout(stream.emitter::complete);
+        stream.emitter.onError(e -> remove(stream));
+
+        // Se registra antes de leer lo perdido: lo publicado mientras tanto queda en su cola y
+        // se omite al enviarse si ya venía en el reenvío
+        streamsByTopic.compute(stream.topic, (topic, streams) -> {
+            Set<TableStream> current = streams == null ? ConcurrentHashMap.newKeySet() : streams;
+            current.add(stream);
+            return current;
+        });
+        connections.incrementAndGet();
+        try {
+            stream.start(missedEvents(stream, lastEventId));
+        } catch (RuntimeException e) {
+            remove(stream);
+            throw e;
+        }
+        return stream.emitter;
+    }
+
+    /**
+     * Recibe cada mensaje publicado; solo los de mesas se encolan en sus conexiones
+     */
+    public void publish(String destination, long seq, byte[] payload) {
+        if (!destination.startsWith(TABLE_TOPIC_PREFIX)) {
+            return;
+        }
+        Set<TableStream> streams = streamsByTopic.get(destination);
+        if (streams != null) {
+            Outgoing event = new Outgoing(ORDER_EVENT, seq, payload);
+            streams.forEach(stream -> stream.enqueue(event));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        heartbeat.shutdownNow();
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        streamsByTopic.values().forEach(streams -> streams.forEach(stream -> stream.emitter.complete()));
+    }
+
+    ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Eventos que la conexión debe recibir antes que los nuevos, según su Last-Event-ID
+     */
+    private List<Outgoing> missedEvents(TableStream stream, @Nullable String lastEventId) {
+        String[] lastId = lastEventId == null ? new String[0] : lastEventId.split(":");
+        if (lastId.length != 2 || !lastId[1].matches("\\d{1,18}")) {
+            return List.of();
+        }
+        long lastSeq = Long.parseLong(lastId[1]);
+        TopicReplayResponse replay = eventReplayService.replay(stream.topic, lastSeq, lastId[0]);
+        if (replay.isSnapshotRequired()) {
+            return List.of(new Outgoing(SNAPSHOT_EVENT, replay.getCurrentSeq(), serialize(replay.getSnapshot())));
+        }
+        stream.lastSeq = lastSeq;
+        return replay.getEvents().stream()
+                .map(event -> new Outgoing(ORDER_EVENT, event.getSeq(),
+                        event.getPayload().getBytes(StandardCharsets.UTF_8)))
+                .toList();
+    }
+
+    private void sendHeartbeats() {
+        streamsByTopic.values().forEach(streams -> streams.forEach(stream -> stream.enqueue(Outgoing.PING)));
+    }
+
+    private int pendingSends() {
+        return streamsByTopic.values().stream()
+                .flatMap(Set::stream)
+                .mapToInt(TableStream::pending)
+                .sum();
+    }
+
+    private void remove(TableStream stream) {
+        if (stream.closed.compareAndSet(false, true) && removeFromTopic(stream)) {
+            connections.decrementAndGet();
+        }
+    }
+
+    private boolean removeFromTopic(TableStream stream) {
+        AtomicBoolean removed = new AtomicBoolean();
+        streamsByTopic.computeIfPresent(stream.topic, (topic, current) -> {
+            removed.set(current.remove(stream));
+            return current.isEmpty() ? null : current;
+        });
+        return removed.get();
+    }
+
+    private byte[] serialize(Object payload) {
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el snapshot de la mesa", e);
+        }
+    }
+
+    /**
+     * Un envío pendiente; sin nombre es un heartbeat
+     */
+    private record Outgoing(String name, long seq, byte[] data) {
+
+        static final Outgoing PING = new Outgoing(null, 0L, null);
+    }
+
+    /**
+     * Una conexión abierta con su cola de envíos; a lo sumo un hilo del pool la vacía a la vez
+     */
+    private final class TableStream {
+
+        private final String topic;
+        private final SseEmitter emitter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final Deque<Outgoing> queue = new ArrayDeque<>();
+        private boolean started;   // Protegido por this: hasta entonces solo se encola
+        private boolean draining;  // Protegido por this: hay una tarea del pool vaciando la cola
+        private long lastSeq;      // Solo lo usa quien vacía la cola
+
+        private TableStream(String topic, SseEmitter emitter) {
+            this.topic = topic;
+            this.emitter = emitter;
+        }
+
+        /**
+         * Pone los eventos perdidos delante de lo que se encoló durante el alta y empieza a enviar
+         */
+        void start(List<Outgoing> missed) {
+            synchronized (this) {
+                for (int i = missed.size() - 1; i >= 0; i--) {
+                    queue.addFirst(missed.get(i));
+                }
+                started = true;
+            }
+            schedule();
+        }
+
+        void enqueue(Outgoing event) {
+            boolean full;
+            synchronized (this) {
+                if (closed.get()) {
+                    return;
+                }
+                full = queue.size() >= queueCapacity;
+                if (full) {
+                    queue.clear();
+                } else {
+                    queue.addLast(event);
+                }
+            }
+            if (full) {
+                evict();
+            } else {
+                schedule();
+            }
+        }
+
+        synchronized int pending() {
+            return queue.size();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (!started || draining || queue.isEmpty()) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Solo ocurre al apagar la aplicación
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Outgoing next;
+                synchronized (this) {
+                    next = queue.pollFirst();
+                    if (next == null || closed.get()) {
+                        queue.clear();
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    send(next);
+                } catch (RuntimeException e) {
+                    log.error("Error enviando eventos SSE a {}: {}", topic, e.getMessage());
+                }
+            }
+        }
+
+        private void send(Outgoing event) {
+            if (event.name() == null) {
+                deliver(SseEmitter.event().comment("ping"));
+            } else if (SNAPSHOT_EVENT.equals(event.name())) {
+                // Estado actual de las órdenes de la mesa; los eventos hasta seq ya están incluidos
+                lastSeq = event.seq();
+                deliver(event(event));
+            } else if (event.seq() > lastSeq) {
+                lastSeq = event.seq();
+                deliver(event(event));
+            }
+        }
+
+        private void evict() {
+            evicted.increment();
+            log.warn("Conexión SSE de {} no consume sus eventos, se cierra", topic);
+            remove(this);
+            emitter.complete();
+        }
+
+        private SseEmitter.SseEventBuilder event(Outgoing event) {
+            return SseEmitter.event()
+                    .id(eventLog.getEpoch() + ":" + event.seq())
+                    .name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON);
+        }
+
+        private void deliver(SseEmitter.SseEventBuilder event) {
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                // Cliente desconectado: el contenedor completa la conexión con error
+                log.debug("Conexión SSE de {} cerrada: {}", topic, e.getMessage());
+                remove(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.model.RelayMessage;
+import com.cafelimon.repository.RelayMessageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Relay entre nodos mediante LISTEN/NOTIFY de PostgreSQL
+ *
+ * Cada mensaje viaja como {@code nodo\nM\ndestino\njson} por un canal de notificaciones; un hilo
+ * por nodo mantiene una conexión con LISTEN y publica lo que llega de otros nodos. PostgreSQL
+ * limita el payload de NOTIFY a 8000 bytes, así que los mensajes más grandes (una orden con
+ * varios ítems, por ejemplo) se guardan en {@link RelayMessage} y por el canal solo viaja
+ * {@code nodo\nR\nid}; quien lo recibe lee la fila. Las filas se borran pasado
+ * {@code app.websocket.relay.large-message-retention-ms}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.websocket.relay", name = "type", havingValue = "postgres")
+@Slf4j
+public class PostgresClusterEventRelay implements ClusterEventRelay {
+
+    static final int MAX_NOTIFY_BYTES = 7999;
+    static final String INLINE = "M";
+    static final String STORED = "R";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final RelayMessageRepository messageRepository;
+    private final String channel;
+    private final long reconnectDelayMs;
+    private final long retentionMs;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final List<BiConsumer<String, byte[]>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresClusterEventRelay(DataSource dataSource, RelayMessageRepository messageRepository,
+                                     WebSocketProperties properties) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.messageRepository = messageRepository;
+        this.channel = properties.getRelay().getChannel();
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            // Se usa como identificador en LISTEN, que no admite parámetros
+            throw new IllegalArgumentException("Canal de relay inválido: " + channel);
+        }
+        this.reconnectDelayMs = properties.getRelay().getReconnectDelayMs();
+        this.retentionMs = properties.getRelay().getLargeMessageRetentionMs();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "ws-relay-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listenerThread.interrupt();
+        listenerThread.join(reconnectDelayMs + 2000);
+    }
+
+    @Override
+    public void publish(String destination, byte[] payload) {
+        try {
+            String message = nodeId + "\n" + INLINE + "\n" + destination + "\n"
+                    + new String(payload, StandardCharsets.UTF_8);
+            if (message.getBytes(StandardCharsets.UTF_8).length > MAX_NOTIFY_BYTES) {
+                RelayMessage stored = messageRepository.save(RelayMessage.builder()
+                        .destination(destination)
+                        .payload(payload)
+                        .build());
+                message = nodeId + "\n" + STORED + "\n" + stored.getId();
+            }
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, message);
+        } catch (RuntimeException e) {
+            log.error("No se pudo reenviar el mensaje para {} a otros nodos: {}", destination, e.getMessage());
+        }
+    }
+
+    /**
+     * Borra los mensajes grandes que los demás nodos ya tuvieron tiempo de leer
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.relay.large-message-retention-ms:600000}")
+    public void purgeStoredMessages() {
+        try {
+            int deleted = messageRepository.deleteCreatedBefore(LocalDateTime.now().minus(Duration.ofMillis(retentionMs)));
+            if (deleted > 0) {
+                log.debug("Borrados {} mensajes grandes reenviados a otros nodos", deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudieron borrar los mensajes grandes reenviados: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(BiConsumer<String, byte[]> listener) {
+        listeners.add(listener);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Escuchando mensajes de otros nodos en el canal {}", channel);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    // Lo publicado mientras no hay conexión se pierde para este nodo
+                    log.error("Conexión LISTEN perdida, reintentando en {} ms: {}", reconnectDelayMs, e.getMessage());
+                    sleepBeforeReconnect();
+                }
+            }
+        }
+    }
+
+    void receive(String message) {
+        String[] parts = message.split("\n", 4);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        if (INLINE.equals(parts[1]) && parts.length == 4) {
+            deliver(parts[2], parts[3].getBytes(StandardCharsets.UTF_8));
+        } else if (STORED.equals(parts[1])) {
+            try {
+                messageRepository.findById(parts[2]).ifPresentOrElse(
+                        stored -> deliver(stored.getDestination(), stored.getPayload()),
+                        () -> log.error("Mensaje reenviado {} no encontrado, los clientes deberán pedir replay",
+                                parts[2]));
+            } catch (RuntimeException e) {
+                log.error("No se pudo leer el mensaje reenviado {}: {}", parts[2], e.getMessage());
+            }
+        }
+    }
+
+    private void deliver(String destination, byte[] payload) {
+        for (BiConsumer<String, byte[]> listener : listeners) {
+            try {
+                listener.accept(destination, payload);
+            } catch (RuntimeException e) {
+                log.error("Error publicando mensaje reenviado a {}: {}", destination, e.getMessage());
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(reconnectDelayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,660 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.stats.HourlyPreparationTime;
+import com.cafelimon.dto.stats.PreparationTimeGroup;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
+import com.cafelimon.dto.stats.TimePercentiles;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.service.PreparationTimeRollupService.Durations;
+import com.cafelimon.service.PreparationTimeRollupService.Key;
+import com.cafelimon.service.PreparationTimeRollupService.ProductInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Percentiles de tiempos de preparación y entrega, mantenidos en memoria
+ *
+ * Guarda histogramas de todas las órdenes, de cada producto, de cada categoría (la suma de sus
+ * productos) y de cada hora de creación dentro de las últimas {@code hours}. Los percentiles se
+ * calculan una vez tras cada cambio y se guardan, así una consulta solo lee el último resultado.
+ * Cada orden que pasa a lista o a entregada en este nodo se suma a ellos y a los cambios
+ * pendientes, que se escriben periódicamente con {@link PreparationTimeRollupService#applyChanges}
+ * como en {@link SalesRollups}. Cada orden se cuenta una vez: la preparación cuando se le pone
+ * {@code readyAt} y la entrega cuando se le pone {@code deliveredAt}, igual que al recalcular. Los
+ * tiempos registrados se envían a los demás nodos por {@link ClusterEventRelay}, que solo los suman
+ * en memoria porque las filas las escribe el nodo que los registró. Una orden eliminada se resta
+ * igual: de los histogramas en todos los nodos y de las filas desde el que la eliminó. Al arrancar y
+ * tras el recálculo nocturno se cargan desde las filas guardadas.
+ *
+ * Como en {@link SalesRollups}, solo recalcula el nodo con el turno de {@link RollupLockService},
+ * cada hora pendiente lleva la generación de recálculo conocida al empezar a acumularla y se
+ * descarta si la hora se recalculó después. Los demás nodos descartan lo suyo al recibir el aviso
+ * de cada tramo y recargan los histogramas al terminar el último.
+ */
+@Component
+@Slf4j
+public class PreparationTimeHistograms {
+
+    static final String RELAY_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "stats/preparation-times";
+    static final String REBUILT_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "stats/preparation-times/rebuilt";
+
+    private final PreparationTimeRollupService rollupService;
+    private final RollupLockService rollupLocks;
+    private final ObjectMapper objectMapper;
+    private final ClusterEventRelay relay;
+    private final StatsProperties.PreparationTimes properties;
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final String lockOwner = UUID.randomUUID().toString();
+    // Última generación de recálculo conocida; se cambia bajo lock
+    private final AtomicLong generation = new AtomicLong();
+    // Todo lo siguiente se lee y modifica solo bajo lock
+    private Aggregates aggregates;
+    private final Map<String, ProductInfo> products = new HashMap<>();
+    private Changes pending = new Changes();
+    // Órdenes registradas o restadas mientras se cargan las filas; null fuera de la carga
+    private List<Recorded> recordedDuringReload;
+    // Último resultado calculado; null tras cualquier cambio. Se reemplaza solo bajo lock
+    private volatile Snapshot snapshot;
+
+    public PreparationTimeHistograms(PreparationTimeRollupService rollupService, RollupLockService rollupLocks,
+                                     ObjectMapper objectMapper, ClusterEventRelay relay, StatsProperties properties) {
+        this.rollupService = rollupService;
+        this.rollupLocks = rollupLocks;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+        this.properties = properties.getPreparationTimes();
+        this.aggregates = new Aggregates(cutoff());
+    }
+
+    /**
+     * Registra el tiempo de preparación al quedar lista la orden y el de entrega al entregarse
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (order == null || order.getCreatedAt() == null || order.getReadyAt() == null) {
+            return;
+        }
+        boolean delivered = event.isFirstDelivered() && order.getDeliveredAt() != null;
+        if (!event.isFirstReady() && !delivered) {
+            return;
+        }
+        RecordedTimes recorded = new RecordedTimes(order.getCreatedAt(), order.getReadyAt(),
+                delivered ? order.getDeliveredAt() : null, event.isFirstReady(), productsOf(order));
+        apply(recorded, false, true);
+        try {
+            relay.publish(RELAY_DESTINATION, objectMapper.writeValueAsBytes(recorded));
+        } catch (JsonProcessingException e) {
+            log.error("No se pudieron enviar los tiempos de la orden {} a otros nodos: {}", order.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Resta los tiempos de una orden eliminada, si llegaron a registrarse
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderDeleted(OrderDeletedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (order == null || order.getCreatedAt() == null || order.getReadyAt() == null) {
+            return;
+        }
+        apply(new RecordedTimes(order.getCreatedAt(), order.getReadyAt(), order.getDeliveredAt(), true,
+                productsOf(order)), true, !event.isRelayed());
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    /**
+     * Suma los tiempos registrados por otros nodos y atiende sus avisos de recálculo
+     */
+    void onRelayedMessage(String destination, byte[] payload) {
+        try {
+            if (RELAY_DESTINATION.equals(destination)) {
+                apply(objectMapper.readValue(payload, RecordedTimes.class), false, false);
+            } else if (REBUILT_DESTINATION.equals(destination)) {
+                RollupLockService.Rebuilt rebuilt = objectMapper.readValue(payload, RollupLockService.Rebuilt.class);
+                discardPending(rebuilt.from(), rebuilt.until(), rebuilt.generation(), new Changes());
+                if (rebuilt.finished()) {
+                    reload();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Tiempos de preparación de otro nodo ilegibles: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Percentiles actuales, sin consultar la base de datos
+     */
+    public PreparationTimesResponse getPreparationTimes() {
+        LocalDateTime cutoff = cutoff();
+        Snapshot current = snapshot;
+        if (current != null && current.cutoff().equals(cutoff)) {
+            return current.times();
+        }
+        synchronized (lock) {
+            current = snapshot;
+            if (current == null || !current.cutoff().equals(cutoff)) {
+                aggregates.dropHoursBefore(cutoff);
+                current = new Snapshot(cutoff, buildTimes());
+                snapshot = current;
+            }
+            return current.times();
+        }
+    }
+
+    /**
+     * Promedio en minutos de creada a lista de todas las órdenes; 0 si aún no hay ninguna
+     */
+    public double getAveragePreparationMinutes() {
+        synchronized (lock) {
+            Histogram preparation = aggregates.all.preparation();
+            return preparation.getTotalCount() > 0 ? preparation.getMean() / 60 : 0.0;
+        }
+    }
+
+    /**
+     * Escribe los cambios acumulados desde el último vaciado
+     */
+    @Scheduled(fixedDelayString = "${app.stats.preparation-times.flush-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Changes drained;
+            synchronized (lock) {
+                drained = pending;
+                pending = new Changes();
+            }
+            write(drained);
+        }
+    }
+
+    /**
+     * Recalcula desde las órdenes las horas [from, until), un día por transacción; false si otro
+     * nodo tiene el turno
+     *
+     * Como en {@link SalesRollups#rebuild}: lo registrado para esas horas desde el último vaciado
+     * ya está en las órdenes leídas, así que se descarta en la misma transacción, justo después de
+     * leerlas; si el recálculo falla, se devuelve a los pendientes.
+     */
+    public boolean rebuild(LocalDateTime from, LocalDateTime until) {
+        synchronized (flushLock) {
+            Duration lease = Duration.ofMillis(properties.getRebuildLeaseMs());
+            if (!tryAcquire(lease)) {
+                log.info("Otro nodo está recalculando los tiempos de preparación");
+                return false;
+            }
+            try {
+                flush();
+                for (LocalDateTime day = from; day.isBefore(until); day = day.plusDays(1)) {
+                    LocalDateTime start = day;
+                    LocalDateTime end = day.plusDays(1).isBefore(until) ? day.plusDays(1) : until;
+                    if (day.isAfter(from) && !tryAcquire(lease)) {
+                        log.warn("Se perdió el turno para recalcular los tiempos de preparación en {}", start);
+                        return false;
+                    }
+                    long rebuildGeneration = rollupLocks.nextGeneration(RollupLockService.PREPARATION_TIMES);
+                    Changes discarded = new Changes();
+                    try {
+                        rollupService.rebuild(start, end, rebuildGeneration,
+                                () -> discardPending(start, end, rebuildGeneration, discarded));
+                    } catch (RuntimeException e) {
+                        synchronized (lock) {
+                            pending.addAll(discarded);
+                        }
+                        throw e;
+                    }
+                    publishRebuilt(new RollupLockService.Rebuilt(start, end, rebuildGeneration, !end.isBefore(until)));
+                }
+                return true;
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Recalcula los últimos días cerrados y vuelve a cargar los histogramas
+     */
+    @Scheduled(cron = "${app.stats.preparation-times.rebuild-cron:0 20 4 * * *}")
+    public void rebuildRecent() {
+        LocalDateTime until = SalesRollupService.hourOf(LocalDateTime.now());
+        rebuild(until.minusDays(properties.getRebuildDays()), until);
+        reload();
+    }
+
+    /**
+     * Primera carga: sin filas se calculan para todas las órdenes existentes
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        refreshGeneration();
+        if (!rollupService.hasRollups()) {
+            LocalDateTime oldest = rollupService.findOldestOrderTime();
+            if (oldest != null) {
+                log.info("Calculando tiempos de preparación desde {}", oldest);
+                rebuild(SalesRollupService.hourOf(oldest),
+                        SalesRollupService.hourOf(LocalDateTime.now()).plusHours(1));
+            }
+        }
+        reload();
+    }
+
+    /**
+     * Reemplaza los histogramas en memoria por la suma de las filas guardadas
+     */
+    public void reload() {
+        synchronized (flushLock) {
+            // Desde aquí y hasta terminar no se vacía nada: lo que se registre no estará en las
+            // filas leídas y se vuelve a sumar al final
+            Changes drained;
+            synchronized (lock) {
+                drained = pending;
+                pending = new Changes();
+                recordedDuringReload = new ArrayList<>();
+            }
+            Aggregates loaded = new Aggregates(cutoff());
+            Map<String, ProductInfo> catalog;
+            try {
+                if (!write(drained)) {
+                    stopRecording();
+                    return;
+                }
+                catalog = rollupService.findProducts();
+                rollupService.forEachRollup((key, durations) -> loaded.addRow(key, durations, catalog));
+            } catch (RuntimeException e) {
+                stopRecording();
+                log.error("No se pudieron cargar los tiempos de preparación: {}", e.getMessage());
+                return;
+            }
+            synchronized (lock) {
+                products.putAll(catalog);
+                for (Recorded recorded : recordedDuringReload) {
+                    loaded.apply(recorded, products);
+                }
+                recordedDuringReload = null;
+                aggregates = loaded;
+                snapshot = null;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Desde aquí las horas nuevas llevan {@code rebuildGeneration}, y lo pendiente de [from, until)
+     * con una anterior pasa a {@code discarded}
+     */
+    private void discardPending(LocalDateTime from, LocalDateTime until, long rebuildGeneration, Changes discarded) {
+        synchronized (lock) {
+            generation.accumulateAndGet(rebuildGeneration, Math::max);
+            discarded.addAll(pending.takeHours(from, until, rebuildGeneration));
+        }
+    }
+
+    private boolean tryAcquire(Duration lease) {
+        try {
+            return rollupLocks.tryAcquire(RollupLockService.PREPARATION_TIMES, lockOwner, lease);
+        } catch (RuntimeException e) {
+            // Otro nodo creó la fila del turno a la vez
+            log.warn("No se pudo tomar el turno para recalcular los tiempos de preparación: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void release() {
+        try {
+            rollupLocks.release(RollupLockService.PREPARATION_TIMES, lockOwner);
+        } catch (RuntimeException e) {
+            log.error("No se pudo liberar el turno de los tiempos de preparación, vencerá solo: {}", e.getMessage());
+        }
+    }
+
+    private void refreshGeneration() {
+        try {
+            long current = rollupLocks.currentGeneration(RollupLockService.PREPARATION_TIMES);
+            synchronized (lock) {
+                generation.accumulateAndGet(current, Math::max);
+            }
+        } catch (RuntimeException e) {
+            log.error("No se pudo leer la generación de los tiempos de preparación: {}", e.getMessage());
+        }
+    }
+
+    private void publishRebuilt(RollupLockService.Rebuilt rebuilt) {
+        try {
+            relay.publish(REBUILT_DESTINATION, objectMapper.writeValueAsBytes(rebuilt));
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo avisar el recálculo de tiempos de preparación a otros nodos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Suma (o resta, si {@code removed}) los tiempos de una orden a los histogramas y, si es de
+     * este nodo, a los cambios pendientes
+     */
+    private void apply(RecordedTimes times, boolean removed, boolean local) {
+        Durations durations = Durations.empty();
+        if (times.preparation()) {
+            durations.recordPreparation(times.createdAt(), times.readyAt());
+        }
+        if (times.deliveredAt() != null) {
+            durations.recordDelivery(times.readyAt(), times.deliveredAt());
+        }
+        Map<String, ProductInfo> seen = times.products() != null ? times.products() : Map.of();
+        Recorded recorded = new Recorded(SalesRollupService.hourOf(times.createdAt()),
+                List.copyOf(seen.keySet()), durations, removed);
+        synchronized (lock) {
+            seen.forEach((productId, info) -> {
+                if (info.categoryId() != null || !products.containsKey(productId)) {
+                    products.put(productId, info);
+                }
+            });
+            aggregates.apply(recorded, products);
+            snapshot = null;
+            if (!local) {
+                return;
+            }
+            if (recordedDuringReload != null) {
+                recordedDuringReload.add(recorded);
+            }
+            pending.apply(recorded, generation.get());
+        }
+    }
+
+    /**
+     * Calcula los percentiles de cada grupo; solo bajo lock
+     */
+    private PreparationTimesResponse buildTimes() {
+        Map<String, String> categoryNames = new HashMap<>();
+        for (ProductInfo info : products.values()) {
+            if (info.categoryId() != null) {
+                categoryNames.putIfAbsent(info.categoryId(), info.categoryName());
+            }
+        }
+        return PreparationTimesResponse.builder()
+                .preparation(percentiles(aggregates.all.preparation()))
+                .delivery(percentiles(aggregates.all.delivery()))
+                .byProduct(groups(aggregates.byProduct, productId -> {
+                    ProductInfo info = products.get(productId);
+                    return info != null ? info.name() : null;
+                }))
+                .byCategory(groups(aggregates.byCategory, categoryNames::get))
+                .byHour(aggregates.byHour.entrySet().stream()
+                        .map(entry -> HourlyPreparationTime.builder()
+                                .hour(entry.getKey())
+                                .preparation(percentiles(entry.getValue().preparation()))
+                                .delivery(percentiles(entry.getValue().delivery()))
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Escribe cambios ya retirados de los pendientes; si falla los devuelve para el próximo vaciado
+     */
+    private boolean write(Changes drained) {
+        if (drained.isEmpty()) {
+            return true;
+        }
+        Set<LocalDateTime> stale;
+        try {
+            stale = rollupService.applyChanges(drained.added, drained.removed, drained.generations);
+            log.debug("Tiempos de preparación actualizados en {} horas", drained.generations.size() - stale.size());
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                pending.addAll(drained);
+            }
+            log.error("No se pudieron guardar los tiempos de preparación, se reintentará: {}", e.getMessage());
+            return false;
+        }
+        if (!stale.isEmpty()) {
+            // Otro nodo recalculó sin que llegara su aviso
+            log.info("Descartados los tiempos de preparación de {} horas ya recalculadas", stale.size());
+            refreshGeneration();
+        }
+        return true;
+    }
+
+    private void stopRecording() {
+        synchronized (lock) {
+            recordedDuringReload = null;
+        }
+    }
+
+    private LocalDateTime cutoff() {
+        return SalesRollupService.hourOf(LocalDateTime.now()).minusHours(properties.getHours() - 1L);
+    }
+
+    private static Map<String, ProductInfo> productsOf(OrderResponse order) {
+        Map<String, ProductInfo> seen = new LinkedHashMap<>();
+        if (order.getItems() != null) {
+            for (OrderItemResponse item : order.getItems()) {
+                ProductResponse product = item.getProduct();
+                if (product != null) {
+                    seen.putIfAbsent(product.getId(), infoOf(product));
+                }
+            }
+        }
+        return seen;
+    }
+
+    private static ProductInfo infoOf(ProductResponse product) {
+        return new ProductInfo(product.getName(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getCategory() != null ? product.getCategory().getName() : null);
+    }
+
+    private static List<PreparationTimeGroup> groups(Map<String, Durations> byId, Function<String, String> nameOf) {
+        return byId.entrySet().stream()
+                .map(entry -> PreparationTimeGroup.builder()
+                        .id(entry.getKey())
+                        .name(nameOf.apply(entry.getKey()))
+                        .preparation(percentiles(entry.getValue().preparation()))
+                        .delivery(percentiles(entry.getValue().delivery()))
+                        .build())
+                .sorted(Comparator.comparing(PreparationTimeGroup::getName, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+    }
+
+    private static TimePercentiles percentiles(Histogram seconds) {
+        long count = seconds.getTotalCount();
+        if (count == 0) {
+            return TimePercentiles.builder().count(0L).build();
+        }
+        return TimePercentiles.builder()
+                .count(count)
+                .p50(minutes(seconds, 50))
+                .p90(minutes(seconds, 90))
+                .p99(minutes(seconds, 99))
+                .build();
+    }
+
+    private static double minutes(Histogram seconds, double percentile) {
+        return Math.round(seconds.getValueAtPercentile(percentile) / 60.0 * 10) / 10.0;
+    }
+
+    /**
+     * Percentiles calculados para las horas desde {@code cutoff}
+     */
+    private record Snapshot(LocalDateTime cutoff, PreparationTimesResponse times) {
+    }
+
+    /**
+     * Tiempos que registró un nodo para una orden, tal como se envían a los demás: la preparación
+     * si {@code preparation} y la entrega si hay {@code deliveredAt}
+     */
+    record RecordedTimes(LocalDateTime createdAt, LocalDateTime readyAt, LocalDateTime deliveredAt,
+                         boolean preparation, Map<String, ProductInfo> products) {
+    }
+
+    /**
+     * Tiempos de una orden y la hora y productos en que se suman, o se restan si {@code removed}
+     */
+    private record Recorded(LocalDateTime hour, List<String> productIds, Durations times, boolean removed) {
+    }
+
+    /**
+     * Tiempos por sumar y por restar a las filas, con la generación de recálculo de cada hora; solo bajo lock
+     */
+    private static final class Changes {
+
+        private final Map<Key, Durations> added = new HashMap<>();
+        private final Map<Key, Durations> removed = new HashMap<>();
+        private final Map<LocalDateTime, Long> generations = new HashMap<>();
+
+        boolean isEmpty() {
+            return generations.isEmpty();
+        }
+
+        void apply(Recorded recorded, long generation) {
+            generations.putIfAbsent(recorded.hour(), generation);
+            Map<Key, Durations> target = recorded.removed() ? removed : added;
+            target.computeIfAbsent(new Key(recorded.hour(), null), key -> Durations.empty()).add(recorded.times());
+            for (String productId : recorded.productIds()) {
+                target.computeIfAbsent(new Key(recorded.hour(), productId), key -> Durations.empty())
+                        .add(recorded.times());
+            }
+        }
+
+        void addAll(Changes other) {
+            other.added.forEach((key, durations) -> added.merge(key, durations, Durations::add));
+            other.removed.forEach((key, durations) -> removed.merge(key, durations, Durations::add));
+            other.generations.forEach((hour, generation) -> generations.merge(hour, generation, Math::min));
+        }
+
+        /**
+         * Retira y devuelve los cambios de las horas [from, until) registrados con una generación
+         * anterior a {@code generation}
+         */
+        Changes takeHours(LocalDateTime from, LocalDateTime until, long generation) {
+            Changes taken = new Changes();
+            generations.entrySet().removeIf(entry -> {
+                LocalDateTime hour = entry.getKey();
+                if (hour.isBefore(from) || !hour.isBefore(until) || entry.getValue() >= generation) {
+                    return false;
+                }
+                taken.generations.put(hour, entry.getValue());
+                return true;
+            });
+            move(added, taken.added, taken.generations.keySet());
+            move(removed, taken.removed, taken.generations.keySet());
+            return taken;
+        }
+
+        private static void move(Map<Key, Durations> source, Map<Key, Durations> target, Set<LocalDateTime> hours) {
+            source.entrySet().removeIf(entry -> {
+                if (!hours.contains(entry.getKey().bucketStart())) {
+                    return false;
+                }
+                target.put(entry.getKey(), entry.getValue());
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Histogramas sumados por grupo
+     */
+    private static final class Aggregates {
+
+        private final Durations all = Durations.empty();
+        private final Map<String, Durations> byProduct = new HashMap<>();
+        private final Map<String, Durations> byCategory = new HashMap<>();
+        private final TreeMap<LocalDateTime, Durations> byHour = new TreeMap<>();
+        private final LocalDateTime cutoff;
+
+        Aggregates(LocalDateTime cutoff) {
+            this.cutoff = cutoff;
+        }
+
+        void apply(Recorded recorded, Map<String, ProductInfo> products) {
+            Consumer<Durations> change = recorded.removed()
+                    ? group -> group.subtract(recorded.times())
+                    : group -> group.add(recorded.times());
+            changeTotal(recorded.hour(), change, !recorded.removed());
+            for (String productId : recorded.productIds()) {
+                changeProduct(productId, change, products, !recorded.removed());
+            }
+        }
+
+        /**
+         * Una fila sin producto suma al total y a su hora; una con producto, al producto y su categoría
+         */
+        void addRow(Key key, Durations durations, Map<String, ProductInfo> products) {
+            Consumer<Durations> change = group -> group.add(durations);
+            if (key.productId() == null) {
+                changeTotal(key.bucketStart(), change, true);
+            } else {
+                changeProduct(key.productId(), change, products, true);
+            }
+        }
+
+        void dropHoursBefore(LocalDateTime hour) {
+            byHour.headMap(hour).clear();
+        }
+
+        private void changeTotal(LocalDateTime hour, Consumer<Durations> change, boolean create) {
+            change.accept(all);
+            if (!hour.isBefore(cutoff)) {
+                change(byHour, hour, change, create);
+            }
+        }
+
+        private void changeProduct(String productId, Consumer<Durations> change, Map<String, ProductInfo> products,
+                                   boolean create) {
+            change(byProduct, productId, change, create);
+            ProductInfo info = products.get(productId);
+            if (info != null && info.categoryId() != null) {
+                change(byCategory, info.categoryId(), change, create);
+            }
+        }
+
+        /**
+         * Solo crea el grupo si se le suma; restar de uno que no existe no cambia nada
+         */
+        private static <K> void change(Map<K, Durations> groups, K key, Consumer<Durations> change, boolean create) {
+            Durations group = create ? groups.computeIfAbsent(key, k -> Durations.empty()) : groups.get(key);
+            if (group != null) {
+                change.accept(group);
+            }
+        }
+    }
+}
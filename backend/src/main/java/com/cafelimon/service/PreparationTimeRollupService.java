@@ -0,0 +1,294 @@
+package com.cafelimon.service;
+
+import com.cafelimon.model.PreparationTimeRollup;
+import com.cafelimon.model.Product;
+import com.cafelimon.repository.OrderItemRepository;
+import com.cafelimon.repository.OrderRepository;
+import com.cafelimon.repository.PreparationTimeRollupRepository;
+import com.cafelimon.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+/**
+ * Histogramas de tiempos de preparación y entrega por hora de creación de las órdenes
+ *
+ * Cada hora tiene una fila con los tiempos de todas sus órdenes y una por cada producto pedido
+ * en ellas. Los histogramas (HdrHistogram, en segundos, dos cifras significativas) se pueden
+ * sumar y restar, así que cualquier agrupación sale de juntar filas sin volver a leer las órdenes.
+ * Las filas se actualizan con los cambios que acumula {@link PreparationTimeHistograms} y se
+ * pueden recalcular desde las órdenes con {@link #rebuild}, que queda registrado en
+ * {@link RollupLockService} como en {@link SalesRollupService}. La fila de todas las órdenes guarda
+ * {@link PreparationTimeRollup#ALL_PRODUCTS} como producto; en {@link Key} es null.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class PreparationTimeRollupService {
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing(Key::bucketStart)
+            .thenComparing(key -> toColumn(key.productId()));
+
+    private final PreparationTimeRollupRepository rollupRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+    private final RollupLockService rollupLocks;
+
+    /**
+     * Fila de una hora; {@code productId} null para la de todas las órdenes
+     */
+    public record Key(LocalDateTime bucketStart, String productId) {
+    }
+
+    /**
+     * Nombre y categoría de un producto, para agrupar y mostrar
+     */
+    public record ProductInfo(String name, String categoryId, String categoryName) {
+    }
+
+    /**
+     * Segundos de creada a lista y de lista a entregada
+     */
+    public record Durations(Histogram preparation, Histogram delivery) {
+
+        public static Durations empty() {
+            return new Durations(newHistogram(), newHistogram());
+        }
+
+        public void recordPreparation(LocalDateTime createdAt, LocalDateTime readyAt) {
+            preparation.recordValue(secondsBetween(createdAt, readyAt));
+        }
+
+        public void recordDelivery(LocalDateTime readyAt, LocalDateTime deliveredAt) {
+            delivery.recordValue(secondsBetween(readyAt, deliveredAt));
+        }
+
+        public Durations add(Durations other) {
+            preparation.add(other.preparation);
+            delivery.add(other.delivery);
+            return this;
+        }
+
+        /**
+         * Quita los valores de {@code other}; los que no estén aquí se ignoran
+         */
+        public Durations subtract(Durations other) {
+            subtractPresent(preparation, other.preparation);
+            subtractPresent(delivery, other.delivery);
+            return this;
+        }
+
+        private static void subtractPresent(Histogram from, Histogram removed) {
+            Histogram present = newHistogram();
+            for (HistogramIterationValue value : removed.recordedValues()) {
+                long count = Math.min(value.getCountAtValueIteratedTo(), from.getCountAtValue(value.getValueIteratedTo()));
+                if (count > 0) {
+                    present.recordValueWithCount(value.getValueIteratedTo(), count);
+                }
+            }
+            if (present.getTotalCount() > 0) {
+                from.subtract(present);
+            }
+        }
+
+        private static long secondsBetween(LocalDateTime from, LocalDateTime to) {
+            return Math.max(0, Duration.between(from, to).toSeconds());
+        }
+    }
+
+    /**
+     * Suma los cambios acumulados a las filas de cada hora y producto, creándolas si no existen
+     */
+    public void applyChanges(Map<Key, Durations> changes) {
+        applyChanges(changes, Map.of(), Map.of());
+    }
+
+    /**
+     * Suma {@code added} y resta {@code removed} (órdenes eliminadas) a las filas de cada hora y
+     * producto, creando las que reciben valores y no existen; devuelve las horas descartadas por
+     * haberse recalculado después de la generación con que se registraron ({@code generations})
+     *
+     * Cada fila se lee con SELECT ... FOR UPDATE, en el mismo orden en todos los nodos para no
+     * bloquearse entre sí. Si otro nodo crea la misma fila a la vez, la clave única hace fallar
+     * esta transacción y quien llama reintenta los cambios en el próximo vaciado.
+     */
+    public Set<LocalDateTime> applyChanges(Map<Key, Durations> added, Map<Key, Durations> removed,
+                                           Map<LocalDateTime, Long> generations) {
+        Set<LocalDateTime> stale = rollupLocks.findStale(RollupLockService.PREPARATION_TIMES, generations);
+        Stream.concat(added.keySet().stream(), removed.keySet().stream())
+                .distinct()
+                .filter(key -> !stale.contains(key.bucketStart()))
+                .sorted(KEY_ORDER)
+                .forEach(key -> applyChange(key, added.get(key), removed.get(key)));
+        return stale;
+    }
+
+    /**
+     * Reemplaza las filas de las horas [from, until) por lo que dicen las órdenes
+     */
+    public void rebuild(LocalDateTime from, LocalDateTime until) {
+        rebuild(from, until, rollupLocks.nextGeneration(RollupLockService.PREPARATION_TIMES), () -> { });
+    }
+
+    /**
+     * Como {@link #rebuild(LocalDateTime, LocalDateTime)} con la generación ya entregada por
+     * {@link RollupLockService#nextGeneration}, corriendo {@code afterRead} en la misma transacción
+     * apenas se leyeron las órdenes, antes de escribir las filas
+     */
+    public void rebuild(LocalDateTime from, LocalDateTime until, long generation, Runnable afterRead) {
+        rollupLocks.recordRebuild(RollupLockService.PREPARATION_TIMES, generation, from, until);
+        rollupRepository.deleteByBucketRange(from, until);
+
+        Map<String, List<String>> productsByOrder = new HashMap<>();
+        for (Object[] row : orderItemRepository.findProductIdsOfReadyOrdersByCreatedWindow(from, until)) {
+            productsByOrder.computeIfAbsent((String) row[0], orderId -> new ArrayList<>()).add((String) row[1]);
+        }
+
+        Map<Key, Durations> rollups = new HashMap<>();
+        for (Object[] row : orderRepository.findPreparationTimesByCreatedWindow(from, until)) {
+            LocalDateTime createdAt = (LocalDateTime) row[1];
+            LocalDateTime readyAt = (LocalDateTime) row[2];
+            LocalDateTime deliveredAt = (LocalDateTime) row[3];
+            Durations times = Durations.empty();
+            times.recordPreparation(createdAt, readyAt);
+            if (deliveredAt != null) {
+                times.recordDelivery(readyAt, deliveredAt);
+            }
+
+            LocalDateTime bucket = SalesRollupService.hourOf(createdAt);
+            rollups.computeIfAbsent(new Key(bucket, null), key -> Durations.empty()).add(times);
+            for (String productId : productsByOrder.getOrDefault((String) row[0], List.of())) {
+                rollups.computeIfAbsent(new Key(bucket, productId), key -> Durations.empty()).add(times);
+            }
+        }
+        afterRead.run();
+
+        rollupRepository.saveAll(rollups.entrySet().stream()
+                .map(entry -> {
+                    PreparationTimeRollup rollup = PreparationTimeRollup.builder()
+                            .bucketStart(entry.getKey().bucketStart())
+                            .productId(toColumn(entry.getKey().productId()))
+                            .build();
+                    write(rollup, entry.getValue());
+                    return rollup;
+                })
+                .toList());
+        log.debug("Tiempos de preparación recalculados de {} a {}: {} filas", from, until, rollups.size());
+    }
+
+    /**
+     * Recorre todas las filas sin cargarlas juntas en memoria
+     */
+    @Transactional(readOnly = true)
+    public void forEachRollup(BiConsumer<Key, Durations> consumer) {
+        try (Stream<Object[]> rows = rollupRepository.streamHistograms()) {
+            rows.forEach(row -> consumer.accept(new Key((LocalDateTime) row[0], fromColumn((String) row[1])),
+                    new Durations(decode((byte[]) row[2]), decode((byte[]) row[3]))));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, ProductInfo> findProducts() {
+        Map<String, ProductInfo> products = new HashMap<>();
+        for (Product product : productRepository.findAll()) {
+            products.put(product.getId(), new ProductInfo(product.getName(),
+                    product.getCategory() != null ? product.getCategory().getId() : null,
+                    product.getCategory() != null ? product.getCategory().getName() : null));
+        }
+        return products;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasRollups() {
+        return rollupRepository.count() > 0;
+    }
+
+    @Transactional(readOnly = true)
+    public LocalDateTime findOldestOrderTime() {
+        return orderRepository.findOldestCreatedAt();
+    }
+
+    /**
+     * Histograma vacío que crece según los valores que recibe
+     */
+    public static Histogram newHistogram() {
+        return new Histogram(2);
+    }
+
+    private void applyChange(Key key, Durations added, Durations removed) {
+        Optional<PreparationTimeRollup> existing = rollupRepository
+                .findByBucketStartAndProductId(key.bucketStart(), toColumn(key.productId()));
+        if (existing.isEmpty() && added == null) {
+            return;
+        }
+        PreparationTimeRollup rollup = existing.orElseGet(() -> PreparationTimeRollup.builder()
+                .bucketStart(key.bucketStart())
+                .productId(toColumn(key.productId()))
+                .build());
+        Durations durations = decode(rollup);
+        if (added != null) {
+            durations.add(added);
+        }
+        if (removed != null) {
+            durations.subtract(removed);
+        }
+        write(rollup, durations);
+        rollupRepository.save(rollup);
+    }
+
+    private static String toColumn(String productId) {
+        return productId != null ? productId : PreparationTimeRollup.ALL_PRODUCTS;
+    }
+
+    private static String fromColumn(String productId) {
+        return PreparationTimeRollup.ALL_PRODUCTS.equals(productId) ? null : productId;
+    }
+
+    private static Durations decode(PreparationTimeRollup rollup) {
+        return new Durations(decode(rollup.getPreparationHistogram()), decode(rollup.getDeliveryHistogram()));
+    }
+
+    private static void write(PreparationTimeRollup rollup, Durations durations) {
+        rollup.setPreparationHistogram(encode(durations.preparation()));
+        rollup.setDeliveryHistogram(encode(durations.delivery()));
+    }
+
+    static byte[] encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Arrays.copyOf(buffer.array(), length);
+    }
+
+    static Histogram decode(byte[] bytes) {
+        if (bytes == null) {
+            return newHistogram();
+        }
+        try {
+            Histogram histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+            histogram.setAutoResize(true);
+            return histogram;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Histograma de tiempos de preparación ilegible", e);
+        }
+    }
+}
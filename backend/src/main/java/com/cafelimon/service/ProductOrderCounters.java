@@ -0,0 +1,110 @@
+package com.cafelimon.service;
+
+import com.cafelimon.event.OrderCreatedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Contadores de pedidos por producto acumulados en memoria
+ *
+ * Cada pedido suma en un {@link LongAdder} del producto, sin leer ni bloquear la fila.
+ * Periódicamente los acumulados se vacían con {@code sumThenReset} y se escriben en bloque
+ * con {@code order_count = order_count + :delta}; lo que se suma mientras tanto queda para
+ * el siguiente vaciado. Si la escritura falla, los deltas se devuelven a los acumuladores.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductOrderCounters {
+
+    private final ProductService productService;
+
+    private final Map<String, LongAdder> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+
+    /**
+     * Suma un pedido a cada producto indicado (uno por ítem)
+     */
+    public void record(Collection<String> productIds) {
+        for (String productId : productIds) {
+            pending.computeIfAbsent(productId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Pedidos registrados para el producto que aún no se escribieron en la base de datos
+     */
+    public long pendingCount(String productId) {
+        LongAdder adder = pending.get(productId);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * Valor actual del contador: lo persistido más lo pendiente de escribir
+     */
+    public long currentCount(String productId, Long persistedCount) {
+        return (persistedCount == null ? 0L : persistedCount) + pendingCount(productId);
+    }
+
+    /**
+     * Ejecuta una lectura de los contadores persistidos sin que se vacíe nada mientras tanto; así
+     * lo leído más {@link #pendingCount} no pierde los pedidos de un vaciado intermedio
+     */
+    public <T> T withoutFlushing(Supplier<T> read) {
+        synchronized (flushLock) {
+            return read.get();
+        }
+    }
+
+    /**
+     * Registra los pedidos de una orden una vez confirmada su transacción
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        record(event.getProductIds());
+    }
+
+    /**
+     * Escribe en la base de datos los pedidos acumulados desde el último vaciado
+     */
+    @Scheduled(fixedDelayString = "${app.products.order-count-flush-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Long> deltas = new HashMap<>();
+            pending.forEach((productId, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.put(productId, delta);
+                }
+            });
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            try {
+                productService.incrementOrderCounts(deltas);
+                log.debug("Contadores de pedidos actualizados para {} productos", deltas.size());
+            } catch (RuntimeException e) {
+                deltas.forEach((productId, delta) ->
+                        pending.computeIfAbsent(productId, id -> new LongAdder()).add(delta));
+                log.error("No se pudieron guardar los contadores de pedidos, se reintentará: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,309 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductResponse;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda inmutable sobre nombre y descripción de los productos
+ *
+ * Los textos se normalizan sin tildes y en minúsculas ("Limón" → "limon"). Los términos
+ * de hasta dos letras se resuelven por prefijo sobre el diccionario ordenado de palabras
+ * y los más largos por intersección de trigramas, verificando después la coincidencia.
+ * Cada término de la consulta debe aparecer en el producto.
+ *
+ * Los productos se numeran por popularidad (disponibles primero, luego por cantidad de
+ * pedidos al construir el índice), lo que solo sirve para desempatar resultados de búsqueda.
+ */
+public final class ProductSearchIndex {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int GRAM = 3;
+
+    private static final int NAME_EXACT = 100;
+    private static final int NAME_PREFIX = 60;
+    private static final int NAME_PREFIX_WORD = 40;
+    private static final int NAME_CONTAINS = 20;
+    private static final int DESCRIPTION_PREFIX_WORD = 10;
+    private static final int DESCRIPTION_CONTAINS = 5;
+
+    private static final int[] NO_DOCUMENTS = new int[0];
+
+    private static final Comparator<ProductResponse> POPULARITY = Comparator
+            .comparing((ProductResponse product) -> Boolean.TRUE.equals(product.getAvailable()), Comparator.reverseOrder())
+            .thenComparing(product -> product.getOrderCount() == null ? 0L : product.getOrderCount(),
+                    Comparator.reverseOrder())
+            .thenComparing(product -> product.getName() == null ? "" : product.getName());
+
+    private final List<Entry> entries;
+    private final NavigableMap<String, int[]> words;
+    private final NavigableMap<String, int[]> nameWords;
+    private final Map<String, int[]> trigrams;
+
+    private ProductSearchIndex(List<Entry> entries, NavigableMap<String, int[]> words,
+                               NavigableMap<String, int[]> nameWords, Map<String, int[]> trigrams) {
+        this.entries = entries;
+        this.words = words;
+        this.nameWords = nameWords;
+        this.trigrams = trigrams;
+    }
+
+    public static ProductSearchIndex of(List<ProductResponse> products) {
+        List<Entry> entries = new ArrayList<>(products.size());
+        Map<String, Set<Integer>> wordPostings = new TreeMap<>();
+        Map<String, Set<Integer>> nameWordPostings = new TreeMap<>();
+        Map<String, Set<Integer>> gramPostings = new HashMap<>();
+
+        for (ProductResponse product : products.stream().sorted(POPULARITY).toList()) {
+            int doc = entries.size();
+            Entry entry = new Entry(product, normalize(product.getName()), normalize(product.getDescription()));
+            entries.add(entry);
+            for (String word : entry.nameWords) {
+                nameWordPostings.computeIfAbsent(word, key -> new LinkedHashSet<>()).add(doc);
+            }
+            for (String word : entry.allWords()) {
+                wordPostings.computeIfAbsent(word, key -> new LinkedHashSet<>()).add(doc);
+                for (String gram : grams(word)) {
+                    gramPostings.computeIfAbsent(gram, key -> new LinkedHashSet<>()).add(doc);
+                }
+            }
+        }
+
+        return new ProductSearchIndex(List.copyOf(entries), toPostings(wordPostings),
+                toPostings(nameWordPostings), new HashMap<>(toPostings(gramPostings)));
+    }
+
+    /**
+     * Normaliza un texto para comparar sin tildes ni mayúsculas
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Busca productos cuyo nombre o descripción contengan todos los términos de la consulta,
+     * ordenados por relevancia, disponibilidad y cantidad de pedidos
+     */
+    public List<ProductResponse> search(String query, boolean availableOnly, int limit) {
+        String normalized = normalize(query);
+        String[] terms = split(normalized);
+        if (terms.length == 0 || limit <= 0) {
+            return List.of();
+        }
+
+        int[] candidates = null;
+        for (String term : terms) {
+            int[] docs = term.length() < GRAM ? byPrefix(term) : byTrigrams(term);
+            candidates = candidates == null ? docs : intersect(candidates, docs);
+            if (candidates.length == 0) {
+                return List.of();
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (int doc : candidates) {
+            Entry entry = entries.get(doc);
+            if (availableOnly && !Boolean.TRUE.equals(entry.product.getAvailable())) {
+                continue;
+            }
+            int score = entry.score(normalized, terms);
+            if (score > 0) {
+                hits.add(new Hit(entry.product, score));
+            }
+        }
+
+        return hits.stream()
+                .sorted(Hit.ORDER)
+                .limit(limit)
+                .map(Hit::product)
+                .toList();
+    }
+
+    /**
+     * Autocompletado: productos cuyo nombre tiene palabras que empiezan con cada término
+     * de la consulta. No se recortan ni se ordenan por pedidos, porque los contadores del
+     * índice son los de cuando se construyó; quien consulta los ordena con valores vigentes.
+     */
+    public List<ProductResponse> suggest(String query) {
+        String[] terms = split(normalize(query));
+        if (terms.length == 0) {
+            return List.of();
+        }
+
+        int[] candidates = null;
+        for (String term : terms) {
+            int[] docs = byPrefix(nameWords, term);
+            candidates = candidates == null ? docs : intersect(candidates, docs);
+            if (candidates.length == 0) {
+                return List.of();
+            }
+        }
+
+        return Arrays.stream(candidates)
+                .mapToObj(doc -> entries.get(doc).product)
+                .toList();
+    }
+
+    private int[] byPrefix(String prefix) {
+        return byPrefix(words, prefix);
+    }
+
+    private static int[] byPrefix(NavigableMap<String, int[]> words, String prefix) {
+        Set<Integer> docs = new LinkedHashSet<>();
+        words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()
+                .forEach(postings -> Arrays.stream(postings).forEach(docs::add));
+        return toArray(docs);
+    }
+
+    private int[] byTrigrams(String term) {
+        int[] result = null;
+        for (String gram : grams(term)) {
+            int[] docs = trigrams.getOrDefault(gram, NO_DOCUMENTS);
+            result = result == null ? docs : intersect(result, docs);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result == null ? NO_DOCUMENTS : result;
+    }
+
+    private static Set<String> grams(String word) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            grams.add(word.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String[] split(String text) {
+        return text.isEmpty() ? new String[0] : Arrays.stream(SEPARATORS.split(text))
+                .filter(word -> !word.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private static int[] intersect(int[] left, int[] right) {
+        int[] result = new int[Math.min(left.length, right.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] == right[j]) {
+                result[size++] = left[i];
+                i++;
+                j++;
+            } else if (left[i] < right[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static NavigableMap<String, int[]> toPostings(Map<String, Set<Integer>> postings) {
+        NavigableMap<String, int[]> result = new TreeMap<>();
+        postings.forEach((key, docs) -> result.put(key, toArray(docs)));
+        return result;
+    }
+
+    private static int[] toArray(Set<Integer> docs) {
+        return docs.stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    private static final class Entry {
+
+        private final ProductResponse product;
+        private final String name;
+        private final String description;
+        private final String[] nameWords;
+        private final String[] descriptionWords;
+
+        private Entry(ProductResponse product, String name, String description) {
+            this.product = product;
+            this.name = name;
+            this.description = description;
+            this.nameWords = split(name);
+            this.descriptionWords = split(description);
+        }
+
+        private Set<String> allWords() {
+            Set<String> all = new LinkedHashSet<>(Arrays.asList(nameWords));
+            all.addAll(Arrays.asList(descriptionWords));
+            return all;
+        }
+
+        /**
+         * Puntúa el producto; retorna 0 si algún término no aparece
+         */
+        private int score(String query, String[] terms) {
+            int score = 0;
+            if (name.equals(query)) {
+                score += NAME_EXACT;
+            } else if (name.startsWith(query)) {
+                score += NAME_PREFIX;
+            }
+            for (String term : terms) {
+                int termScore = termScore(term);
+                if (termScore == 0) {
+                    return 0;
+                }
+                score += termScore;
+            }
+            return score;
+        }
+
+        private int termScore(String term) {
+            boolean prefixOnly = term.length() < GRAM;
+            if (startsAnyWord(nameWords, term)) {
+                return NAME_PREFIX_WORD;
+            }
+            if (!prefixOnly && name.contains(term)) {
+                return NAME_CONTAINS;
+            }
+            if (startsAnyWord(descriptionWords, term)) {
+                return DESCRIPTION_PREFIX_WORD;
+            }
+            if (!prefixOnly && description.contains(term)) {
+                return DESCRIPTION_CONTAINS;
+            }
+            return 0;
+        }
+
+        private static boolean startsAnyWord(String[] words, String term) {
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Hit(ProductResponse product, int score) {
+
+        private static final Comparator<Hit> ORDER = Comparator.comparingInt(Hit::score).reversed()
+                .thenComparing(Hit::product, POPULARITY);
+    }
+}
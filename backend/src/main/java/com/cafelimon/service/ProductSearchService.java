@@ -0,0 +1,114 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.product.ProductSuggestion;
+import com.cafelimon.event.CatalogChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Servicio de búsqueda de productos
+ *
+ * Las búsquedas se resuelven sobre un {@link ProductSearchIndex} en memoria que se
+ * reconstruye cuando cambia el catálogo, en lugar de recorrer la tabla con LIKE.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchService {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 50;
+    public static final int DEFAULT_SUGGESTIONS = 8;
+
+    private final ProductService productService;
+    private final TopProductsRanking topProductsRanking;
+
+    private final AtomicReference<ProductSearchIndex> index = new AtomicReference<>();
+    private final Object rebuildLock = new Object();
+
+    /**
+     * Busca productos por nombre o descripción, sin distinguir tildes ni mayúsculas
+     */
+    public List<ProductResponse> search(String query, boolean availableOnly, int limit) {
+        return getIndex().search(query, availableOnly, Math.min(Math.max(limit, 1), MAX_LIMIT));
+    }
+
+    /**
+     * Sugiere productos cuyo nombre empieza con lo escrito, los disponibles y más pedidos primero
+     *
+     * El índice solo resuelve los prefijos; el orden se calcula en cada consulta con los
+     * contadores vigentes de {@link TopProductsRanking}.
+     */
+    public List<ProductSuggestion> suggest(String query, int limit) {
+        List<ProductResponse> matches = getIndex().suggest(query);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Long> orderCounts = topProductsRanking.getOrderCounts(
+                matches.stream().map(ProductResponse::getId).toList());
+        Comparator<ProductResponse> popularity = Comparator
+                .comparing((ProductResponse product) -> Boolean.TRUE.equals(product.getAvailable()),
+                        Comparator.reverseOrder())
+                .thenComparing(product -> orderCounts.getOrDefault(product.getId(), 0L), Comparator.reverseOrder())
+                .thenComparing(product -> product.getName() == null ? "" : product.getName());
+        return matches.stream()
+                .sorted(popularity)
+                .limit(Math.min(Math.max(limit, 1), MAX_LIMIT))
+                .map(this::toSuggestion)
+                .toList();
+    }
+
+    /**
+     * Reconstruye el índice una vez confirmada la transacción que modificó el catálogo
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        log.debug("Catálogo modificado ({}), reconstruyendo índice de búsqueda", event);
+        synchronized (rebuildLock) {
+            index.set(build());
+        }
+    }
+
+    ProductSearchIndex getIndex() {
+        ProductSearchIndex current = index.get();
+        if (current != null) {
+            return current;
+        }
+        synchronized (rebuildLock) {
+            current = index.get();
+            if (current == null) {
+                current = build();
+                index.set(current);
+            }
+            return current;
+        }
+    }
+
+    private ProductSuggestion toSuggestion(ProductResponse product) {
+        return ProductSuggestion.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .categoryName(product.getCategory() != null ? product.getCategory().getName() : null)
+                .price(product.getPrice())
+                .imageUrl(product.getImageUrl())
+                .available(product.getAvailable())
+                .build();
+    }
+
+    private ProductSearchIndex build() {
+        ProductSearchIndex built = ProductSearchIndex.of(productService.getAllProducts());
+        log.info("Índice de búsqueda construido con {} productos", built.size());
+        return built;
+    }
+}
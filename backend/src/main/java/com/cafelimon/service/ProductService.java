@@ -1,7 +1,9 @@
 package com.cafelimon.service;
 
+import com.cafelimon.dto.category.CategoryResponse;
 import com.cafelimon.dto.product.ProductRequest;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.CatalogChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Category;
 import com.cafelimon.model.Product;
@@ -9,10 +11,14 @@ import com.cafelimon.repository.CategoryRepository;
 import com.cafelimon.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -27,47 +33,22 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final CategoryService categoryService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<ProductResponse> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        return toResponses(productRepository.findAll());
     }
 
     public List<ProductResponse> getAvailableProducts() {
-        return productRepository.findByAvailableTrue().stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        return toResponses(productRepository.findByAvailableTrue());
     }
 
     public List<ProductResponse> getProductsByCategory(String categoryId) {
-        return productRepository.findByCategoryId(categoryId).stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        return toResponses(productRepository.findByCategoryId(categoryId));
     }
 
     public List<ProductResponse> getAvailableProductsByCategory(String categoryId) {
-        return productRepository.findByCategoryIdAndAvailableTrue(categoryId).stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
-    }
-
-    public List<ProductResponse> searchProducts(String query) {
-        return productRepository.searchByName(query).stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
-    }
-
-    public List<ProductResponse> searchAvailableProducts(String query) {
-        return productRepository.searchByNameAndAvailable(query).stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
-    }
-
-    public List<ProductResponse> getTopProducts() {
-        return productRepository.findTopProducts().stream()
-                .map(this::toResponse)
-                .collect(Collectors.toList());
+        return toResponses(productRepository.findByCategoryIdAndAvailableTrue(categoryId));
     }
 
     public ProductResponse getProductById(String id) {
@@ -94,6 +75,7 @@ public class ProductService {
 
         product = productRepository.save(product);
         log.info("Producto creado con ID: {}", product.getId());
+        eventPublisher.publishEvent(CatalogChangedEvent.product(CatalogChangedEvent.Action.CREATED, product.getId()));
 
         return toResponse(product);
     }
@@ -116,6 +98,7 @@ public class ProductService {
 
         product = productRepository.save(product);
         log.info("Producto actualizado: {}", product.getId());
+        eventPublisher.publishEvent(CatalogChangedEvent.product(CatalogChangedEvent.Action.UPDATED, product.getId()));
 
         return toResponse(product);
     }
@@ -125,13 +108,18 @@ public class ProductService {
         Product product = findProductById(id);
         productRepository.delete(product);
         log.info("Producto eliminado: {}", id);
+        eventPublisher.publishEvent(CatalogChangedEvent.product(CatalogChangedEvent.Action.DELETED, id));
     }
 
-    public void incrementOrderCount(String productId) {
-        Product product = findProductById(productId);
-        Long currentCount = product.getOrderCount();
-        product.setOrderCount((currentCount == null ? 0 : currentCount) + 1);
-        productRepository.save(product);
+    /**
+     * Suma los deltas indicados a los contadores de pedidos, con una sentencia
+     * UPDATE por cada delta distinto
+     */
+    public void incrementOrderCounts(Map<String, Long> deltas) {
+        Map<Long, List<String>> idsByDelta = deltas.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, TreeMap::new,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+        idsByDelta.forEach((delta, ids) -> productRepository.incrementOrderCounts(ids, delta));
     }
 
     private Product findProductById(String id) {
@@ -139,13 +127,32 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Producto no encontrado con ID: " + id));
     }
 
-    private ProductResponse toResponse(Product product) {
+    /**
+     * Convierte una lista de productos reutilizando la respuesta de cada categoría
+     * (la categoría ya viene cargada por la consulta del repositorio)
+     */
+    private List<ProductResponse> toResponses(List<Product> products) {
+        Map<String, CategoryResponse> categories = new HashMap<>();
+        return products.stream()
+                .map(product -> toResponse(product, categories.computeIfAbsent(
+                        product.getCategory().getId(), id -> categoryService.toResponse(product.getCategory()))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convierte un producto ya cargado (con su categoría) sin volver a consultarlo
+     */
+    public ProductResponse toResponse(Product product) {
+        return toResponse(product, categoryService.toResponse(product.getCategory()));
+    }
+
+    private ProductResponse toResponse(Product product, CategoryResponse category) {
         return ProductResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
                 .description(product.getDescription())
                 .price(product.getPrice())
-                .category(categoryService.getCategoryById(product.getCategory().getId()))
+                .category(category)
                 .imageUrl(product.getImageUrl())
                 .preparationTime(product.getPreparationTime())
                 .available(product.getAvailable())
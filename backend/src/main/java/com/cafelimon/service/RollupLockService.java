@@ -0,0 +1,120 @@
+package com.cafelimon.service;
+
+import com.cafelimon.model.RollupLock;
+import com.cafelimon.model.RollupRebuild;
+import com.cafelimon.repository.RollupLockRepository;
+import com.cafelimon.repository.RollupRebuildRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turnos y generaciones de los recálculos de acumulados, compartidos por los nodos en la base de datos
+ *
+ * Quien recalcula toma el turno de esos acumulados con {@link #tryAcquire}, así dos nodos no
+ * repiten el mismo trabajo a la vez; si deja de renovarlo, vence y otro puede tomarlo. Cada tramo
+ * recalculado recibe una generación nueva con {@link #nextGeneration} y queda registrado con sus
+ * horas mediante {@link #recordRebuild}, en la transacción que reescribe las filas. Los cambios que
+ * acumula un nodo llevan la última generación que conocía al registrarlos: al escribirlos,
+ * {@link #findStale} indica las horas recalculadas después, cuya lectura de órdenes ya los incluyó.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class RollupLockService {
+
+    public static final String SALES = "sales";
+    public static final String PREPARATION_TIMES = "preparation-times";
+
+    private final RollupLockRepository lockRepository;
+    private final RollupRebuildRepository rebuildRepository;
+
+    /**
+     * Tramo recalculado, tal como se avisa a los demás nodos; {@code finished} en el último
+     */
+    public record Rebuilt(LocalDateTime from, LocalDateTime until, long generation, boolean finished) {
+    }
+
+    /**
+     * Toma o renueva el turno de {@code owner}; false si lo tiene otro nodo y no venció
+     *
+     * Si dos nodos crean la fila a la vez, la clave única hace fallar a uno de ellos.
+     */
+    public boolean tryAcquire(String name, String owner, Duration lease) {
+        RollupLock lock = lockedRow(name);
+        LocalDateTime now = LocalDateTime.now();
+        if (lock.getOwner() != null && !lock.getOwner().equals(owner)
+                && lock.getLockedUntil() != null && lock.getLockedUntil().isAfter(now)) {
+            return false;
+        }
+        lock.setOwner(owner);
+        lock.setLockedUntil(now.plus(lease));
+        return true;
+    }
+
+    public void release(String name, String owner) {
+        lockRepository.findByName(name)
+                .filter(lock -> owner.equals(lock.getOwner()))
+                .ifPresent(lock -> {
+                    lock.setOwner(null);
+                    lock.setLockedUntil(null);
+                });
+    }
+
+    /**
+     * Entrega una generación que ningún otro recálculo recibirá, aunque el suyo falle
+     */
+    public long nextGeneration(String name) {
+        RollupLock lock = lockedRow(name);
+        lock.setGeneration(lock.getGeneration() + 1);
+        return lock.getGeneration();
+    }
+
+    /**
+     * Registra que las horas [from, until) se recalculan con {@code generation}; bloquea la fila
+     * del turno hasta el fin de la transacción, así ningún vaciado escribe entre medio
+     */
+    public void recordRebuild(String name, long generation, LocalDateTime from, LocalDateTime until) {
+        lockedRow(name);
+        rebuildRepository.save(RollupRebuild.builder()
+                .name(name)
+                .generation(generation)
+                .fromBucket(from)
+                .untilBucket(until)
+                .build());
+    }
+
+    /**
+     * Horas cuyos cambios, registrados con la generación indicada, ya están en un recálculo posterior
+     */
+    public Set<LocalDateTime> findStale(String name, Map<LocalDateTime, Long> generations) {
+        Set<LocalDateTime> stale = new HashSet<>();
+        if (generations.isEmpty() || lockRepository.findSharedByName(name).isEmpty()) {
+            return stale;
+        }
+        generations.forEach((bucket, generation) -> {
+            if (rebuildRepository.existsNewer(name, bucket, generation)) {
+                stale.add(bucket);
+            }
+        });
+        return stale;
+    }
+
+    @Transactional(readOnly = true)
+    public long currentGeneration(String name) {
+        return lockRepository.findGenerationByName(name).orElse(0L);
+    }
+
+    private RollupLock lockedRow(String name) {
+        return lockRepository.findByName(name)
+                .orElseGet(() -> lockRepository.saveAndFlush(RollupLock.builder().name(name).build()));
+    }
+}
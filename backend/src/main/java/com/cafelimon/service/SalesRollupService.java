@@ -0,0 +1,275 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.stats.TopProductDTO;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.model.ProductHourlyRollup;
+import com.cafelimon.model.SalesHourlyRollup;
+import com.cafelimon.repository.OrderItemRepository;
+import com.cafelimon.repository.OrderRepository;
+import com.cafelimon.repository.ProductHourlyRollupRepository;
+import com.cafelimon.repository.SalesHourlyRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Ventas acumuladas por hora de creación de las órdenes
+ *
+ * Un rango se resuelve con las filas de las horas completas que cubre (a lo sumo 24 por día)
+ * y, para los extremos que no llegan a una hora y para la hora en curso, con las órdenes de
+ * esa ventana. Así el resultado coincide con consultar las órdenes del rango. Las filas se
+ * actualizan con los cambios que acumula {@link SalesRollups} y se pueden recalcular desde
+ * las órdenes con {@link #rebuild}; cada recálculo queda registrado en {@link RollupLockService}
+ * para descartar los cambios que ya incluye.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class SalesRollupService {
+
+    private final SalesHourlyRollupRepository salesRollupRepository;
+    private final ProductHourlyRollupRepository productRollupRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final RollupLockService rollupLocks;
+
+    /**
+     * Cambios a sumar a la fila de una hora
+     */
+    public record SalesDelta(long orders, BigDecimal revenue, long cancelled, BigDecimal cancelledAmount) {
+    }
+
+    /**
+     * Órdenes creadas (incluidas las canceladas) y total de las no canceladas de un rango
+     */
+    public record SalesTotals(long orders, BigDecimal revenue) {
+    }
+
+    public static LocalDateTime hourOf(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    /**
+     * Totales de las órdenes creadas entre {@code startDate} y {@code endDate}, ambos inclusive
+     */
+    @Transactional(readOnly = true)
+    public SalesTotals getTotals(LocalDateTime startDate, LocalDateTime endDate) {
+        Range range = Range.of(startDate, endDate, LocalDateTime.now());
+
+        long orders = 0;
+        BigDecimal revenue = BigDecimal.ZERO;
+        if (range.hasRollups()) {
+            Object[] row = salesRollupRepository.sumByBucketRange(range.rollupFrom(), range.rollupUntil()).get(0);
+            orders += ((Number) row[0]).longValue();
+            revenue = revenue.add(toBigDecimal(row[1]));
+        }
+        for (Window window : range.windows()) {
+            orders += orderRepository.countByCreatedWindow(window.from(), window.until());
+            BigDecimal windowRevenue = orderRepository.getRevenueByCreatedWindow(window.from(), window.until());
+            if (windowRevenue != null) {
+                revenue = revenue.add(windowRevenue);
+            }
+        }
+        return new SalesTotals(orders, revenue);
+    }
+
+    /**
+     * Productos pedidos entre {@code startDate} y {@code endDate}, de más a menos unidades
+     */
+    @Transactional(readOnly = true)
+    public List<TopProductDTO> getTopProducts(LocalDateTime startDate, LocalDateTime endDate) {
+        Range range = Range.of(startDate, endDate, LocalDateTime.now());
+
+        Map<String, TopProductDTO> products = new LinkedHashMap<>();
+        if (range.hasRollups()) {
+            addQuantities(products, productRollupRepository.sumQuantitiesByBucketRange(
+                    range.rollupFrom(), range.rollupUntil()));
+        }
+        for (Window window : range.windows()) {
+            addQuantities(products, orderItemRepository.getProductQuantitiesByCreatedWindow(
+                    window.from(), window.until()));
+        }
+        return products.values().stream()
+                .sorted(Comparator.comparing(TopProductDTO::getTotalQuantity).reversed()
+                        .thenComparing(TopProductDTO::getProductName))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Suma los cambios acumulados a las filas de cada hora, creándolas si no existen
+     */
+    public void applyDeltas(Map<LocalDateTime, SalesDelta> sales, Map<LocalDateTime, Map<String, Long>> quantities) {
+        applyDeltas(sales, quantities, Map.of());
+    }
+
+    /**
+     * Como {@link #applyDeltas(Map, Map)}, salvo en las horas recalculadas después de la generación
+     * con que se registraron sus cambios ({@code generations}): esos se descartan y se devuelven
+     */
+    public Set<LocalDateTime> applyDeltas(Map<LocalDateTime, SalesDelta> sales,
+                                          Map<LocalDateTime, Map<String, Long>> quantities,
+                                          Map<LocalDateTime, Long> generations) {
+        Set<LocalDateTime> stale = rollupLocks.findStale(RollupLockService.SALES, generations);
+        sales.forEach((bucket, delta) -> {
+            if (stale.contains(bucket)) {
+                return;
+            }
+            int updated = salesRollupRepository.increment(bucket, delta.orders(), delta.revenue(),
+                    delta.cancelled(), delta.cancelledAmount());
+            if (updated == 0) {
+                salesRollupRepository.save(SalesHourlyRollup.builder()
+                        .bucketStart(bucket)
+                        .orderCount(delta.orders())
+                        .revenue(delta.revenue())
+                        .cancelledCount(delta.cancelled())
+                        .cancelledAmount(delta.cancelledAmount())
+                        .build());
+            }
+        });
+        quantities.forEach((bucket, byProduct) -> {
+            if (stale.contains(bucket)) {
+                return;
+            }
+            byProduct.forEach((productId, quantity) -> {
+                if (productRollupRepository.increment(bucket, productId, quantity) == 0) {
+                    productRollupRepository.save(ProductHourlyRollup.builder()
+                            .bucketStart(bucket)
+                            .productId(productId)
+                            .quantity(quantity)
+                            .build());
+                }
+            });
+        });
+        return stale;
+    }
+
+    /**
+     * Reemplaza las filas de las horas [from, until) por lo que dicen las órdenes
+     */
+    public void rebuild(LocalDateTime from, LocalDateTime until) {
+        rebuild(from, until, rollupLocks.nextGeneration(RollupLockService.SALES), () -> { });
+    }
+
+    /**
+     * Como {@link #rebuild(LocalDateTime, LocalDateTime)} con la generación ya entregada por
+     * {@link RollupLockService#nextGeneration}, corriendo {@code afterRead} en la misma transacción
+     * apenas se leyeron las órdenes, antes de escribir las filas
+     */
+    public void rebuild(LocalDateTime from, LocalDateTime until, long generation, Runnable afterRead) {
+        rollupLocks.recordRebuild(RollupLockService.SALES, generation, from, until);
+        salesRollupRepository.deleteByBucketRange(from, until);
+        productRollupRepository.deleteByBucketRange(from, until);
+
+        Map<LocalDateTime, SalesHourlyRollup> sales = new HashMap<>();
+        for (Object[] row : orderRepository.findSalesByCreatedWindow(from, until)) {
+            SalesHourlyRollup rollup = sales.computeIfAbsent(hourOf((LocalDateTime) row[0]),
+                    bucket -> SalesHourlyRollup.builder().bucketStart(bucket).build());
+            BigDecimal amount = (BigDecimal) row[1];
+            rollup.setOrderCount(rollup.getOrderCount() + 1);
+            if (row[2] == OrderStatus.CANCELADO) {
+                rollup.setCancelledCount(rollup.getCancelledCount() + 1);
+                rollup.setCancelledAmount(rollup.getCancelledAmount().add(amount));
+            } else {
+                rollup.setRevenue(rollup.getRevenue().add(amount));
+            }
+        }
+
+        Map<LocalDateTime, Map<String, ProductHourlyRollup>> products = new HashMap<>();
+        for (Object[] row : orderItemRepository.findQuantitiesByCreatedWindow(from, until)) {
+            LocalDateTime bucket = hourOf((LocalDateTime) row[0]);
+            ProductHourlyRollup rollup = products.computeIfAbsent(bucket, key -> new HashMap<>())
+                    .computeIfAbsent((String) row[1], productId -> ProductHourlyRollup.builder()
+                            .bucketStart(bucket)
+                            .productId(productId)
+                            .build());
+            rollup.setQuantity(rollup.getQuantity() + ((Number) row[2]).longValue());
+        }
+        afterRead.run();
+
+        salesRollupRepository.saveAll(sales.values());
+        productRollupRepository.saveAll(products.values().stream()
+                .flatMap(byProduct -> byProduct.values().stream())
+                .toList());
+        log.debug("Acumulados de ventas recalculados de {} a {}: {} horas con órdenes", from, until, sales.size());
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasRollups() {
+        return salesRollupRepository.count() > 0;
+    }
+
+    @Transactional(readOnly = true)
+    public LocalDateTime findOldestOrderTime() {
+        return orderRepository.findOldestCreatedAt();
+    }
+
+    private static void addQuantities(Map<String, TopProductDTO> products, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            long quantity = ((Number) row[2]).longValue();
+            products.merge((String) row[0], TopProductDTO.builder()
+                            .productId((String) row[0])
+                            .productName((String) row[1])
+                            .totalQuantity(quantity)
+                            .build(),
+                    (current, added) -> {
+                        current.setTotalQuantity(current.getTotalQuantity() + added.getTotalQuantity());
+                        return current;
+                    });
+        }
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+
+    private record Window(LocalDateTime from, LocalDateTime until) {
+    }
+
+    /**
+     * Parte un rango en horas completas ya cerradas, que salen de los acumulados, y ventanas
+     * sueltas (los extremos y desde la hora en curso), que salen de las órdenes
+     */
+    private record Range(LocalDateTime rollupFrom, LocalDateTime rollupUntil, List<Window> windows) {
+
+        static Range of(LocalDateTime startDate, LocalDateTime endDate, LocalDateTime now) {
+            // endDate es inclusivo, como en BETWEEN; las columnas guardan microsegundos
+            LocalDateTime from = startDate;
+            LocalDateTime until = endDate.plus(1, ChronoUnit.MICROS);
+            LocalDateTime rollupFrom = from.equals(hourOf(from)) ? from : hourOf(from).plusHours(1);
+            LocalDateTime rollupUntil = hourOf(until.isBefore(now) ? until : now);
+
+            List<Window> windows = new ArrayList<>();
+            if (!rollupFrom.isBefore(rollupUntil)) {
+                if (from.isBefore(until)) {
+                    windows.add(new Window(from, until));
+                }
+                return new Range(null, null, windows);
+            }
+            if (from.isBefore(rollupFrom)) {
+                windows.add(new Window(from, rollupFrom));
+            }
+            if (rollupUntil.isBefore(until)) {
+                windows.add(new Window(rollupUntil, until));
+            }
+            return new Range(rollupFrom, rollupUntil, windows);
+        }
+
+        boolean hasRollups() {
+            return rollupFrom != null;
+        }
+    }
+}
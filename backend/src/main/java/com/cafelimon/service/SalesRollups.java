@@ -0,0 +1,381 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Cambios a los acumulados de ventas por hora, sumados en memoria y escritos en bloque
+ *
+ * Como {@link ProductOrderCounters}: cada orden creada, cancelada o eliminada cambia los pendientes
+ * de la hora en que se creó y periódicamente se escriben con {@link SalesRollupService#applyDeltas}.
+ * Cada hora se modifica y se retira con operaciones atómicas del mapa, de modo que nada se pierde
+ * entre el registro y el vaciado; si la escritura falla, los cambios se devuelven. Al arrancar sin
+ * acumulados se calculan desde las órdenes, y cada noche se recalculan los últimos días ya cerrados
+ * para corregir lo que no pasó por aquí (cambios perdidos en una caída).
+ *
+ * Con varios nodos, solo el que toma el turno en {@link RollupLockService} recalcula. Cada hora
+ * pendiente lleva la última generación de recálculo que este nodo conocía al empezar a acumularla:
+ * si al escribirla la hora ya se recalculó con una posterior, las órdenes ya están contadas y se
+ * descarta. El nodo que recalcula avisa cada tramo por {@link ClusterEventRelay} y los demás
+ * descartan en el acto lo que tengan de esas horas.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollups {
+
+    static final String REBUILT_DESTINATION = ClusterEventRelay.INTERNAL_PREFIX + "stats/sales/rebuilt";
+
+    private final SalesRollupService salesRollupService;
+    private final RollupLockService rollupLocks;
+    private final ClusterEventRelay relay;
+    private final ObjectMapper objectMapper;
+    private final StatsProperties properties;
+
+    private final Map<LocalDateTime, HourChanges> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final String lockOwner = UUID.randomUUID().toString();
+    // Última generación de recálculo conocida; la llevan las horas pendientes que se empiezan
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Suma una orden a la hora en que se creó una vez confirmada su transacción
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (order == null || order.getCreatedAt() == null) {
+            return;
+        }
+        BigDecimal amount = amountOf(order);
+        boolean cancelled = order.getStatus() == OrderStatus.CANCELADO;
+        record(order.getCreatedAt(), changes -> {
+            changes.orders++;
+            if (cancelled) {
+                changes.cancelled++;
+                changes.cancelledAmount = changes.cancelledAmount.add(amount);
+            } else {
+                changes.revenue = changes.revenue.add(amount);
+            }
+            if (order.getItems() != null) {
+                for (OrderItemResponse item : order.getItems()) {
+                    changes.quantities.merge(item.getProduct().getId(), (long) item.getQuantity(), Long::sum);
+                }
+            }
+        });
+    }
+
+    /**
+     * Al cancelar una orden (o deshacer la cancelación) mueve su total entre ventas y canceladas
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        boolean wasCancelled = event.getPreviousStatus() == OrderStatus.CANCELADO;
+        boolean isCancelled = event.getNewStatus() == OrderStatus.CANCELADO;
+        OrderResponse order = event.getOrder();
+        if (wasCancelled == isCancelled || order == null || order.getCreatedAt() == null) {
+            return;
+        }
+        BigDecimal moved = isCancelled ? amountOf(order) : amountOf(order).negate();
+        record(order.getCreatedAt(), changes -> {
+            changes.revenue = changes.revenue.subtract(moved);
+            changes.cancelled += isCancelled ? 1 : -1;
+            changes.cancelledAmount = changes.cancelledAmount.add(moved);
+        });
+    }
+
+    /**
+     * Resta una orden eliminada en este nodo; las de otros nodos las resta el nodo que las eliminó
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderDeleted(OrderDeletedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (event.isRelayed() || order == null || order.getCreatedAt() == null) {
+            return;
+        }
+        BigDecimal amount = amountOf(order);
+        boolean cancelled = order.getStatus() == OrderStatus.CANCELADO;
+        record(order.getCreatedAt(), changes -> {
+            changes.orders--;
+            if (cancelled) {
+                changes.cancelled--;
+                changes.cancelledAmount = changes.cancelledAmount.subtract(amount);
+            } else {
+                changes.revenue = changes.revenue.subtract(amount);
+            }
+            if (order.getItems() != null) {
+                for (OrderItemResponse item : order.getItems()) {
+                    changes.quantities.merge(item.getProduct().getId(), (long) -item.getQuantity(), Long::sum);
+                }
+            }
+        });
+    }
+
+    /**
+     * Escribe los cambios acumulados desde el último vaciado
+     */
+    @Scheduled(fixedDelayString = "${app.stats.rollup.flush-ms:5000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<LocalDateTime, HourChanges> drained = new HashMap<>();
+            for (LocalDateTime bucket : pending.keySet()) {
+                HourChanges changes = pending.remove(bucket);
+                if (changes != null) {
+                    drained.put(bucket, changes);
+                }
+            }
+            if (drained.isEmpty()) {
+                return;
+            }
+
+            Map<LocalDateTime, SalesRollupService.SalesDelta> sales = new HashMap<>();
+            Map<LocalDateTime, Map<String, Long>> quantities = new HashMap<>();
+            Map<LocalDateTime, Long> generations = new HashMap<>();
+            drained.forEach((bucket, changes) -> {
+                generations.put(bucket, changes.generation);
+                if (changes.hasSales()) {
+                    sales.put(bucket, new SalesRollupService.SalesDelta(changes.orders, changes.revenue,
+                            changes.cancelled, changes.cancelledAmount));
+                }
+                if (!changes.quantities.isEmpty()) {
+                    quantities.put(bucket, changes.quantities);
+                }
+            });
+
+            Set<LocalDateTime> stale;
+            try {
+                stale = salesRollupService.applyDeltas(sales, quantities, generations);
+                log.debug("Acumulados de ventas actualizados para {} horas", drained.size() - stale.size());
+            } catch (RuntimeException e) {
+                drained.forEach((bucket, changes) -> pending.merge(bucket, changes, HourChanges::add));
+                log.error("No se pudieron guardar los acumulados de ventas, se reintentará: {}", e.getMessage());
+                return;
+            }
+            if (!stale.isEmpty()) {
+                // Otro nodo recalculó sin que llegara su aviso
+                log.info("Descartados los cambios de {} horas ya recalculadas", stale.size());
+                refreshGeneration();
+            }
+        }
+    }
+
+    /**
+     * Recalcula desde las órdenes las horas [from, until), un día por transacción; false si otro
+     * nodo tiene el turno
+     *
+     * Lo registrado para esas horas desde el último vaciado corresponde a órdenes que la lectura
+     * ya incluye, así que se descarta dentro de la misma transacción, justo después de leerlas;
+     * si el recálculo falla, se devuelve a los pendientes.
+     */
+    public boolean rebuild(LocalDateTime from, LocalDateTime until) {
+        synchronized (flushLock) {
+            Duration lease = Duration.ofMillis(properties.getRollup().getRebuildLeaseMs());
+            if (!tryAcquire(lease)) {
+                log.info("Otro nodo está recalculando los acumulados de ventas");
+                return false;
+            }
+            try {
+                flush();
+                for (LocalDateTime day = from; day.isBefore(until); day = day.plusDays(1)) {
+                    LocalDateTime start = day;
+                    LocalDateTime end = day.plusDays(1).isBefore(until) ? day.plusDays(1) : until;
+                    if (day.isAfter(from) && !tryAcquire(lease)) {
+                        log.warn("Se perdió el turno para recalcular los acumulados de ventas en {}", start);
+                        return false;
+                    }
+                    long rebuildGeneration = rollupLocks.nextGeneration(RollupLockService.SALES);
+                    Map<LocalDateTime, HourChanges> discarded = new HashMap<>();
+                    try {
+                        salesRollupService.rebuild(start, end, rebuildGeneration,
+                                () -> discardPending(start, end, rebuildGeneration, discarded));
+                    } catch (RuntimeException e) {
+                        discarded.forEach((bucket, changes) -> pending.merge(bucket, changes, HourChanges::add));
+                        throw e;
+                    }
+                    publishRebuilt(new RollupLockService.Rebuilt(start, end, rebuildGeneration, !end.isBefore(until)));
+                }
+                return true;
+            } finally {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Recalcula los últimos días, sin tocar la hora en curso que aún recibe órdenes
+     */
+    @Scheduled(cron = "${app.stats.rollup.rebuild-cron:0 15 4 * * *}")
+    public void rebuildRecent() {
+        LocalDateTime until = SalesRollupService.hourOf(LocalDateTime.now());
+        rebuild(until.minusDays(properties.getRollup().getRebuildDays()), until);
+    }
+
+    /**
+     * Primera carga: sin acumulados, se calculan para todas las órdenes existentes
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        refreshGeneration();
+        if (salesRollupService.hasRollups()) {
+            return;
+        }
+        LocalDateTime oldest = salesRollupService.findOldestOrderTime();
+        if (oldest == null) {
+            return;
+        }
+        LocalDateTime until = SalesRollupService.hourOf(LocalDateTime.now()).plusHours(1);
+        log.info("Calculando acumulados de ventas desde {}", oldest);
+        rebuild(SalesRollupService.hourOf(oldest), until);
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Descarta lo pendiente de las horas que otro nodo acaba de recalcular
+     */
+    void onRelayedMessage(String destination, byte[] payload) {
+        if (!REBUILT_DESTINATION.equals(destination)) {
+            return;
+        }
+        try {
+            RollupLockService.Rebuilt rebuilt = objectMapper.readValue(payload, RollupLockService.Rebuilt.class);
+            discardPending(rebuilt.from(), rebuilt.until(), rebuilt.generation(), new HashMap<>());
+        } catch (IOException e) {
+            log.warn("Aviso de recálculo de otro nodo ilegible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Desde aquí las horas nuevas llevan {@code rebuildGeneration}, y lo pendiente de [from, until)
+     * con una anterior pasa a {@code discarded}
+     */
+    private void discardPending(LocalDateTime from, LocalDateTime until, long rebuildGeneration,
+                                Map<LocalDateTime, HourChanges> discarded) {
+        generation.accumulateAndGet(rebuildGeneration, Math::max);
+        for (LocalDateTime bucket : pending.keySet()) {
+            if (!bucket.isBefore(from) && bucket.isBefore(until)) {
+                pending.computeIfPresent(bucket, (key, changes) -> {
+                    if (changes.generation >= rebuildGeneration) {
+                        return changes;
+                    }
+                    discarded.put(key, changes);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private boolean tryAcquire(Duration lease) {
+        try {
+            return rollupLocks.tryAcquire(RollupLockService.SALES, lockOwner, lease);
+        } catch (RuntimeException e) {
+            // Otro nodo creó la fila del turno a la vez
+            log.warn("No se pudo tomar el turno para recalcular los acumulados de ventas: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void release() {
+        try {
+            rollupLocks.release(RollupLockService.SALES, lockOwner);
+        } catch (RuntimeException e) {
+            log.error("No se pudo liberar el turno de los acumulados de ventas, vencerá solo: {}", e.getMessage());
+        }
+    }
+
+    private void refreshGeneration() {
+        try {
+            generation.accumulateAndGet(rollupLocks.currentGeneration(RollupLockService.SALES), Math::max);
+        } catch (RuntimeException e) {
+            log.error("No se pudo leer la generación de los acumulados de ventas: {}", e.getMessage());
+        }
+    }
+
+    private void publishRebuilt(RollupLockService.Rebuilt rebuilt) {
+        try {
+            relay.publish(REBUILT_DESTINATION, objectMapper.writeValueAsBytes(rebuilt));
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo avisar el recálculo de ventas a otros nodos: {}", e.getMessage());
+        }
+    }
+
+    private void record(LocalDateTime createdAt, Consumer<HourChanges> change) {
+        pending.compute(SalesRollupService.hourOf(createdAt), (bucket, changes) -> {
+            HourChanges current = changes != null ? changes : new HourChanges(generation.get());
+            change.accept(current);
+            return current;
+        });
+    }
+
+    private static BigDecimal amountOf(OrderResponse order) {
+        return order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+    }
+
+    /**
+     * Cambios pendientes de una hora; solo se modifican dentro de {@code pending.compute}
+     */
+    private static final class HourChanges {
+
+        // Última generación de recálculo conocida al registrar el primero de estos cambios
+        private long generation;
+        private long orders;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long cancelled;
+        private BigDecimal cancelledAmount = BigDecimal.ZERO;
+        private final Map<String, Long> quantities = new HashMap<>();
+
+        HourChanges(long generation) {
+            this.generation = generation;
+        }
+
+        boolean hasSales() {
+            return orders != 0 || cancelled != 0 || revenue.signum() != 0 || cancelledAmount.signum() != 0;
+        }
+
+        HourChanges add(HourChanges other) {
+            generation = Math.min(generation, other.generation);
+            orders += other.orders;
+            revenue = revenue.add(other.revenue);
+            cancelled += other.cancelled;
+            cancelledAmount = cancelledAmount.add(other.cancelledAmount);
+            other.quantities.forEach((productId, quantity) -> quantities.merge(productId, quantity, Long::sum));
+            return this;
+        }
+    }
+}
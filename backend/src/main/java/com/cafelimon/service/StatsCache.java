@@ -0,0 +1,348 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.OrderStatusDelta;
+import com.cafelimon.dto.stats.TopProductDTO;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Ventas y productos más vendidos por rango ya calculados, para los resúmenes del panel
+ *
+ * Un rango que terminó antes de calcularse no vuelve a consultarse, siempre que haya terminado
+ * hace más de dos vaciados de {@link SalesRollups} ({@code app.stats.rollup.flush-ms}): antes
+ * sus acumulados pueden no tener aún todas las órdenes. Uno que llega al presente (el día de hoy,
+ * la última semana) suma cada orden creada o cancelada que cae en él, en este nodo o en otro vía
+ * {@link ClusterEventRelay}, y se recalcula cada {@code open-range-ttl-ms} para corregir lo que
+ * no llegue como evento. Una orden eliminada se resta de los rangos que la incluyen, o los descarta
+ * si se eliminó en otro nodo; como los acumulados la restan recién en el siguiente vaciado, un rango
+ * calculado poco después de una eliminación se trata como abierto aunque haya terminado. Si varias
+ * peticiones piden el mismo rango mientras se calcula, esperan ese cálculo en lugar de repetirlo.
+ */
+@Component
+@Slf4j
+public class StatsCache {
+
+    private final ObjectMapper objectMapper;
+    private final ClusterEventRelay relay;
+    private final StatsProperties.Cache properties;
+    private final Duration settleTime;
+
+    private final Map<Range, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Range, CompletableFuture<Sales>> loading = new ConcurrentHashMap<>();
+    // Cambia con cada evento; un cálculo que se cruzó con alguno no se guarda
+    private final AtomicLong changes = new AtomicLong();
+    // Hasta cuándo los acumulados pueden no reflejar aún la última orden eliminada
+    private volatile LocalDateTime unsettledUntil = LocalDateTime.MIN;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter shared;
+
+    /**
+     * Totales y productos de un rango, de más a menos unidades
+     */
+    public record Sales(SalesRollupService.SalesTotals totals, List<TopProductDTO> topProducts) {
+    }
+
+    public StatsCache(ObjectMapper objectMapper, ClusterEventRelay relay, StatsProperties properties,
+                      MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+        this.properties = properties.getCache();
+        // Un vaciado más lo que pueda tardar el siguiente en escribirse
+        this.settleTime = Duration.ofMillis(2 * properties.getRollup().getFlushMs());
+
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.shared = requests(meterRegistry, "shared");
+        Gauge.builder("cafelimon.stats.cache.size", entries, Map::size)
+                .description("Rangos de estadísticas guardados")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ventas del rango, calculándolas con {@code loader} si no están guardadas
+     */
+    public Sales getSales(LocalDateTime startDate, LocalDateTime endDate, Supplier<Sales> loader) {
+        Range range = new Range(startDate, endDate);
+        Entry entry = entries.get(range);
+        if (entry != null && entry.isFresh(properties.getOpenRangeTtlMs())) {
+            hits.increment();
+            return entry.snapshot();
+        }
+
+        CompletableFuture<Sales> load = new CompletableFuture<>();
+        CompletableFuture<Sales> running = loading.putIfAbsent(range, load);
+        if (running != null) {
+            shared.increment();
+            return join(running);
+        }
+        misses.increment();
+        try {
+            long changesBefore = changes.get();
+            LocalDateTime loadStartedAt = LocalDateTime.now();
+            boolean afterDeletion = loadStartedAt.isBefore(unsettledUntil);
+            Entry loaded = new Entry(range, loader.get(), loadStartedAt, settleTime, afterDeletion);
+            if (changes.get() == changesBefore) {
+                store(loaded);
+            }
+            Sales sales = loaded.snapshot();
+            load.complete(sales);
+            return sales;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(range, load);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        if (event.getOrder() != null) {
+            addOrder(event.getOrder(), false);
+        }
+    }
+
+    /**
+     * Al cancelar una orden (o deshacer la cancelación) resta (o suma) su total a las ventas
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        boolean wasCancelled = event.getPreviousStatus() == OrderStatus.CANCELADO;
+        boolean isCancelled = event.getNewStatus() == OrderStatus.CANCELADO;
+        OrderResponse order = event.getOrder();
+        if (wasCancelled == isCancelled || order == null || order.getCreatedAt() == null) {
+            return;
+        }
+        BigDecimal revenueChange = isCancelled ? amountOf(order).negate() : amountOf(order);
+        changes.incrementAndGet();
+        for (Entry entry : entries.values()) {
+            if (entry.range.contains(order.getCreatedAt())) {
+                entry.addRevenue(revenueChange);
+            }
+        }
+    }
+
+    /**
+     * Resta una orden eliminada en este nodo; si se eliminó en otro, el cálculo guardado puede
+     * haberse hecho antes o después, así que se descartan los rangos que la incluyen
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderDeleted(OrderDeletedEvent event) {
+        OrderResponse order = event.getOrder();
+        if (order == null || order.getCreatedAt() == null) {
+            return;
+        }
+        unsettledUntil = LocalDateTime.now().plus(settleTime);
+        changes.incrementAndGet();
+        if (event.isRelayed()) {
+            entries.keySet().removeIf(range -> range.contains(order.getCreatedAt()));
+            return;
+        }
+        for (Entry entry : entries.values()) {
+            if (entry.range.contains(order.getCreatedAt())) {
+                entry.removeOrder(order);
+            }
+        }
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    /**
+     * Aplica las órdenes creadas en otros nodos; sus cancelaciones no traen el total, así que
+     * se descartan los rangos que incluyen la orden
+     *
+     * Una orden de otro nodo llega ya confirmada, así que un cálculo hecho después puede
+     * incluirla: solo se suma a los rangos calculados desde antes de que se creara.
+     */
+    void onRelayedMessage(String destination, byte[] payload) {
+        try {
+            if (WebSocketService.NEW_ORDERS_TOPIC.equals(destination)) {
+                addOrder(objectMapper.readValue(payload, OrderResponse.class), true);
+            } else if (WebSocketService.ORDER_STATUS_TOPIC.equals(destination)) {
+                OrderStatusDelta delta = objectMapper.readValue(payload, OrderStatusDelta.class);
+                boolean cancellation = (delta.getOldStatus() == OrderStatus.CANCELADO)
+                        != (delta.getNewStatus() == OrderStatus.CANCELADO);
+                if (cancellation && delta.getCreatedAt() != null) {
+                    changes.incrementAndGet();
+                    entries.keySet().removeIf(range -> range.contains(delta.getCreatedAt()));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Notificación de otro nodo ilegible en {}: {}", destination, e.getMessage());
+        }
+    }
+
+    private void addOrder(OrderResponse order, boolean relayed) {
+        if (order.getCreatedAt() == null) {
+            return;
+        }
+        changes.incrementAndGet();
+        for (Entry entry : entries.values()) {
+            if (entry.range.contains(order.getCreatedAt())
+                    && !(relayed && order.getCreatedAt().isBefore(entry.loadStartedAt))) {
+                entry.addOrder(order);
+            }
+        }
+    }
+
+    private void store(Entry loaded) {
+        entries.put(loaded.range, loaded);
+        while (entries.size() > properties.getMaxEntries()) {
+            // Sale el calculado hace más tiempo
+            entries.values().stream()
+                    .min(Comparator.comparingLong(entry -> entry.loadedAt))
+                    .ifPresent(oldest -> entries.remove(oldest.range, oldest));
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("cafelimon.stats.cache.requests")
+                .description("Pedidos de estadísticas por rango según si ya estaban calculadas")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static BigDecimal amountOf(OrderResponse order) {
+        return order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+    }
+
+    private static Sales join(CompletableFuture<Sales> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Rango pedido, ambos extremos inclusive como en {@link SalesRollupService}
+     */
+    private record Range(LocalDateTime start, LocalDateTime end) {
+
+        boolean contains(LocalDateTime createdAt) {
+            return !createdAt.isBefore(start) && !createdAt.isAfter(end);
+        }
+    }
+
+    /**
+     * Ventas guardadas de un rango; se modifican solo bajo su propio bloqueo
+     */
+    private static final class Entry {
+
+        private final Range range;
+        private final long loadedAt = System.nanoTime();
+        private final LocalDateTime loadStartedAt;
+        // Llega al presente, terminó hace poco o se calculó justo tras una eliminación: vence
+        private final boolean open;
+        private long orders;
+        private BigDecimal revenue;
+        private final Map<String, TopProductDTO> products = new LinkedHashMap<>();
+
+        Entry(Range range, Sales sales, LocalDateTime loadStartedAt, Duration settleTime, boolean afterDeletion) {
+            this.range = range;
+            this.loadStartedAt = loadStartedAt;
+            this.open = afterDeletion || !range.end().isBefore(loadStartedAt.minus(settleTime));
+            this.orders = sales.totals().orders();
+            this.revenue = sales.totals().revenue();
+            for (TopProductDTO product : sales.topProducts()) {
+                products.put(product.getProductId(), copy(product));
+            }
+        }
+
+        boolean isFresh(long openRangeTtlMs) {
+            return !open || System.nanoTime() - loadedAt < TimeUnit.MILLISECONDS.toNanos(openRangeTtlMs);
+        }
+
+        synchronized void addOrder(OrderResponse order) {
+            orders++;
+            if (order.getStatus() != OrderStatus.CANCELADO) {
+                revenue = revenue.add(amountOf(order));
+            }
+            if (order.getItems() == null) {
+                return;
+            }
+            for (OrderItemResponse item : order.getItems()) {
+                TopProductDTO product = products.computeIfAbsent(item.getProduct().getId(), id -> TopProductDTO.builder()
+                        .productId(id)
+                        .productName(item.getProduct().getName())
+                        .totalQuantity(0L)
+                        .build());
+                product.setTotalQuantity(product.getTotalQuantity() + item.getQuantity());
+            }
+        }
+
+        synchronized void removeOrder(OrderResponse order) {
+            orders--;
+            if (order.getStatus() != OrderStatus.CANCELADO) {
+                revenue = revenue.subtract(amountOf(order));
+            }
+            if (order.getItems() == null) {
+                return;
+            }
+            for (OrderItemResponse item : order.getItems()) {
+                TopProductDTO product = products.get(item.getProduct().getId());
+                if (product != null) {
+                    product.setTotalQuantity(product.getTotalQuantity() - item.getQuantity());
+                    if (product.getTotalQuantity() <= 0) {
+                        products.remove(product.getProductId());
+                    }
+                }
+            }
+        }
+
+        synchronized void addRevenue(BigDecimal amount) {
+            revenue = revenue.add(amount);
+        }
+
+        synchronized Sales snapshot() {
+            return new Sales(new SalesRollupService.SalesTotals(orders, revenue), products.values().stream()
+                    .map(Entry::copy)
+                    .sorted(Comparator.comparing(TopProductDTO::getTotalQuantity).reversed()
+                            .thenComparing(TopProductDTO::getProductName, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .toList());
+        }
+
+        private static TopProductDTO copy(TopProductDTO product) {
+            return TopProductDTO.builder()
+                    .productId(product.getProductId())
+                    .productName(product.getProductName())
+                    .totalQuantity(product.getTotalQuantity())
+                    .build();
+        }
+    }
+}
@@ -1,86 +1,181 @@
 package com.cafelimon.service;
 
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
 import com.cafelimon.dto.stats.StatsResponse;
+import com.cafelimon.dto.stats.StatusCountsResponse;
 import com.cafelimon.dto.stats.TopProductDTO;
-import com.cafelimon.model.OrderStatus;
-import com.cafelimon.repository.OrderItemRepository;
-import com.cafelimon.repository.OrderRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Servicio para estadísticas y reportes
+ *
+ * Órdenes, ingresos y productos más vendidos de un rango salen de los acumulados por hora
+ * de {@link SalesRollupService}; los conteos por estado reflejan el momento actual y salen de
+ * {@link OrderStatusCounters} sin consultar la base de datos, y los tiempos de preparación de los
+ * histogramas en memoria de {@link PreparationTimeHistograms}.
+ *
+ * Las consultas de {@link #getStats} no dependen entre sí: cada una corre en su propia
+ * transacción de solo lectura en un executor acotado ({@code app.stats.executor}), así la
+ * respuesta tarda lo que la más lenta y no la suma de todas. Con la cola llena la consulta
+ * corre en el hilo de la petición. Tiempo de cada una en {@code cafelimon.stats.query}.
+ * Solo se consultan cuando {@link StatsCache} no tiene ya el resultado del rango.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
-@Transactional(readOnly = true)
 public class StatsService {
 
-    private final OrderRepository orderRepository;
-    private final OrderItemRepository orderItemRepository;
+    private final SalesRollupService salesRollupService;
+    private final OrderStatusCounters orderStatusCounters;
+    private final PreparationTimeHistograms preparationTimeHistograms;
+    private final StatsCache statsCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+    @Nullable
+    private final ThreadPoolExecutor executor;  // null: consultas una tras otra en el hilo de la petición
 
-    public StatsResponse getStats(LocalDateTime startDate, LocalDateTime endDate) {
-        log.info("Obteniendo estadísticas desde {} hasta {}", startDate, endDate);
-
-        Long totalOrders = orderRepository.findByDateRange(startDate, endDate).stream().count();
-        Long pendingOrders = orderRepository.countByStatus(OrderStatus.PENDING);
-        Long preparingOrders = orderRepository.countByStatus(OrderStatus.EN_PREPARACION);
-        Long readyOrders = orderRepository.countByStatus(OrderStatus.LISTO);
+    public StatsService(SalesRollupService salesRollupService, OrderStatusCounters orderStatusCounters,
+                        PreparationTimeHistograms preparationTimeHistograms, StatsCache statsCache,
+                        PlatformTransactionManager transactionManager, StatsProperties properties,
+                        MeterRegistry meterRegistry) {
+        this.salesRollupService = salesRollupService;
+        this.orderStatusCounters = orderStatusCounters;
+        this.preparationTimeHistograms = preparationTimeHistograms;
+        this.statsCache = statsCache;
+        this.meterRegistry = meterRegistry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
 
-        Double totalRevenue = orderRepository.getTotalRevenueByDateRange(startDate, endDate);
-        BigDecimal revenue = totalRevenue != null ? BigDecimal.valueOf(totalRevenue) : BigDecimal.ZERO;
+        StatsProperties.Executor pool = properties.getExecutor();
+        if (pool.getThreads() > 0) {
+            this.executor = new ThreadPoolExecutor(pool.getThreads(), pool.getThreads(),
+                    0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(pool.getQueueCapacity()),
+                    new CustomizableThreadFactory("stats-"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            Gauge.builder("cafelimon.stats.queue.size", executor, queued -> queued.getQueue().size())
+                    .description("Consultas de estadísticas en espera")
+                    .register(meterRegistry);
+        } else {
+            this.executor = null;
+        }
+    }
 
-        Double avgPreparationTime = orderRepository.getAveragePreparationTimeInMinutes();
-        Double preparationTime = avgPreparationTime != null ? avgPreparationTime : 0.0;
+    public StatsResponse getStats(LocalDateTime startDate, LocalDateTime endDate) {
+        log.info("Obteniendo estadísticas desde {} hasta {}", startDate, endDate);
 
-        List<TopProductDTO> topProducts = getTopSellingProducts(startDate, endDate);
+        StatsCache.Sales sales = statsCache.getSales(startDate, endDate, () -> loadSales(startDate, endDate));
+        StatusCountsResponse statusCounts = orderStatusCounters.getCounts();
 
         return StatsResponse.builder()
-                .totalOrders(totalOrders)
-                .pendingOrders(pendingOrders)
-                .preparingOrders(preparingOrders)
-                .readyOrders(readyOrders)
-                .totalRevenue(revenue)
-                .averagePreparationTime(preparationTime)
-                .topProducts(topProducts)
+                .totalOrders(sales.totals().orders())
+                .pendingOrders(statusCounts.getPendingOrders())
+                .preparingOrders(statusCounts.getPreparingOrders())
+                .readyOrders(statusCounts.getReadyOrders())
+                .totalRevenue(sales.totals().revenue())
+                .averagePreparationTime(preparationTimeHistograms.getAveragePreparationMinutes())
+                .topProducts(sales.topProducts())
                 .build();
     }
 
+    public StatusCountsResponse getStatusCounts() {
+        return orderStatusCounters.getCounts();
+    }
+
+    /**
+     * Percentiles de preparación y entrega de todas las órdenes, por producto, categoría y hora
+     */
+    public PreparationTimesResponse getPreparationTimes() {
+        return preparationTimeHistograms.getPreparationTimes();
+    }
+
     public List<TopProductDTO> getTopSellingProducts(LocalDateTime startDate, LocalDateTime endDate) {
         log.info("Obteniendo productos más vendidos desde {} hasta {}", startDate, endDate);
 
-        return orderItemRepository.getTopSellingProducts(startDate, endDate).stream()
-                .map(result -> TopProductDTO.builder()
-                        .productId((String) result[0])
-                        .productName((String) result[1])
-                        .totalQuantity((Long) result[2])
-                        .build())
-                .collect(Collectors.toList());
+        return salesRollupService.getTopProducts(startDate, endDate);
     }
 
     public StatsResponse getTodayStats() {
-        LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime endOfDay = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
-        return getStats(startOfDay, endOfDay);
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        return getStats(startOfDay, lastMicroBefore(startOfDay.plusDays(1)));
     }
 
     public StatsResponse getWeekStats() {
-        LocalDateTime startOfWeek = LocalDateTime.now().minusDays(7);
-        LocalDateTime now = LocalDateTime.now();
-        return getStats(startOfWeek, now);
+        return getStatsForLastDays(7);
     }
 
     public StatsResponse getMonthStats() {
-        LocalDateTime startOfMonth = LocalDateTime.now().minusDays(30);
-        LocalDateTime now = LocalDateTime.now();
-        return getStats(startOfMonth, now);
+        return getStatsForLastDays(30);
+    }
+
+    /**
+     * Los últimos días hasta el final de la hora en curso; el rango no cambia durante la hora,
+     * así las consultas repetidas del panel usan el resultado guardado en {@link StatsCache}
+     */
+    private StatsResponse getStatsForLastDays(int days) {
+        LocalDateTime nextHour = SalesRollupService.hourOf(LocalDateTime.now()).plusHours(1);
+        return getStats(nextHour.minusHours(1).minusDays(days), lastMicroBefore(nextHour));
+    }
+
+    private static LocalDateTime lastMicroBefore(LocalDateTime dateTime) {
+        return dateTime.minus(1, ChronoUnit.MICROS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private StatsCache.Sales loadSales(LocalDateTime startDate, LocalDateTime endDate) {
+        CompletableFuture<SalesRollupService.SalesTotals> totals = query("totals",
+                () -> salesRollupService.getTotals(startDate, endDate));
+        CompletableFuture<List<TopProductDTO>> topProducts = query("top-products",
+                () -> getTopSellingProducts(startDate, endDate));
+        return new StatsCache.Sales(join(totals), join(topProducts));
+    }
+
+    private <T> CompletableFuture<T> query(String name, Supplier<T> query) {
+        Timer timer = Timer.builder("cafelimon.stats.query")
+                .description("Tiempo de cada consulta de estadísticas")
+                .tag("aggregate", name)
+                .register(meterRegistry);
+        Supplier<T> task = () -> timer.record(() -> readOnlyTransaction.execute(status -> query.get()));
+        if (executor == null) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 }
@@ -3,11 +3,13 @@ package com.cafelimon.service;
 import com.cafelimon.dto.table.QRCodeResponse;
 import com.cafelimon.dto.table.TableRequest;
 import com.cafelimon.dto.table.TableResponse;
+import com.cafelimon.event.TableChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Table;
 import com.cafelimon.repository.TableRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -25,6 +27,7 @@ public class TableService {
 
     private final TableRepository tableRepository;
     private final QRCodeService qrCodeService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<TableResponse> getAllTables() {
         return tableRepository.findAll().stream()
@@ -92,6 +95,7 @@ public class TableService {
 
         table = tableRepository.save(table);
         log.info("Mesa actualizada: {}", table.getId());
+        eventPublisher.publishEvent(new TableChangedEvent(table.getId()));
 
         return toResponse(table);
     }
@@ -101,6 +105,7 @@ public class TableService {
         Table table = findTableById(id);
         tableRepository.delete(table);
         log.info("Mesa eliminada: {}", id);
+        eventPublisher.publishEvent(new TableChangedEvent(id));
     }
 
     public QRCodeResponse regenerateQRCode(String id) {
@@ -136,6 +141,22 @@ public class TableService {
                 .orElseThrow(() -> new ResourceNotFoundException("Mesa no encontrada con ID: " + id));
     }
 
+    /**
+     * Convierte una mesa ya cargada sin su código QR, para incluirla en otras respuestas
+     * (por ejemplo, en cada orden) sin consultarla de nuevo ni enviar la imagen
+     */
+    public TableResponse toSummary(Table table) {
+        return TableResponse.builder()
+                .id(table.getId())
+                .number(table.getNumber())
+                .capacity(table.getCapacity())
+                .location(table.getLocation())
+                .active(table.getActive())
+                .createdAt(table.getCreatedAt())
+                .updatedAt(table.getUpdatedAt())
+                .build();
+    }
+
     private TableResponse toResponse(Table table) {
         return TableResponse.builder()
                 .id(table.getId())
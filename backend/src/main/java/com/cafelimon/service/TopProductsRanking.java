@@ -0,0 +1,186 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.OrderCreatedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Ranking en memoria de los productos más pedidos
+ *
+ * Mantiene solo los primeros {@code capacity} productos en un conjunto ordenado y publica
+ * una lista inmutable, de modo que leer el ranking no consulta la base de datos. Como los
+ * contadores solo crecen, un producto fuera del ranking únicamente puede entrar al recibir
+ * un pedido, y en ese momento se compara con el último. Al cargar se parte del valor
+ * persistido más los pedidos que {@link ProductOrderCounters} aún no escribió, leídos sin que
+ * se vacíe nada entre ambas lecturas.
+ */
+@Component
+@Slf4j
+public class TopProductsRanking {
+
+    private static final Comparator<Ranked> ORDER = Comparator.comparingLong(Ranked::count).reversed()
+            .thenComparing(Ranked::name)
+            .thenComparing(Ranked::id);
+
+    private final ProductService productService;
+    private final ProductOrderCounters orderCounters;
+    private final int capacity;
+
+    private final Object lock = new Object();
+    private final Map<String, ProductResponse> catalog = new HashMap<>();
+    private final Map<String, Long> counts = new HashMap<>();
+    private final NavigableSet<Ranked> top = new TreeSet<>(ORDER);
+    private volatile List<ProductResponse> ranking;
+
+    public TopProductsRanking(ProductService productService, ProductOrderCounters orderCounters,
+                              @Value("${app.products.top-capacity:50}") int capacity) {
+        this.productService = productService;
+        this.orderCounters = orderCounters;
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Retorna los productos más pedidos, como máximo {@code limit} y nunca más que la capacidad
+     */
+    public List<ProductResponse> getTopProducts(int limit) {
+        List<ProductResponse> current = ranking;
+        if (current == null) {
+            synchronized (lock) {
+                if (ranking == null) {
+                    reload();
+                }
+                current = ranking;
+            }
+        }
+        return current.subList(0, Math.min(Math.max(limit, 0), current.size()));
+    }
+
+    /**
+     * Pedidos actuales de cada producto indicado, incluidos los que aún no se escribieron
+     */
+    public Map<String, Long> getOrderCounts(Collection<String> productIds) {
+        synchronized (lock) {
+            if (ranking == null) {
+                reload();
+            }
+            Map<String, Long> result = new HashMap<>();
+            for (String productId : productIds) {
+                result.put(productId, counts.getOrDefault(productId, 0L));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Suma un pedido a cada producto indicado (uno por ítem) y actualiza el ranking
+     */
+    public void recordOrdered(Collection<String> productIds) {
+        synchronized (lock) {
+            if (ranking == null) {
+                // Aún no se cargó: la próxima lectura toma los contadores desde la base
+                return;
+            }
+            boolean changed = false;
+            for (String productId : productIds) {
+                changed |= increment(productId);
+            }
+            if (changed) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Suma los pedidos de una orden una vez confirmada su transacción
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        recordOrdered(event.getProductIds());
+    }
+
+    /**
+     * Descarta el ranking cuando cambia el catálogo; se recarga en la siguiente lectura
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        synchronized (lock) {
+            ranking = null;
+        }
+    }
+
+    private boolean increment(String productId) {
+        ProductResponse product = catalog.get(productId);
+        if (product == null) {
+            return false;
+        }
+        long previous = counts.getOrDefault(productId, 0L);
+        Ranked updated = new Ranked(productId, nameOf(product), previous + 1);
+        counts.put(productId, updated.count());
+
+        if (top.remove(new Ranked(productId, updated.name(), previous)) || top.size() < capacity) {
+            top.add(updated);
+            return true;
+        }
+        if (ORDER.compare(updated, top.last()) < 0) {
+            top.pollLast();
+            top.add(updated);
+            return true;
+        }
+        return false;
+    }
+
+    private void reload() {
+        catalog.clear();
+        counts.clear();
+        top.clear();
+        // Lo persistido y lo pendiente se leen sin un vaciado entre medio
+        Map<String, Long> current = new HashMap<>();
+        List<ProductResponse> products = orderCounters.withoutFlushing(() -> {
+            List<ProductResponse> all = productService.getAllProducts();
+            for (ProductResponse product : all) {
+                current.put(product.getId(), orderCounters.currentCount(product.getId(), product.getOrderCount()));
+            }
+            return all;
+        });
+        for (ProductResponse product : products) {
+            long count = current.get(product.getId());
+            catalog.put(product.getId(), product);
+            counts.put(product.getId(), count);
+            top.add(new Ranked(product.getId(), nameOf(product), count));
+            if (top.size() > capacity) {
+                top.pollLast();
+            }
+        }
+        publish();
+        log.debug("Ranking de productos cargado: {} de {} productos", top.size(), catalog.size());
+    }
+
+    private void publish() {
+        ranking = top.stream()
+                .map(ranked -> catalog.get(ranked.id()).toBuilder().orderCount(ranked.count()).build())
+                .toList();
+    }
+
+    private static String nameOf(ProductResponse product) {
+        return product.getName() == null ? "" : product.getName();
+    }
+
+    private record Ranked(String id, String name, long count) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Historial acotado de los mensajes WebSocket enviados, por destino
+ *
+ * Cada destino numera sus mensajes desde 1 y guarda los últimos en un buffer circular, así
+ * un cliente que perdió la conexión puede pedir lo que se envió después de su último número.
+ * La numeración se reinicia con la aplicación; {@link #getEpoch()} identifica cada arranque
+ * para que el cliente sepa cuándo sus números ya no valen.
+ */
+@Component
+public class WebSocketEventLog {
+
+    private final int capacity;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, TopicBuffer> topics = new ConcurrentHashMap<>();
+
+    public WebSocketEventLog(WebSocketProperties properties) {
+        this.capacity = properties.getReplay().getBufferSize();
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Asigna el siguiente número del destino, guarda el payload y lo entrega a {@code send};
+     * retorna el mensaje guardado
+     *
+     * Todo ocurre bajo el bloqueo del destino, de modo que los mensajes salen en el mismo
+     * orden en que se numeran aunque se publiquen desde varios hilos.
+     */
+    public Entry append(String destination, LongFunction<byte[]> payload, ObjLongConsumer<byte[]> send) {
+        return topics.computeIfAbsent(destination, d -> new TopicBuffer(capacity)).append(payload, send);
+    }
+
+    /**
+     * Último número asignado en el destino, o 0 si aún no se envió nada
+     */
+    public long currentSeq(String destination) {
+        TopicBuffer buffer = topics.get(destination);
+        return buffer == null ? 0L : buffer.currentSeq();
+    }
+
+    /**
+     * Retorna los mensajes posteriores a {@code since}, o vacío si alguno ya salió del buffer
+     */
+    public Optional<List<Entry>> eventsSince(String destination, long since) {
+        TopicBuffer buffer = topics.get(destination);
+        if (buffer == null) {
+            return since == 0 ? Optional.of(List.of()) : Optional.empty();
+        }
+        return buffer.eventsSince(since);
+    }
+
+    public record Entry(long seq, byte[] payload) {
+    }
+
+    private static final class TopicBuffer {
+
+        private final Entry[] entries;
+        private long lastSeq;
+
+        TopicBuffer(int capacity) {
+            this.entries = new Entry[capacity];
+        }
+
+        synchronized Entry append(LongFunction<byte[]> payload, ObjLongConsumer<byte[]> send) {
+            long seq = lastSeq + 1;
+            Entry entry = new Entry(seq, payload.apply(seq));
+            entries[slot(seq)] = entry;
+            lastSeq = seq;
+            send.accept(entry.payload(), seq);
+            return entry;
+        }
+
+        synchronized long currentSeq() {
+            return lastSeq;
+        }
+
+        synchronized Optional<List<Entry>> eventsSince(long since) {
+            long oldest = Math.max(1, lastSeq - entries.length + 1);
+            if (since < oldest - 1 || since > lastSeq) {
+                return Optional.empty();
+            }
+            List<Entry> result = new ArrayList<>((int) (lastSeq - since));
+            for (long seq = since + 1; seq <= lastSeq; seq++) {
+                result.add(entries[slot(seq)]);
+            }
+            return Optional.of(result);
+        }
+
+        private int slot(long seq) {
+            return (int) ((seq - 1) % entries.length);
+        }
+    }
+}
@@ -1,51 +1,230 @@
 package com.cafelimon.service;
 
+import com.cafelimon.config.WebSocketProperties;
 import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.OrderStatusDelta;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongFunction;
 
 /**
  * Servicio para enviar notificaciones WebSocket
+ *
+ * Todos los mensajes pasan por {@link WebSocketEventLog}: llevan en las cabeceras STOMP
+ * {@code seq} (número del mensaje en su destino) y {@code epoch} (arranque de la aplicación),
+ * y quedan disponibles para reenviarse con GET /api/events/replay. Lo publicado aquí se
+ * reenvía a los demás nodos con {@link ClusterEventRelay}, y lo que llega de ellos se publica
+ * a los suscriptores locales con la numeración de este nodo. Lo de cada mesa llega también a sus
+ * conexiones SSE por {@link OrderStreamRegistry}.
+ *
+ * Métricas: {@code cafelimon.websocket.publish} (mensajes y tiempo de envío al broker por destino)
+ * y {@code cafelimon.websocket.serialization} (tiempo de serialización por tipo de payload).
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class WebSocketService {
 
+    public static final String NEW_ORDERS_TOPIC = "/topic/orders/new";
+    public static final String ORDER_UPDATES_TOPIC = "/topic/orders/updates";
+    public static final String ORDER_STATUS_TOPIC = "/topic/orders/status";
+    public static final String KITCHEN_TOPIC = "/topic/kitchen/orders";
+    public static final String STATUS_COUNTS_TOPIC = "/topic/stats/status-counts";
+    public static final String SEQ_HEADER = "seq";
+    public static final String EPOCH_HEADER = "epoch";
+    public static final String TABLE_TOPIC_PATTERN = "/topic/tables/{id}/orders";
+
+    private static final Set<String> KNOWN_TOPICS =
+            Set.of(NEW_ORDERS_TOPIC, ORDER_UPDATES_TOPIC, ORDER_STATUS_TOPIC, KITCHEN_TOPIC, STATUS_COUNTS_TOPIC);
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final WebSocketProperties properties;
+    private final WebSocketEventLog eventLog;
+    private final ClusterEventRelay relay;
+    private final MeterRegistry meterRegistry;
+    private final OrderStreamRegistry orderStreams;
+    private final Map<String, Timer> publishTimers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Timer> serializationTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Serializa el payload a JSON una sola vez para poder enviarlo a varios destinos
+     */
+    public Message<byte[]> toMessage(Object payload) {
+        return MessageBuilder.withPayload(serialize(payload)).build();
+    }
 
     /**
-     * Notifica una nueva orden a todos los usuarios conectados
+     * Publica el mismo payload ya serializado en cada destino, sin volver a convertirlo
      */
-    public void notifyNewOrder(OrderResponse order) {
+    public void broadcast(Message<byte[]> message, Collection<String> destinations) {
+        for (String destination : destinations) {
+            publish(destination, message.getPayload());
+        }
+    }
+
+    /**
+     * Notifica una nueva orden al panel, a cocina y a su mesa con un único JSON
+     */
+    public void notifyOrderCreated(String tableId, OrderResponse order) {
         log.info("Enviando notificación de nueva orden: {}", order.getId());
-        messagingTemplate.convertAndSend("/topic/orders/new", order);
+        broadcast(toMessage(order), List.of(NEW_ORDERS_TOPIC, KITCHEN_TOPIC, tableTopic(tableId)));
     }
 
     /**
-     * Notifica actualización de estado de orden
+     * Notifica el cambio de estado de una orden: un delta compacto en /topic/orders/status y la
+     * orden completa a su mesa (y a /topic/orders/updates mientras siga habilitado)
      */
-    public void notifyOrderStatusUpdate(OrderResponse order) {
+    public void notifyOrderStatusChanged(String tableId, OrderStatus previousStatus, OrderResponse order) {
         log.info("Enviando notificación de actualización de orden: {} - Estado: {}",
                 order.getId(), order.getStatus());
-        messagingTemplate.convertAndSend("/topic/orders/updates", order);
+        // El seq del delta es el mismo que su cabecera en /topic/orders/status
+        publish(ORDER_STATUS_TOPIC, seq -> serialize(toStatusDelta(seq, tableId, previousStatus, order)));
+        if (properties.isFullStatusUpdates()) {
+            broadcast(toMessage(order), List.of(ORDER_UPDATES_TOPIC, tableTopic(tableId)));
+        } else {
+            publish(tableTopic(tableId), serialize(order));
+        }
     }
 
     /**
-     * Notifica actualización de orden a una mesa específica
+     * Publica la cantidad de órdenes por estado; no se reenvía a otros nodos porque cada uno
+     * publica sus propios contadores
      */
-    public void notifyOrderUpdateToTable(String tableId, OrderResponse order) {
-        log.info("Enviando notificación de orden a mesa {}: {}", tableId, order.getId());
-        messagingTemplate.convertAndSend("/topic/tables/" + tableId + "/orders", order);
+    public void notifyStatusCounts(StatusCountsResponse counts) {
+        publishLocally(STATUS_COUNTS_TOPIC, seq -> serialize(counts));
+    }
+
+    public static String tableTopic(String tableId) {
+        return "/topic/tables/" + tableId + "/orders";
     }
 
     /**
-     * Notifica a la cocina sobre una nueva orden
+     * Destino para etiquetar métricas: las mesas se agrupan en uno solo y los desconocidos en "other"
      */
-    public void notifyKitchen(OrderResponse order) {
-        log.info("Notificando cocina sobre orden: {}", order.getId());
-        messagingTemplate.convertAndSend("/topic/kitchen/orders", order);
+    public static String metricDestination(String destination) {
+        if (destination.startsWith("/topic/tables/") && destination.endsWith("/orders")) {
+            return TABLE_TOPIC_PATTERN;
+        }
+        return KNOWN_TOPICS.contains(destination) ? destination : "other";
+    }
+
+    /**
+     * Publica a los suscriptores de este nodo un mensaje enviado por otro nodo
+     */
+    void onRelayedMessage(String destination, byte[] payload) {
+        if (destination.startsWith(ClusterEventRelay.INTERNAL_PREFIX)) {
+            return;
+        }
+        if (ORDER_STATUS_TOPIC.equals(destination)) {
+            // El seq del delta se renumera con el historial de este nodo
+            OrderStatusDelta delta = deserialize(payload, OrderStatusDelta.class);
+            publishLocally(destination, seq -> {
+                delta.setSeq(seq);
+                return serialize(delta);
+            });
+        } else {
+            publishLocally(destination, seq -> payload);
+        }
+    }
+
+    @PostConstruct
+    void subscribeToRelay() {
+        relay.subscribe(this::onRelayedMessage);
+    }
+
+    private void publish(String destination, byte[] payload) {
+        publish(destination, seq -> payload);
+    }
+
+    private void publish(String destination, LongFunction<byte[]> payload) {
+        // El relay se llama fuera del bloqueo del destino: otro nodo puede estar publicando hacia este
+        WebSocketEventLog.Entry entry = publishLocally(destination, payload);
+        relay.publish(destination, entry.payload());
+    }
+
+    private WebSocketEventLog.Entry publishLocally(String destination, LongFunction<byte[]> payload) {
+        return eventLog.append(destination, payload, (bytes, seq) -> send(destination, bytes, seq));
+    }
+
+    private void send(String destination, byte[] payload, long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setNativeHeader(SEQ_HEADER, Long.toString(seq));
+        accessor.setNativeHeader(EPOCH_HEADER, eventLog.getEpoch());
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+        publishTimer(destination).record(() -> messagingTemplate.send(destination, message));
+        orderStreams.publish(destination, seq, payload);
+    }
+
+    private Timer publishTimer(String destination) {
+        return publishTimers.computeIfAbsent(destination, key -> Timer.builder("cafelimon.websocket.publish")
+                .description("Mensajes entregados al broker y tiempo hasta encolarlos para cada sesión")
+                .tag("destination", metricDestination(key))
+                .register(meterRegistry));
+    }
+
+    private Timer serializationTimer(Class<?> type) {
+        return serializationTimers.computeIfAbsent(type, key -> Timer.builder("cafelimon.websocket.serialization")
+                .description("Tiempo de serialización a JSON de los mensajes WebSocket")
+                .tag("type", key.getSimpleName())
+                .register(meterRegistry));
+    }
+
+    private <T> T deserialize(byte[] payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (IOException e) {
+            throw new MessageConversionException("No se pudo leer " + type.getSimpleName(), e);
+        }
+    }
+
+    private byte[] serialize(Object payload) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return objectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("No se pudo serializar " + payload.getClass().getSimpleName(), e);
+        } finally {
+            sample.stop(serializationTimer(payload.getClass()));
+        }
+    }
+
+    private OrderStatusDelta toStatusDelta(long seq, String tableId, OrderStatus previousStatus,
+                                           OrderResponse order) {
+        return OrderStatusDelta.builder()
+                .seq(seq)
+                .orderId(order.getId())
+                .tableId(tableId)
+                .oldStatus(previousStatus)
+                .newStatus(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .readyAt(order.getReadyAt())
+                .deliveredAt(order.getDeliveredAt())
+                .updatedAt(order.getUpdatedAt())
+                .build();
     }
 }
@@ -0,0 +1,189 @@
+package com.cafelimon.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.AbstractMessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Métricas de las sesiones WebSocket y de sus canales
+ *
+ * Las sesiones que superan {@code send-time-limit-ms} o {@code send-buffer-size-limit} las cierra
+ * Spring con {@link CloseStatus#SESSION_NOT_RELIABLE}; aquí se cuentan como desalojadas. Los
+ * pools de clientInboundChannel y clientOutboundChannel ya se publican como {@code executor.*}
+ * (la cola de salida es {@code executor.queued{name=clientOutboundChannelExecutor}}).
+ * Las suscripciones se cuentan por destino, con las mesas agrupadas como en {@link WebSocketService}.
+ */
+@Component
+@Slf4j
+public class WebSocketSessionMonitor implements WebSocketHandlerDecoratorFactory {
+
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private final Counter evicted;
+    private final Counter heartbeatsSent;
+    private final Counter heartbeatsMissed;
+    private final MeterRegistry meterRegistry;
+    // sesión -> (id de suscripción -> destino de métricas)
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> subscriptionsByDestination = new ConcurrentHashMap<>();
+
+    public WebSocketSessionMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("cafelimon.websocket.sessions.open", openSessions, AtomicInteger::get)
+                .description("Sesiones WebSocket abiertas")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("cafelimon.websocket.sessions.evicted")
+                .description("Sesiones cerradas por superar el tiempo o el buffer de envío")
+                .register(meterRegistry);
+        this.heartbeatsSent = Counter.builder("cafelimon.websocket.heartbeats.sent")
+                .description("Heartbeats enviados por el broker a los clientes")
+                .register(meterRegistry);
+        this.heartbeatsMissed = Counter.builder("cafelimon.websocket.heartbeats.missed")
+                .description("Sesiones desconectadas por el broker al dejar de recibir sus heartbeats")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                openSessions.incrementAndGet();
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                openSessions.decrementAndGet();
+                if (closeStatus.equalsCode(CloseStatus.SESSION_NOT_RELIABLE)) {
+                    evicted.increment();
+                    log.warn("Sesión WebSocket {} cerrada por cliente lento: {}", session.getId(),
+                            closeStatus.getReason());
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Interceptor de clientInboundChannel: lleva las suscripciones por destino y cuenta los rechazos
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return new RejectionCounter() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                if (type == null || sessionId == null) {
+                    return message;
+                }
+                switch (type) {
+                    case SUBSCRIBE -> subscribed(sessionId,
+                            SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()),
+                            SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+                    case UNSUBSCRIBE -> unsubscribed(sessionId,
+                            SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()));
+                    case DISCONNECT -> disconnected(sessionId);
+                    default -> { }
+                }
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Interceptor de clientOutboundChannel: cuenta heartbeats, desconexiones por heartbeat y rechazos
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return new RejectionCounter() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+                if (type == SimpMessageType.HEARTBEAT) {
+                    heartbeatsSent.increment();
+                } else if (type == SimpMessageType.DISCONNECT_ACK
+                        && message.getHeaders().get(SimpMessageHeaderAccessor.DISCONNECT_MESSAGE_HEADER) == null) {
+                    // Sin DISCONNECT del cliente: el broker cerró la sesión por falta de heartbeats
+                    heartbeatsMissed.increment();
+                }
+                return message;
+            }
+        };
+    }
+
+    void subscribed(String sessionId, @Nullable String subscriptionId, @Nullable String destination) {
+        if (subscriptionId == null || destination == null) {
+            return;
+        }
+        String metricDestination = WebSocketService.metricDestination(destination);
+        String previous = subscriptionsBySession.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, metricDestination);
+        if (previous != null) {
+            subscriptionCount(previous).decrementAndGet();
+        }
+        subscriptionCount(metricDestination).incrementAndGet();
+    }
+
+    void unsubscribed(String sessionId, @Nullable String subscriptionId) {
+        Map<String, String> subscriptions = subscriptionsBySession.get(sessionId);
+        if (subscriptions == null || subscriptionId == null) {
+            return;
+        }
+        String destination = subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            subscriptionCount(destination).decrementAndGet();
+        }
+    }
+
+    void disconnected(String sessionId) {
+        // Llega tanto con el DISCONNECT del cliente como al cerrarse la conexión
+        Map<String, String> subscriptions = subscriptionsBySession.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(destination -> subscriptionCount(destination).decrementAndGet());
+        }
+    }
+
+    private AtomicInteger subscriptionCount(String destination) {
+        return subscriptionsByDestination.computeIfAbsent(destination, key -> {
+            AtomicInteger count = new AtomicInteger();
+            Gauge.builder("cafelimon.websocket.subscriptions", count, AtomicInteger::get)
+                    .description("Suscripciones activas por destino")
+                    .tag("destination", key)
+                    .register(meterRegistry);
+            return count;
+        });
+    }
+
+    private class RejectionCounter implements ChannelInterceptor {
+
+        @Override
+        public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent,
+                                        @Nullable Exception ex) {
+            if (ex != null) {
+                meterRegistry.counter("cafelimon.websocket.messages.rejected", "channel", channelName(channel))
+                        .increment();
+            }
+        }
+    }
+
+    private static String channelName(MessageChannel channel) {
+        return channel instanceof AbstractMessageChannel named ? named.getBeanName() : channel.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cafelimon.controller;
+
+import com.cafelimon.dto.websocket.TopicEvent;
+import com.cafelimon.dto.websocket.TopicReplayResponse;
+import com.cafelimon.exception.GlobalExceptionHandler;
+import com.cafelimon.service.EventReplayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private EventReplayService eventReplayService;
+
+    @InjectMocks
+    private EventController eventController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(eventController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void replay_ShouldReturnMissedMessagesWithRawPayload() throws Exception {
+        TopicReplayResponse replay = TopicReplayResponse.builder()
+                .topic("/topic/kitchen/orders")
+                .epoch("abc")
+                .sinceSeq(4L)
+                .currentSeq(5L)
+                .events(List.of(new TopicEvent(5L, "{\"id\":\"order-1\"}")))
+                .build();
+        when(eventReplayService.replay("/topic/kitchen/orders", 4L, "abc")).thenReturn(replay);
+
+        mockMvc.perform(get("/api/events/replay")
+                        .param("topic", "/topic/kitchen/orders")
+                        .param("since", "4")
+                        .param("epoch", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data.currentSeq").value(5))
+                .andExpect(jsonPath("$.data.snapshotRequired").value(false))
+                .andExpect(jsonPath("$.data.events[0].seq").value(5))
+                .andExpect(jsonPath("$.data.events[0].payload.id").value("order-1"));
+    }
+
+    @Test
+    void replay_WithUnknownTopic_ShouldReturnBadRequest() throws Exception {
+        when(eventReplayService.replay("/topic/otro", 0L, null))
+                .thenThrow(new IllegalArgumentException("Tópico sin historial de mensajes: /topic/otro"));
+
+        mockMvc.perform(get("/api/events/replay").param("topic", "/topic/otro"))
+                .andExpect(status().isBadRequest());
+    }
+}
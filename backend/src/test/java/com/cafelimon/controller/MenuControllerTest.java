@@ -1,25 +1,36 @@
 package com.cafelimon.controller;
 
 import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.menu.MenuChange;
+import com.cafelimon.dto.menu.MenuChangesResponse;
 import com.cafelimon.dto.menu.MenuResponse;
 import com.cafelimon.dto.product.ProductResponse;
 import com.cafelimon.exception.GlobalExceptionHandler;
 import com.cafelimon.service.MenuService;
+import com.cafelimon.service.MenuSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,6 +48,8 @@ class MenuControllerTest {
 
     private MenuResponse menuResponse;
 
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
     @BeforeEach
     void setUp() {
         mockMvc = MockMvcBuilders.standaloneSetup(menuController)
@@ -65,16 +78,18 @@ class MenuControllerTest {
 
     @Test
     void getFullMenu_ShouldReturnMenu() throws Exception {
-        when(menuService.getFullMenu()).thenReturn(menuResponse);
+        when(menuService.getSnapshot()).thenReturn(MenuSnapshot.of("e1", 1L, menuResponse, objectMapper));
 
         mockMvc.perform(get("/api/menu"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true))
                 .andExpect(jsonPath("$.data").exists())
                 .andExpect(jsonPath("$.data.categories").isArray())
-                .andExpect(jsonPath("$.data.products").isArray());
+                .andExpect(jsonPath("$.data.products").isArray())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string("X-Menu-Version", "e1.1"));
 
-        verify(menuService, times(1)).getFullMenu();
+        verify(menuService, times(1)).getSnapshot();
     }
 
     @Test
@@ -85,7 +100,7 @@ class MenuControllerTest {
                 .productsByCategory(new HashMap<>())
                 .build();
 
-        when(menuService.getFullMenu()).thenReturn(emptyMenu);
+        when(menuService.getSnapshot()).thenReturn(MenuSnapshot.of("e1", 1L, emptyMenu, objectMapper));
 
         mockMvc.perform(get("/api/menu"))
                 .andExpect(status().isOk())
@@ -94,6 +109,109 @@ class MenuControllerTest {
                 .andExpect(jsonPath("$.data.products").isEmpty());
     }
 
+    @Test
+    void getFullMenu_WithMatchingETag_ShouldReturnNotModified() throws Exception {
+        MenuSnapshot snapshot = MenuSnapshot.of("e1", 3L, menuResponse, objectMapper);
+        when(menuService.getSnapshot()).thenReturn(snapshot);
+
+        mockMvc.perform(get("/api/menu").header(HttpHeaders.IF_NONE_MATCH, snapshot.getEtag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, snapshot.getEtag()))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void getFullMenu_WithWeakETagFromGzipResponse_ShouldReturnNotModified() throws Exception {
+        MenuSnapshot snapshot = MenuSnapshot.of("e1", 3L, menuResponse, objectMapper);
+        when(menuService.getSnapshot()).thenReturn(snapshot);
+
+        mockMvc.perform(get("/api/menu")
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/" + snapshot.getEtag(true))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, snapshot.getEtag(true)));
+    }
+
+    @Test
+    void getFullMenu_WithStaleETag_ShouldReturnFullMenu() throws Exception {
+        MenuSnapshot previous = MenuSnapshot.of("e1", 1L, menuResponse, objectMapper);
+        MenuSnapshot current = MenuSnapshot.of("e1", 2L, menuResponse, objectMapper);
+        when(menuService.getSnapshot()).thenReturn(current);
+
+        mockMvc.perform(get("/api/menu").header(HttpHeaders.IF_NONE_MATCH, previous.getEtag()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, current.getEtag()))
+                .andExpect(jsonPath("$.success").value(true));
+    }
+
+    @Test
+    void getFullMenu_WhenClientAcceptsGzip_ShouldReturnCompressedPayload() throws Exception {
+        MenuSnapshot snapshot = MenuSnapshot.of("e1", 1L, menuResponse, objectMapper);
+        when(menuService.getSnapshot()).thenReturn(snapshot);
+
+        MvcResult result = mockMvc.perform(get("/api/menu").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, snapshot.getEtag(true)))
+                .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn();
+
+        byte[] body = result.getResponse().getContentAsByteArray();
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            String json = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(json).isEqualTo(new String(snapshot.getJson(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void getFullMenu_WhenClientRefusesGzip_ShouldReturnPlainPayload() throws Exception {
+        MenuSnapshot snapshot = MenuSnapshot.of("e1", 1L, menuResponse, objectMapper);
+        when(menuService.getSnapshot()).thenReturn(snapshot);
+
+        mockMvc.perform(get("/api/menu").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().bytes(snapshot.getJson()));
+    }
+
+    @Test
+    void acceptsGzip_ShouldHonorQualityValues() {
+        assertThat(MenuController.acceptsGzip("gzip")).isTrue();
+        assertThat(MenuController.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(MenuController.acceptsGzip("*")).isTrue();
+        assertThat(MenuController.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(MenuController.acceptsGzip("gzip; q=0.000, *")).isFalse();
+        assertThat(MenuController.acceptsGzip("*;q=0")).isFalse();
+        assertThat(MenuController.acceptsGzip("deflate, br")).isFalse();
+        assertThat(MenuController.acceptsGzip(null)).isFalse();
+    }
+
+    @Test
+    void getMenuChanges_ShouldReturnDeltasSinceVersion() throws Exception {
+        MenuChangesResponse changes = MenuChangesResponse.builder()
+                .sinceVersion("e1.4")
+                .currentVersion("e1.5")
+                .fullReloadRequired(false)
+                .changes(List.of(MenuChange.builder()
+                        .version(5L)
+                        .entityType(MenuChange.EntityType.PRODUCT)
+                        .changeType(MenuChange.ChangeType.UNAVAILABLE)
+                        .id("prod-1")
+                        .build()))
+                .build();
+        when(menuService.getChangesSince("e1.4")).thenReturn(changes);
+
+        mockMvc.perform(get("/api/menu/changes").param("since", "e1.4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.currentVersion").value("e1.5"))
+                .andExpect(jsonPath("$.data.fullReloadRequired").value(false))
+                .andExpect(jsonPath("$.data.changes[0].id").value("prod-1"))
+                .andExpect(jsonPath("$.data.changes[0].changeType").value("UNAVAILABLE"));
+
+        verify(menuService, times(1)).getChangesSince("e1.4");
+    }
+
     @Test
     void getMenuForTable_ShouldReturnMenuForSpecificTable() throws Exception {
         when(menuService.getMenuForTable("table-1")).thenReturn(menuResponse);
@@ -7,6 +7,7 @@ import com.cafelimon.dto.order.UpdateOrderStatusRequest;
 import com.cafelimon.exception.GlobalExceptionHandler;
 import com.cafelimon.model.OrderStatus;
 import com.cafelimon.service.OrderService;
+import com.cafelimon.service.OrderStreamRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -35,6 +37,9 @@ class OrderControllerTest {
     @Mock
     private OrderService orderService;
 
+    @Mock
+    private OrderStreamRegistry orderStreamRegistry;
+
     @InjectMocks
     private OrderController orderController;
 
@@ -104,6 +109,16 @@ class OrderControllerTest {
         verify(orderService, times(1)).getOrdersByTable("table-1");
     }
 
+    @Test
+    void streamOrdersByTable_ShouldOpenStreamWithLastEventId() throws Exception {
+        when(orderStreamRegistry.open("table-1", "abc:3")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/orders/table/table-1/stream").header("Last-Event-ID", "abc:3"))
+                .andExpect(request().asyncStarted());
+
+        verify(orderStreamRegistry, times(1)).open("table-1", "abc:3");
+    }
+
     @Test
     void getOrderById_ShouldReturnOrder() throws Exception {
         when(orderService.getOrderById("order-1")).thenReturn(orderResponse);
@@ -2,9 +2,12 @@ package com.cafelimon.controller;
 
 import com.cafelimon.dto.product.ProductRequest;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.product.ProductSuggestion;
 import com.cafelimon.exception.GlobalExceptionHandler;
 import com.cafelimon.exception.ResourceNotFoundException;
+import com.cafelimon.service.ProductSearchService;
 import com.cafelimon.service.ProductService;
+import com.cafelimon.service.TopProductsRanking;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -35,6 +38,12 @@ class ProductControllerTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private ProductSearchService productSearchService;
+
+    @Mock
+    private TopProductsRanking topProductsRanking;
+
     @InjectMocks
     private ProductController productController;
 
@@ -130,41 +139,85 @@ class ProductControllerTest {
     @Test
     void searchProducts_WithQuery_ShouldReturnProducts() throws Exception {
         List<ProductResponse> products = Arrays.asList(productResponse);
-        when(productService.searchProducts("cafe")).thenReturn(products);
+        when(productSearchService.search("cafe", false, 20)).thenReturn(products);
 
         mockMvc.perform(get("/api/products/search")
                         .param("query", "cafe")
                         .param("availableOnly", "false"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.success").value(true));
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.data[0].id").value("prod-1"));
 
-        verify(productService, times(1)).searchProducts("cafe");
+        verify(productSearchService, times(1)).search("cafe", false, 20);
     }
 
     @Test
-    void searchProducts_WithAvailableOnly_ShouldReturnAvailableProducts() throws Exception {
+    void searchProducts_WithAvailableOnlyAndLimit_ShouldReturnAvailableProducts() throws Exception {
         List<ProductResponse> products = Arrays.asList(productResponse);
-        when(productService.searchAvailableProducts("cafe")).thenReturn(products);
+        when(productSearchService.search("cafe", true, 5)).thenReturn(products);
 
         mockMvc.perform(get("/api/products/search")
                         .param("query", "cafe")
-                        .param("availableOnly", "true"))
+                        .param("availableOnly", "true")
+                        .param("limit", "5"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true));
 
-        verify(productService, times(1)).searchAvailableProducts("cafe");
+        verify(productSearchService, times(1)).search("cafe", true, 5);
+    }
+
+    @Test
+    void searchProducts_WithShortQueryParam_ShouldSearch() throws Exception {
+        when(productSearchService.search("limon", false, 20)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/products/search")
+                        .param("q", "limon"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isEmpty());
+
+        verify(productSearchService, times(1)).search("limon", false, 20);
+    }
+
+    @Test
+    void suggestProducts_ShouldReturnSuggestions() throws Exception {
+        ProductSuggestion suggestion = ProductSuggestion.builder()
+                .id("prod-1")
+                .name("Cafe Americano")
+                .available(true)
+                .build();
+        when(productSearchService.suggest("caf", 8)).thenReturn(List.of(suggestion));
+
+        mockMvc.perform(get("/api/products/suggest")
+                        .param("q", "caf"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value("prod-1"))
+                .andExpect(jsonPath("$.data[0].name").value("Cafe Americano"));
+
+        verify(productSearchService, times(1)).suggest("caf", 8);
     }
 
     @Test
     void getTopProducts_ShouldReturnTopProducts() throws Exception {
         List<ProductResponse> products = Arrays.asList(productResponse);
-        when(productService.getTopProducts()).thenReturn(products);
+        when(topProductsRanking.getTopProducts(10)).thenReturn(products);
 
         mockMvc.perform(get("/api/products/top"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.success").value(true));
 
-        verify(productService, times(1)).getTopProducts();
+        verify(topProductsRanking, times(1)).getTopProducts(10);
+    }
+
+    @Test
+    void getTopProducts_WithLimit_ShouldPassLimit() throws Exception {
+        when(topProductsRanking.getTopProducts(3)).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/products/top")
+                        .param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isEmpty());
+
+        verify(topProductsRanking, times(1)).getTopProducts(3);
     }
 
     @Test
@@ -1,6 +1,10 @@
 package com.cafelimon.controller;
 
+import com.cafelimon.dto.stats.PreparationTimeGroup;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
 import com.cafelimon.dto.stats.StatsResponse;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.dto.stats.TimePercentiles;
 import com.cafelimon.dto.stats.TopProductDTO;
 import com.cafelimon.exception.GlobalExceptionHandler;
 import com.cafelimon.service.StatsService;
@@ -101,4 +105,34 @@ class StatsControllerTest {
 
         verify(statsService, times(1)).getTopSellingProducts(any(), any());
     }
+
+    @Test
+    void getStatusCounts_ShouldReturnCounts() throws Exception {
+        when(statsService.getStatusCounts()).thenReturn(StatusCountsResponse.builder()
+                .pendingOrders(4L).preparingOrders(2L).readyOrders(1L).deliveredOrders(30L).cancelledOrders(3L)
+                .build());
+
+        mockMvc.perform(get("/api/stats/status-counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.pendingOrders").value(4))
+                .andExpect(jsonPath("$.data.readyOrders").value(1));
+
+        verify(statsService, times(1)).getStatusCounts();
+    }
+
+    @Test
+    void getPreparationTimes_ShouldReturnPercentiles() throws Exception {
+        TimePercentiles latte = TimePercentiles.builder().count(40L).p50(6.0).p90(11.0).p99(18.0).build();
+        when(statsService.getPreparationTimes()).thenReturn(PreparationTimesResponse.builder()
+                .preparation(latte)
+                .byProduct(List.of(PreparationTimeGroup.builder().id("prod-1").name("Latte").preparation(latte).build()))
+                .build());
+
+        mockMvc.perform(get("/api/stats/preparation-times"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.preparation.p90").value(11.0))
+                .andExpect(jsonPath("$.data.byProduct[0].name").value("Latte"));
+
+        verify(statsService, times(1)).getPreparationTimes();
+    }
 }
@@ -0,0 +1,83 @@
+package com.cafelimon.service;
+
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.TableChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogChangeRelayTest {
+
+    @Mock
+    private ApplicationEventPublisher publisherA;
+
+    @Mock
+    private ApplicationEventPublisher publisherB;
+
+    private InProcessClusterEventRelay relayA;
+    private InProcessClusterEventRelay relayB;
+    private CatalogChangeRelay nodeA;
+    private CatalogChangeRelay nodeB;
+
+    @BeforeEach
+    void setUp() {
+        relayA = new InProcessClusterEventRelay();
+        relayB = new InProcessClusterEventRelay();
+        relayA.join();
+        relayB.join();
+        nodeA = new CatalogChangeRelay(relayA, publisherA);
+        nodeB = new CatalogChangeRelay(relayB, publisherB);
+        nodeA.subscribeToRelay();
+        nodeB.subscribeToRelay();
+    }
+
+    @AfterEach
+    void tearDown() {
+        relayA.leave();
+        relayB.leave();
+    }
+
+    @Test
+    void onCatalogChanged_ShouldRepublishOnOtherNodesAsRelayed() {
+        nodeA.onCatalogChanged(CatalogChangedEvent.product(CatalogChangedEvent.Action.UPDATED, "prod-1"));
+
+        ArgumentCaptor<CatalogChangedEvent> event = ArgumentCaptor.forClass(CatalogChangedEvent.class);
+        verify(publisherB).publishEvent(event.capture());
+        assertThat(event.getValue().getEntityType()).isEqualTo(CatalogChangedEvent.EntityType.PRODUCT);
+        assertThat(event.getValue().getAction()).isEqualTo(CatalogChangedEvent.Action.UPDATED);
+        assertThat(event.getValue().getEntityId()).isEqualTo("prod-1");
+        assertThat(event.getValue().isRelayed()).isTrue();
+        verifyNoInteractions(publisherA);
+    }
+
+    @Test
+    void onTableChanged_ShouldRepublishOnOtherNodesAsRelayed() {
+        nodeA.onTableChanged(new TableChangedEvent("table-1"));
+
+        ArgumentCaptor<TableChangedEvent> event = ArgumentCaptor.forClass(TableChangedEvent.class);
+        verify(publisherB).publishEvent(event.capture());
+        assertThat(event.getValue().getTableId()).isEqualTo("table-1");
+        assertThat(event.getValue().isRelayed()).isTrue();
+    }
+
+    @Test
+    void relayedEvents_ShouldNotBeForwardedAgain() {
+        nodeB.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.EntityType.CATEGORY,
+                CatalogChangedEvent.Action.DELETED, "cat-1", true));
+        nodeB.onTableChanged(new TableChangedEvent("table-1", true));
+        nodeB.onRelayedMessage(CatalogChangeRelay.CATALOG_DESTINATION, "roto".getBytes());
+
+        verify(publisherA, never()).publishEvent(any(Object.class));
+        verify(publisherB, never()).publishEvent(any(Object.class));
+    }
+}
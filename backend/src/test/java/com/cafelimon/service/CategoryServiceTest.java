@@ -2,6 +2,7 @@ package com.cafelimon.service;
 
 import com.cafelimon.dto.category.CategoryRequest;
 import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.event.CatalogChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Category;
 import com.cafelimon.repository.CategoryRepository;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
@@ -28,6 +30,9 @@ class CategoryServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CategoryService categoryService;
 
@@ -116,6 +121,7 @@ class CategoryServiceTest {
         assertThat(result).isNotNull();
         verify(categoryRepository, times(1)).existsByName("Nueva Categoria");
         verify(categoryRepository, times(1)).save(any(Category.class));
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
@@ -219,6 +225,7 @@ class CategoryServiceTest {
 
         verify(categoryRepository, times(1)).findById("cat-1");
         verify(categoryRepository, times(1)).delete(category1);
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
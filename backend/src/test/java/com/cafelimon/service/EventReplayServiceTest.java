@@ -0,0 +1,90 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.websocket.TopicEvent;
+import com.cafelimon.dto.websocket.TopicReplayResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EventReplayServiceTest {
+
+    @Mock
+    private OrderService orderService;
+
+    private WebSocketEventLog eventLog;
+    private EventReplayService eventReplayService;
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getReplay().setBufferSize(2);
+        eventLog = new WebSocketEventLog(properties);
+        eventReplayService = new EventReplayService(eventLog, orderService);
+    }
+
+    private void publish(String topic, String json) {
+        eventLog.append(topic, seq -> json.getBytes(StandardCharsets.UTF_8), (bytes, seq) -> { });
+    }
+
+    @Test
+    void replay_WithinBuffer_ShouldReturnMissedMessagesWithoutSnapshot() {
+        publish("/topic/kitchen/orders", "{\"id\":\"order-1\"}");
+        publish("/topic/kitchen/orders", "{\"id\":\"order-2\"}");
+
+        TopicReplayResponse result = eventReplayService.replay("/topic/kitchen/orders", 1L, eventLog.getEpoch());
+
+        assertThat(result.isSnapshotRequired()).isFalse();
+        assertThat(result.getCurrentSeq()).isEqualTo(2L);
+        assertThat(result.getEvents()).extracting(TopicEvent::getSeq).containsExactly(2L);
+        assertThat(result.getEvents().get(0).getPayload()).isEqualTo("{\"id\":\"order-2\"}");
+        assertThat(result.getSnapshot()).isNull();
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void replay_WhenGapIsTooLarge_ShouldReturnActiveOrdersSnapshot() {
+        for (int i = 1; i <= 4; i++) {
+            publish("/topic/orders/status", "{}");
+        }
+        List<OrderResponse> active = List.of(OrderResponse.builder().id("order-1").build());
+        when(orderService.getActiveOrders()).thenReturn(active);
+
+        TopicReplayResponse result = eventReplayService.replay("/topic/orders/status", 1L, null);
+
+        assertThat(result.isSnapshotRequired()).isTrue();
+        assertThat(result.getCurrentSeq()).isEqualTo(4L);
+        assertThat(result.getSnapshot()).isEqualTo(active);
+        assertThat(result.getEvents()).isNull();
+    }
+
+    @Test
+    void replay_WithEpochFromPreviousRun_ShouldReturnTableSnapshot() {
+        publish("/topic/tables/table-1/orders", "{}");
+        when(orderService.getOrdersByTable("table-1")).thenReturn(List.of());
+
+        TopicReplayResponse result = eventReplayService.replay("/topic/tables/table-1/orders", 0L, "arranque-anterior");
+
+        assertThat(result.isSnapshotRequired()).isTrue();
+        assertThat(result.getEpoch()).isEqualTo(eventLog.getEpoch());
+        verify(orderService, times(1)).getOrdersByTable("table-1");
+    }
+
+    @Test
+    void replay_WithUnknownTopic_ShouldThrowException() {
+        assertThatThrownBy(() -> eventReplayService.replay("/topic/otro", 0L, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("/topic/otro");
+    }
+}
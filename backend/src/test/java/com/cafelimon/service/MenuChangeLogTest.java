@@ -0,0 +1,67 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.menu.MenuChange;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuChangeLogTest {
+
+    private MenuChange change(long version, String id) {
+        return MenuChange.builder()
+                .version(version)
+                .entityType(MenuChange.EntityType.PRODUCT)
+                .changeType(MenuChange.ChangeType.UPDATED)
+                .id(id)
+                .build();
+    }
+
+    @Test
+    void changesSince_ShouldReturnOnlyNewerVersionsInOrder() {
+        MenuChangeLog changeLog = new MenuChangeLog(100);
+        changeLog.reset(1L);
+        changeLog.append(2L, List.of(change(2L, "prod-1")));
+        changeLog.append(3L, List.of(change(3L, "prod-2"), change(3L, "prod-3")));
+
+        Optional<List<MenuChange>> result = changeLog.changesSince(2L, 3L);
+
+        assertThat(result).isPresent();
+        assertThat(result.get()).extracting(MenuChange::getId).containsExactly("prod-2", "prod-3");
+        assertThat(changeLog.changesSince(1L, 3L).get()).extracting(MenuChange::getId)
+                .containsExactly("prod-1", "prod-2", "prod-3");
+    }
+
+    @Test
+    void changesSince_WhenClientIsUpToDate_ShouldReturnEmptyList() {
+        MenuChangeLog changeLog = new MenuChangeLog(100);
+        changeLog.reset(1L);
+        changeLog.append(2L, List.of(change(2L, "prod-1")));
+
+        assertThat(changeLog.changesSince(2L, 2L)).contains(List.of());
+    }
+
+    @Test
+    void changesSince_WhenVersionWasEvicted_ShouldRequireFullReload() {
+        MenuChangeLog changeLog = new MenuChangeLog(2);
+        changeLog.reset(1L);
+        changeLog.append(2L, List.of(change(2L, "prod-1")));
+        changeLog.append(3L, List.of(change(3L, "prod-2")));
+        changeLog.append(4L, List.of(change(4L, "prod-3")));
+
+        assertThat(changeLog.changesSince(1L, 4L)).isEmpty();
+        assertThat(changeLog.changesSince(2L, 4L).get()).extracting(MenuChange::getId)
+                .containsExactly("prod-2", "prod-3");
+    }
+
+    @Test
+    void changesSince_WhenVersionIsUnknown_ShouldRequireFullReload() {
+        MenuChangeLog changeLog = new MenuChangeLog(100);
+        changeLog.reset(5L);
+
+        assertThat(changeLog.changesSince(4L, 5L)).isEmpty();
+        assertThat(changeLog.changesSince(9L, 5L)).isEmpty();
+    }
+}
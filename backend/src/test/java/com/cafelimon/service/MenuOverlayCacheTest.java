@@ -0,0 +1,117 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.MenuOverlayProperties;
+import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.menu.MenuResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuOverlayCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private MenuOverlayProperties properties;
+    private MenuOverlayCache overlayCache;
+    private MenuSnapshot snapshot;
+    private ProductResponse coffee;
+    private ProductResponse juice;
+    private ProductResponse cocktail;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MenuOverlayProperties();
+        overlayCache = new MenuOverlayCache(properties);
+
+        coffee = ProductResponse.builder().id("prod-1").name("Café").build();
+        juice = ProductResponse.builder().id("prod-2").name("Jugo").build();
+        cocktail = ProductResponse.builder().id("prod-3").name("Mojito").build();
+
+        Map<String, List<ProductResponse>> productsByCategory = new LinkedHashMap<>();
+        productsByCategory.put("cat-1", List.of(coffee, juice));
+        productsByCategory.put("cat-2", List.of(cocktail));
+
+        snapshot = MenuSnapshot.of("e1", 1L, MenuResponse.builder()
+                .categories(List.of(CategoryResponse.builder().id("cat-1").build(),
+                        CategoryResponse.builder().id("cat-2").build()))
+                .productsByCategory(productsByCategory)
+                .products(List.of(coffee, juice, cocktail))
+                .build(), objectMapper);
+    }
+
+    private MenuOverlayProperties.Overlay overlay(List<String> productIds, List<String> locations,
+                                                  LocalTime from, LocalTime until) {
+        MenuOverlayProperties.Overlay overlay = new MenuOverlayProperties.Overlay();
+        overlay.setProductIds(productIds);
+        overlay.setLocations(locations);
+        overlay.setAvailableFrom(from);
+        overlay.setAvailableUntil(until);
+        return overlay;
+    }
+
+    @Test
+    void apply_WhenNothingIsHidden_ShouldReturnBaseMenu() {
+        properties.getOverlays().add(overlay(List.of("prod-3"), List.of("Terraza"), null, null));
+
+        MenuResponse result = overlayCache.apply(snapshot, "Terraza", LocalTime.NOON);
+
+        assertThat(result).isSameAs(snapshot.getMenu());
+    }
+
+    @Test
+    void apply_ShouldShareUntouchedListsAndProductInstances() {
+        properties.getOverlays().add(overlay(List.of("prod-3"), List.of("Terraza"), null, null));
+
+        MenuResponse result = overlayCache.apply(snapshot, "Interior", LocalTime.NOON);
+
+        assertThat(result.getProducts()).containsExactly(coffee, juice);
+        assertThat(result.getProducts().get(0)).isSameAs(snapshot.getMenu().getProducts().get(0));
+        assertThat(result.getProductsByCategory().get("cat-1"))
+                .isSameAs(snapshot.getMenu().getProductsByCategory().get("cat-1"));
+        assertThat(result.getProductsByCategory()).doesNotContainKey("cat-2");
+        assertThat(result.getCategories()).extracting(CategoryResponse::getId).containsExactly("cat-1");
+    }
+
+    @Test
+    void apply_ShouldReuseViewForSameHiddenSetAndResetOnNewVersion() {
+        properties.getOverlays().add(overlay(List.of("prod-2"), List.of("Terraza"), null, null));
+
+        MenuResponse first = overlayCache.apply(snapshot, "Interior", LocalTime.NOON);
+        MenuResponse second = overlayCache.apply(snapshot, "Ventana", LocalTime.NOON);
+        MenuSnapshot next = MenuSnapshot.of("e1", 2L, snapshot.getMenu(), objectMapper);
+        MenuResponse afterRebuild = overlayCache.apply(next, "Interior", LocalTime.NOON);
+
+        assertThat(second).isSameAs(first);
+        assertThat(afterRebuild).isNotSameAs(first);
+        assertThat(afterRebuild.getProducts()).containsExactly(coffee, cocktail);
+        assertThat(afterRebuild.getCategories()).isSameAs(next.getMenu().getCategories());
+    }
+
+    @Test
+    void apply_WithWindowCrossingMidnight_ShouldHideOutsideWindow() {
+        properties.getOverlays().add(overlay(List.of("prod-3"), List.of(), LocalTime.of(20, 0), LocalTime.of(2, 0)));
+
+        assertThat(overlayCache.apply(snapshot, null, LocalTime.of(23, 30)).getProducts()).hasSize(3);
+        assertThat(overlayCache.apply(snapshot, null, LocalTime.of(1, 0)).getProducts()).hasSize(3);
+        assertThat(overlayCache.apply(snapshot, null, LocalTime.of(12, 0)).getProducts())
+                .containsExactly(coffee, juice);
+    }
+
+    @Test
+    void apply_WhenAnyRuleForProductApplies_ShouldShowProduct() {
+        properties.getOverlays().add(overlay(List.of("prod-1"), List.of("Terraza"), null, null));
+        properties.getOverlays().add(overlay(List.of("prod-1"), List.of(), LocalTime.of(6, 0), LocalTime.of(10, 0)));
+
+        assertThat(overlayCache.apply(snapshot, "Interior", LocalTime.of(8, 0))).isSameAs(snapshot.getMenu());
+        assertThat(overlayCache.apply(snapshot, "Interior", LocalTime.of(12, 0)).getProducts())
+                .containsExactly(juice, cocktail);
+    }
+}
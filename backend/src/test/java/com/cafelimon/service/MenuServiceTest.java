@@ -1,32 +1,56 @@
 package com.cafelimon.service;
 
 import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.menu.MenuChange;
+import com.cafelimon.dto.menu.MenuChangesResponse;
 import com.cafelimon.dto.menu.MenuResponse;
+import com.cafelimon.dto.menu.MenuRow;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.config.MenuOverlayProperties;
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.TableChangedEvent;
+import com.cafelimon.model.Table;
+import com.cafelimon.repository.CategoryRepository;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
-import java.util.Arrays;
+import java.time.LocalTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class MenuServiceTest {
 
     @Mock
-    private CategoryService categoryService;
+    private CategoryRepository categoryRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Spy
+    private MenuChangeLog changeLog = new MenuChangeLog(100);
 
     @Mock
-    private ProductService productService;
+    private TableRepository tableRepository;
+
+    private final MenuOverlayProperties overlayProperties = new MenuOverlayProperties();
+
+    @Spy
+    private MenuOverlayCache overlayCache = new MenuOverlayCache(overlayProperties);
 
     @InjectMocks
     private MenuService menuService;
@@ -75,9 +99,8 @@ class MenuServiceTest {
 
     @Test
     void getFullMenu_ShouldReturnMenuWithCategoriesAndProducts() {
-        when(categoryService.getActiveCategories()).thenReturn(Arrays.asList(category1, category2));
-        when(productService.getAvailableProductsByCategory("cat-1")).thenReturn(Arrays.asList(product1, product2));
-        when(productService.getAvailableProductsByCategory("cat-2")).thenReturn(Arrays.asList(product3));
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(
+                row(category1, product1), row(category1, product2), row(category2, product3)));
 
         MenuResponse result = menuService.getFullMenu();
 
@@ -87,16 +110,15 @@ class MenuServiceTest {
         assertThat(result.getProductsByCategory()).containsKeys("cat-1", "cat-2");
         assertThat(result.getProductsByCategory().get("cat-1")).hasSize(2);
         assertThat(result.getProductsByCategory().get("cat-2")).hasSize(1);
+        assertThat(result.getProducts().get(0).getCategory()).isSameAs(result.getCategories().get(0));
+        assertThat(result.getProducts().get(1).getCategory()).isSameAs(result.getCategories().get(0));
 
-        verify(categoryService, times(1)).getActiveCategories();
-        verify(productService, times(1)).getAvailableProductsByCategory("cat-1");
-        verify(productService, times(1)).getAvailableProductsByCategory("cat-2");
+        verify(categoryRepository, times(1)).findActiveMenuRows();
     }
 
     @Test
     void getFullMenu_WhenNoCategoriesHaveProducts_ShouldReturnEmptyMenu() {
-        when(categoryService.getActiveCategories()).thenReturn(Arrays.asList(category1, category2));
-        when(productService.getAvailableProductsByCategory(anyString())).thenReturn(Collections.emptyList());
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, null), row(category2, null)));
 
         MenuResponse result = menuService.getFullMenu();
 
@@ -108,7 +130,7 @@ class MenuServiceTest {
 
     @Test
     void getFullMenu_WhenNoCategories_ShouldReturnEmptyMenu() {
-        when(categoryService.getActiveCategories()).thenReturn(Collections.emptyList());
+        when(categoryRepository.findActiveMenuRows()).thenReturn(Collections.emptyList());
 
         MenuResponse result = menuService.getFullMenu();
 
@@ -116,14 +138,11 @@ class MenuServiceTest {
         assertThat(result.getCategories()).isEmpty();
         assertThat(result.getProducts()).isEmpty();
         assertThat(result.getProductsByCategory()).isEmpty();
-
-        verify(productService, never()).getAvailableProductsByCategory(anyString());
     }
 
     @Test
     void getMenuForTable_ShouldReturnSameAsFullMenu() {
-        when(categoryService.getActiveCategories()).thenReturn(Arrays.asList(category1));
-        when(productService.getAvailableProductsByCategory("cat-1")).thenReturn(Arrays.asList(product1));
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1)));
 
         MenuResponse result = menuService.getMenuForTable("table-1");
 
@@ -131,6 +150,244 @@ class MenuServiceTest {
         assertThat(result.getCategories()).hasSize(1);
         assertThat(result.getProducts()).hasSize(1);
 
-        verify(categoryService, times(1)).getActiveCategories();
+        verify(categoryRepository, times(1)).findActiveMenuRows();
+        verifyNoInteractions(tableRepository);
+    }
+
+    @Test
+    void getFullMenu_WhenCalledTwice_ShouldServeCachedSnapshot() {
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1)));
+
+        MenuResponse first = menuService.getFullMenu();
+        MenuResponse second = menuService.getFullMenu();
+
+        assertThat(second).isSameAs(first);
+        verify(categoryRepository, times(1)).findActiveMenuRows();
+    }
+
+    @Test
+    void getSnapshot_ShouldReturnImmutableMenu() {
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1)));
+
+        MenuSnapshot snapshot = menuService.getSnapshot();
+
+        assertThat(snapshot.getVersion()).isEqualTo(1L);
+        assertThat(snapshot.getBuiltAt()).isNotNull();
+        assertThat(snapshot.getVersionToken()).endsWith(".1");
+        assertThat(snapshot.getEtag()).startsWith("\"" + snapshot.getVersionToken() + "-");
+        assertThat(snapshot.getJson()).isNotEmpty();
+        assertThat(snapshot.getGzippedJson()).isNotEmpty();
+        assertThat(snapshot.matches(snapshot.getEtag())).isTrue();
+        assertThat(snapshot.matches("\"other\", " + snapshot.getEtag())).isTrue();
+        assertThat(snapshot.getEtag(true)).isEqualTo(snapshot.getEtag().replaceFirst("\"$", "-gz\""));
+        assertThat(snapshot.matches(snapshot.getEtag(true))).isTrue();
+        // Comparación débil: un intermediario puede volver débil el ETag
+        assertThat(snapshot.matches("W/" + snapshot.getEtag())).isTrue();
+        assertThat(snapshot.matches("\"0-abc\"")).isFalse();
+        assertThat(snapshot.matches(null)).isFalse();
+        assertThatThrownBy(() -> snapshot.getMenu().getProducts().add(product2))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.getMenu().getProductsByCategory().remove("cat-1"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void onCatalogChanged_ShouldRebuildAndSwapSnapshot() {
+        when(categoryRepository.findActiveMenuRows())
+                .thenReturn(List.of(row(category1, product1)))
+                .thenReturn(List.of(row(category1, product1), row(category1, product2)));
+
+        MenuSnapshot before = menuService.getSnapshot();
+        menuService.onCatalogChanged(CatalogChangedEvent.product(CatalogChangedEvent.Action.CREATED, "prod-2"));
+        MenuSnapshot after = menuService.getSnapshot();
+
+        assertThat(after.getVersion()).isGreaterThan(before.getVersion());
+        assertThat(before.getMenu().getProducts()).hasSize(1);
+        assertThat(after.getMenu().getProducts()).hasSize(2);
+        verify(categoryRepository, times(2)).findActiveMenuRows();
+    }
+
+    @Test
+    void refreshMenu_ShouldIncrementVersion() {
+        when(categoryRepository.findActiveMenuRows()).thenReturn(Collections.emptyList());
+
+        MenuSnapshot first = menuService.refreshMenu();
+        MenuSnapshot second = menuService.refreshMenu();
+
+        assertThat(second.getVersion()).isEqualTo(first.getVersion() + 1);
+        assertThat(menuService.getSnapshot()).isSameAs(second);
+    }
+
+    @Test
+    void getChangesSince_ShouldReturnProductDeltasBetweenVersions() {
+        ProductResponse updatedProduct1 = ProductResponse.builder()
+                .id("prod-1")
+                .name("Cafe Americano")
+                .price(new BigDecimal("2800"))
+                .available(true)
+                .build();
+        when(categoryRepository.findActiveMenuRows())
+                .thenReturn(List.of(row(category1, product1), row(category1, product2)))
+                .thenReturn(List.of(row(category1, updatedProduct1), row(category1, product3)));
+
+        MenuSnapshot initial = menuService.getSnapshot();
+        menuService.onCatalogChanged(CatalogChangedEvent.product(CatalogChangedEvent.Action.DELETED, "prod-2"));
+
+        MenuChangesResponse result = menuService.getChangesSince(initial.getVersionToken());
+
+        assertThat(result.isFullReloadRequired()).isFalse();
+        assertThat(result.getSinceVersion()).isEqualTo(initial.getVersionToken());
+        assertThat(result.getCurrentVersion()).isEqualTo(menuService.getSnapshot().getVersionToken())
+                .endsWith("." + (initial.getVersion() + 1));
+        assertThat(result.getChanges())
+                .extracting(MenuChange::getId, MenuChange::getChangeType)
+                .containsExactlyInAnyOrder(
+                        tuple("prod-1", MenuChange.ChangeType.UPDATED),
+                        tuple("prod-3", MenuChange.ChangeType.ADDED),
+                        tuple("prod-2", MenuChange.ChangeType.DELETED));
+    }
+
+    @Test
+    void getChangesSince_WhenProductAndCategoryBecomeUnavailable_ShouldReportUnavailable() {
+        when(categoryRepository.findActiveMenuRows())
+                .thenReturn(List.of(row(category1, product1), row(category1, product2), row(category2, product3)))
+                .thenReturn(List.of(row(category1, product1)));
+
+        MenuSnapshot initial = menuService.getSnapshot();
+        menuService.onCatalogChanged(CatalogChangedEvent.category(CatalogChangedEvent.Action.UPDATED, "cat-2"));
+
+        MenuChangesResponse result = menuService.getChangesSince(initial.getVersionToken());
+
+        assertThat(result.getChanges())
+                .extracting(MenuChange::getId, MenuChange::getChangeType)
+                .containsExactlyInAnyOrder(
+                        tuple("cat-2", MenuChange.ChangeType.UNAVAILABLE),
+                        tuple("prod-2", MenuChange.ChangeType.UNAVAILABLE),
+                        tuple("prod-3", MenuChange.ChangeType.UNAVAILABLE));
+    }
+
+    @Test
+    void getChangesSince_WhenVersionIsUnknown_ShouldRequireFullReload() {
+        when(categoryRepository.findActiveMenuRows()).thenReturn(Collections.emptyList());
+
+        MenuSnapshot current = menuService.getSnapshot();
+        MenuChangesResponse result = menuService.getChangesSince(current.getEpoch() + ".42");
+
+        assertThat(result.isFullReloadRequired()).isTrue();
+        assertThat(result.getChanges()).isEmpty();
+        assertThat(result.getCurrentVersion()).isEqualTo(current.getVersionToken());
+    }
+
+    @Test
+    void getChangesSince_WithTokenFromAnotherStart_ShouldRequireFullReload() {
+        when(categoryRepository.findActiveMenuRows()).thenReturn(Collections.emptyList());
+        menuService.getSnapshot();
+        menuService.refreshMenu();
+
+        // Versión 1 existe en este proceso, pero el token es de un arranque anterior u otro nodo
+        MenuChangesResponse result = menuService.getChangesSince("otroarranque.1");
+
+        assertThat(result.isFullReloadRequired()).isTrue();
+        assertThat(result.getChanges()).isEmpty();
+    }
+
+    @Test
+    void getMenuForTable_WithLocationOverlay_ShouldHideProductsForOtherLocations() {
+        MenuOverlayProperties.Overlay terraceOnly = new MenuOverlayProperties.Overlay();
+        terraceOnly.setName("Solo terraza");
+        terraceOnly.setProductIds(List.of("prod-2"));
+        terraceOnly.setLocations(List.of("Terraza"));
+        overlayProperties.getOverlays().add(terraceOnly);
+
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1), row(category1, product2)));
+        when(tableRepository.findById("table-1")).thenReturn(Optional.of(table("table-1", "Interior")));
+        when(tableRepository.findById("table-2")).thenReturn(Optional.of(table("table-2", "terraza")));
+
+        MenuResponse interior = menuService.getMenuForTable("table-1", LocalTime.NOON);
+        MenuResponse terrace = menuService.getMenuForTable("table-2", LocalTime.NOON);
+
+        assertThat(interior.getProducts()).extracting(ProductResponse::getId).containsExactly("prod-1");
+        assertThat(interior.getProductsByCategory().get("cat-1")).hasSize(1);
+        assertThat(terrace).isSameAs(menuService.getFullMenu());
+    }
+
+    @Test
+    void getMenuForTable_ShouldCacheTableLocationAndOverlayView() {
+        MenuOverlayProperties.Overlay afternoon = new MenuOverlayProperties.Overlay();
+        afternoon.setProductIds(List.of("prod-1"));
+        afternoon.setAvailableFrom(LocalTime.of(15, 0));
+        afternoon.setAvailableUntil(LocalTime.of(18, 0));
+        overlayProperties.getOverlays().add(afternoon);
+
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1), row(category1, product2)));
+        when(tableRepository.findById("table-1")).thenReturn(Optional.of(table("table-1", "Interior")));
+
+        MenuResponse morning = menuService.getMenuForTable("table-1", LocalTime.of(10, 0));
+        MenuResponse morningAgain = menuService.getMenuForTable("table-1", LocalTime.of(11, 0));
+        MenuResponse afternoonMenu = menuService.getMenuForTable("table-1", LocalTime.of(16, 0));
+
+        assertThat(morning.getProducts()).extracting(ProductResponse::getId).containsExactly("prod-2");
+        assertThat(morningAgain).isSameAs(morning);
+        assertThat(afternoonMenu.getProducts()).hasSize(2);
+        verify(tableRepository, times(1)).findById("table-1");
+    }
+
+    @Test
+    void onTableChanged_ShouldEvictCachedLocation() {
+        MenuOverlayProperties.Overlay terraceOnly = new MenuOverlayProperties.Overlay();
+        terraceOnly.setProductIds(List.of("prod-2"));
+        terraceOnly.setLocations(List.of("Terraza"));
+        overlayProperties.getOverlays().add(terraceOnly);
+
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1), row(category1, product2)));
+        when(tableRepository.findById("table-1"))
+                .thenReturn(Optional.of(table("table-1", "Interior")))
+                .thenReturn(Optional.of(table("table-1", "Terraza")));
+
+        assertThat(menuService.getMenuForTable("table-1", LocalTime.NOON).getProducts()).hasSize(1);
+        menuService.onTableChanged(new TableChangedEvent("table-1"));
+        assertThat(menuService.getMenuForTable("table-1", LocalTime.NOON).getProducts()).hasSize(2);
+    }
+
+    @Test
+    void getMenuForTable_WithUnknownTable_ShouldNotCacheTheMiss() {
+        MenuOverlayProperties.Overlay terraceOnly = new MenuOverlayProperties.Overlay();
+        terraceOnly.setProductIds(List.of("prod-2"));
+        terraceOnly.setLocations(List.of("Terraza"));
+        overlayProperties.getOverlays().add(terraceOnly);
+
+        when(categoryRepository.findActiveMenuRows()).thenReturn(List.of(row(category1, product1), row(category1, product2)));
+        when(tableRepository.findById("table-9"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(table("table-9", "Terraza")));
+
+        // Sin mesa se sirve el menú base; la mesa creada después recibe el de su ubicación
+        assertThat(menuService.getMenuForTable("table-9", LocalTime.NOON).getProducts()).hasSize(1);
+        assertThat(menuService.getMenuForTable("table-9", LocalTime.NOON).getProducts()).hasSize(2);
+        verify(tableRepository, times(2)).findById("table-9");
+    }
+
+    private MenuRow row(CategoryResponse category, ProductResponse product) {
+        MenuRow.MenuRowBuilder row = MenuRow.builder()
+                .categoryId(category.getId())
+                .categoryName(category.getName())
+                .categoryActive(category.getActive());
+        if (product != null) {
+            row.productId(product.getId())
+                    .productName(product.getName())
+                    .productPrice(product.getPrice())
+                    .productAvailable(product.getAvailable());
+        }
+        return row.build();
+    }
+
+    private Table table(String id, String location) {
+        Table table = Table.builder()
+                .number(id)
+                .capacity(4)
+                .location(location)
+                .build();
+        table.setId(id);
+        return table;
     }
 }
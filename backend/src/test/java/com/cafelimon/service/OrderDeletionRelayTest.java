@@ -0,0 +1,97 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderDeletionRelayTest {
+
+    @Mock
+    private ApplicationEventPublisher publisherA;
+
+    @Mock
+    private ApplicationEventPublisher publisherB;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private InProcessClusterEventRelay relayA;
+    private InProcessClusterEventRelay relayB;
+    private OrderDeletionRelay nodeA;
+    private OrderDeletionRelay nodeB;
+
+    @BeforeEach
+    void setUp() {
+        relayA = new InProcessClusterEventRelay();
+        relayB = new InProcessClusterEventRelay();
+        relayA.join();
+        relayB.join();
+        nodeA = new OrderDeletionRelay(relayA, objectMapper, publisherA);
+        nodeB = new OrderDeletionRelay(relayB, objectMapper, publisherB);
+        nodeA.subscribeToRelay();
+        nodeB.subscribeToRelay();
+    }
+
+    @AfterEach
+    void tearDown() {
+        relayA.leave();
+        relayB.leave();
+    }
+
+    @Test
+    void onOrderDeleted_ShouldRepublishOnOtherNodesAsRelayed() {
+        LocalDateTime deletedAt = LocalDateTime.now();
+        OrderResponse order = OrderResponse.builder()
+                .id("order-1")
+                .status(OrderStatus.ENTREGADO)
+                .totalAmount(new BigDecimal("4500.00"))
+                .createdAt(deletedAt.minusHours(1))
+                .items(List.of(OrderItemResponse.builder()
+                        .product(ProductResponse.builder().id("p1").name("Latte").build())
+                        .quantity(2)
+                        .build()))
+                .build();
+
+        nodeA.onOrderDeleted(new OrderDeletedEvent("order-1", "table-1", order, deletedAt));
+
+        ArgumentCaptor<OrderDeletedEvent> event = ArgumentCaptor.forClass(OrderDeletedEvent.class);
+        verify(publisherB).publishEvent(event.capture());
+        assertThat(event.getValue().getOrderId()).isEqualTo("order-1");
+        assertThat(event.getValue().getTableId()).isEqualTo("table-1");
+        assertThat(event.getValue().getDeletedAt()).isEqualTo(deletedAt);
+        assertThat(event.getValue().getOrder().getTotalAmount()).isEqualByComparingTo("4500");
+        assertThat(event.getValue().getOrder().getItems()).singleElement()
+                .satisfies(item -> assertThat(item.getQuantity()).isEqualTo(2));
+        assertThat(event.getValue().isRelayed()).isTrue();
+        verifyNoInteractions(publisherA);
+    }
+
+    @Test
+    void relayedDeletions_ShouldNotBeForwardedAgain() {
+        OrderResponse order = OrderResponse.builder().id("order-1").status(OrderStatus.PENDING).build();
+
+        nodeB.onOrderDeleted(new OrderDeletedEvent("order-1", "table-1", order, LocalDateTime.now(), true));
+        nodeB.onRelayedMessage(OrderDeletionRelay.RELAY_DESTINATION, "{".getBytes());
+
+        verify(publisherA, never()).publishEvent(any(Object.class));
+        verify(publisherB, never()).publishEvent(any(Object.class));
+    }
+}
@@ -0,0 +1,147 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderNotificationDispatcherTest {
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderNotificationDispatcher dispatcher;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getDispatch().setQueueCapacity(2);
+        properties.getDispatch().setCoalesceWindowMs(0);
+        meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new OrderNotificationDispatcher(webSocketService, properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void onOrderCreated_ShouldNotifyDashboardKitchenAndTable() {
+        OrderResponse order = order("order-1", OrderStatus.PENDING);
+
+        dispatcher.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p1"), order));
+
+        verify(webSocketService, timeout(1000)).notifyOrderCreated("table-1", order);
+    }
+
+    @Test
+    void onOrderStatusChanged_WhilePending_ShouldSendLatestStatusFromFirstPreviousStatus() throws InterruptedException {
+        CountDownLatch started = blockWorker();
+        OrderResponse ready = order("order-1", OrderStatus.LISTO);
+
+        dispatcher.onOrderStatusChanged(statusChanged(order("order-1", OrderStatus.EN_PREPARACION)));
+        dispatcher.onOrderStatusChanged(statusChanged(OrderStatus.EN_PREPARACION, ready));
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get("cafelimon.notifications.merged").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cafelimon.notifications.queue.size").gauge().value()).isEqualTo(1.0);
+
+        release.countDown();
+
+        verify(webSocketService, timeout(1000)).notifyOrderStatusChanged("table-1", OrderStatus.PENDING, ready);
+        verify(webSocketService, times(1)).notifyOrderStatusChanged(anyString(), any(), any());
+    }
+
+    @Test
+    void onOrderStatusChanged_WithinWindow_ShouldSendOneUpdatePerOrder() throws InterruptedException {
+        dispatcher.shutdown();
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getDispatch().setCoalesceWindowMs(1000);
+        dispatcher = new OrderNotificationDispatcher(webSocketService, properties, meterRegistry);
+        OrderResponse delivered = order("order-1", OrderStatus.ENTREGADO);
+        OrderResponse other = order("order-2", OrderStatus.LISTO);
+
+        dispatcher.onOrderStatusChanged(statusChanged(order("order-1", OrderStatus.EN_PREPARACION)));
+        dispatcher.onOrderStatusChanged(statusChanged(OrderStatus.EN_PREPARACION, order("order-1", OrderStatus.LISTO)));
+        dispatcher.onOrderStatusChanged(statusChanged(other));
+        dispatcher.onOrderStatusChanged(statusChanged(OrderStatus.LISTO, delivered));
+        verify(webSocketService, never()).notifyOrderStatusChanged(anyString(), any(), any());
+
+        verify(webSocketService, timeout(3000)).notifyOrderStatusChanged("table-1", OrderStatus.PENDING, delivered);
+        verify(webSocketService, timeout(1000)).notifyOrderStatusChanged("table-1", OrderStatus.PENDING, other);
+        dispatcher.shutdown();
+        verify(webSocketService, times(2)).notifyOrderStatusChanged(anyString(), any(), any());
+        assertThat(meterRegistry.get("cafelimon.notifications.merged").counter().count()).isEqualTo(2.0);
+    }
+
+    @Test
+    void onOrderStatusChanged_WhenQueueIsFull_ShouldDropAndAllowLaterUpdates() throws InterruptedException {
+        CountDownLatch started = blockWorker();
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+        dispatcher.onOrderStatusChanged(statusChanged(order("order-1", OrderStatus.LISTO)));
+        dispatcher.onOrderStatusChanged(statusChanged(order("order-2", OrderStatus.LISTO)));
+        dispatcher.onOrderStatusChanged(statusChanged(order("order-3", OrderStatus.LISTO)));
+        assertThat(meterRegistry.get("cafelimon.notifications.dropped").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cafelimon.notifications.queue.remaining").gauge().value()).isZero();
+
+        release.countDown();
+        verify(webSocketService, timeout(1000).times(2)).notifyOrderStatusChanged(anyString(), any(), any());
+
+        // El aviso descartado no deja la orden marcada como pendiente
+        OrderResponse delivered = order("order-3", OrderStatus.ENTREGADO);
+        dispatcher.onOrderStatusChanged(statusChanged(delivered));
+        verify(webSocketService, timeout(3000)).notifyOrderStatusChanged("table-1", OrderStatus.PENDING, delivered);
+        dispatcher.shutdown();
+        assertThat(meterRegistry.get("cafelimon.notifications.dispatched").counter().count()).isEqualTo(4.0);
+    }
+
+    /**
+     * Ocupa el único hilo del dispatcher con una orden nueva hasta liberar {@code release}
+     */
+    private CountDownLatch blockWorker() {
+        CountDownLatch started = new CountDownLatch(1);
+        OrderResponse blocking = order("order-0", OrderStatus.PENDING);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(webSocketService).notifyOrderCreated("table-0", blocking);
+        dispatcher.onOrderCreated(new OrderCreatedEvent("order-0", "table-0", List.of(), blocking));
+        return started;
+    }
+
+    private static OrderStatusChangedEvent statusChanged(OrderResponse order) {
+        return statusChanged(OrderStatus.PENDING, order);
+    }
+
+    private static OrderStatusChangedEvent statusChanged(OrderStatus previousStatus, OrderResponse order) {
+        return new OrderStatusChangedEvent(order.getId(), "table-1", previousStatus, order.getStatus(), order,
+                false, false);
+    }
+
+    private static OrderResponse order(String id, OrderStatus status) {
+        return OrderResponse.builder().id(id).status(status).build();
+    }
+}
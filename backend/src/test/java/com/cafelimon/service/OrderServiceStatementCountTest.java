@@ -0,0 +1,147 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.model.Category;
+import com.cafelimon.model.Order;
+import com.cafelimon.model.OrderItem;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.model.Product;
+import com.cafelimon.model.Table;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que mapear órdenes a respuestas no dispare consultas por orden o por ítem
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.show-sql=false"
+})
+@Import({OrderService.class, ProductService.class, CategoryService.class, TableService.class})
+class OrderServiceStatementCountTest {
+
+    private static final int ORDERS = 40;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private QRCodeService qrCodeService;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        List<Product> products = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            Category category = Category.builder().name("Categoría " + c).orderIndex(c).active(true).build();
+            entityManager.persist(category);
+            for (int p = 0; p < 4; p++) {
+                Product product = Product.builder()
+                        .name("Producto " + c + "-" + p)
+                        .price(new BigDecimal("1000"))
+                        .category(category)
+                        .available(true)
+                        .orderCount(0L)
+                        .build();
+                entityManager.persist(product);
+                products.add(product);
+            }
+        }
+
+        for (int i = 0; i < ORDERS; i++) {
+            Table table = Table.builder()
+                    .number(String.valueOf(i))
+                    .capacity(4)
+                    .qrCode("data:image/png;base64,QR" + i)
+                    .build();
+            entityManager.persist(table);
+
+            Order order = Order.builder()
+                    .table(table)
+                    .status(i % 2 == 0 ? OrderStatus.PENDING : OrderStatus.EN_PREPARACION)
+                    .items(new ArrayList<>())
+                    .build();
+            for (int j = 0; j < 3; j++) {
+                Product product = products.get((i + j) % products.size());
+                OrderItem item = OrderItem.builder()
+                        .order(order)
+                        .product(product)
+                        .quantity(1)
+                        .unitPrice(product.getPrice())
+                        .build();
+                item.calculateSubtotal();
+                order.getItems().add(item);
+            }
+            order.calculateTotal();
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getActiveOrders_ShouldLoadOrdersTablesItemsAndProductsInOneStatement() {
+        List<OrderResponse> result = orderService.getActiveOrders();
+
+        assertThat(result).hasSize(ORDERS);
+        assertThat(result).allSatisfy(order -> {
+            assertThat(order.getTable().getNumber()).isNotNull();
+            assertThat(order.getTable().getQrCode()).isNull();
+            assertThat(order.getItems()).hasSize(3);
+            assertThat(order.getItems().get(0).getProduct().getCategory().getName()).startsWith("Categoría");
+        });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrderById_ShouldUseOneStatement() {
+        String orderId = orderService.getAllOrders().get(0).getId();
+        entityManager.clear();
+        statistics.clear();
+
+        OrderResponse result = orderService.getOrderById(orderId);
+
+        assertThat(result.getItems()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getOrdersByDateRangePageable_ShouldUseBoundedStatementsRegardlessOfPageSize() {
+        Page<OrderResponse> page = orderService.getOrdersByDateRangePageable(
+                LocalDateTime.now().minusDays(1), LocalDateTime.now().plusDays(1), PageRequest.of(0, 30));
+
+        assertThat(page.getContent()).hasSize(30);
+        assertThat(page.getTotalElements()).isEqualTo(ORDERS);
+        assertThat(page.getContent().get(0).getItems().get(0).getProduct().getName()).startsWith("Producto");
+        // Página + conteo + ítems, productos y categorías por lotes
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(5);
+    }
+}
@@ -3,6 +3,9 @@ package com.cafelimon.service;
 import com.cafelimon.dto.order.*;
 import com.cafelimon.dto.product.ProductResponse;
 import com.cafelimon.dto.table.TableResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.*;
 import com.cafelimon.repository.OrderItemRepository;
@@ -12,9 +15,11 @@ import com.cafelimon.repository.TableRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -27,10 +32,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -56,7 +63,7 @@ class OrderServiceTest {
     private TableService tableService;
 
     @Mock
-    private WebSocketService webSocketService;
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private OrderService orderService;
@@ -128,14 +135,16 @@ class OrderServiceTest {
     @Test
     void getAllOrders_ShouldReturnAllOrders() {
         when(orderRepository.findAll()).thenReturn(Arrays.asList(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         List<OrderResponse> result = orderService.getAllOrders();
 
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getId()).isEqualTo("order-1");
         verify(orderRepository, times(1)).findAll();
+        verify(tableService, never()).getTableById(anyString());
+        verify(productService, never()).getProductById(anyString());
     }
 
     @Test
@@ -146,8 +155,8 @@ class OrderServiceTest {
                 OrderStatus.LISTO
         );
         when(orderRepository.findActiveOrders(activeStatuses)).thenReturn(Arrays.asList(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         List<OrderResponse> result = orderService.getActiveOrders();
 
@@ -158,8 +167,8 @@ class OrderServiceTest {
     @Test
     void getOrdersByStatus_ShouldReturnOrdersWithStatus() {
         when(orderRepository.findByStatus(OrderStatus.PENDING)).thenReturn(Arrays.asList(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         List<OrderResponse> result = orderService.getOrdersByStatus(OrderStatus.PENDING);
 
@@ -171,8 +180,8 @@ class OrderServiceTest {
     @Test
     void getOrdersByTable_ShouldReturnOrdersForTable() {
         when(orderRepository.findByTableId("table-1")).thenReturn(Arrays.asList(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         List<OrderResponse> result = orderService.getOrdersByTable("table-1");
 
@@ -186,8 +195,8 @@ class OrderServiceTest {
         LocalDateTime end = LocalDateTime.now();
 
         when(orderRepository.findByDateRange(start, end)).thenReturn(Arrays.asList(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         List<OrderResponse> result = orderService.getOrdersByDateRange(start, end);
 
@@ -203,8 +212,8 @@ class OrderServiceTest {
         Page<Order> page = new PageImpl<>(Arrays.asList(order));
 
         when(orderRepository.findByDateRangePageable(start, end, pageable)).thenReturn(page);
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         Page<OrderResponse> result = orderService.getOrdersByDateRangePageable(start, end, pageable);
 
@@ -215,8 +224,8 @@ class OrderServiceTest {
     @Test
     void getOrderById_WhenOrderExists_ShouldReturnOrder() {
         when(orderRepository.findById("order-1")).thenReturn(Optional.of(order));
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         OrderResponse result = orderService.getOrderById("order-1");
 
@@ -246,25 +255,20 @@ class OrderServiceTest {
         request.setItems(Arrays.asList(itemRequest));
 
         when(tableRepository.findById("table-1")).thenReturn(Optional.of(table));
-        when(productRepository.findById("prod-1")).thenReturn(Optional.of(product));
+        when(productRepository.findAllById(Set.of("prod-1"))).thenReturn(List.of(product));
         when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
-        doNothing().when(productService).incrementOrderCount(anyString());
-        doNothing().when(webSocketService).notifyNewOrder(any());
-        doNothing().when(webSocketService).notifyKitchen(any());
-        doNothing().when(webSocketService).notifyOrderUpdateToTable(anyString(), any());
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         OrderResponse result = orderService.createOrder(request);
 
         assertThat(result).isNotNull();
         verify(tableRepository, times(1)).findById("table-1");
-        verify(productRepository, times(1)).findById("prod-1");
+        verify(productRepository, times(1)).findAllById(Set.of("prod-1"));
+        verify(productRepository, never()).findById(anyString());
         verify(orderRepository, times(1)).save(any(Order.class));
-        verify(productService, times(1)).incrementOrderCount("prod-1");
-        verify(webSocketService, times(1)).notifyNewOrder(any());
-        verify(webSocketService, times(1)).notifyKitchen(any());
-        verify(webSocketService, times(1)).notifyOrderUpdateToTable(anyString(), any());
+        verify(productRepository, never()).incrementOrderCounts(any(), anyLong());
+        verify(eventPublisher, times(1)).publishEvent(any(OrderCreatedEvent.class));
     }
 
     @Test
@@ -293,11 +297,60 @@ class OrderServiceTest {
         request.setItems(Arrays.asList(itemRequest));
 
         when(tableRepository.findById("table-1")).thenReturn(Optional.of(table));
-        when(productRepository.findById("prod-1")).thenReturn(Optional.of(product));
+        when(productRepository.findAllById(Set.of("prod-1"))).thenReturn(List.of(product));
 
         assertThatThrownBy(() -> orderService.createOrder(request))
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Producto no disponible: Café");
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void createOrder_WithUnknownProduct_ShouldThrowException() {
+        OrderItemRequest itemRequest = new OrderItemRequest();
+        itemRequest.setProductId("prod-missing");
+        itemRequest.setQuantity(1);
+
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setTableId("table-1");
+        request.setItems(Arrays.asList(itemRequest));
+
+        when(tableRepository.findById("table-1")).thenReturn(Optional.of(table));
+        when(productRepository.findAllById(Set.of("prod-missing"))).thenReturn(List.of());
+
+        assertThatThrownBy(() -> orderService.createOrder(request))
+                .isInstanceOf(ResourceNotFoundException.class)
+                .hasMessageContaining("Producto no encontrado con ID: prod-missing");
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void createOrder_WithRepeatedProduct_ShouldResolveProductsOnce() {
+        OrderItemRequest first = new OrderItemRequest();
+        first.setProductId("prod-1");
+        first.setQuantity(1);
+        OrderItemRequest second = new OrderItemRequest();
+        second.setProductId("prod-1");
+        second.setQuantity(3);
+        second.setNotes("Sin azúcar");
+
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setTableId("table-1");
+        request.setItems(Arrays.asList(first, second));
+
+        when(tableRepository.findById("table-1")).thenReturn(Optional.of(table));
+        when(productRepository.findAllById(Set.of("prod-1"))).thenReturn(List.of(product));
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
+
+        OrderResponse result = orderService.createOrder(request);
+
+        assertThat(result.getItems()).hasSize(2);
+        verify(productRepository, times(1)).findAllById(Set.of("prod-1"));
+        ArgumentCaptor<OrderCreatedEvent> event = ArgumentCaptor.forClass(OrderCreatedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getProductIds()).containsExactly("prod-1", "prod-1");
     }
 
     @Test
@@ -306,17 +359,38 @@ class OrderServiceTest {
         request.setStatus(OrderStatus.LISTO);
 
         when(orderRepository.findById("order-1")).thenReturn(Optional.of(order));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
-        doNothing().when(webSocketService).notifyOrderStatusUpdate(any());
-        doNothing().when(webSocketService).notifyOrderUpdateToTable(anyString(), any());
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         OrderResponse result = orderService.updateOrderStatus("order-1", request);
 
         assertThat(result).isNotNull();
-        verify(orderRepository, times(1)).save(any(Order.class));
-        verify(webSocketService, times(1)).notifyOrderStatusUpdate(any());
+        verify(orderRepository, times(1)).saveAndFlush(any(Order.class));
+        ArgumentCaptor<OrderStatusChangedEvent> event = ArgumentCaptor.forClass(OrderStatusChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getNewStatus()).isEqualTo(OrderStatus.LISTO);
+        assertThat(event.getValue().getOrder()).isSameAs(result);
+        assertThat(event.getValue().isFirstReady()).isTrue();
+        assertThat(event.getValue().isFirstDelivered()).isFalse();
+    }
+
+    @Test
+    void updateOrderStatus_WhenReadyAgain_ShouldNotMarkFirstReady() {
+        order.setReadyAt(LocalDateTime.now().minusMinutes(5));
+        UpdateOrderStatusRequest request = new UpdateOrderStatusRequest();
+        request.setStatus(OrderStatus.LISTO);
+
+        when(orderRepository.findById("order-1")).thenReturn(Optional.of(order));
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
+
+        orderService.updateOrderStatus("order-1", request);
+
+        ArgumentCaptor<OrderStatusChangedEvent> event = ArgumentCaptor.forClass(OrderStatusChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().isFirstReady()).isFalse();
     }
 
     @Test
@@ -325,25 +399,31 @@ class OrderServiceTest {
         request.setStatus(OrderStatus.ENTREGADO);
 
         when(orderRepository.findById("order-1")).thenReturn(Optional.of(order));
-        when(orderRepository.save(any(Order.class))).thenReturn(order);
-        when(tableService.getTableById(anyString())).thenReturn(tableResponse);
-        when(productService.getProductById(anyString())).thenReturn(productResponse);
-        doNothing().when(webSocketService).notifyOrderStatusUpdate(any());
-        doNothing().when(webSocketService).notifyOrderUpdateToTable(anyString(), any());
+        when(orderRepository.saveAndFlush(any(Order.class))).thenReturn(order);
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         OrderResponse result = orderService.updateOrderStatus("order-1", request);
 
         assertThat(result).isNotNull();
-        verify(orderRepository, times(1)).save(any(Order.class));
+        verify(orderRepository, times(1)).saveAndFlush(any(Order.class));
     }
 
     @Test
     void deleteOrder_WhenOrderExists_ShouldDeleteOrder() {
         when(orderRepository.findById("order-1")).thenReturn(Optional.of(order));
+        when(tableService.toSummary(any(Table.class))).thenReturn(tableResponse);
+        when(productService.toResponse(any(Product.class))).thenReturn(productResponse);
 
         orderService.deleteOrder("order-1");
 
         verify(orderRepository, times(1)).delete(order);
+        ArgumentCaptor<OrderDeletedEvent> event = ArgumentCaptor.forClass(OrderDeletedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertThat(event.getValue().getOrderId()).isEqualTo("order-1");
+        assertThat(event.getValue().getOrder().getTotalAmount()).isEqualTo(order.getTotalAmount());
+        assertThat(event.getValue().getOrder().getItems()).hasSize(order.getItems().size());
+        assertThat(event.getValue().isRelayed()).isFalse();
     }
 
     @Test
@@ -363,22 +443,4 @@ class OrderServiceTest {
         assertThat(count).isEqualTo(5L);
         verify(orderRepository, times(1)).countByStatus(OrderStatus.PENDING);
     }
-
-    @Test
-    void getAveragePreparationTime_WhenDataExists_ShouldReturnAverage() {
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(15.5);
-
-        Double avgTime = orderService.getAveragePreparationTime();
-
-        assertThat(avgTime).isEqualTo(15.5);
-    }
-
-    @Test
-    void getAveragePreparationTime_WhenNoData_ShouldReturnZero() {
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(null);
-
-        Double avgTime = orderService.getAveragePreparationTime();
-
-        assertThat(avgTime).isEqualTo(0.0);
-    }
 }
@@ -0,0 +1,166 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.OrderStatusDelta;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStatusCountersTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private WebSocketService webSocketService;
+
+    @Mock
+    private ClusterEventRelay relay;
+
+    private ObjectMapper objectMapper;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderStatusCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper().findAndRegisterModules();
+        meterRegistry = new SimpleMeterRegistry();
+        StatsProperties properties = new StatsProperties();
+        properties.getStatusCounts().setPushDelayMs(50);
+        counters = new OrderStatusCounters(orderService, webSocketService, relay, objectMapper,
+                properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        counters.shutdown();
+    }
+
+    @Test
+    void events_ShouldMoveOrdersBetweenStatusesWithoutQueries() {
+        counters.onOrderCreated(created("o1"));
+        counters.onOrderCreated(created("o2"));
+        counters.onOrderStatusChanged(changed("o1", OrderStatus.PENDING, OrderStatus.EN_PREPARACION));
+        counters.onOrderStatusChanged(changed("o1", OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        counters.onOrderStatusChanged(changed("o2", OrderStatus.PENDING, OrderStatus.PENDING));
+
+        StatusCountsResponse counts = counters.getCounts();
+
+        assertThat(counts.getPendingOrders()).isEqualTo(1L);
+        assertThat(counts.getPreparingOrders()).isZero();
+        assertThat(counts.getReadyOrders()).isEqualTo(1L);
+        assertThat(meterRegistry.get("cafelimon.orders.status").tag("status", "LISTO").gauge().value())
+                .isEqualTo(1.0);
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void changes_ShouldBePushedOnceAfterTheWindow() {
+        counters.onOrderCreated(created("o1"));
+        counters.onOrderCreated(created("o2"));
+        counters.onOrderStatusChanged(changed("o1", OrderStatus.PENDING, OrderStatus.CANCELADO));
+
+        StatusCountsResponse expected = StatusCountsResponse.builder()
+                .pendingOrders(1L).preparingOrders(0L).readyOrders(0L).deliveredOrders(0L).cancelledOrders(1L)
+                .build();
+        verify(webSocketService, timeout(1000)).notifyStatusCounts(expected);
+        verify(webSocketService, after(200).times(1)).notifyStatusCounts(any());
+    }
+
+    @Test
+    void onOrderDeleted_ShouldRemoveOrderFromItsStatusUnlessTheQueryAlreadySawIt() {
+        when(orderService.countOrdersGroupedByStatus()).thenReturn(Map.of(OrderStatus.LISTO, 3L));
+        counters.reconcile();
+        OrderResponse order = OrderResponse.builder().id("o1").status(OrderStatus.LISTO).build();
+
+        counters.onOrderDeleted(new OrderDeletedEvent("o1", "table-1", order, LocalDateTime.now()));
+        // Eliminada en otro nodo antes de la consulta: ya no estaba en su resultado
+        counters.onOrderDeleted(new OrderDeletedEvent("o2", "table-1", order, LocalDateTime.now().minusMinutes(1), true));
+
+        assertThat(counters.getCounts().getReadyOrders()).isEqualTo(2L);
+    }
+
+    @Test
+    void reconcile_ShouldKeepOnlyChangesNewerThanTheQuery() {
+        counters.onOrderCreated(created("o1"));
+        when(orderService.countOrdersGroupedByStatus()).thenAnswer(invocation -> {
+            // Guardada antes de empezar la consulta: ya está en su resultado
+            counters.onOrderCreated(created("o8", LocalDateTime.now().minusMinutes(1)));
+            // Guardada después: se suma al resultado
+            counters.onOrderCreated(created("o9", LocalDateTime.now().plusMinutes(1)));
+            return Map.of(OrderStatus.PENDING, 4L, OrderStatus.ENTREGADO, 10L);
+        });
+
+        counters.reconcile();
+
+        StatusCountsResponse counts = counters.getCounts();
+        assertThat(counts.getPendingOrders()).isEqualTo(5L);
+        assertThat(counts.getDeliveredOrders()).isEqualTo(10L);
+        verify(orderService, times(1)).countOrdersGroupedByStatus();
+        assertThat(meterRegistry.get("cafelimon.orders.status.corrected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void onRelayedMessage_WhenOlderThanTheLastReconcile_ShouldBeIgnored() throws Exception {
+        LocalDateTime savedAt = LocalDateTime.now().minusSeconds(5);
+        // La consulta ya vio la orden de otro nodo antes de que llegara su notificación
+        when(orderService.countOrdersGroupedByStatus()).thenReturn(Map.of(OrderStatus.PENDING, 1L));
+        counters.reconcile();
+
+        counters.onRelayedMessage(WebSocketService.NEW_ORDERS_TOPIC, objectMapper.writeValueAsBytes(
+                OrderResponse.builder().id("o1").status(OrderStatus.PENDING).updatedAt(savedAt).build()));
+        counters.onRelayedMessage(WebSocketService.NEW_ORDERS_TOPIC, objectMapper.writeValueAsBytes(
+                OrderResponse.builder().id("o2").status(OrderStatus.PENDING)
+                        .updatedAt(LocalDateTime.now().plusSeconds(5)).build()));
+
+        assertThat(counters.getCounts().getPendingOrders()).isEqualTo(2L);
+    }
+
+    @Test
+    void onRelayedMessage_ShouldCountOrdersOfOtherNodes() throws Exception {
+        counters.onRelayedMessage(WebSocketService.NEW_ORDERS_TOPIC,
+                objectMapper.writeValueAsBytes(OrderResponse.builder().id("o1").status(OrderStatus.PENDING).build()));
+        counters.onRelayedMessage(WebSocketService.ORDER_STATUS_TOPIC,
+                objectMapper.writeValueAsBytes(OrderStatusDelta.builder().orderId("o1")
+                        .oldStatus(OrderStatus.PENDING).newStatus(OrderStatus.EN_PREPARACION).build()));
+        // La orden completa también llega a /topic/orders/updates y no debe contarse dos veces
+        counters.onRelayedMessage(WebSocketService.ORDER_UPDATES_TOPIC,
+                objectMapper.writeValueAsBytes(OrderResponse.builder().id("o1").status(OrderStatus.EN_PREPARACION).build()));
+
+        assertThat(counters.getCounts().getPendingOrders()).isZero();
+        assertThat(counters.getCounts().getPreparingOrders()).isEqualTo(1L);
+    }
+
+    private static OrderCreatedEvent created(String orderId) {
+        return created(orderId, null);
+    }
+
+    private static OrderCreatedEvent created(String orderId, LocalDateTime updatedAt) {
+        OrderResponse order = OrderResponse.builder().id(orderId).status(OrderStatus.PENDING).updatedAt(updatedAt).build();
+        return new OrderCreatedEvent(orderId, "table-1", List.of(), order);
+    }
+
+    private static OrderStatusChangedEvent changed(String orderId, OrderStatus from, OrderStatus to) {
+        return new OrderStatusChangedEvent(orderId, "table-1", from, to, null, false, false);
+    }
+}
@@ -0,0 +1,205 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.controller.OrderController;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.exception.GlobalExceptionHandler;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStreamRegistryTest {
+
+    private static final String TABLE_TOPIC = WebSocketService.tableTopic("table-1");
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private TableRepository tableRepository;
+
+    private WebSocketProperties properties;
+    private WebSocketEventLog eventLog;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderStreamRegistry registry;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        properties = new WebSocketProperties();
+        properties.getReplay().setBufferSize(2);
+        eventLog = new WebSocketEventLog(properties);
+        meterRegistry = new SimpleMeterRegistry();
+        start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        registry.shutdown();
+    }
+
+    @Test
+    void stream_ShouldReceiveOrdersOfItsTableWithEpochAndSeqAsId() throws Exception {
+        MockHttpServletResponse response = open(null);
+
+        publish(WebSocketService.tableTopic("table-2"), "{\"id\":\"other\"}");
+        publish(TABLE_TOPIC, "{\"id\":\"order-1\"}");
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(body(response))
+                .contains("id:" + eventLog.getEpoch() + ":1\nevent:order\ndata:{\"id\":\"order-1\"}\n\n"));
+        assertThat(body(response)).doesNotContain("other");
+        assertThat(response.getContentType()).startsWith("text/event-stream");
+        assertThat(meterRegistry.get("cafelimon.orders.stream.connections").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void stream_WithLastEventId_ShouldResendMissedEventsOnce() throws Exception {
+        publish(TABLE_TOPIC, "{\"id\":\"order-1\"}");
+        publish(TABLE_TOPIC, "{\"id\":\"order-2\"}");
+
+        MockHttpServletResponse response = open(eventLog.getEpoch() + ":1");
+        publish(TABLE_TOPIC, "{\"id\":\"order-3\"}");
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(body(response)).contains("order-3"));
+        String body = body(response);
+        assertThat(body).doesNotContain("order-1");
+        assertThat(body.indexOf("order-2")).isLessThan(body.indexOf("order-3"));
+        assertThat(body.split("order-2", -1)).hasSize(2);
+    }
+
+    @Test
+    void stream_WithLastEventIdOutOfHistory_ShouldSendSnapshot() throws Exception {
+        OrderResponse order = OrderResponse.builder().id("order-9").status(OrderStatus.LISTO).build();
+        when(orderService.getOrdersByTable("table-1")).thenReturn(List.of(order));
+        publish(TABLE_TOPIC, "{\"id\":\"order-1\"}");
+
+        MockHttpServletResponse response = open("otro-arranque:1");
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(body(response))
+                .contains("id:" + eventLog.getEpoch() + ":1\nevent:snapshot\ndata:[{\"id\":\"order-9\""));
+    }
+
+    @Test
+    void stream_ShouldSendHeartbeatComments() throws Exception {
+        registry.shutdown();
+        properties.getSse().setHeartbeatMs(50);
+        start();
+
+        MockHttpServletResponse response = open(null);
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(body(response)).contains(":ping\n\n"));
+    }
+
+    @Test
+    void stream_WhenClientDoesNotKeepUp_ShouldCloseOnlyThatConnection() throws Exception {
+        registry.shutdown();
+        properties.getSse().setSendThreads(1);
+        properties.getSse().setQueueCapacity(1);
+        meterRegistry = new SimpleMeterRegistry();
+        start();
+        MockHttpServletResponse stalled = open(null);
+        when(tableRepository.existsById("table-2")).thenReturn(true);
+        MockHttpServletResponse other = mockMvc.perform(get("/api/orders/table/table-2/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+        // Mientras el hilo de envíos está ocupado, la cola de la primera conexión se llena
+        CountDownLatch busy = new CountDownLatch(1);
+        registry.getExecutor().execute(() -> awaitQuietly(busy));
+
+        publish(TABLE_TOPIC, "{\"id\":\"order-1\"}");
+        publish(TABLE_TOPIC, "{\"id\":\"order-2\"}");
+        publish(WebSocketService.tableTopic("table-2"), "{\"id\":\"order-3\"}");
+        busy.countDown();
+
+        await().atMost(2, TimeUnit.SECONDS).untilAsserted(() -> assertThat(body(other)).contains("order-3"));
+        assertThat(body(stalled)).doesNotContain("order-");
+        assertThat(meterRegistry.get("cafelimon.orders.stream.evicted").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cafelimon.orders.stream.connections").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    void stream_WhenSnapshotFails_ShouldFailTheRequestAndNotKeepTheConnection() throws Exception {
+        when(tableRepository.existsById("table-1")).thenReturn(true);
+        when(orderService.getOrdersByTable("table-1")).thenThrow(new IllegalStateException("sin conexión"));
+
+        // El reenvío se resuelve en el hilo de la petición, antes de entregar la conexión
+        mockMvc.perform(get("/api/orders/table/table-1/stream").header("Last-Event-ID", "otro-arranque:1"))
+                .andExpect(status().isInternalServerError());
+
+        assertThat(meterRegistry.get("cafelimon.orders.stream.connections").gauge().value()).isZero();
+    }
+
+    @Test
+    void stream_WithUnknownTable_ShouldReturnNotFound() throws Exception {
+        when(tableRepository.existsById("missing")).thenReturn(false);
+
+        mockMvc.perform(get("/api/orders/table/missing/stream"))
+                .andExpect(status().isNotFound());
+    }
+
+    private void start() {
+        EventReplayService eventReplayService = new EventReplayService(eventLog, orderService);
+        registry = new OrderStreamRegistry(eventReplayService, eventLog, tableRepository, new ObjectMapper(),
+                properties, meterRegistry);
+        mockMvc = MockMvcBuilders.standaloneSetup(new OrderController(orderService, registry))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    private MockHttpServletResponse open(String lastEventId) throws Exception {
+        when(tableRepository.existsById("table-1")).thenReturn(true);
+        MockHttpServletRequestBuilder stream = get("/api/orders/table/table-1/stream");
+        if (lastEventId != null) {
+            stream.header("Last-Event-ID", lastEventId);
+        }
+        return mockMvc.perform(stream)
+                .andExpect(request().asyncStarted())
+                .andReturn()
+                .getResponse();
+    }
+
+    /**
+     * Publica como lo hace {@link WebSocketService}: numerado en el historial y luego a las conexiones
+     */
+    private void publish(String topic, String json) {
+        eventLog.append(topic, seq -> json.getBytes(StandardCharsets.UTF_8),
+                (payload, seq) -> registry.publish(topic, seq, payload));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String body(MockHttpServletResponse response) throws Exception {
+        return response.getContentAsString(StandardCharsets.UTF_8);
+    }
+}
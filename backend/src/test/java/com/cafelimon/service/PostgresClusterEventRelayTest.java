@@ -0,0 +1,134 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.model.RelayMessage;
+import com.cafelimon.repository.RelayMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresClusterEventRelayTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private RelayMessageRepository messageRepository;
+
+    private PostgresClusterEventRelay relay;
+    private final List<String> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        relay = new PostgresClusterEventRelay(dataSource, messageRepository, new WebSocketProperties());
+        relay.subscribe((destination, payload) ->
+                received.add(destination + " " + new String(payload, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void receive_FromAnotherNode_ShouldDeliverDestinationAndPayload() {
+        relay.receive("otro-nodo\nM\n/topic/kitchen/orders\n{\"id\":\"order-1\",\"notes\":\"línea 1\\nlínea 2\"}");
+
+        assertThat(received).containsExactly("/topic/kitchen/orders {\"id\":\"order-1\",\"notes\":\"línea 1\\nlínea 2\"}");
+    }
+
+    @Test
+    void receive_WithMalformedMessage_ShouldIgnoreIt() {
+        relay.receive("sin-separadores");
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void receive_WithStoredMessage_ShouldLoadItFromDatabase() {
+        RelayMessage stored = RelayMessage.builder()
+                .destination("/topic/orders/new")
+                .payload("{\"id\":\"order-1\"}".getBytes(StandardCharsets.UTF_8))
+                .build();
+        when(messageRepository.findById("msg-1")).thenReturn(Optional.of(stored));
+
+        relay.receive("otro-nodo\nR\nmsg-1");
+
+        assertThat(received).containsExactly("/topic/orders/new {\"id\":\"order-1\"}");
+    }
+
+    @Test
+    void receive_WithMissingStoredMessage_ShouldDeliverNothing() {
+        when(messageRepository.findById("msg-1")).thenReturn(Optional.empty());
+
+        relay.receive("otro-nodo\nR\nmsg-1");
+
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    void publish_WithSmallPayload_ShouldNotifyItInline() throws Exception {
+        PreparedStatement statement = mockStatement();
+
+        relay.publish("/topic/kitchen/orders", "{\"id\":\"order-1\"}".getBytes(StandardCharsets.UTF_8));
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(statement).setString(eq(2), message.capture());
+        assertThat(message.getValue()).endsWith("\nM\n/topic/kitchen/orders\n{\"id\":\"order-1\"}");
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    void publish_WhenPayloadExceedsNotifyLimit_ShouldStoreItAndNotifyItsId() throws Exception {
+        PreparedStatement statement = mockStatement();
+        when(messageRepository.save(any(RelayMessage.class))).thenAnswer(invocation -> {
+            RelayMessage message = invocation.getArgument(0);
+            message.setId("msg-1");
+            return message;
+        });
+        byte[] payload = ("\"" + "x".repeat(PostgresClusterEventRelay.MAX_NOTIFY_BYTES) + "\"")
+                .getBytes(StandardCharsets.UTF_8);
+
+        relay.publish("/topic/orders/new", payload);
+
+        ArgumentCaptor<RelayMessage> stored = ArgumentCaptor.forClass(RelayMessage.class);
+        verify(messageRepository).save(stored.capture());
+        assertThat(stored.getValue().getDestination()).isEqualTo("/topic/orders/new");
+        assertThat(stored.getValue().getPayload()).isSameAs(payload);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(statement).setString(eq(2), message.capture());
+        assertThat(message.getValue()).endsWith("\nR\nmsg-1");
+    }
+
+    @Test
+    void constructor_WithInvalidChannel_ShouldThrowException() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getRelay().setChannel("canal; DROP TABLE orders");
+
+        assertThatThrownBy(() -> new PostgresClusterEventRelay(dataSource, messageRepository, properties))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Canal de relay inválido");
+    }
+
+    private PreparedStatement mockStatement() throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(mock(ResultSet.class));
+        return statement;
+    }
+}
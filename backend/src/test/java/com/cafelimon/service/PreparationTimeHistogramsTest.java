@@ -0,0 +1,353 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.stats.PreparationTimeGroup;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.service.PreparationTimeRollupService.Durations;
+import com.cafelimon.service.PreparationTimeRollupService.Key;
+import com.cafelimon.service.PreparationTimeRollupService.ProductInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PreparationTimeHistogramsTest {
+
+    private static final LocalDateTime CREATED_AT = SalesRollupService.hourOf(LocalDateTime.now()).minusHours(2);
+
+    @Mock
+    private PreparationTimeRollupService rollupService;
+
+    @Mock
+    private RollupLockService rollupLocks;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private PreparationTimeHistograms histograms;
+
+    @BeforeEach
+    void setUp() {
+        histograms = new PreparationTimeHistograms(rollupService, rollupLocks, objectMapper,
+                new InProcessClusterEventRelay(), new StatsProperties());
+    }
+
+    @Test
+    void onOrderStatusChanged_ShouldRecordPreparationWhenReadyAndDeliveryWhenDelivered() {
+        OrderResponse order = order("o1", 10, null, item("p1", "Latte"), item("p2", "Pan de bono"));
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        order.setDeliveredAt(order.getReadyAt().plusMinutes(3));
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.LISTO, OrderStatus.ENTREGADO));
+        histograms.onOrderStatusChanged(changed(order("o2", 20, 5, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.ENTREGADO));
+
+        PreparationTimesResponse times = histograms.getPreparationTimes();
+
+        assertThat(times.getPreparation().getCount()).isEqualTo(2L);
+        assertThat(times.getPreparation().getP50()).isCloseTo(10.0, within(0.2));
+        assertThat(times.getPreparation().getP99()).isCloseTo(20.0, within(0.2));
+        assertThat(times.getDelivery().getCount()).isEqualTo(2L);
+        assertThat(times.getByProduct()).extracting(PreparationTimeGroup::getName)
+                .containsExactly("Latte", "Pan de bono");
+        assertThat(times.getByProduct().get(0).getPreparation().getCount()).isEqualTo(2L);
+        assertThat(times.getByCategory()).singleElement()
+                .satisfies(category -> assertThat(category.getName()).isEqualTo("Cafés"));
+        assertThat(times.getByHour()).singleElement()
+                .satisfies(hour -> assertThat(hour.getHour()).isEqualTo(CREATED_AT));
+        assertThat(histograms.getAveragePreparationMinutes()).isBetween(14.9, 15.1);
+    }
+
+    @Test
+    void onOrderStatusChanged_WhenAlreadyReady_ShouldNotRecordPreparationAgain() {
+        OrderResponse order = order("o1", 10, null, item("p1", "Latte"));
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        // Entregada por error y devuelta a lista
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.ENTREGADO, OrderStatus.LISTO));
+
+        assertThat(histograms.getPreparationTimes().getPreparation().getCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void getPreparationTimes_ShouldReuseResultUntilNextChange() {
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        PreparationTimesResponse first = histograms.getPreparationTimes();
+        assertThat(histograms.getPreparationTimes()).isSameAs(first);
+
+        histograms.onOrderStatusChanged(changed(order("o2", 20, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        assertThat(histograms.getPreparationTimes().getPreparation().getCount()).isEqualTo(2L);
+    }
+
+    @Test
+    void onOrderStatusChanged_WhenReadyAgainAfterGoingBack_ShouldNotRecordPreparationAgain() {
+        OrderResponse order = order("o1", 10, null, item("p1", "Latte"));
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        histograms.onOrderStatusChanged(changed(order, OrderStatus.LISTO, OrderStatus.EN_PREPARACION));
+        // readyAt ya estaba puesto: el recálculo también la cuenta una sola vez
+        histograms.onOrderStatusChanged(new OrderStatusChangedEvent(order.getId(), "table-1",
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO, order, false, false));
+
+        assertThat(histograms.getPreparationTimes().getPreparation().getCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void recordedTimes_ShouldReachOtherNodesInMemoryOnly() {
+        InProcessClusterEventRelay relayA = new InProcessClusterEventRelay();
+        InProcessClusterEventRelay relayB = new InProcessClusterEventRelay();
+        relayA.join();
+        relayB.join();
+        try {
+            PreparationTimeHistograms nodeA = new PreparationTimeHistograms(rollupService, rollupLocks, objectMapper, relayA,
+                    new StatsProperties());
+            PreparationTimeHistograms nodeB = new PreparationTimeHistograms(rollupService, rollupLocks, objectMapper, relayB,
+                    new StatsProperties());
+            nodeA.subscribeToRelay();
+            nodeB.subscribeToRelay();
+
+            nodeA.onOrderStatusChanged(changed(order("o1", 12, null, item("p1", "Latte")),
+                    OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+            nodeB.onRelayedMessage(PreparationTimeHistograms.RELAY_DESTINATION, "{".getBytes());
+
+            PreparationTimesResponse times = nodeB.getPreparationTimes();
+            assertThat(times.getPreparation().getCount()).isEqualTo(1L);
+            assertThat(times.getPreparation().getP50()).isCloseTo(12.0, within(0.2));
+            assertThat(times.getByProduct()).singleElement()
+                    .satisfies(product -> assertThat(product.getName()).isEqualTo("Latte"));
+            assertThat(times.getByCategory()).singleElement()
+                    .satisfies(category -> assertThat(category.getName()).isEqualTo("Cafés"));
+            // Las filas las escribe el nodo que la registró
+            nodeB.flush();
+            verify(rollupService, never()).applyChanges(anyMap(), anyMap(), anyMap());
+        } finally {
+            relayA.leave();
+            relayB.leave();
+        }
+    }
+
+    @Test
+    void rebuild_ShouldDiscardPendingChangesOfTheRebuiltHours() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.PREPARATION_TIMES), anyString(), any())).thenReturn(true);
+        when(rollupLocks.nextGeneration(RollupLockService.PREPARATION_TIMES)).thenReturn(1L);
+        doAnswer(invocation -> {
+            // Lista mientras se recalcula: la lectura de órdenes ya la incluye
+            histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                    OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+            invocation.<Runnable>getArgument(3).run();
+            return null;
+        }).when(rollupService).rebuild(any(), any(), eq(1L), any());
+
+        histograms.rebuild(CREATED_AT.minusHours(1), CREATED_AT.plusHours(1));
+        histograms.flush();
+
+        verify(rollupService, never()).applyChanges(anyMap(), anyMap(), anyMap());
+    }
+
+    @Test
+    void rebuild_WhenItFails_ShouldKeepPendingChanges() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.PREPARATION_TIMES), anyString(), any())).thenReturn(true);
+        when(rollupLocks.nextGeneration(RollupLockService.PREPARATION_TIMES)).thenReturn(1L);
+        doAnswer(invocation -> {
+            histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                    OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+            invocation.<Runnable>getArgument(3).run();
+            throw new DataAccessResourceFailureException("sin conexión");
+        }).when(rollupService).rebuild(any(), any(), eq(1L), any());
+
+        assertThatThrownBy(() -> histograms.rebuild(CREATED_AT.minusHours(1), CREATED_AT.plusHours(1)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        histograms.flush();
+
+        assertThat(captureWritten()).containsOnlyKeys(new Key(CREATED_AT, null), new Key(CREATED_AT, "p1"));
+    }
+
+    @Test
+    void flush_ShouldWriteTotalsAndProductsOfTheCreationHour() {
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte"), item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        histograms.flush();
+
+        Map<Key, Durations> written = captureWritten();
+        assertThat(written).containsOnlyKeys(new Key(CREATED_AT, null), new Key(CREATED_AT, "p1"));
+        assertThat(written.get(new Key(CREATED_AT, "p1")).preparation().getTotalCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void flush_WhenWriteFails_ShouldRetryOnNextFlush() {
+        doThrow(new DataAccessResourceFailureException("sin conexión")).doReturn(Set.of())
+                .when(rollupService).applyChanges(anyMap(), anyMap(), anyMap());
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        histograms.flush();
+        histograms.flush();
+
+        verify(rollupService, times(2)).applyChanges(anyMap(), anyMap(), anyMap());
+        histograms.flush();
+        verifyNoMoreInteractions(rollupService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_ShouldReplaceHistogramsWithStoredRows() {
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        when(rollupService.findProducts()).thenReturn(Map.of("p1", new ProductInfo("Latte", "c1", "Cafés")));
+        doAnswer(invocation -> {
+            BiConsumer<Key, Durations> consumer = invocation.getArgument(0);
+            Durations total = Durations.empty();
+            total.recordPreparation(CREATED_AT, CREATED_AT.plusMinutes(10));
+            total.recordPreparation(CREATED_AT, CREATED_AT.plusMinutes(30));
+            consumer.accept(new Key(CREATED_AT, null), total);
+            consumer.accept(new Key(CREATED_AT, "p1"), total);
+            return null;
+        }).when(rollupService).forEachRollup(any(BiConsumer.class));
+
+        histograms.reload();
+
+        // Lo pendiente se escribe antes de leer las filas, que ya lo incluyen
+        verify(rollupService).applyChanges(anyMap(), anyMap(), anyMap());
+        PreparationTimesResponse times = histograms.getPreparationTimes();
+        assertThat(times.getPreparation().getCount()).isEqualTo(2L);
+        assertThat(times.getByProduct()).singleElement()
+                .satisfies(product -> assertThat(product.getPreparation().getP99()).isCloseTo(30.0, within(0.3)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void onOrderDeleted_ShouldSubtractTimesAndWriteOnlyLocalRemovals() {
+        OrderResponse first = order("o1", 10, 2, item("p1", "Latte"));
+        OrderResponse second = order("o2", 20, null, item("p1", "Latte"));
+        OrderResponse third = order("o3", 30, null, item("p2", "Pan de bono"));
+        histograms.onOrderStatusChanged(changed(first, OrderStatus.EN_PREPARACION, OrderStatus.ENTREGADO));
+        histograms.onOrderStatusChanged(changed(second, OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        histograms.onOrderStatusChanged(changed(third, OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        histograms.onOrderDeleted(new OrderDeletedEvent(first.getId(), "table-1", first, LocalDateTime.now()));
+        // Eliminada en otro nodo: solo se resta en memoria
+        histograms.onOrderDeleted(new OrderDeletedEvent(third.getId(), "table-1", third, LocalDateTime.now(), true));
+
+        PreparationTimesResponse times = histograms.getPreparationTimes();
+        assertThat(times.getPreparation().getCount()).isEqualTo(1L);
+        assertThat(times.getPreparation().getP50()).isCloseTo(20.0, within(0.2));
+        assertThat(times.getDelivery().getCount()).isZero();
+        assertThat(times.getByProduct()).extracting(product -> product.getPreparation().getCount())
+                .containsExactlyInAnyOrder(1L, 0L);
+
+        histograms.flush();
+        ArgumentCaptor<Map<Key, Durations>> removed = ArgumentCaptor.forClass(Map.class);
+        verify(rollupService).applyChanges(anyMap(), removed.capture(), anyMap());
+        assertThat(removed.getValue()).containsOnlyKeys(new Key(CREATED_AT, null), new Key(CREATED_AT, "p1"));
+        assertThat(removed.getValue().get(new Key(CREATED_AT, "p1")).preparation().getTotalCount()).isEqualTo(1L);
+        assertThat(removed.getValue().get(new Key(CREATED_AT, "p1")).delivery().getTotalCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void rebuild_WhenAnotherNodeHoldsTheLock_ShouldNotRebuild() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.PREPARATION_TIMES), anyString(), any())).thenReturn(false);
+
+        assertThat(histograms.rebuild(CREATED_AT.minusHours(1), CREATED_AT.plusHours(1))).isFalse();
+
+        verify(rollupService, never()).rebuild(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void onRelayedMessage_WhenAnotherNodeFinishesRebuilding_ShouldDiscardPendingAndReload() throws Exception {
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        histograms.onRelayedMessage(PreparationTimeHistograms.REBUILT_DESTINATION, objectMapper.writeValueAsBytes(
+                new RollupLockService.Rebuilt(CREATED_AT, CREATED_AT.plusHours(1), 2L, true)));
+
+        // Nada que escribir antes de leer las filas recalculadas
+        verify(rollupService, never()).applyChanges(anyMap(), anyMap(), anyMap());
+        verify(rollupService).forEachRollup(any());
+        assertThat(histograms.getPreparationTimes().getPreparation().getCount()).isZero();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WhenHoursWereRebuiltMeanwhile_ShouldTagNewChangesWithTheLearnedGeneration() {
+        when(rollupService.applyChanges(anyMap(), anyMap(), anyMap())).thenReturn(Set.of(CREATED_AT));
+        when(rollupLocks.currentGeneration(RollupLockService.PREPARATION_TIMES)).thenReturn(5L);
+        histograms.onOrderStatusChanged(changed(order("o1", 10, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+        histograms.flush();
+        histograms.onOrderStatusChanged(changed(order("o2", 20, null, item("p1", "Latte")),
+                OrderStatus.EN_PREPARACION, OrderStatus.LISTO));
+
+        histograms.flush();
+
+        ArgumentCaptor<Map<LocalDateTime, Long>> generations = ArgumentCaptor.forClass(Map.class);
+        verify(rollupService, times(2)).applyChanges(anyMap(), anyMap(), generations.capture());
+        assertThat(generations.getAllValues()).containsExactly(Map.of(CREATED_AT, 0L), Map.of(CREATED_AT, 5L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Key, Durations> captureWritten() {
+        ArgumentCaptor<Map<Key, Durations>> written = ArgumentCaptor.forClass(Map.class);
+        verify(rollupService).applyChanges(written.capture(), anyMap(), anyMap());
+        return written.getValue();
+    }
+
+    /**
+     * Cambio como lo publica OrderService la primera vez que la orden pasa por cada estado
+     */
+    private static OrderStatusChangedEvent changed(OrderResponse order, OrderStatus from, OrderStatus to) {
+        boolean wasReady = from == OrderStatus.LISTO || from == OrderStatus.ENTREGADO;
+        boolean isReady = to == OrderStatus.LISTO || to == OrderStatus.ENTREGADO;
+        return new OrderStatusChangedEvent(order.getId(), "table-1", from, to, order,
+                !wasReady && isReady, from != OrderStatus.ENTREGADO && to == OrderStatus.ENTREGADO);
+    }
+
+    private static OrderResponse order(String id, int readyAfterMinutes, Integer deliveredAfterMinutes,
+                                       OrderItemResponse... items) {
+        LocalDateTime readyAt = CREATED_AT.plusMinutes(readyAfterMinutes);
+        return OrderResponse.builder()
+                .id(id)
+                .createdAt(CREATED_AT)
+                .readyAt(readyAt)
+                .deliveredAt(deliveredAfterMinutes != null ? readyAt.plusMinutes(deliveredAfterMinutes) : null)
+                .items(List.of(items))
+                .build();
+    }
+
+    private static OrderItemResponse item(String productId, String name) {
+        return OrderItemResponse.builder()
+                .product(ProductResponse.builder()
+                        .id(productId)
+                        .name(name)
+                        .category(CategoryResponse.builder().id("c1").name("Cafés").build())
+                        .build())
+                .quantity(1)
+                .build();
+    }
+}
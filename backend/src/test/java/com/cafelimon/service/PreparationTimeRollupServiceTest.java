@@ -0,0 +1,196 @@
+package com.cafelimon.service;
+
+import com.cafelimon.model.Category;
+import com.cafelimon.model.Order;
+import com.cafelimon.model.OrderItem;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.model.PreparationTimeRollup;
+import com.cafelimon.model.Product;
+import com.cafelimon.model.Table;
+import com.cafelimon.service.PreparationTimeRollupService.Durations;
+import com.cafelimon.service.PreparationTimeRollupService.Key;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que los histogramas por hora y producto guardados cuenten cada orden lista una vez
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({PreparationTimeRollupService.class, RollupLockService.class})
+class PreparationTimeRollupServiceTest {
+
+    private static final LocalDateTime DAY = LocalDate.now().minusDays(3).atStartOfDay();
+
+    @Autowired
+    private PreparationTimeRollupService rollupService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product latte;
+    private Product bread;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        Category category = Category.builder().name("Cafés").orderIndex(0).active(true).build();
+        entityManager.persist(category);
+        latte = product(category, "Latte");
+        bread = product(category, "Pan de bono");
+        table = Table.builder().number("1").capacity(4).qrCode("data:image/png;base64,QR").build();
+        entityManager.persist(table);
+
+        LocalDateTime eight = DAY.withHour(8).withMinute(10);
+        order(eight, OrderStatus.ENTREGADO, eight.plusMinutes(6), eight.plusMinutes(10), latte, bread);
+        LocalDateTime half = DAY.withHour(8).withMinute(30);
+        order(half, OrderStatus.LISTO, half.plusMinutes(12), null, latte, latte);
+        LocalDateTime nine = DAY.withHour(9).withMinute(5);
+        order(nine, OrderStatus.ENTREGADO, nine.plusMinutes(20), nine.plusMinutes(22), bread);
+        order(DAY.withHour(9).withMinute(40), OrderStatus.PENDING, null, null, latte);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void rebuild_ShouldRecordReadyOrdersPerHourAndProduct() {
+        rollupService.rebuild(DAY, DAY.plusDays(1));
+        // Recalcular de nuevo reemplaza las filas en lugar de duplicarlas
+        rollupService.rebuild(DAY, DAY.plusDays(1));
+
+        Map<Key, Durations> rows = rows();
+        assertThat(rows).containsOnlyKeys(
+                new Key(DAY.withHour(8), null), new Key(DAY.withHour(8), latte.getId()),
+                new Key(DAY.withHour(8), bread.getId()),
+                new Key(DAY.withHour(9), null), new Key(DAY.withHour(9), bread.getId()));
+
+        Durations eight = rows.get(new Key(DAY.withHour(8), null));
+        assertThat(eight.preparation().getTotalCount()).isEqualTo(2L);
+        assertThat(eight.delivery().getTotalCount()).isEqualTo(1L);
+        assertThat(eight.delivery().getMaxValue()).isBetween(238L, 242L);
+        // La orden con dos ítems del mismo producto cuenta una vez
+        Durations latteAtEight = rows.get(new Key(DAY.withHour(8), latte.getId()));
+        assertThat(latteAtEight.preparation().getTotalCount()).isEqualTo(2L);
+        assertThat(latteAtEight.preparation().getMaxValue()).isBetween(715L, 725L);
+    }
+
+    @Test
+    void applyChanges_ShouldCreateMissingRowsAndMergeExistingOnes() {
+        rollupService.rebuild(DAY, DAY.plusDays(1));
+        Durations late = Durations.empty();
+        late.recordPreparation(DAY.withHour(9), DAY.withHour(9).plusMinutes(45));
+
+        rollupService.applyChanges(Map.of(new Key(DAY.withHour(9), null), late,
+                new Key(DAY.withHour(9), latte.getId()), late));
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Key, Durations> rows = rows();
+        Durations nine = rows.get(new Key(DAY.withHour(9), null));
+        assertThat(nine.preparation().getTotalCount()).isEqualTo(2L);
+        assertThat(nine.preparation().getMaxValue()).isBetween(2690L, 2710L);
+        assertThat(rows.get(new Key(DAY.withHour(9), latte.getId())).preparation().getTotalCount()).isEqualTo(1L);
+    }
+
+    @Test
+    void applyChanges_ShouldStoreTotalsUnderAllProductsKey() {
+        Durations times = Durations.empty();
+        times.recordPreparation(DAY.withHour(10), DAY.withHour(10).plusMinutes(5));
+
+        rollupService.applyChanges(Map.of(new Key(DAY.withHour(10), null), times));
+        rollupService.applyChanges(Map.of(new Key(DAY.withHour(10), null), times));
+        entityManager.flush();
+        entityManager.clear();
+
+        // Una sola fila con el producto no nulo, así la clave única la protege
+        assertThat(entityManager.createQuery("SELECT r.productId FROM PreparationTimeRollup r", String.class)
+                .getResultList()).containsExactly(PreparationTimeRollup.ALL_PRODUCTS);
+        assertThat(rows().get(new Key(DAY.withHour(10), null)).preparation().getTotalCount()).isEqualTo(2L);
+    }
+
+    @Test
+    void applyChanges_WithRemovals_ShouldSubtractFromExistingRowsOnly() {
+        rollupService.rebuild(DAY, DAY.plusDays(1));
+        LocalDateTime nine = DAY.withHour(9).withMinute(5);
+        Durations deleted = Durations.empty();
+        deleted.recordPreparation(nine, nine.plusMinutes(20));
+        deleted.recordDelivery(nine.plusMinutes(20), nine.plusMinutes(22));
+
+        rollupService.applyChanges(Map.of(), Map.of(new Key(DAY.withHour(9), null), deleted,
+                new Key(DAY.withHour(11), null), deleted), Map.of());
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Key, Durations> rows = rows();
+        assertThat(rows).doesNotContainKey(new Key(DAY.withHour(11), null));
+        assertThat(rows.get(new Key(DAY.withHour(9), null)).preparation().getTotalCount()).isZero();
+        assertThat(rows.get(new Key(DAY.withHour(9), null)).delivery().getTotalCount()).isZero();
+        assertThat(rows.get(new Key(DAY.withHour(8), null)).preparation().getTotalCount()).isEqualTo(2L);
+    }
+
+    @Test
+    void findProducts_ShouldIncludeCategory() {
+        assertThat(rollupService.findProducts().get(bread.getId()))
+                .isEqualTo(new PreparationTimeRollupService.ProductInfo("Pan de bono",
+                        bread.getCategory().getId(), "Cafés"));
+    }
+
+    private Map<Key, Durations> rows() {
+        Map<Key, Durations> rows = new HashMap<>();
+        rollupService.forEachRollup(rows::put);
+        return rows;
+    }
+
+    private Product product(Category category, String name) {
+        Product product = Product.builder()
+                .name(name)
+                .price(new BigDecimal("3000"))
+                .category(category)
+                .available(true)
+                .orderCount(0L)
+                .build();
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void order(LocalDateTime createdAt, OrderStatus status, LocalDateTime readyAt,
+                       LocalDateTime deliveredAt, Product... products) {
+        Order order = Order.builder().table(table).status(status).items(new ArrayList<>()).build();
+        for (Product product : products) {
+            OrderItem item = OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity(1)
+                    .unitPrice(product.getPrice())
+                    .build();
+            item.calculateSubtotal();
+            order.getItems().add(item);
+        }
+        order.calculateTotal();
+        entityManager.persist(order);
+        entityManager.flush();
+        // createdAt lo pone la auditoría al insertar
+        entityManager.createQuery("UPDATE Order o SET o.createdAt = :createdAt, o.readyAt = :readyAt, "
+                        + "o.deliveredAt = :deliveredAt WHERE o.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("readyAt", readyAt)
+                .setParameter("deliveredAt", deliveredAt)
+                .setParameter("id", order.getId())
+                .executeUpdate();
+    }
+}
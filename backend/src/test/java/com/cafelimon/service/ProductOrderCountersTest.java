@@ -0,0 +1,134 @@
+package com.cafelimon.service;
+
+import com.cafelimon.event.OrderCreatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductOrderCountersTest {
+
+    @Mock
+    private ProductService productService;
+
+    private ProductOrderCounters orderCounters;
+
+    @BeforeEach
+    void setUp() {
+        orderCounters = new ProductOrderCounters(productService);
+    }
+
+    @Test
+    void record_ShouldAccumulateUntilFlush() {
+        orderCounters.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p1", "p2", "p1"), null));
+
+        assertThat(orderCounters.pendingCount("p1")).isEqualTo(2L);
+        assertThat(orderCounters.currentCount("p1", 10L)).isEqualTo(12L);
+        assertThat(orderCounters.currentCount("p3", null)).isZero();
+
+        orderCounters.flush();
+
+        verify(productService, times(1)).incrementOrderCounts(Map.of("p1", 2L, "p2", 1L));
+        assertThat(orderCounters.pendingCount("p1")).isZero();
+    }
+
+    @Test
+    void flush_WithNothingPending_ShouldNotTouchDatabase() {
+        orderCounters.record(List.of("p1"));
+        orderCounters.flush();
+        orderCounters.flush();
+
+        verify(productService, times(1)).incrementOrderCounts(anyMap());
+    }
+
+    @Test
+    void flush_WhenUpdateFails_ShouldKeepDeltasForNextFlush() {
+        doThrow(new IllegalStateException("sin conexión"))
+                .doNothing()
+                .when(productService).incrementOrderCounts(anyMap());
+        orderCounters.record(List.of("p1", "p1"));
+
+        orderCounters.flush();
+        assertThat(orderCounters.pendingCount("p1")).isEqualTo(2L);
+
+        orderCounters.record(List.of("p1"));
+        orderCounters.flushOnShutdown();
+
+        verify(productService, times(1)).incrementOrderCounts(Map.of("p1", 3L));
+        assertThat(orderCounters.pendingCount("p1")).isZero();
+    }
+
+    @Test
+    void concurrentOrdersAndFlushes_ShouldNotLoseIncrements() throws Exception {
+        Map<String, AtomicLong> persisted = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            Map<String, Long> deltas = invocation.getArgument(0);
+            deltas.forEach((productId, delta) ->
+                    persisted.computeIfAbsent(productId, id -> new AtomicLong()).addAndGet(delta));
+            return null;
+        }).when(productService).incrementOrderCounts(anyMap());
+
+        int writers = 16;
+        int ordersPerWriter = 30_000;
+        List<String> products = List.of("capuchino", "americano", "limonada");
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+
+        try {
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    orderCounters.flush();
+                }
+                return null;
+            });
+            List<Future<?>> orders = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                orders.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ordersPerWriter; i++) {
+                        // Cada orden pide dos capuchinos y un producto más
+                        orderCounters.record(List.of("capuchino", "capuchino", products.get(i % products.size())));
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> order : orders) {
+                order.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            flusher.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        orderCounters.flush();
+
+        long total = (long) writers * ordersPerWriter;
+        long perProduct = total / products.size();
+        assertThat(persisted.get("capuchino").get()).isEqualTo(2 * total + perProduct);
+        assertThat(persisted.get("americano").get()).isEqualTo(perProduct);
+        assertThat(persisted.get("limonada").get()).isEqualTo(perProduct);
+        products.forEach(productId -> assertThat(orderCounters.pendingCount(productId)).isZero());
+    }
+}
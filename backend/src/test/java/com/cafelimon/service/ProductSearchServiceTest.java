@@ -0,0 +1,219 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.product.ProductSuggestion;
+import com.cafelimon.event.CatalogChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @Mock
+    private TopProductsRanking topProductsRanking;
+
+    @InjectMocks
+    private ProductSearchService productSearchService;
+
+    private ProductResponse americano;
+    private ProductResponse lemonade;
+    private ProductResponse cheesecake;
+    private ProductResponse latte;
+
+    @BeforeEach
+    void setUp() {
+        americano = product("prod-1", "Café Americano", "Café negro tradicional", true, 10L);
+        lemonade = product("prod-2", "Limonada", "Jugo de limón natural", true, 5L);
+        cheesecake = product("prod-3", "Cheesecake de Limón", "Postre frío", false, 30L);
+        latte = product("prod-4", "Latte", "Espresso con leche y un toque de café", true, 50L);
+    }
+
+    private ProductResponse product(String id, String name, String description, boolean available, long orderCount) {
+        return ProductResponse.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .available(available)
+                .orderCount(orderCount)
+                .build();
+    }
+
+    /**
+     * El ranking responde con los contadores indicados o, si no, con los del producto
+     */
+    private void stubOrderCounts(List<ProductResponse> products, Map<String, Long> live) {
+        Map<String, Long> counts = new HashMap<>();
+        products.forEach(product -> counts.put(product.getId(), product.getOrderCount()));
+        counts.putAll(live);
+        lenient().when(topProductsRanking.getOrderCounts(anyCollection())).thenAnswer(invocation -> {
+            Map<String, Long> result = new HashMap<>();
+            for (Object id : invocation.getArgument(0, Collection.class)) {
+                result.put((String) id, counts.getOrDefault(id, 0L));
+            }
+            return result;
+        });
+    }
+
+    private List<String> ids(List<ProductResponse> products) {
+        return products.stream().map(ProductResponse::getId).toList();
+    }
+
+    @Test
+    void search_ShouldIgnoreAccentsAndCase() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+
+        assertThat(ids(productSearchService.search("CAFE", false, 20))).containsExactly("prod-1", "prod-4");
+        assertThat(ids(productSearchService.search("limón", false, 20))).containsExactlyInAnyOrder("prod-2", "prod-3");
+        assertThat(ids(productSearchService.search("limon", false, 20))).containsExactlyInAnyOrder("prod-2", "prod-3");
+    }
+
+    @Test
+    void search_ShouldRankNameMatchesBeforeDescriptionMatches() {
+        when(productService.getAllProducts()).thenReturn(List.of(latte, americano));
+
+        List<ProductResponse> result = productSearchService.search("cafe", false, 20);
+
+        assertThat(ids(result)).containsExactly("prod-1", "prod-4");
+    }
+
+    @Test
+    void search_WithShortTerm_ShouldMatchWordPrefixes() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+
+        assertThat(ids(productSearchService.search("li", false, 20))).containsExactly("prod-2", "prod-3");
+        assertThat(ids(productSearchService.search("mo", false, 20))).isEmpty();
+    }
+
+    @Test
+    void search_WithSubstring_ShouldMatchInsideWords() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+
+        assertThat(ids(productSearchService.search("monada", false, 20))).containsExactly("prod-2");
+        assertThat(ids(productSearchService.search("xyz", false, 20))).isEmpty();
+    }
+
+    @Test
+    void search_WithSeveralTerms_ShouldRequireAllOfThem() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+
+        assertThat(ids(productSearchService.search("cheesecake limon", false, 20))).containsExactly("prod-3");
+        assertThat(ids(productSearchService.search("latte limon", false, 20))).isEmpty();
+    }
+
+    @Test
+    void search_WithAvailableOnly_ShouldSkipUnavailableProducts() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+
+        assertThat(ids(productSearchService.search("limon", true, 20))).containsExactly("prod-2");
+    }
+
+    @Test
+    void search_ShouldApplyLimitAndBreakTiesByOrderCount() {
+        List<ProductResponse> products = new ArrayList<>();
+        IntStream.range(0, 80).forEach(i ->
+                products.add(product("tea-" + i, "Té " + i, null, true, i)));
+        when(productService.getAllProducts()).thenReturn(products);
+
+        assertThat(ids(productSearchService.search("te", false, 3))).containsExactly("tea-79", "tea-78", "tea-77");
+        assertThat(productSearchService.search("te", false, 1000)).hasSize(ProductSearchService.MAX_LIMIT);
+    }
+
+    @Test
+    void search_WithBlankQuery_ShouldReturnEmptyList() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano));
+
+        assertThat(productSearchService.search("  ", false, 20)).isEmpty();
+        assertThat(productSearchService.search(null, false, 20)).isEmpty();
+    }
+
+    @Test
+    void suggest_ShouldRankPrefixMatchesByAvailabilityAndOrderCount() {
+        ProductResponse cappuccino = product("prod-5", "Capuchino", null, true, 80L);
+        ProductResponse carajillo = product("prod-6", "Carajillo", null, false, 200L);
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cappuccino, carajillo));
+        stubOrderCounts(List.of(americano, lemonade, cappuccino, carajillo), Map.of());
+
+        List<ProductSuggestion> result = productSearchService.suggest("ca", 10);
+
+        assertThat(result).extracting(ProductSuggestion::getId).containsExactly("prod-5", "prod-1", "prod-6");
+        assertThat(result.get(0).getName()).isEqualTo("Capuchino");
+    }
+
+    @Test
+    void suggest_ShouldMatchOnlyNameWordPrefixesWithoutAccents() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+        stubOrderCounts(List.of(americano, lemonade, cheesecake, latte), Map.of());
+
+        assertThat(productSearchService.suggest("LIMÓ", 10)).extracting(ProductSuggestion::getId)
+                .containsExactly("prod-2", "prod-3");
+        assertThat(productSearchService.suggest("cafe am", 10)).extracting(ProductSuggestion::getId)
+                .containsExactly("prod-1");
+        assertThat(productSearchService.suggest("leche", 10)).isEmpty();
+        assertThat(productSearchService.suggest("mon", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_ShouldApplyLimit() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano, lemonade, cheesecake, latte));
+        stubOrderCounts(List.of(americano, lemonade, cheesecake, latte), Map.of());
+
+        assertThat(productSearchService.suggest("l", 1)).extracting(ProductSuggestion::getId)
+                .containsExactly("prod-4");
+    }
+
+    @Test
+    void suggest_ShouldRankByCurrentOrderCountsInsteadOfIndexedOnes() {
+        ProductResponse cappuccino = product("prod-5", "Capuchino", null, true, 80L);
+        when(productService.getAllProducts()).thenReturn(List.of(americano, cappuccino));
+        // El americano recibió pedidos después de construir el índice
+        stubOrderCounts(List.of(americano, cappuccino), Map.of("prod-1", 120L));
+
+        assertThat(productSearchService.suggest("ca", 10)).extracting(ProductSuggestion::getId)
+                .containsExactly("prod-1", "prod-5");
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void search_ShouldBuildIndexOnlyOnce() {
+        when(productService.getAllProducts()).thenReturn(List.of(americano));
+
+        productSearchService.search("cafe", false, 20);
+        productSearchService.search("americano", false, 20);
+
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void onCatalogChanged_ShouldRebuildIndex() {
+        ProductResponse mocha = product("prod-5", "Mocha", "Café con chocolate", true, 0L);
+        when(productService.getAllProducts())
+                .thenReturn(List.of(americano))
+                .thenReturn(List.of(americano, mocha));
+
+        assertThat(productSearchService.search("mocha", false, 20)).isEmpty();
+
+        productSearchService.onCatalogChanged(
+                CatalogChangedEvent.product(CatalogChangedEvent.Action.CREATED, "prod-5"));
+
+        assertThat(ids(productSearchService.search("mocha", false, 20))).containsExactly("prod-5");
+        verify(productService, times(2)).getAllProducts();
+    }
+}
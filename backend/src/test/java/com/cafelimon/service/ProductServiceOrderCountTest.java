@@ -0,0 +1,79 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductRequest;
+import com.cafelimon.model.Category;
+import com.cafelimon.model.Product;
+import com.cafelimon.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que editar un producto no pise los pedidos que escribe el vaciado de contadores
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({ProductService.class, CategoryService.class})
+class ProductServiceOrderCountTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Category category;
+    private Product latte;
+
+    @BeforeEach
+    void setUp() {
+        category = Category.builder().name("Cafés").orderIndex(0).active(true).build();
+        entityManager.persist(category);
+        latte = Product.builder()
+                .name("Latte")
+                .price(new BigDecimal("3000"))
+                .category(category)
+                .available(true)
+                .orderCount(10L)
+                .build();
+        entityManager.persist(latte);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void updateProduct_WhenCountersFlushAfterRead_ShouldKeepFlushedCount() {
+        // El administrador ya leyó el producto con orderCount = 10
+        Product loaded = productRepository.findById(latte.getId()).orElseThrow();
+        assertThat(loaded.getOrderCount()).isEqualTo(10L);
+        // Un vaciado de contadores se confirma entre la lectura y el guardado
+        productService.incrementOrderCounts(Map.of(latte.getId(), 5L));
+
+        ProductRequest request = new ProductRequest();
+        request.setName("Latte grande");
+        request.setPrice(new BigDecimal("3500"));
+        request.setCategoryId(category.getId());
+        request.setAvailable(false);
+        productService.updateProduct(latte.getId(), request);
+        entityManager.flush();
+        entityManager.clear();
+
+        Product stored = productRepository.findById(latte.getId()).orElseThrow();
+        assertThat(stored.getName()).isEqualTo("Latte grande");
+        assertThat(stored.getAvailable()).isFalse();
+        assertThat(stored.getOrderCount()).isEqualTo(15L);
+    }
+}
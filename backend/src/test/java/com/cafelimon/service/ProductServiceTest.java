@@ -3,6 +3,7 @@ package com.cafelimon.service;
 import com.cafelimon.dto.category.CategoryResponse;
 import com.cafelimon.dto.product.ProductRequest;
 import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.CatalogChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Category;
 import com.cafelimon.model.Product;
@@ -14,11 +15,13 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -39,6 +42,9 @@ class ProductServiceTest {
     @Mock
     private CategoryService categoryService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ProductService productService;
 
@@ -87,20 +93,23 @@ class ProductServiceTest {
     @Test
     void getAllProducts_ShouldReturnAllProducts() {
         when(productRepository.findAll()).thenReturn(Arrays.asList(product1, product2));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         List<ProductResponse> result = productService.getAllProducts();
 
         assertThat(result).hasSize(2);
         assertThat(result.get(0).getName()).isEqualTo("Café Americano");
         assertThat(result.get(1).getName()).isEqualTo("Café Latte");
+        assertThat(result.get(0).getCategory()).isSameAs(categoryResponse);
         verify(productRepository, times(1)).findAll();
+        verify(categoryService, times(1)).toResponse(category);
+        verify(categoryService, never()).getCategoryById(anyString());
     }
 
     @Test
     void getAvailableProducts_ShouldReturnOnlyAvailableProducts() {
         when(productRepository.findByAvailableTrue()).thenReturn(Arrays.asList(product1));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         List<ProductResponse> result = productService.getAvailableProducts();
 
@@ -112,7 +121,7 @@ class ProductServiceTest {
     @Test
     void getProductsByCategory_ShouldReturnProductsInCategory() {
         when(productRepository.findByCategoryId("cat-1")).thenReturn(Arrays.asList(product1, product2));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         List<ProductResponse> result = productService.getProductsByCategory("cat-1");
 
@@ -123,7 +132,7 @@ class ProductServiceTest {
     @Test
     void getAvailableProductsByCategory_ShouldReturnOnlyAvailableProductsInCategory() {
         when(productRepository.findByCategoryIdAndAvailableTrue("cat-1")).thenReturn(Arrays.asList(product1));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         List<ProductResponse> result = productService.getAvailableProductsByCategory("cat-1");
 
@@ -132,45 +141,10 @@ class ProductServiceTest {
         verify(productRepository, times(1)).findByCategoryIdAndAvailableTrue("cat-1");
     }
 
-    @Test
-    void searchProducts_ShouldReturnMatchingProducts() {
-        when(productRepository.searchByName("Café")).thenReturn(Arrays.asList(product1, product2));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
-
-        List<ProductResponse> result = productService.searchProducts("Café");
-
-        assertThat(result).hasSize(2);
-        verify(productRepository, times(1)).searchByName("Café");
-    }
-
-    @Test
-    void searchAvailableProducts_ShouldReturnOnlyAvailableMatchingProducts() {
-        when(productRepository.searchByNameAndAvailable("Café")).thenReturn(Arrays.asList(product1));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
-
-        List<ProductResponse> result = productService.searchAvailableProducts("Café");
-
-        assertThat(result).hasSize(1);
-        assertThat(result.get(0).getAvailable()).isTrue();
-        verify(productRepository, times(1)).searchByNameAndAvailable("Café");
-    }
-
-    @Test
-    void getTopProducts_ShouldReturnMostOrderedProducts() {
-        when(productRepository.findTopProducts()).thenReturn(Arrays.asList(product2, product1));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
-
-        List<ProductResponse> result = productService.getTopProducts();
-
-        assertThat(result).hasSize(2);
-        assertThat(result.get(0).getOrderCount()).isEqualTo(20L);
-        verify(productRepository, times(1)).findTopProducts();
-    }
-
     @Test
     void getProductById_WhenProductExists_ShouldReturnProduct() {
         when(productRepository.findById("prod-1")).thenReturn(Optional.of(product1));
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         ProductResponse result = productService.getProductById("prod-1");
 
@@ -201,13 +175,14 @@ class ProductServiceTest {
 
         when(categoryRepository.findById("cat-1")).thenReturn(Optional.of(category));
         when(productRepository.save(any(Product.class))).thenReturn(product1);
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         ProductResponse result = productService.createProduct(request);
 
         assertThat(result).isNotNull();
         verify(categoryRepository, times(1)).findById("cat-1");
         verify(productRepository, times(1)).save(any(Product.class));
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
@@ -238,7 +213,7 @@ class ProductServiceTest {
         when(productRepository.findById("prod-1")).thenReturn(Optional.of(product1));
         when(categoryRepository.findById("cat-1")).thenReturn(Optional.of(category));
         when(productRepository.save(any(Product.class))).thenReturn(product1);
-        when(categoryService.getCategoryById(anyString())).thenReturn(categoryResponse);
+        when(categoryService.toResponse(any(Category.class))).thenReturn(categoryResponse);
 
         ProductResponse result = productService.updateProduct("prod-1", request);
 
@@ -270,6 +245,7 @@ class ProductServiceTest {
 
         verify(productRepository, times(1)).findById("prod-1");
         verify(productRepository, times(1)).delete(product1);
+        verify(eventPublisher, times(1)).publishEvent(any(CatalogChangedEvent.class));
     }
 
     @Test
@@ -282,28 +258,21 @@ class ProductServiceTest {
     }
 
     @Test
-    void incrementOrderCount_ShouldIncrementCount() {
-        when(productRepository.findById("prod-1")).thenReturn(Optional.of(product1));
-        when(productRepository.save(any(Product.class))).thenReturn(product1);
-
-        productService.incrementOrderCount("prod-1");
-
-        verify(productRepository, times(1)).findById("prod-1");
-        verify(productRepository, times(1)).save(any(Product.class));
+    void incrementOrderCounts_ShouldIssueOneUpdatePerDistinctDelta() {
+        productService.incrementOrderCounts(Map.of("prod-1", 2L, "prod-2", 1L, "prod-3", 1L));
+
+        verify(productRepository, times(1)).incrementOrderCounts(List.of("prod-1"), 2L);
+        verify(productRepository, times(1)).incrementOrderCounts(
+                argThat(ids -> ids.size() == 2 && ids.containsAll(List.of("prod-2", "prod-3"))), eq(1L));
+        verify(productRepository, never()).findById(anyString());
+        verify(productRepository, never()).save(any(Product.class));
     }
 
     @Test
-    void incrementOrderCount_WhenCountIsNull_ShouldSetToOne() {
-        product1.setOrderCount(null);
-        when(productRepository.findById("prod-1")).thenReturn(Optional.of(product1));
-        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> {
-            Product savedProduct = invocation.getArgument(0);
-            assertThat(savedProduct.getOrderCount()).isEqualTo(1L);
-            return savedProduct;
-        });
-
-        productService.incrementOrderCount("prod-1");
+    void incrementOrderCounts_WithSingleProduct_ShouldIssueOneUpdate() {
+        productService.incrementOrderCounts(Map.of("prod-1", 5L));
 
-        verify(productRepository, times(1)).save(any(Product.class));
+        verify(productRepository, times(1)).incrementOrderCounts(List.of("prod-1"), 5L);
+        verifyNoMoreInteractions(productRepository);
     }
 }
@@ -0,0 +1,73 @@
+package com.cafelimon.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import(RollupLockService.class)
+class RollupLockServiceTest {
+
+    private static final LocalDateTime DAY = LocalDate.now().minusDays(1).atStartOfDay();
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    @Autowired
+    private RollupLockService rollupLocks;
+
+    @Test
+    void tryAcquire_ShouldDenyOtherNodesUntilReleased() {
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-a", LEASE)).isTrue();
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-b", LEASE)).isFalse();
+        // Renovar el propio turno
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-a", LEASE)).isTrue();
+        // Cada acumulado tiene su turno
+        assertThat(rollupLocks.tryAcquire(RollupLockService.PREPARATION_TIMES, "node-b", LEASE)).isTrue();
+
+        rollupLocks.release(RollupLockService.SALES, "node-b");
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-b", LEASE)).isFalse();
+        rollupLocks.release(RollupLockService.SALES, "node-a");
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-b", LEASE)).isTrue();
+    }
+
+    @Test
+    void tryAcquire_WhenLeaseExpired_ShouldLetAnotherNodeTakeIt() {
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-a", Duration.ofSeconds(-1))).isTrue();
+
+        assertThat(rollupLocks.tryAcquire(RollupLockService.SALES, "node-b", LEASE)).isTrue();
+    }
+
+    @Test
+    void nextGeneration_ShouldIncreaseAndBeVisibleAsCurrent() {
+        assertThat(rollupLocks.currentGeneration(RollupLockService.SALES)).isZero();
+
+        assertThat(rollupLocks.nextGeneration(RollupLockService.SALES)).isEqualTo(1L);
+        assertThat(rollupLocks.nextGeneration(RollupLockService.SALES)).isEqualTo(2L);
+
+        assertThat(rollupLocks.currentGeneration(RollupLockService.SALES)).isEqualTo(2L);
+        assertThat(rollupLocks.currentGeneration(RollupLockService.PREPARATION_TIMES)).isZero();
+    }
+
+    @Test
+    void findStale_ShouldReturnHoursRebuiltAfterTheirGeneration() {
+        LocalDateTime nine = DAY.withHour(9);
+        LocalDateTime nextDay = DAY.plusDays(1).withHour(9);
+        long generation = rollupLocks.nextGeneration(RollupLockService.SALES);
+        rollupLocks.recordRebuild(RollupLockService.SALES, generation, DAY, DAY.plusDays(1));
+
+        assertThat(rollupLocks.findStale(RollupLockService.SALES,
+                Map.of(nine, generation - 1, nextDay, generation - 1))).containsExactly(nine);
+        assertThat(rollupLocks.findStale(RollupLockService.SALES, Map.of(nine, generation))).isEmpty();
+        assertThat(rollupLocks.findStale(RollupLockService.PREPARATION_TIMES, Map.of(nine, 0L))).isEmpty();
+    }
+}
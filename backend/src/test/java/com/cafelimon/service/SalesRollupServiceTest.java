@@ -0,0 +1,211 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.stats.TopProductDTO;
+import com.cafelimon.model.Category;
+import com.cafelimon.model.Order;
+import com.cafelimon.model.OrderItem;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.model.Product;
+import com.cafelimon.model.SalesHourlyRollup;
+import com.cafelimon.model.Table;
+import com.cafelimon.repository.ProductHourlyRollupRepository;
+import com.cafelimon.repository.SalesHourlyRollupRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que los acumulados por hora, completados con las órdenes de los extremos,
+ * den lo mismo que consultar las órdenes del rango
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({SalesRollupService.class, RollupLockService.class})
+class SalesRollupServiceTest {
+
+    private static final LocalDateTime DAY = LocalDate.now().minusDays(3).atStartOfDay();
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SalesHourlyRollupRepository salesRollupRepository;
+
+    @Autowired
+    private ProductHourlyRollupRepository productRollupRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Product latte;
+    private Product bread;
+    private Table table;
+
+    @BeforeEach
+    void setUp() {
+        Category category = Category.builder().name("Cafés").orderIndex(0).active(true).build();
+        entityManager.persist(category);
+        latte = product(category, "Latte", "3000");
+        bread = product(category, "Pan de bono", "1500");
+        table = Table.builder().number("1").capacity(4).qrCode("data:image/png;base64,QR").build();
+        entityManager.persist(table);
+
+        order(DAY.withHour(8).withMinute(10), OrderStatus.ENTREGADO, latte, 2);
+        order(DAY.withHour(8).withMinute(50), OrderStatus.CANCELADO, bread, 1);
+        order(DAY.withHour(9).withMinute(5), OrderStatus.ENTREGADO, latte, 1, bread, 2);
+        order(DAY.withHour(10).withMinute(30), OrderStatus.LISTO, bread, 1);
+        order(DAY.withHour(11).withMinute(59).withSecond(59), OrderStatus.PENDING, latte, 1);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void rebuild_ShouldAggregateOrdersPerHour() {
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+        // Recalcular de nuevo reemplaza las filas en lugar de duplicarlas
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+
+        assertThat(salesRollupRepository.findAll()).hasSize(4);
+        SalesHourlyRollup eight = salesRollupRepository.findAll().stream()
+                .filter(rollup -> rollup.getBucketStart().equals(DAY.withHour(8)))
+                .findFirst().orElseThrow();
+        assertThat(eight.getOrderCount()).isEqualTo(2L);
+        assertThat(eight.getRevenue()).isEqualByComparingTo("6000");
+        assertThat(eight.getCancelledCount()).isEqualTo(1L);
+        assertThat(eight.getCancelledAmount()).isEqualByComparingTo("1500");
+        assertThat(productRollupRepository.findAll()).hasSize(6);
+    }
+
+    @Test
+    void getTotals_WithUnalignedRange_ShouldMatchOrdersInRange() {
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+
+        SalesRollupService.SalesTotals totals = salesRollupService.getTotals(
+                DAY.withHour(8).withMinute(30), DAY.withHour(10).withMinute(45));
+
+        // 08:50 (cancelada), 09:05 y 10:30
+        assertThat(totals.orders()).isEqualTo(3L);
+        assertThat(totals.revenue()).isEqualByComparingTo("7500");
+    }
+
+    @Test
+    void getTotals_ShouldReadFullHoursFromRollups() {
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+        salesRollupService.applyDeltas(
+                Map.of(DAY.withHour(9), new SalesRollupService.SalesDelta(1, new BigDecimal("100.00"), 0, BigDecimal.ZERO)),
+                Map.of());
+
+        SalesRollupService.SalesTotals totals = salesRollupService.getTotals(
+                DAY, DAY.withHour(23).withMinute(59).withSecond(59));
+
+        assertThat(totals.orders()).isEqualTo(6L);
+        assertThat(totals.revenue()).isEqualByComparingTo("16600");
+    }
+
+    @Test
+    void getTopProducts_ShouldMergeRollupsAndEdgeWindows() {
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+
+        List<TopProductDTO> result = salesRollupService.getTopProducts(
+                DAY.withHour(8).withMinute(30), DAY.withHour(12));
+
+        assertThat(result).extracting(TopProductDTO::getProductName).containsExactly("Pan de bono", "Latte");
+        assertThat(result).extracting(TopProductDTO::getTotalQuantity).containsExactly(4L, 2L);
+    }
+
+    @Test
+    void applyDeltas_ShouldCreateMissingRowsAndIncrementExistingOnes() {
+        LocalDateTime bucket = DAY.withHour(15);
+        Map<LocalDateTime, SalesRollupService.SalesDelta> sales = Map.of(bucket,
+                new SalesRollupService.SalesDelta(2, new BigDecimal("4500.00"), 0, BigDecimal.ZERO));
+        Map<LocalDateTime, Map<String, Long>> quantities = Map.of(bucket, Map.of(latte.getId(), 3L));
+
+        salesRollupService.applyDeltas(sales, quantities);
+        salesRollupService.applyDeltas(sales, quantities);
+        salesRollupService.applyDeltas(Map.of(bucket,
+                        new SalesRollupService.SalesDelta(0, new BigDecimal("-1500.00"), 1, new BigDecimal("1500.00"))),
+                Map.of());
+        entityManager.flush();
+        entityManager.clear();
+
+        SalesHourlyRollup rollup = salesRollupRepository.findAll().get(0);
+        assertThat(rollup.getOrderCount()).isEqualTo(4L);
+        assertThat(rollup.getRevenue()).isEqualByComparingTo("7500");
+        assertThat(rollup.getCancelledCount()).isEqualTo(1L);
+        assertThat(productRollupRepository.findAll()).singleElement()
+                .satisfies(product -> assertThat(product.getQuantity()).isEqualTo(6L));
+    }
+
+    @Test
+    void applyDeltas_ShouldSkipHoursRebuiltAfterTheirGeneration() {
+        salesRollupService.rebuild(DAY, DAY.plusDays(1));
+        LocalDateTime nine = DAY.withHour(9);
+        LocalDateTime later = DAY.plusDays(1).withHour(9);
+        SalesRollupService.SalesDelta delta = new SalesRollupService.SalesDelta(1, new BigDecimal("100.00"), 0, BigDecimal.ZERO);
+
+        // Acumulados antes del recálculo (generación 0): la lectura de órdenes ya los incluyó
+        var stale = salesRollupService.applyDeltas(Map.of(nine, delta, later, delta),
+                Map.of(nine, Map.of(latte.getId(), 1L)), Map.of(nine, 0L, later, 0L));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(stale).containsExactly(nine);
+        assertThat(salesRollupRepository.findAll())
+                .filteredOn(rollup -> rollup.getBucketStart().equals(nine))
+                .singleElement()
+                .satisfies(rollup -> assertThat(rollup.getOrderCount()).isEqualTo(1L));
+        assertThat(salesRollupRepository.findAll())
+                .filteredOn(rollup -> rollup.getBucketStart().equals(later))
+                .singleElement()
+                .satisfies(rollup -> assertThat(rollup.getOrderCount()).isEqualTo(1L));
+    }
+
+    private Product product(Category category, String name, String price) {
+        Product product = Product.builder()
+                .name(name)
+                .price(new BigDecimal(price))
+                .category(category)
+                .available(true)
+                .orderCount(0L)
+                .build();
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void order(LocalDateTime createdAt, OrderStatus status, Object... productsAndQuantities) {
+        Order order = Order.builder().table(table).status(status).items(new ArrayList<>()).build();
+        for (int i = 0; i < productsAndQuantities.length; i += 2) {
+            Product product = (Product) productsAndQuantities[i];
+            OrderItem item = OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity((Integer) productsAndQuantities[i + 1])
+                    .unitPrice(product.getPrice())
+                    .build();
+            item.calculateSubtotal();
+            order.getItems().add(item);
+        }
+        order.calculateTotal();
+        entityManager.persist(order);
+        entityManager.flush();
+        // createdAt lo pone la auditoría al insertar
+        entityManager.createQuery("UPDATE Order o SET o.createdAt = :createdAt WHERE o.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("id", order.getId())
+                .executeUpdate();
+    }
+}
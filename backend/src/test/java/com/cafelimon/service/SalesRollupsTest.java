@@ -0,0 +1,269 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesRollupsTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 5, 20, 9, 41, 12);
+    private static final LocalDateTime BUCKET = LocalDateTime.of(2025, 5, 20, 9, 0);
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private RollupLockService rollupLocks;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private SalesRollups salesRollups;
+
+    @BeforeEach
+    void setUp() {
+        salesRollups = new SalesRollups(salesRollupService, rollupLocks, new InProcessClusterEventRelay(),
+                objectMapper, new StatsProperties());
+    }
+
+    @Test
+    void flush_ShouldWriteOrdersAndQuantitiesOfTheirCreationHour() {
+        salesRollups.onOrderCreated(created(order("o1", "6000.00", item("p1", 2))));
+        salesRollups.onOrderCreated(created(order("o2", "4500.00", item("p1", 1), item("p2", 1))));
+
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(
+                eq(Map.of(BUCKET, new SalesRollupService.SalesDelta(2, new BigDecimal("10500.00"), 0, BigDecimal.ZERO))),
+                eq(Map.of(BUCKET, Map.of("p1", 3L, "p2", 1L))),
+                anyMap());
+    }
+
+    @Test
+    void onOrderStatusChanged_WhenCancelledAndRestored_ShouldMoveAmountBetweenRevenueAndCancelled() {
+        OrderResponse order = order("o1", "6000.00", item("p1", 2));
+
+        salesRollups.onOrderStatusChanged(changed(order, OrderStatus.PENDING, OrderStatus.EN_PREPARACION));
+        salesRollups.onOrderStatusChanged(changed(order, OrderStatus.EN_PREPARACION, OrderStatus.CANCELADO));
+        salesRollups.flush();
+        salesRollups.onOrderStatusChanged(changed(order, OrderStatus.CANCELADO, OrderStatus.PENDING));
+        salesRollups.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<LocalDateTime, SalesRollupService.SalesDelta>> sales = ArgumentCaptor.forClass(Map.class);
+        verify(salesRollupService, times(2)).applyDeltas(sales.capture(), anyMap(), anyMap());
+        SalesRollupService.SalesDelta cancelled = sales.getAllValues().get(0).get(BUCKET);
+        assertThat(cancelled.orders()).isZero();
+        assertThat(cancelled.revenue()).isEqualByComparingTo("-6000");
+        assertThat(cancelled.cancelled()).isEqualTo(1L);
+        assertThat(cancelled.cancelledAmount()).isEqualByComparingTo("6000");
+        SalesRollupService.SalesDelta restored = sales.getAllValues().get(1).get(BUCKET);
+        assertThat(restored.revenue()).isEqualByComparingTo("6000");
+        assertThat(restored.cancelled()).isEqualTo(-1L);
+    }
+
+    @Test
+    void onOrderDeleted_ShouldSubtractOrderAndIgnoreDeletionsFromOtherNodes() {
+        OrderResponse kept = order("o1", "6000.00", item("p1", 2));
+        OrderResponse deleted = order("o2", "4500.00", item("p1", 1), item("p2", 1));
+        salesRollups.onOrderCreated(created(kept));
+        salesRollups.onOrderCreated(created(deleted));
+        salesRollups.flush();
+
+        salesRollups.onOrderDeleted(new OrderDeletedEvent(deleted.getId(), "table-1", deleted, LocalDateTime.now()));
+        // Ya la restó el nodo que la eliminó
+        salesRollups.onOrderDeleted(new OrderDeletedEvent(kept.getId(), "table-1", kept, LocalDateTime.now(), true));
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(
+                eq(Map.of(BUCKET, new SalesRollupService.SalesDelta(-1, new BigDecimal("-4500.00"), 0, BigDecimal.ZERO))),
+                eq(Map.of(BUCKET, Map.of("p1", -1L, "p2", -1L))),
+                anyMap());
+    }
+
+    @Test
+    void flush_WhenWriteFails_ShouldKeepChangesForNextFlush() {
+        doThrow(new RuntimeException("db caída")).doReturn(Set.of())
+                .when(salesRollupService).applyDeltas(anyMap(), anyMap(), anyMap());
+        salesRollups.onOrderCreated(created(order("o1", "3000.00", item("p1", 1))));
+        salesRollups.flush();
+        salesRollups.onOrderCreated(created(order("o2", "3000.00", item("p1", 1))));
+
+        salesRollups.flush();
+        salesRollups.flush();
+
+        verify(salesRollupService, times(1)).applyDeltas(
+                eq(Map.of(BUCKET, new SalesRollupService.SalesDelta(2, new BigDecimal("6000.00"), 0, BigDecimal.ZERO))),
+                eq(Map.of(BUCKET, Map.of("p1", 2L))),
+                anyMap());
+        verify(salesRollupService, times(2)).applyDeltas(anyMap(), anyMap(), anyMap());
+    }
+
+    @Test
+    void rebuildRecent_ShouldRebuildClosedHoursOneDayAtATime() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.SALES), anyString(), any())).thenReturn(true);
+        when(rollupLocks.nextGeneration(RollupLockService.SALES)).thenReturn(1L, 2L);
+
+        salesRollups.rebuildRecent();
+
+        ArgumentCaptor<LocalDateTime> from = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<Long> generations = ArgumentCaptor.forClass(Long.class);
+        verify(salesRollupService, times(2)).rebuild(from.capture(), until.capture(), generations.capture(),
+                any(Runnable.class));
+        assertThat(generations.getAllValues()).containsExactly(1L, 2L);
+        LocalDateTime currentHour = SalesRollupService.hourOf(LocalDateTime.now());
+        assertThat(from.getAllValues()).containsExactly(currentHour.minusDays(2), currentHour.minusDays(1));
+        assertThat(until.getAllValues()).containsExactly(currentHour.minusDays(1), currentHour);
+    }
+
+    @Test
+    void backfill_WithExistingRollups_ShouldDoNothing() {
+        when(salesRollupService.hasRollups()).thenReturn(true);
+
+        salesRollups.backfill();
+
+        verify(salesRollupService, never()).rebuild(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void rebuild_WhenAnotherNodeHoldsTheLock_ShouldNotRebuild() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.SALES), anyString(), any())).thenReturn(false);
+        LocalDateTime day = BUCKET.toLocalDate().atStartOfDay();
+
+        assertThat(salesRollups.rebuild(day, day.plusDays(1))).isFalse();
+
+        verify(salesRollupService, never()).rebuild(any(), any(), anyLong(), any());
+        verify(rollupLocks, never()).nextGeneration(any());
+    }
+
+    @Test
+    void rebuild_ShouldDiscardChangesOfRebuiltHoursRecordedBeforeTheRead() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.SALES), anyString(), any())).thenReturn(true);
+        when(rollupLocks.nextGeneration(RollupLockService.SALES)).thenReturn(1L);
+        LocalDateTime day = BUCKET.toLocalDate().atStartOfDay();
+        OrderResponse nextDay = order("o2", "3000.00", item("p1", 1));
+        nextDay.setCreatedAt(CREATED_AT.plusDays(1));
+        doAnswer(invocation -> {
+            // Órdenes confirmadas después del último vaciado, antes de que se lean
+            salesRollups.onOrderCreated(created(order("o1", "6000.00", item("p1", 2))));
+            salesRollups.onOrderCreated(created(nextDay));
+            invocation.getArgument(3, Runnable.class).run();
+            return null;
+        }).when(salesRollupService).rebuild(eq(day), eq(day.plusDays(1)), eq(1L), any(Runnable.class));
+
+        salesRollups.rebuild(day, day.plusDays(1));
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(
+                eq(Map.of(BUCKET.plusDays(1), new SalesRollupService.SalesDelta(1, new BigDecimal("3000.00"), 0, BigDecimal.ZERO))),
+                eq(Map.of(BUCKET.plusDays(1), Map.of("p1", 1L))),
+                anyMap());
+    }
+
+    @Test
+    void rebuild_WhenItFails_ShouldKeepDiscardedChanges() {
+        when(rollupLocks.tryAcquire(eq(RollupLockService.SALES), anyString(), any())).thenReturn(true);
+        when(rollupLocks.nextGeneration(RollupLockService.SALES)).thenReturn(1L);
+        LocalDateTime day = BUCKET.toLocalDate().atStartOfDay();
+        doAnswer(invocation -> {
+            salesRollups.onOrderCreated(created(order("o1", "6000.00", item("p1", 2))));
+            invocation.getArgument(3, Runnable.class).run();
+            throw new RuntimeException("db caída");
+        }).when(salesRollupService).rebuild(eq(day), eq(day.plusDays(1)), eq(1L), any(Runnable.class));
+
+        assertThatThrownBy(() -> salesRollups.rebuild(day, day.plusDays(1))).hasMessage("db caída");
+        verify(rollupLocks).release(eq(RollupLockService.SALES), anyString());
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(
+                eq(Map.of(BUCKET, new SalesRollupService.SalesDelta(1, new BigDecimal("6000.00"), 0, BigDecimal.ZERO))),
+                eq(Map.of(BUCKET, Map.of("p1", 2L))),
+                anyMap());
+    }
+
+    @Test
+    void onRelayedMessage_WhenAnotherNodeRebuilt_ShouldDiscardOlderChangesOfThoseHours() throws Exception {
+        LocalDateTime day = BUCKET.toLocalDate().atStartOfDay();
+        salesRollups.onOrderCreated(created(order("o1", "6000.00", item("p1", 2))));
+
+        salesRollups.onRelayedMessage(SalesRollups.REBUILT_DESTINATION,
+                objectMapper.writeValueAsBytes(new RollupLockService.Rebuilt(day, day.plusDays(1), 3L, true)));
+        // Ya lleva la generación recalculada: la lectura del otro nodo no la incluyó
+        salesRollups.onOrderCreated(created(order("o2", "3000.00", item("p1", 1))));
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(
+                Map.of(BUCKET, new SalesRollupService.SalesDelta(1, new BigDecimal("3000.00"), 0, BigDecimal.ZERO)),
+                Map.of(BUCKET, Map.of("p1", 1L)),
+                Map.of(BUCKET, 3L));
+    }
+
+    @Test
+    void flush_WhenHoursWereRebuiltMeanwhile_ShouldDropThemAndLearnTheGeneration() {
+        when(salesRollupService.applyDeltas(anyMap(), anyMap(), anyMap())).thenReturn(Set.of(BUCKET));
+        when(rollupLocks.currentGeneration(RollupLockService.SALES)).thenReturn(4L);
+        salesRollups.onOrderCreated(created(order("o1", "6000.00", item("p1", 2))));
+
+        salesRollups.flush();
+        salesRollups.onOrderCreated(created(order("o2", "3000.00", item("p1", 1))));
+        salesRollups.flush();
+
+        verify(salesRollupService).applyDeltas(anyMap(), anyMap(), eq(Map.of(BUCKET, 0L)));
+        verify(salesRollupService).applyDeltas(
+                Map.of(BUCKET, new SalesRollupService.SalesDelta(1, new BigDecimal("3000.00"), 0, BigDecimal.ZERO)),
+                Map.of(BUCKET, Map.of("p1", 1L)),
+                Map.of(BUCKET, 4L));
+    }
+
+    private static OrderCreatedEvent created(OrderResponse order) {
+        return new OrderCreatedEvent(order.getId(), "table-1", List.of(), order);
+    }
+
+    private static OrderStatusChangedEvent changed(OrderResponse order, OrderStatus from, OrderStatus to) {
+        return new OrderStatusChangedEvent(order.getId(), "table-1", from, to, order, false, false);
+    }
+
+    private static OrderResponse order(String id, String total, OrderItemResponse... items) {
+        return OrderResponse.builder()
+                .id(id)
+                .status(OrderStatus.PENDING)
+                .totalAmount(new BigDecimal(total))
+                .createdAt(CREATED_AT)
+                .items(List.of(items))
+                .build();
+    }
+
+    private static OrderItemResponse item(String productId, int quantity) {
+        return OrderItemResponse.builder()
+                .product(ProductResponse.builder().id(productId).build())
+                .quantity(quantity)
+                .build();
+    }
+}
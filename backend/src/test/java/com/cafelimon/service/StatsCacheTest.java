@@ -0,0 +1,270 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.OrderStatusDelta;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.stats.TopProductDTO;
+import com.cafelimon.event.OrderCreatedEvent;
+import com.cafelimon.event.OrderDeletedEvent;
+import com.cafelimon.event.OrderStatusChangedEvent;
+import com.cafelimon.model.OrderStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsCacheTest {
+
+    private static final LocalDateTime START_OF_DAY = LocalDate.now().atStartOfDay();
+    private static final LocalDateTime END_OF_DAY = START_OF_DAY.plusDays(1).minusNanos(1000);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private StatsCache statsCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        statsCache = new StatsCache(objectMapper, new InProcessClusterEventRelay(), new StatsProperties(),
+                new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void getSales_WithOpenRange_ShouldAddNewOrdersWithoutReloading() {
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(2, "9000.00", product("p1", "Latte", 3)));
+
+        statsCache.onOrderCreated(created(order("o3", OrderStatus.PENDING, "4500.00", item("p2", "Pan de bono", 2))));
+        statsCache.onOrderCreated(created(order("o4", OrderStatus.PENDING, "3000.00", item("p1", "Latte", 1))));
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(0, "0"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(sales.totals().orders()).isEqualTo(4L);
+        assertThat(sales.totals().revenue()).isEqualByComparingTo("16500");
+        assertThat(sales.topProducts()).extracting(TopProductDTO::getProductName)
+                .containsExactly("Latte", "Pan de bono");
+        assertThat(sales.topProducts()).extracting(TopProductDTO::getTotalQuantity).containsExactly(4L, 2L);
+    }
+
+    @Test
+    void onOrderStatusChanged_WhenCancelled_ShouldRemoveAmountFromRevenue() {
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(1, "6000.00", product("p1", "Latte", 2)));
+        OrderResponse order = order("o2", OrderStatus.PENDING, "3000.00", item("p1", "Latte", 1));
+        statsCache.onOrderCreated(created(order));
+
+        statsCache.onOrderStatusChanged(new OrderStatusChangedEvent(order.getId(), "table-1",
+                OrderStatus.PENDING, OrderStatus.CANCELADO, order, false, false));
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(0, "0"));
+
+        assertThat(sales.totals().orders()).isEqualTo(2L);
+        assertThat(sales.totals().revenue()).isEqualByComparingTo("6000");
+        assertThat(sales.topProducts()).extracting(TopProductDTO::getTotalQuantity).containsExactly(3L);
+    }
+
+    @Test
+    void getSales_WithClosedRange_ShouldIgnoreNewOrders() {
+        LocalDateTime start = START_OF_DAY.minusDays(2);
+        LocalDateTime end = START_OF_DAY.minusDays(1).minusNanos(1000);
+        statsCache.getSales(start, end, () -> load(5, "20000.00"));
+
+        statsCache.onOrderCreated(created(order("o6", OrderStatus.PENDING, "3000.00")));
+        StatsCache.Sales sales = statsCache.getSales(start, end, () -> load(0, "0"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(sales.totals().orders()).isEqualTo(5L);
+    }
+
+    @Test
+    void getSales_WithConcurrentRequests_ShouldLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService dashboards = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<StatsCache.Sales>> results = new ArrayList<>();
+            results.add(dashboards.submit(() -> statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> {
+                loading.countDown();
+                await(release);
+                return load(7, "21000.00");
+            })));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 1; i < 10; i++) {
+                results.add(dashboards.submit(() -> statsCache.getSales(START_OF_DAY, END_OF_DAY,
+                        () -> load(0, "0"))));
+            }
+            // Deja que las otras nueve lleguen a esperar el cálculo en curso
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<StatsCache.Sales> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).totals().orders()).isEqualTo(7L);
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            dashboards.shutdownNow();
+        }
+    }
+
+    @Test
+    void getSales_WhenOrderArrivesDuringLoad_ShouldNotKeepResult() {
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> {
+            statsCache.onOrderCreated(created(order("o1", OrderStatus.PENDING, "3000.00")));
+            return load(0, "0");
+        });
+
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(1, "3000.00"));
+
+        assertThat(loads).hasValue(2);
+        assertThat(sales.totals().orders()).isEqualTo(1L);
+    }
+
+    @Test
+    void onRelayedMessage_ShouldAddOrdersAndDropRangesOfCancelledOnes() throws Exception {
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(1, "3000.00"));
+        OrderResponse order = order("o2", OrderStatus.PENDING, "4500.00", item("p1", "Latte", 1));
+
+        statsCache.onRelayedMessage(WebSocketService.NEW_ORDERS_TOPIC, objectMapper.writeValueAsBytes(order));
+        assertThat(statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(0, "0")).totals().revenue())
+                .isEqualByComparingTo("7500");
+
+        statsCache.onRelayedMessage(WebSocketService.ORDER_STATUS_TOPIC, objectMapper.writeValueAsBytes(
+                OrderStatusDelta.builder().orderId("o2").oldStatus(OrderStatus.PENDING)
+                        .newStatus(OrderStatus.CANCELADO).createdAt(order.getCreatedAt()).build()));
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(2, "3000.00"));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onRelayedMessage_WithOrderCreatedBeforeTheLoad_ShouldNotCountItTwice() throws Exception {
+        OrderResponse order = order("o2", OrderStatus.PENDING, "4500.00", item("p1", "Latte", 1));
+        order.setCreatedAt(LocalDateTime.now().minusSeconds(1));
+        // El cálculo ya incluye la orden, confirmada en otro nodo antes de que empezara
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(2, "7500.00"));
+
+        statsCache.onRelayedMessage(WebSocketService.NEW_ORDERS_TOPIC, objectMapper.writeValueAsBytes(order));
+
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(0, "0"));
+        assertThat(sales.totals().orders()).isEqualTo(2L);
+        assertThat(sales.totals().revenue()).isEqualByComparingTo("7500");
+    }
+
+    @Test
+    void getSales_WithRangeEndedBeforeRollupsSettle_ShouldReloadAfterTtl() {
+        StatsProperties properties = new StatsProperties();
+        properties.getCache().setOpenRangeTtlMs(0);
+        statsCache = new StatsCache(objectMapper, new InProcessClusterEventRelay(), properties,
+                new SimpleMeterRegistry());
+        // Terminó hace menos de dos vaciados: sus acumulados pueden estar incompletos
+        LocalDateTime end = LocalDateTime.now().minusSeconds(1);
+
+        statsCache.getSales(START_OF_DAY.minusDays(1), end, () -> load(5, "20000.00"));
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY.minusDays(1), end, () -> load(6, "23000.00"));
+
+        assertThat(loads).hasValue(2);
+        assertThat(sales.totals().orders()).isEqualTo(6L);
+    }
+
+    @Test
+    void onOrderDeleted_WithCachedClosedRange_ShouldRemoveOrderFromTotals() {
+        LocalDateTime start = START_OF_DAY.minusDays(2);
+        LocalDateTime end = START_OF_DAY.minusDays(1).minusNanos(1000);
+        statsCache.getSales(start, end, () -> load(5, "20000.00", product("p1", "Latte", 6), product("p2", "Pan de bono", 1)));
+        OrderResponse order = order("o3", OrderStatus.ENTREGADO, "4000.00", item("p1", "Latte", 2), item("p2", "Pan de bono", 1));
+        order.setCreatedAt(start.plusHours(10));
+
+        statsCache.onOrderDeleted(new OrderDeletedEvent(order.getId(), "table-1", order, LocalDateTime.now()));
+        StatsCache.Sales sales = statsCache.getSales(start, end, () -> load(0, "0"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(sales.totals().orders()).isEqualTo(4L);
+        assertThat(sales.totals().revenue()).isEqualByComparingTo("16000");
+        assertThat(sales.topProducts()).extracting(TopProductDTO::getProductName).containsExactly("Latte");
+        assertThat(sales.topProducts()).extracting(TopProductDTO::getTotalQuantity).containsExactly(4L);
+    }
+
+    @Test
+    void onOrderDeleted_FromOtherNode_ShouldDropRangesThatIncludeIt() {
+        statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(2, "7500.00"));
+        OrderResponse order = order("o2", OrderStatus.PENDING, "4500.00", item("p1", "Latte", 1));
+
+        statsCache.onOrderDeleted(new OrderDeletedEvent(order.getId(), "table-1", order, LocalDateTime.now(), true));
+        StatsCache.Sales sales = statsCache.getSales(START_OF_DAY, END_OF_DAY, () -> load(1, "3000.00"));
+
+        assertThat(loads).hasValue(2);
+        assertThat(sales.totals().orders()).isEqualTo(1L);
+    }
+
+    @Test
+    void getSales_WithClosedRangeLoadedRightAfterDeletion_ShouldReloadAfterTtl() {
+        StatsProperties properties = new StatsProperties();
+        properties.getCache().setOpenRangeTtlMs(0);
+        statsCache = new StatsCache(objectMapper, new InProcessClusterEventRelay(), properties,
+                new SimpleMeterRegistry());
+        LocalDateTime start = START_OF_DAY.minusDays(2);
+        LocalDateTime end = START_OF_DAY.minusDays(1).minusNanos(1000);
+        OrderResponse order = order("o3", OrderStatus.PENDING, "4000.00");
+        order.setCreatedAt(start.plusHours(10));
+        // Sus acumulados la restan recién en el próximo vaciado
+        statsCache.onOrderDeleted(new OrderDeletedEvent(order.getId(), "table-1", order, LocalDateTime.now()));
+
+        statsCache.getSales(start, end, () -> load(5, "20000.00"));
+        StatsCache.Sales sales = statsCache.getSales(start, end, () -> load(4, "16000.00"));
+
+        assertThat(loads).hasValue(2);
+        assertThat(sales.totals().orders()).isEqualTo(4L);
+    }
+
+    private StatsCache.Sales load(long orders, String revenue, TopProductDTO... products) {
+        loads.incrementAndGet();
+        return new StatsCache.Sales(new SalesRollupService.SalesTotals(orders, new BigDecimal(revenue)),
+                List.of(products));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OrderCreatedEvent created(OrderResponse order) {
+        return new OrderCreatedEvent(order.getId(), "table-1", List.of(), order);
+    }
+
+    private static OrderResponse order(String id, OrderStatus status, String total, OrderItemResponse... items) {
+        return OrderResponse.builder()
+                .id(id)
+                .status(status)
+                .totalAmount(new BigDecimal(total))
+                .createdAt(LocalDateTime.now())
+                .items(List.of(items))
+                .build();
+    }
+
+    private static OrderItemResponse item(String productId, String name, int quantity) {
+        return OrderItemResponse.builder()
+                .product(ProductResponse.builder().id(productId).name(name).build())
+                .quantity(quantity)
+                .build();
+    }
+
+    private static TopProductDTO product(String id, String name, long quantity) {
+        return TopProductDTO.builder().productId(id).productName(name).totalQuantity(quantity).build();
+    }
+}
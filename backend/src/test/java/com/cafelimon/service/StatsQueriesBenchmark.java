@@ -0,0 +1,196 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.stats.StatsResponse;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.model.Category;
+import com.cafelimon.model.Product;
+import com.cafelimon.model.Table;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Latencia de {@link StatsService#getStats} con las consultas una tras otra y en paralelo
+ *
+ * Siembra {@code -Dbenchmark.orders} órdenes (un millón por defecto) repartidas en los últimos
+ * 90 días, con uno o dos ítems cada una, calcula sus acumulados e histogramas por hora y mide
+ * p50/p99 del resumen de los últimos 30 días con {@code app.stats.executor.threads} en 0 y en 3.
+ * No corre con la suite; se ejecuta con {@code mvn test -Dtest=StatsQueriesBenchmark}.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.cafelimon=WARN"
+})
+@Import({SalesRollupService.class, PreparationTimeRollupService.class, RollupLockService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatsQueriesBenchmark {
+
+    private static final int ORDERS = Integer.getInteger("benchmark.orders", 1_000_000);
+    private static final int WARMUP = Integer.getInteger("benchmark.warmup", 10);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 100);
+    private static final int DAYS = 90;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private PreparationTimeRollupService preparationTimeRollupService;
+
+    @Autowired
+    private RollupLockService rollupLocks;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void getStats_SequentialVersusParallel() {
+        PreparationTimeHistograms histograms = seed();
+        OrderStatusCounters counters = mock(OrderStatusCounters.class);
+        when(counters.getCounts()).thenReturn(new StatusCountsResponse());
+
+        MeterRegistry sequentialMeters = new SimpleMeterRegistry();
+        MeterRegistry parallelMeters = new SimpleMeterRegistry();
+        StatsService sequential = statsService(counters, histograms, 0, sequentialMeters);
+        StatsService parallel = statsService(counters, histograms, 3, parallelMeters);
+        try {
+            // Rango fijo: las órdenes sembradas llegan hasta el momento de la siembra
+            LocalDateTime end = LocalDateTime.now();
+            LocalDateTime start = end.minusDays(30);
+            StatsResponse expected = sequential.getStats(start, end);
+            StatsResponse actual = parallel.getStats(start, end);
+            assertThat(actual.getTotalOrders()).isEqualTo(expected.getTotalOrders());
+            assertThat(actual.getTotalRevenue()).isEqualByComparingTo(expected.getTotalRevenue());
+
+            // Alternadas para que ninguna quede favorecida por el estado de la caché de H2
+            long[] sequentialNanos = new long[ITERATIONS];
+            long[] parallelNanos = new long[ITERATIONS];
+            for (int i = -WARMUP; i < ITERATIONS; i++) {
+                long sequentialTime = measure(sequential, start, end);
+                long parallelTime = measure(parallel, start, end);
+                if (i >= 0) {
+                    sequentialNanos[i] = sequentialTime;
+                    parallelNanos[i] = parallelTime;
+                }
+            }
+            report("secuencial", sequentialNanos, sequentialMeters);
+            report("paralelo (3 hilos)", parallelNanos, parallelMeters);
+        } finally {
+            sequential.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    private StatsService statsService(OrderStatusCounters counters, PreparationTimeHistograms histograms,
+                                      int threads, MeterRegistry meterRegistry) {
+        StatsProperties properties = new StatsProperties();
+        properties.getExecutor().setThreads(threads);
+        // Sin guardar resultados: se mide el cálculo
+        properties.getCache().setMaxEntries(0);
+        StatsCache statsCache = new StatsCache(new ObjectMapper(), new InProcessClusterEventRelay(), properties,
+                meterRegistry);
+        return new StatsService(salesRollupService, counters, histograms, statsCache, transactionManager,
+                properties, meterRegistry);
+    }
+
+    private PreparationTimeHistograms seed() {
+        List<String> productIds = new TransactionTemplate(transactionManager).execute(status -> {
+            Category category = Category.builder().name("Cafés").orderIndex(0).active(true).build();
+            entityManager.persist(category);
+            Table table = Table.builder().number("1").capacity(4).qrCode("data:image/png;base64,QR").build();
+            entityManager.persist(table);
+            return Arrays.stream(new String[]{"Americano", "Latte", "Capuchino", "Pan de bono", "Almojábana"})
+                    .map(name -> {
+                        Product product = Product.builder().name(name).price(new BigDecimal("3000"))
+                                .category(category).available(true).orderCount(0L).build();
+                        entityManager.persist(product);
+                        return product.getId();
+                    })
+                    .toList();
+        });
+        String tableId = jdbcTemplate.queryForObject("SELECT id FROM tables", String.class);
+
+        long start = System.nanoTime();
+        int secondsApart = DAYS * 24 * 3600 / ORDERS;
+        jdbcTemplate.update("""
+                INSERT INTO orders (id, created_at, updated_at, table_id, customer_name, status, total_amount,
+                                    notes, ready_at, delivered_at)
+                SELECT 'o-' || X, T, T, ?, NULL,
+                       CASE WHEN X < 200 THEN 'PENDING' WHEN MOD(X, 20) = 0 THEN 'CANCELADO' ELSE 'ENTREGADO' END,
+                       3000 * (1 + MOD(X, 2)), NULL,
+                       CASE WHEN X < 200 OR MOD(X, 20) = 0 THEN NULL ELSE DATEADD('MINUTE', 3 + MOD(X, 15), T) END,
+                       CASE WHEN X < 200 OR MOD(X, 20) = 0 THEN NULL ELSE DATEADD('MINUTE', 20, T) END
+                FROM (SELECT X, DATEADD('SECOND', -X * ?, LOCALTIMESTAMP) AS T FROM SYSTEM_RANGE(0, ? - 1))
+                """, tableId, Math.max(secondsApart, 1), ORDERS);
+        for (int item = 0; item < 2; item++) {
+            // Las órdenes impares llevan un segundo ítem
+            jdbcTemplate.update("""
+                    INSERT INTO order_items (id, created_at, updated_at, order_id, product_id, quantity,
+                                             unit_price, notes, subtotal)
+                    SELECT 'i-' || ? || '-' || X, LOCALTIMESTAMP, LOCALTIMESTAMP, 'o-' || X,
+                           CASEWHEN(MOD(X + ?, 5) = 0, ?, CASEWHEN(MOD(X + ?, 5) = 1, ?,
+                               CASEWHEN(MOD(X + ?, 5) = 2, ?, CASEWHEN(MOD(X + ?, 5) = 3, ?, ?)))),
+                           1, 3000, NULL, 3000
+                    FROM SYSTEM_RANGE(0, ? - 1) WHERE ? = 0 OR MOD(X, 2) = 1
+                    """, item, item, productIds.get(0), item, productIds.get(1), item, productIds.get(2),
+                    item, productIds.get(3), productIds.get(4), ORDERS, item);
+        }
+        jdbcTemplate.execute("ANALYZE");
+        LocalDateTime until = SalesRollupService.hourOf(LocalDateTime.now()).plusHours(1);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        new SalesRollups(salesRollupService, rollupLocks, new InProcessClusterEventRelay(), objectMapper,
+                new StatsProperties()).rebuild(until.minusDays(DAYS + 1), until);
+        PreparationTimeHistograms histograms = new PreparationTimeHistograms(preparationTimeRollupService,
+                rollupLocks, objectMapper, new InProcessClusterEventRelay(), new StatsProperties());
+        histograms.rebuild(until.minusDays(DAYS + 1), until);
+        histograms.reload();
+        System.out.printf("%d órdenes sembradas y acumuladas en %d ms%n",
+                ORDERS, (System.nanoTime() - start) / 1_000_000);
+        return histograms;
+    }
+
+    private static long measure(StatsService statsService, LocalDateTime start, LocalDateTime end) {
+        long began = System.nanoTime();
+        statsService.getStats(start, end);
+        return System.nanoTime() - began;
+    }
+
+    private static void report(String label, long[] nanos, MeterRegistry meterRegistry) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%-20s p50 %7.1f ms   p99 %7.1f ms%n", label,
+                sorted[sorted.length / 2] / 1e6, sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6);
+        for (Timer timer : meterRegistry.find("cafelimon.stats.query").timers()) {
+            System.out.printf("    %-18s media %7.1f ms%n", timer.getId().getTag("aggregate"),
+                    timer.mean(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -1,25 +1,33 @@
 package com.cafelimon.service;
 
+import com.cafelimon.config.StatsProperties;
+import com.cafelimon.dto.stats.PreparationTimesResponse;
 import com.cafelimon.dto.stats.StatsResponse;
+import com.cafelimon.dto.stats.StatusCountsResponse;
+import com.cafelimon.dto.stats.TimePercentiles;
 import com.cafelimon.dto.stats.TopProductDTO;
-import com.cafelimon.model.Order;
-import com.cafelimon.model.OrderStatus;
-import com.cafelimon.repository.OrderItemRepository;
-import com.cafelimon.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -27,12 +35,17 @@ import static org.mockito.Mockito.*;
 class StatsServiceTest {
 
     @Mock
-    private OrderRepository orderRepository;
+    private SalesRollupService salesRollupService;
 
     @Mock
-    private OrderItemRepository orderItemRepository;
+    private OrderStatusCounters orderStatusCounters;
+
+    @Mock
+    private PreparationTimeHistograms preparationTimeHistograms;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
-    @InjectMocks
     private StatsService statsService;
 
     private LocalDateTime startDate;
@@ -42,23 +55,29 @@ class StatsServiceTest {
     void setUp() {
         startDate = LocalDateTime.now().minusDays(7);
         endDate = LocalDateTime.now();
+        StatsProperties properties = new StatsProperties();
+        StatsCache statsCache = new StatsCache(new ObjectMapper().findAndRegisterModules(),
+                new InProcessClusterEventRelay(), properties, new SimpleMeterRegistry());
+        statsService = new StatsService(salesRollupService, orderStatusCounters, preparationTimeHistograms,
+                statsCache, transactionManager, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        statsService.shutdown();
     }
 
     @Test
     void getStats_WithOrders_ShouldReturnStats() {
-        List<Order> orders = Arrays.asList(new Order(), new Order(), new Order());
-
-        when(orderRepository.findByDateRange(startDate, endDate)).thenReturn(orders);
-        when(orderRepository.countByStatus(OrderStatus.PENDING)).thenReturn(5L);
-        when(orderRepository.countByStatus(OrderStatus.EN_PREPARACION)).thenReturn(3L);
-        when(orderRepository.countByStatus(OrderStatus.LISTO)).thenReturn(2L);
-        when(orderRepository.getTotalRevenueByDateRange(startDate, endDate)).thenReturn(15000.0);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(12.5);
+        when(salesRollupService.getTotals(startDate, endDate))
+                .thenReturn(new SalesRollupService.SalesTotals(3L, new BigDecimal("15000.00")));
+        when(orderStatusCounters.getCounts()).thenReturn(StatusCountsResponse.builder()
+                .pendingOrders(5L).preparingOrders(3L).readyOrders(2L).build());
+        when(preparationTimeHistograms.getAveragePreparationMinutes()).thenReturn(12.5);
 
-        Object[] topProduct1 = {"prod-1", "Cafe Americano", 100L};
-        Object[] topProduct2 = {"prod-2", "Latte", 80L};
-        when(orderItemRepository.getTopSellingProducts(startDate, endDate))
-                .thenReturn(Arrays.asList(topProduct1, topProduct2));
+        when(salesRollupService.getTopProducts(startDate, endDate))
+                .thenReturn(Arrays.asList(topProduct("prod-1", "Cafe Americano", 100L),
+                        topProduct("prod-2", "Latte", 80L)));
 
         StatsResponse result = statsService.getStats(startDate, endDate);
 
@@ -71,21 +90,60 @@ class StatsServiceTest {
         assertThat(result.getAveragePreparationTime()).isEqualTo(12.5);
         assertThat(result.getTopProducts()).hasSize(2);
 
-        verify(orderRepository, times(1)).findByDateRange(startDate, endDate);
-        verify(orderRepository, times(1)).countByStatus(OrderStatus.PENDING);
-        verify(orderRepository, times(1)).countByStatus(OrderStatus.EN_PREPARACION);
-        verify(orderRepository, times(1)).countByStatus(OrderStatus.LISTO);
-        verify(orderRepository, times(1)).getTotalRevenueByDateRange(startDate, endDate);
-        verify(orderRepository, times(1)).getAveragePreparationTimeInMinutes();
+        verify(salesRollupService, times(1)).getTotals(startDate, endDate);
+        verify(orderStatusCounters, times(1)).getCounts();
+        verify(preparationTimeHistograms, times(1)).getAveragePreparationMinutes();
+    }
+
+    @Test
+    void getStats_ShouldRunEachQueryInItsOwnReadOnlyTransaction() {
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
+
+        statsService.getStats(startDate, endDate);
+
+        ArgumentCaptor<TransactionDefinition> definitions = ArgumentCaptor.forClass(TransactionDefinition.class);
+        verify(transactionManager, times(2)).getTransaction(definitions.capture());
+        assertThat(definitions.getAllValues()).allMatch(TransactionDefinition::isReadOnly);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void getStats_WhenQueryFails_ShouldThrowOriginalException() {
+        when(salesRollupService.getTotals(any(), any())).thenThrow(new QueryTimeoutException("lenta"));
+
+        assertThatThrownBy(() -> statsService.getStats(startDate, endDate))
+                .isInstanceOf(QueryTimeoutException.class)
+                .hasMessage("lenta");
+    }
+
+    @Test
+    void getStats_WithSameClosedRangeTwice_ShouldQueryOnce() {
+        LocalDateTime start = LocalDateTime.of(2025, 3, 1, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2025, 3, 31, 23, 59, 59);
+        when(salesRollupService.getTotals(start, end))
+                .thenReturn(new SalesRollupService.SalesTotals(40L, new BigDecimal("120000.00")));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(start, end))
+                .thenReturn(List.of(topProduct("prod-1", "Latte", 25L)));
+
+        StatsResponse first = statsService.getStats(start, end);
+        StatsResponse second = statsService.getStats(start, end);
+
+        assertThat(second.getTotalOrders()).isEqualTo(first.getTotalOrders()).isEqualTo(40L);
+        assertThat(second.getTopProducts()).extracting(TopProductDTO::getTotalQuantity).containsExactly(25L);
+        verify(salesRollupService, times(1)).getTotals(start, end);
+        verify(salesRollupService, times(1)).getTopProducts(start, end);
     }
 
     @Test
     void getStats_WithNoRevenue_ShouldReturnZeroRevenue() {
-        when(orderRepository.findByDateRange(any(), any())).thenReturn(Collections.emptyList());
-        when(orderRepository.countByStatus(any())).thenReturn(0L);
-        when(orderRepository.getTotalRevenueByDateRange(any(), any())).thenReturn(null);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(null);
-        when(orderItemRepository.getTopSellingProducts(any(), any())).thenReturn(Collections.emptyList());
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
 
         StatsResponse result = statsService.getStats(startDate, endDate);
 
@@ -96,11 +154,10 @@ class StatsServiceTest {
 
     @Test
     void getStats_WithNoPreparationTime_ShouldReturnZeroTime() {
-        when(orderRepository.findByDateRange(any(), any())).thenReturn(Collections.emptyList());
-        when(orderRepository.countByStatus(any())).thenReturn(0L);
-        when(orderRepository.getTotalRevenueByDateRange(any(), any())).thenReturn(0.0);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(null);
-        when(orderItemRepository.getTopSellingProducts(any(), any())).thenReturn(Collections.emptyList());
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
 
         StatsResponse result = statsService.getStats(startDate, endDate);
 
@@ -109,13 +166,22 @@ class StatsServiceTest {
     }
 
     @Test
-    void getTopSellingProducts_WithProducts_ShouldReturnTopProducts() {
-        Object[] topProduct1 = {"prod-1", "Cafe Americano", 100L};
-        Object[] topProduct2 = {"prod-2", "Latte", 80L};
-        Object[] topProduct3 = {"prod-3", "Cappuccino", 60L};
+    void getPreparationTimes_ShouldReturnHistogramPercentiles() {
+        PreparationTimesResponse times = PreparationTimesResponse.builder()
+                .preparation(TimePercentiles.builder().count(10L).p50(8.0).p90(15.0).p99(22.0).build())
+                .build();
+        when(preparationTimeHistograms.getPreparationTimes()).thenReturn(times);
+
+        assertThat(statsService.getPreparationTimes()).isSameAs(times);
+        verifyNoInteractions(salesRollupService, transactionManager);
+    }
 
-        when(orderItemRepository.getTopSellingProducts(startDate, endDate))
-                .thenReturn(Arrays.asList(topProduct1, topProduct2, topProduct3));
+    @Test
+    void getTopSellingProducts_WithProducts_ShouldReturnTopProducts() {
+        when(salesRollupService.getTopProducts(startDate, endDate))
+                .thenReturn(Arrays.asList(topProduct("prod-1", "Cafe Americano", 100L),
+                        topProduct("prod-2", "Latte", 80L),
+                        topProduct("prod-3", "Cappuccino", 60L)));
 
         List<TopProductDTO> result = statsService.getTopSellingProducts(startDate, endDate);
 
@@ -126,59 +192,74 @@ class StatsServiceTest {
         assertThat(result.get(1).getProductId()).isEqualTo("prod-2");
         assertThat(result.get(2).getProductId()).isEqualTo("prod-3");
 
-        verify(orderItemRepository, times(1)).getTopSellingProducts(startDate, endDate);
+        verify(salesRollupService, times(1)).getTopProducts(startDate, endDate);
     }
 
     @Test
     void getTopSellingProducts_WithNoProducts_ShouldReturnEmptyList() {
-        when(orderItemRepository.getTopSellingProducts(startDate, endDate))
+        when(salesRollupService.getTopProducts(startDate, endDate))
                 .thenReturn(Collections.emptyList());
 
         List<TopProductDTO> result = statsService.getTopSellingProducts(startDate, endDate);
 
         assertThat(result).isEmpty();
-        verify(orderItemRepository, times(1)).getTopSellingProducts(startDate, endDate);
+        verify(salesRollupService, times(1)).getTopProducts(startDate, endDate);
     }
 
     @Test
     void getTodayStats_ShouldCallGetStatsWithTodayRange() {
-        when(orderRepository.findByDateRange(any(), any())).thenReturn(Collections.emptyList());
-        when(orderRepository.countByStatus(any())).thenReturn(0L);
-        when(orderRepository.getTotalRevenueByDateRange(any(), any())).thenReturn(0.0);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(0.0);
-        when(orderItemRepository.getTopSellingProducts(any(), any())).thenReturn(Collections.emptyList());
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
 
         StatsResponse result = statsService.getTodayStats();
 
         assertThat(result).isNotNull();
-        verify(orderRepository, times(1)).findByDateRange(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(salesRollupService, times(1)).getTotals(any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void getTodayStats_CalledTwice_ShouldReuseTheSameRange() {
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
+
+        statsService.getTodayStats();
+        statsService.getTodayStats();
+
+        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
+        verify(salesRollupService, times(1)).getTotals(startOfDay, startOfDay.plusDays(1).minusNanos(1000));
     }
 
     @Test
     void getWeekStats_ShouldCallGetStatsWithWeekRange() {
-        when(orderRepository.findByDateRange(any(), any())).thenReturn(Collections.emptyList());
-        when(orderRepository.countByStatus(any())).thenReturn(0L);
-        when(orderRepository.getTotalRevenueByDateRange(any(), any())).thenReturn(0.0);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(0.0);
-        when(orderItemRepository.getTopSellingProducts(any(), any())).thenReturn(Collections.emptyList());
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
 
         StatsResponse result = statsService.getWeekStats();
 
         assertThat(result).isNotNull();
-        verify(orderRepository, times(1)).findByDateRange(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(salesRollupService, times(1)).getTotals(any(LocalDateTime.class), any(LocalDateTime.class));
     }
 
     @Test
     void getMonthStats_ShouldCallGetStatsWithMonthRange() {
-        when(orderRepository.findByDateRange(any(), any())).thenReturn(Collections.emptyList());
-        when(orderRepository.countByStatus(any())).thenReturn(0L);
-        when(orderRepository.getTotalRevenueByDateRange(any(), any())).thenReturn(0.0);
-        when(orderRepository.getAveragePreparationTimeInMinutes()).thenReturn(0.0);
-        when(orderItemRepository.getTopSellingProducts(any(), any())).thenReturn(Collections.emptyList());
+        when(salesRollupService.getTotals(any(), any()))
+                .thenReturn(new SalesRollupService.SalesTotals(0L, BigDecimal.ZERO));
+        when(orderStatusCounters.getCounts()).thenReturn(new StatusCountsResponse());
+        when(salesRollupService.getTopProducts(any(), any())).thenReturn(Collections.emptyList());
 
         StatsResponse result = statsService.getMonthStats();
 
         assertThat(result).isNotNull();
-        verify(orderRepository, times(1)).findByDateRange(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(salesRollupService, times(1)).getTotals(any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    private static TopProductDTO topProduct(String id, String name, long quantity) {
+        return TopProductDTO.builder().productId(id).productName(name).totalQuantity(quantity).build();
     }
 }
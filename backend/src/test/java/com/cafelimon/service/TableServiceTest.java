@@ -3,6 +3,7 @@ package com.cafelimon.service;
 import com.cafelimon.dto.table.QRCodeResponse;
 import com.cafelimon.dto.table.TableRequest;
 import com.cafelimon.dto.table.TableResponse;
+import com.cafelimon.event.TableChangedEvent;
 import com.cafelimon.exception.ResourceNotFoundException;
 import com.cafelimon.model.Table;
 import com.cafelimon.repository.TableRepository;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
@@ -33,6 +35,9 @@ class TableServiceTest {
     @Mock
     private QRCodeService qrCodeService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private TableService tableService;
 
@@ -95,6 +100,18 @@ class TableServiceTest {
         verify(tableRepository, times(1)).findById("table-1");
     }
 
+    @Test
+    void toSummary_ShouldMapLoadedTableWithoutQrCode() {
+        table1.setQrCode("data:image/png;base64,AAAA");
+
+        TableResponse result = tableService.toSummary(table1);
+
+        assertThat(result.getId()).isEqualTo("table-1");
+        assertThat(result.getNumber()).isEqualTo("1");
+        assertThat(result.getQrCode()).isNull();
+        verifyNoInteractions(tableRepository);
+    }
+
     @Test
     void getTableById_WhenTableNotFound_ShouldThrowException() {
         when(tableRepository.findById("invalid-id")).thenReturn(Optional.empty());
@@ -240,6 +257,7 @@ class TableServiceTest {
 
         verify(tableRepository, times(1)).findById("table-1");
         verify(tableRepository, times(1)).delete(table1);
+        verify(eventPublisher, times(1)).publishEvent(any(TableChangedEvent.class));
     }
 
     @Test
@@ -0,0 +1,167 @@
+package com.cafelimon.service;
+
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.event.CatalogChangedEvent;
+import com.cafelimon.event.OrderCreatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopProductsRankingTest {
+
+    @Mock
+    private ProductService productService;
+
+    private ProductOrderCounters orderCounters;
+    private TopProductsRanking ranking;
+
+    @BeforeEach
+    void setUp() {
+        orderCounters = new ProductOrderCounters(productService);
+        ranking = new TopProductsRanking(productService, orderCounters, 3);
+    }
+
+    private ProductResponse product(String id, String name, long orderCount) {
+        return ProductResponse.builder().id(id).name(name).orderCount(orderCount).build();
+    }
+
+    private List<String> ids(List<ProductResponse> products) {
+        return products.stream().map(ProductResponse::getId).toList();
+    }
+
+    @Test
+    void getTopProducts_ShouldKeepOnlyCapacityOrderedByCount() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+                product("p1", "Americano", 5), product("p2", "Latte", 20),
+                product("p3", "Mocha", 1), product("p4", "Té", 10), product("p5", "Jugo", 10)));
+
+        assertThat(ids(ranking.getTopProducts(10))).containsExactly("p2", "p5", "p4");
+        assertThat(ids(ranking.getTopProducts(1))).containsExactly("p2");
+        assertThat(ranking.getTopProducts(0)).isEmpty();
+        verify(productService, times(1)).getAllProducts();
+    }
+
+    @Test
+    void getTopProducts_ShouldReturnUnmodifiableList() {
+        when(productService.getAllProducts()).thenReturn(List.of(product("p1", "Americano", 5)));
+
+        List<ProductResponse> result = ranking.getTopProducts(10);
+
+        assertThatThrownBy(() -> result.add(product("p2", "Latte", 1)))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void getTopProducts_WhenFlushStartsDuringLoad_ShouldCountPendingOrdersOnce() throws Exception {
+        orderCounters.record(List.of("p1", "p1"));
+        Thread[] flusher = new Thread[1];
+        when(productService.getAllProducts()).thenAnswer(invocation -> {
+            flusher[0] = new Thread(orderCounters::flush);
+            flusher[0].start();
+            flusher[0].join(200);
+            // El vaciado espera a que termine la carga, así los 2 pedidos siguen pendientes
+            assertThat(flusher[0].isAlive()).isTrue();
+            return List.of(product("p1", "Americano", 5));
+        });
+
+        assertThat(ranking.getTopProducts(1)).singleElement()
+                .satisfies(product -> assertThat(product.getOrderCount()).isEqualTo(7L));
+        flusher[0].join();
+        verify(productService).incrementOrderCounts(Map.of("p1", 2L));
+    }
+
+    @Test
+    void getOrderCounts_ShouldIncludeProductsOutsideTheRankingAndNewOrders() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+                product("p1", "Americano", 5), product("p2", "Latte", 20),
+                product("p3", "Mocha", 1), product("p4", "Té", 10), product("p5", "Jugo", 10)));
+
+        ranking.getTopProducts(3);
+        ranking.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p3"), null));
+
+        assertThat(ranking.getOrderCounts(List.of("p3", "p2", "otro")))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("p3", 2L, "p2", 20L, "otro", 0L));
+    }
+
+    @Test
+    void onOrderCreated_ShouldPromoteProductThatOvertakesTheLastOne() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+                product("p1", "Americano", 5), product("p2", "Latte", 20),
+                product("p3", "Mocha", 4), product("p4", "Té", 10)));
+        ranking.getTopProducts(3);
+
+        ranking.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p3"), null));
+        assertThat(ids(ranking.getTopProducts(3))).containsExactly("p2", "p4", "p1");
+
+        ranking.onOrderCreated(new OrderCreatedEvent("order-2", "table-1", List.of("p3", "p3"), null));
+        List<ProductResponse> top = ranking.getTopProducts(3);
+
+        assertThat(ids(top)).containsExactly("p2", "p4", "p3");
+        assertThat(top.get(2).getOrderCount()).isEqualTo(7L);
+    }
+
+    @Test
+    void onOrderCreated_ShouldReorderProductsAlreadyInRanking() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+                product("p1", "Americano", 5), product("p2", "Latte", 6)));
+        ranking.getTopProducts(3);
+
+        ranking.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p1", "p1"), null));
+
+        List<ProductResponse> top = ranking.getTopProducts(3);
+        assertThat(ids(top)).containsExactly("p1", "p2");
+        assertThat(top.get(0).getOrderCount()).isEqualTo(7L);
+    }
+
+    @Test
+    void onOrderCreated_BeforeFirstLoad_ShouldBeIgnored() {
+        ranking.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("p1"), null));
+
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void onOrderCreated_WithUnknownProduct_ShouldKeepRanking() {
+        when(productService.getAllProducts()).thenReturn(List.of(product("p1", "Americano", 5)));
+        ranking.getTopProducts(3);
+
+        ranking.onOrderCreated(new OrderCreatedEvent("order-1", "table-1", List.of("unknown"), null));
+
+        assertThat(ranking.getTopProducts(3)).extracting(ProductResponse::getOrderCount).containsExactly(5L);
+    }
+
+    @Test
+    void getTopProducts_ShouldIncludeCountsNotYetFlushed() {
+        when(productService.getAllProducts()).thenReturn(List.of(
+                product("p1", "Americano", 5), product("p2", "Latte", 6)));
+        orderCounters.record(List.of("p1", "p1", "p1"));
+
+        List<ProductResponse> top = ranking.getTopProducts(3);
+
+        assertThat(ids(top)).containsExactly("p1", "p2");
+        assertThat(top.get(0).getOrderCount()).isEqualTo(8L);
+    }
+
+    @Test
+    void onCatalogChanged_ShouldReloadOnNextRead() {
+        when(productService.getAllProducts())
+                .thenReturn(List.of(product("p1", "Americano", 5)))
+                .thenReturn(List.of(product("p1", "Americano", 5), product("p2", "Latte", 9)));
+        ranking.getTopProducts(3);
+
+        ranking.onCatalogChanged(CatalogChangedEvent.product(CatalogChangedEvent.Action.CREATED, "p2"));
+
+        assertThat(ids(ranking.getTopProducts(3))).containsExactly("p2", "p1");
+        verify(productService, times(2)).getAllProducts();
+    }
+}
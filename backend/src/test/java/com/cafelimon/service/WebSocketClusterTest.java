@@ -0,0 +1,190 @@
+package com.cafelimon.service;
+
+import com.cafelimon.CafeLimonApplication;
+import com.cafelimon.dto.order.CreateOrderRequest;
+import com.cafelimon.dto.order.OrderItemRequest;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.order.UpdateOrderStatusRequest;
+import com.cafelimon.model.Category;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.model.Product;
+import com.cafelimon.model.Table;
+import com.cafelimon.repository.CategoryRepository;
+import com.cafelimon.repository.ProductRepository;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dos nodos del backend en la misma JVM, con base de datos compartida y el relay en proceso:
+ * un cliente STOMP conectado a un nodo recibe lo que se publica en el otro
+ */
+class WebSocketClusterTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static WebSocketStompClient stompClient;
+    private static final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeAll
+    static void startNodes() {
+        nodeA = startNode();
+        nodeB = startNode();
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+    }
+
+    @AfterAll
+    static void stopNodes() throws InterruptedException {
+        sessions.forEach(StompSession::disconnect);
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+        awaitSessionsClosed(nodeA);
+        awaitSessionsClosed(nodeB);
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+    }
+
+    /**
+     * Cerrar el contexto con sesiones abiertas deja su DISCONNECT sin canal donde enviarse
+     */
+    private static void awaitSessionsClosed(ConfigurableApplicationContext node) throws InterruptedException {
+        if (node == null) {
+            return;
+        }
+        Gauge open = node.getBean(MeterRegistry.class).get("cafelimon.websocket.sessions.open").gauge();
+        for (int i = 0; i < 50 && open.value() > 0; i++) {
+            Thread.sleep(100);
+        }
+        // El broker procesa el último DISCONNECT después de cerrar la sesión
+        Thread.sleep(200);
+    }
+
+    private static ConfigurableApplicationContext startNode() {
+        // Como argumentos, para que tengan prioridad sobre application.yml
+        return new SpringApplicationBuilder(CafeLimonApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.com.cafelimon=INFO",
+                "--logging.level.org.springframework.web=INFO",
+                "--app.websocket.relay.type=in-process",
+                "--app.websocket.dispatch.coalesce-window-ms=0");
+    }
+
+    @Test
+    void orderPublishedOnOneNode_ShouldReachSubscribersOfBothNodes() throws Exception {
+        BlockingQueue<Frame> kitchenOnA = subscribe(nodeA, WebSocketService.KITCHEN_TOPIC);
+        BlockingQueue<Frame> kitchenOnB = subscribe(nodeB, WebSocketService.KITCHEN_TOPIC);
+        BlockingQueue<Frame> statusOnB = subscribe(nodeB, WebSocketService.ORDER_STATUS_TOPIC);
+
+        OrderResponse order = createOrderOn(nodeA);
+
+        Frame local = kitchenOnA.poll(10, TimeUnit.SECONDS);
+        Frame relayed = kitchenOnB.poll(10, TimeUnit.SECONDS);
+        assertThat(local).isNotNull();
+        assertThat(relayed).isNotNull();
+        assertThat(relayed.body().get("id").asText()).isEqualTo(order.getId());
+        assertThat(relayed.headers().getFirst(WebSocketService.SEQ_HEADER)).isEqualTo("1");
+        assertThat(relayed.headers().getFirst(WebSocketService.EPOCH_HEADER))
+                .isEqualTo(nodeB.getBean(WebSocketEventLog.class).getEpoch());
+
+        UpdateOrderStatusRequest request = new UpdateOrderStatusRequest();
+        request.setStatus(OrderStatus.EN_PREPARACION);
+        nodeA.getBean(OrderService.class).updateOrderStatus(order.getId(), request);
+
+        Frame delta = statusOnB.poll(10, TimeUnit.SECONDS);
+        assertThat(delta).isNotNull();
+        assertThat(delta.body().get("orderId").asText()).isEqualTo(order.getId());
+        assertThat(delta.body().get("oldStatus").asText()).isEqualTo("PENDING");
+        assertThat(delta.body().get("newStatus").asText()).isEqualTo("EN_PREPARACION");
+
+        // El nodo de origen no recibe de vuelta su propio mensaje
+        assertThat(kitchenOnA.poll(500, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(nodeA.getBean(WebSocketEventLog.class).currentSeq(WebSocketService.KITCHEN_TOPIC)).isEqualTo(1L);
+    }
+
+    private static OrderResponse createOrderOn(ConfigurableApplicationContext node) {
+        Category category = node.getBean(CategoryRepository.class)
+                .save(Category.builder().name("Bebidas").orderIndex(1).active(true).build());
+        Product product = node.getBean(ProductRepository.class).save(Product.builder()
+                .name("Capuchino")
+                .price(new BigDecimal("5000"))
+                .category(category)
+                .build());
+        Table table = node.getBean(TableRepository.class)
+                .save(Table.builder().number("7").capacity(2).build());
+
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(product.getId());
+        item.setQuantity(1);
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setTableId(table.getId());
+        request.setCustomerName("Cliente");
+        request.setItems(List.of(item));
+        return node.getBean(OrderService.class).createOrder(request);
+    }
+
+    private static BlockingQueue<Frame> subscribe(ConfigurableApplicationContext node, String destination)
+            throws Exception {
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() { })
+                .get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+        BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    frames.add(new Frame(headers, OBJECT_MAPPER.readTree((byte[]) payload)));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        // El broker registra la suscripción de forma asíncrona
+        Thread.sleep(300);
+        return frames;
+    }
+
+    private record Frame(StompHeaders headers, JsonNode body) {
+    }
+}
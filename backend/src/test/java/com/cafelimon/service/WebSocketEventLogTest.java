@@ -0,0 +1,76 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebSocketEventLogTest {
+
+    private WebSocketEventLog eventLog(int bufferSize) {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.getReplay().setBufferSize(bufferSize);
+        return new WebSocketEventLog(properties);
+    }
+
+    private WebSocketEventLog.Entry append(WebSocketEventLog eventLog, String destination, String payload) {
+        return eventLog.append(destination, seq -> payload.getBytes(StandardCharsets.UTF_8), (bytes, seq) -> { });
+    }
+
+    @Test
+    void append_ShouldNumberEachDestinationFromOneAndSendInOrder() {
+        WebSocketEventLog eventLog = eventLog(10);
+        List<String> sent = new ArrayList<>();
+
+        eventLog.append("/topic/a", seq -> ("a" + seq).getBytes(StandardCharsets.UTF_8),
+                (bytes, seq) -> sent.add(new String(bytes, StandardCharsets.UTF_8) + "@" + seq));
+        eventLog.append("/topic/a", seq -> ("a" + seq).getBytes(StandardCharsets.UTF_8),
+                (bytes, seq) -> sent.add(new String(bytes, StandardCharsets.UTF_8) + "@" + seq));
+        append(eventLog, "/topic/b", "b");
+
+        assertThat(sent).containsExactly("a1@1", "a2@2");
+        assertThat(eventLog.currentSeq("/topic/a")).isEqualTo(2L);
+        assertThat(eventLog.currentSeq("/topic/b")).isEqualTo(1L);
+        assertThat(eventLog.currentSeq("/topic/c")).isZero();
+    }
+
+    @Test
+    void eventsSince_ShouldReturnOnlyNewerMessagesInOrder() {
+        WebSocketEventLog eventLog = eventLog(10);
+        append(eventLog, "/topic/a", "uno");
+        append(eventLog, "/topic/a", "dos");
+        append(eventLog, "/topic/a", "tres");
+
+        assertThat(eventLog.eventsSince("/topic/a", 1L).get())
+                .extracting(entry -> new String(entry.payload(), StandardCharsets.UTF_8))
+                .containsExactly("dos", "tres");
+        assertThat(eventLog.eventsSince("/topic/a", 3L)).contains(List.of());
+    }
+
+    @Test
+    void eventsSince_WhenMessagesWereOverwritten_ShouldRequireSnapshot() {
+        WebSocketEventLog eventLog = eventLog(3);
+        for (int i = 1; i <= 5; i++) {
+            append(eventLog, "/topic/a", "m" + i);
+        }
+
+        assertThat(eventLog.eventsSince("/topic/a", 1L)).isEmpty();
+        assertThat(eventLog.eventsSince("/topic/a", 2L).get())
+                .extracting(WebSocketEventLog.Entry::seq)
+                .containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void eventsSince_WithSequenceFromAnotherRun_ShouldRequireSnapshot() {
+        WebSocketEventLog eventLog = eventLog(10);
+        append(eventLog, "/topic/a", "uno");
+
+        assertThat(eventLog.eventsSince("/topic/a", 7L)).isEmpty();
+        assertThat(eventLog.eventsSince("/topic/sin-mensajes", 7L)).isEmpty();
+        assertThat(eventLog.eventsSince("/topic/sin-mensajes", 0L)).contains(List.of());
+    }
+}
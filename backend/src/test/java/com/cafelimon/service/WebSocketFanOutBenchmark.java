@@ -0,0 +1,170 @@
+package com.cafelimon.service;
+
+import com.cafelimon.config.WebSocketProperties;
+import com.cafelimon.dto.category.CategoryResponse;
+import com.cafelimon.dto.order.OrderItemResponse;
+import com.cafelimon.dto.order.OrderResponse;
+import com.cafelimon.dto.product.ProductResponse;
+import com.cafelimon.dto.table.TableResponse;
+import com.cafelimon.model.OrderStatus;
+import com.cafelimon.repository.TableRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Microbenchmark del aviso de una orden nueva a sus tres destinos
+ *
+ * Compara tres {@code convertAndSend} (un JSON por destino) con {@link WebSocketService#broadcast}
+ * de un único mensaje serializado (que además numera y guarda cada envío en el historial y registra
+ * sus métricas, y lo entrega a las conexiones SSE de la mesa). El canal
+ * no hace nada, así que se mide solo conversión y envío.
+ * No corre con la suite; se ejecuta con {@code mvn test -Dtest=WebSocketFanOutBenchmark}.
+ */
+class WebSocketFanOutBenchmark {
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 100_000;
+    private static final int ROUNDS = 5;
+    private static final List<String> DESTINATIONS =
+            List.of("/topic/orders/new", "/topic/kitchen/orders", "/topic/tables/table-1/orders");
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final List<Message<?>> captured = new ArrayList<>();
+    private boolean capturing;
+    private long sink;
+
+    @Test
+    void orderCreated_SerializeOnceVersusPerDestination() throws InterruptedException {
+        MessageChannel channel = (message, timeout) -> {
+            sink += ((byte[]) message.getPayload()).length;
+            if (capturing) {
+                captured.add(message);
+            }
+            return true;
+        };
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(converter);
+        WebSocketProperties properties = new WebSocketProperties();
+        WebSocketEventLog eventLog = new WebSocketEventLog(properties);
+        OrderStreamRegistry orderStreams = new OrderStreamRegistry(mock(EventReplayService.class), eventLog,
+                mock(TableRepository.class), objectMapper, properties, new SimpleMeterRegistry());
+        WebSocketService webSocketService = new WebSocketService(template, objectMapper, properties,
+                eventLog, new InProcessClusterEventRelay(), new SimpleMeterRegistry(), orderStreams);
+        OrderResponse order = sampleOrder();
+
+        Runnable perDestination = () -> DESTINATIONS.forEach(destination -> template.convertAndSend(destination, order));
+        Runnable shared = () -> webSocketService.broadcast(webSocketService.toMessage(order), DESTINATIONS);
+
+        assertThat(distinctPayloads(perDestination)).isEqualTo(3);
+        assertThat(distinctPayloads(shared)).isEqualTo(1);
+
+        long[][] perDestinationRuns = new long[ROUNDS][];
+        long[][] sharedRuns = new long[ROUNDS][];
+        run(perDestination, WARMUP);
+        run(shared, WARMUP);
+        for (int round = 0; round < ROUNDS; round++) {
+            perDestinationRuns[round] = run(perDestination, ITERATIONS);
+            sharedRuns[round] = run(shared, ITERATIONS);
+        }
+
+        long[] before = median(perDestinationRuns);
+        long[] after = median(sharedRuns);
+        System.out.printf("%nAviso de orden nueva a %d destinos (%d eventos, mediana de %d rondas)%n",
+                DESTINATIONS.size(), ITERATIONS, ROUNDS);
+        System.out.printf("  convertAndSend por destino: %,8d ns/evento  %,8d bytes asignados/evento%n",
+                before[0], before[1]);
+        System.out.printf("  mensaje compartido:         %,8d ns/evento  %,8d bytes asignados/evento%n",
+                after[0], after[1]);
+        System.out.printf("  ahorro:                     %,8d ns/evento  %,8d bytes asignados/evento%n",
+                before[0] - after[0], before[1] - after[1]);
+        assertThat(sink).isPositive();
+        orderStreams.shutdown();
+    }
+
+    private int distinctPayloads(Runnable send) {
+        captured.clear();
+        capturing = true;
+        send.run();
+        capturing = false;
+        Set<Object> payloads = Collections.newSetFromMap(new IdentityHashMap<>());
+        captured.forEach(message -> payloads.add(message.getPayload()));
+        return payloads.size();
+    }
+
+    /**
+     * Retorna nanosegundos y bytes asignados por evento
+     */
+    private static long[] run(Runnable send, int iterations) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            send.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new long[]{elapsed / iterations, allocated / iterations};
+    }
+
+    private static long[] median(long[][] runs) {
+        long[] times = Arrays.stream(runs).mapToLong(r -> r[0]).sorted().toArray();
+        long[] bytes = Arrays.stream(runs).mapToLong(r -> r[1]).sorted().toArray();
+        return new long[]{times[runs.length / 2], bytes[runs.length / 2]};
+    }
+
+    private static OrderResponse sampleOrder() {
+        CategoryResponse category = CategoryResponse.builder().id("cat-1").name("Bebidas Calientes").build();
+        List<OrderItemResponse> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ProductResponse product = ProductResponse.builder()
+                    .id("prod-" + i)
+                    .name("Café de la casa " + i)
+                    .description("Café de origen colombiano con leche espumada y canela")
+                    .price(new BigDecimal("4500"))
+                    .category(category)
+                    .available(true)
+                    .preparationTime(5)
+                    .orderCount(120L)
+                    .build();
+            items.add(OrderItemResponse.builder()
+                    .id("item-" + i)
+                    .product(product)
+                    .quantity(2)
+                    .unitPrice(product.getPrice())
+                    .subtotal(new BigDecimal("9000"))
+                    .notes("Sin azúcar")
+                    .build());
+        }
+        return OrderResponse.builder()
+                .id("order-1")
+                .table(TableResponse.builder().id("table-1").number("1").capacity(4).location("Terraza").build())
+                .customerName("Juan Perez")
+                .status(OrderStatus.PENDING)
+                .items(items)
+                .totalAmount(new BigDecimal("36000"))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
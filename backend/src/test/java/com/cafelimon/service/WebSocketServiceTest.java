@@ -1,18 +1,33 @@
 package com.cafelimon.service;
 
+import com.cafelimon.config.WebSocketProperties;
 import com.cafelimon.dto.order.OrderResponse;
 import com.cafelimon.model.OrderStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +36,27 @@ class WebSocketServiceTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
+    @Spy
+    private ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Spy
+    private WebSocketProperties properties = new WebSocketProperties();
+
+    @Spy
+    private WebSocketEventLog eventLog = new WebSocketEventLog(new WebSocketProperties());
+
+    @Mock
+    private ClusterEventRelay relay;
+
+    @Spy
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private OrderStreamRegistry orderStreams;
+
     @InjectMocks
     private WebSocketService webSocketService;
 
@@ -38,137 +74,150 @@ class WebSocketServiceTest {
     }
 
     @Test
-    void notifyNewOrder_ShouldSendMessageToNewOrdersTopic() {
-        webSocketService.notifyNewOrder(orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/orders/new", orderResponse);
+    @SuppressWarnings("unchecked")
+    void notifyOrderCreated_ShouldSerializeOnceAndSendSameMessageToEveryDestination() throws Exception {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
+
+        ArgumentCaptor<Message<byte[]>> message = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq("/topic/orders/new"), message.capture());
+        verify(messagingTemplate).send(eq("/topic/kitchen/orders"), message.capture());
+        verify(messagingTemplate).send(eq("/topic/tables/table-1/orders"), message.capture());
+        verify(objectMapper, times(1)).writeValueAsBytes(orderResponse);
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+
+        List<Message<byte[]>> sent = message.getAllValues();
+        assertThat(sent).allSatisfy(m -> {
+            assertThat(m.getPayload()).isSameAs(sent.get(0).getPayload());
+            assertThat(m.getHeaders().get(MessageHeaders.CONTENT_TYPE)).isEqualTo(MimeTypeUtils.APPLICATION_JSON);
+            assertThat(SimpMessageHeaderAccessor.wrap(m).getFirstNativeHeader(WebSocketService.SEQ_HEADER))
+                    .isEqualTo("1");
+        });
+        assertThat(new String(sent.get(0).getPayload(), StandardCharsets.UTF_8))
+                .contains("\"id\":\"order-123\"")
+                .contains("\"status\":\"PENDING\"");
     }
 
     @Test
-    void notifyNewOrder_WithMultipleOrders_ShouldSendMultipleMessages() {
-        OrderResponse order1 = OrderResponse.builder().id("order-1").build();
-        OrderResponse order2 = OrderResponse.builder().id("order-2").build();
-
-        webSocketService.notifyNewOrder(order1);
-        webSocketService.notifyNewOrder(order2);
-
-        verify(messagingTemplate, times(2))
-                .convertAndSend(eq("/topic/orders/new"), any(OrderResponse.class));
+    @SuppressWarnings("unchecked")
+    void notifyOrderStatusChanged_ShouldSendDeltaAndSharedFullMessage() throws Exception {
+        orderResponse.setStatus(OrderStatus.LISTO);
+        orderResponse.setReadyAt(LocalDateTime.of(2024, 5, 1, 10, 30));
+
+        webSocketService.notifyOrderStatusChanged("table-1", OrderStatus.EN_PREPARACION, orderResponse);
+        webSocketService.notifyOrderStatusChanged("table-1", OrderStatus.LISTO, orderResponse);
+
+        ArgumentCaptor<Message<byte[]>> delta = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(2)).send(eq("/topic/orders/status"), delta.capture());
+        verify(messagingTemplate, times(2)).send(eq("/topic/orders/updates"), any(Message.class));
+        verify(messagingTemplate, times(2)).send(eq("/topic/tables/table-1/orders"), any(Message.class));
+        verify(objectMapper, times(2)).writeValueAsBytes(orderResponse);
+
+        JsonNode first = objectMapper.readTree(delta.getAllValues().get(0).getPayload());
+        assertThat(first.get("seq").asLong()).isEqualTo(1L);
+        assertThat(SimpMessageHeaderAccessor.wrap(delta.getAllValues().get(1)).getFirstNativeHeader("seq"))
+                .isEqualTo("2");
+        assertThat(first.get("orderId").asText()).isEqualTo("order-123");
+        assertThat(first.get("tableId").asText()).isEqualTo("table-1");
+        assertThat(first.get("oldStatus").asText()).isEqualTo("EN_PREPARACION");
+        assertThat(first.get("newStatus").asText()).isEqualTo("LISTO");
+        assertThat(first.get("readyAt").asText()).isEqualTo("2024-05-01T10:30:00");
+        assertThat(first.has("items")).isFalse();
+        assertThat(objectMapper.readTree(delta.getAllValues().get(1).getPayload()).get("seq").asLong())
+                .isEqualTo(2L);
     }
 
     @Test
-    void notifyOrderStatusUpdate_ShouldSendMessageToUpdatesTopic() {
-        orderResponse = OrderResponse.builder()
-                .id("order-123")
-                .status(OrderStatus.EN_PREPARACION)
-                .build();
+    void notifyOrderStatusChanged_WithFullUpdatesDisabled_ShouldSkipUpdatesTopic() {
+        properties.setFullStatusUpdates(false);
 
-        webSocketService.notifyOrderStatusUpdate(orderResponse);
+        webSocketService.notifyOrderStatusChanged("table-1", OrderStatus.PENDING, orderResponse);
 
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/orders/updates", orderResponse);
+        verify(messagingTemplate).send(eq("/topic/orders/status"), any(Message.class));
+        verify(messagingTemplate).send(eq("/topic/tables/table-1/orders"), any(Message.class));
+        verifyNoMoreInteractions(messagingTemplate);
     }
 
     @Test
-    void notifyOrderStatusUpdate_WithDifferentStatuses_ShouldSendMessages() {
-        OrderResponse pendingOrder = OrderResponse.builder()
-                .id("order-1")
-                .status(OrderStatus.PENDING)
-                .build();
-
-        OrderResponse preparingOrder = OrderResponse.builder()
-                .id("order-2")
-                .status(OrderStatus.EN_PREPARACION)
-                .build();
-
-        OrderResponse readyOrder = OrderResponse.builder()
-                .id("order-3")
-                .status(OrderStatus.LISTO)
-                .build();
-
-        webSocketService.notifyOrderStatusUpdate(pendingOrder);
-        webSocketService.notifyOrderStatusUpdate(preparingOrder);
-        webSocketService.notifyOrderStatusUpdate(readyOrder);
-
-        verify(messagingTemplate, times(3))
-                .convertAndSend(eq("/topic/orders/updates"), any(OrderResponse.class));
+    void notifications_ShouldNumberEachDestinationIndependentlyAndKeepThemForReplay() {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
+        webSocketService.notifyOrderCreated("table-2", orderResponse);
+        webSocketService.notifyOrderStatusChanged("table-2", OrderStatus.PENDING, orderResponse);
+
+        assertThat(eventLog.currentSeq("/topic/kitchen/orders")).isEqualTo(2L);
+        assertThat(eventLog.currentSeq("/topic/orders/status")).isEqualTo(1L);
+        assertThat(eventLog.currentSeq("/topic/tables/table-1/orders")).isEqualTo(1L);
+        assertThat(eventLog.currentSeq("/topic/tables/table-2/orders")).isEqualTo(2L);
+        assertThat(eventLog.eventsSince("/topic/kitchen/orders", 0L).get())
+                .extracting(WebSocketEventLog.Entry::seq)
+                .containsExactly(1L, 2L);
     }
 
     @Test
-    void notifyOrderUpdateToTable_ShouldSendMessageToTableSpecificTopic() {
-        webSocketService.notifyOrderUpdateToTable("table-1", orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/table-1/orders", orderResponse);
+    void notifyOrderCreated_ShouldRelaySamePayloadToOtherNodes() {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
+
+        ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+        verify(relay).publish(eq("/topic/orders/new"), payload.capture());
+        verify(relay).publish(eq("/topic/kitchen/orders"), payload.capture());
+        verify(relay).publish(eq("/topic/tables/table-1/orders"), payload.capture());
+        assertThat(payload.getAllValues()).allSatisfy(bytes -> assertThat(bytes).isSameAs(payload.getValue()));
     }
 
     @Test
-    void notifyOrderUpdateToTable_WithDifferentTables_ShouldSendToDifferentTopics() {
-        webSocketService.notifyOrderUpdateToTable("table-1", orderResponse);
-        webSocketService.notifyOrderUpdateToTable("table-2", orderResponse);
-        webSocketService.notifyOrderUpdateToTable("table-5", orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/table-1/orders", orderResponse);
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/table-2/orders", orderResponse);
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/table-5/orders", orderResponse);
+    @SuppressWarnings("unchecked")
+    void onRelayedMessage_ShouldPublishLocallyWithLocalSequenceAndNotRelayBack() throws Exception {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
+        byte[] remoteDelta = "{\"seq\":41,\"orderId\":\"order-9\",\"newStatus\":\"LISTO\"}"
+                .getBytes(StandardCharsets.UTF_8);
+
+        webSocketService.onRelayedMessage("/topic/kitchen/orders", "{\"id\":\"order-9\"}".getBytes(StandardCharsets.UTF_8));
+        webSocketService.onRelayedMessage("/topic/orders/status", remoteDelta);
+
+        ArgumentCaptor<Message<byte[]>> kitchen = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(2)).send(eq("/topic/kitchen/orders"), kitchen.capture());
+        assertThat(SimpMessageHeaderAccessor.wrap(kitchen.getAllValues().get(1)).getFirstNativeHeader("seq"))
+                .isEqualTo("2");
+
+        ArgumentCaptor<Message<byte[]>> status = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq("/topic/orders/status"), status.capture());
+        JsonNode delta = objectMapper.readTree(status.getValue().getPayload());
+        assertThat(delta.get("seq").asLong()).isEqualTo(1L);
+        assertThat(delta.get("orderId").asText()).isEqualTo("order-9");
+
+        verify(relay, times(3)).publish(anyString(), any());
     }
 
     @Test
-    void notifyKitchen_ShouldSendMessageToKitchenTopic() {
-        webSocketService.notifyKitchen(orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/kitchen/orders", orderResponse);
+    void notifyOrderCreated_ShouldRecordPublishPerDestinationAndOneSerialization() {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
+        webSocketService.notifyOrderCreated("table-2", orderResponse);
+
+        assertThat(publishCount("/topic/orders/new")).isEqualTo(2);
+        assertThat(publishCount("/topic/kitchen/orders")).isEqualTo(2);
+        assertThat(publishCount(WebSocketService.TABLE_TOPIC_PATTERN)).isEqualTo(2);
+        assertThat(meterRegistry.get("cafelimon.websocket.serialization")
+                .tag("type", "OrderResponse").timer().count()).isEqualTo(2);
     }
 
     @Test
-    void notifyKitchen_WithMultipleOrders_ShouldSendMultipleMessages() {
-        OrderResponse order1 = OrderResponse.builder().id("order-1").build();
-        OrderResponse order2 = OrderResponse.builder().id("order-2").build();
-        OrderResponse order3 = OrderResponse.builder().id("order-3").build();
+    @SuppressWarnings("unchecked")
+    void notifyOrderCreated_ShouldHandSameMessageAndSeqToSseStreams() {
+        webSocketService.notifyOrderCreated("table-1", orderResponse);
 
-        webSocketService.notifyKitchen(order1);
-        webSocketService.notifyKitchen(order2);
-        webSocketService.notifyKitchen(order3);
-
-        verify(messagingTemplate, times(3))
-                .convertAndSend(eq("/topic/kitchen/orders"), any(OrderResponse.class));
+        ArgumentCaptor<Message<byte[]>> message = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq("/topic/tables/table-1/orders"), message.capture());
+        verify(orderStreams).publish("/topic/tables/table-1/orders", 1L, message.getValue().getPayload());
     }
 
     @Test
-    void allNotificationMethods_ShouldWorkWithSameOrder() {
-        webSocketService.notifyNewOrder(orderResponse);
-        webSocketService.notifyOrderStatusUpdate(orderResponse);
-        webSocketService.notifyOrderUpdateToTable("table-1", orderResponse);
-        webSocketService.notifyKitchen(orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/orders/new", orderResponse);
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/orders/updates", orderResponse);
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/table-1/orders", orderResponse);
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/kitchen/orders", orderResponse);
+    void metricDestination_ShouldGroupTablesAndUnknownDestinations() {
+        assertThat(WebSocketService.metricDestination("/topic/orders/status")).isEqualTo("/topic/orders/status");
+        assertThat(WebSocketService.metricDestination("/topic/tables/abc-123/orders"))
+                .isEqualTo(WebSocketService.TABLE_TOPIC_PATTERN);
+        assertThat(WebSocketService.metricDestination("/topic/cualquiera")).isEqualTo("other");
     }
 
-    @Test
-    void notifyOrderUpdateToTable_WithEmptyTableId_ShouldStillSendMessage() {
-        webSocketService.notifyOrderUpdateToTable("", orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables//orders", orderResponse);
-    }
-
-    @Test
-    void notifyOrderUpdateToTable_WithNullTableId_ShouldStillSendMessage() {
-        webSocketService.notifyOrderUpdateToTable(null, orderResponse);
-
-        verify(messagingTemplate, times(1))
-                .convertAndSend("/topic/tables/null/orders", orderResponse);
+    private long publishCount(String destination) {
+        return meterRegistry.get("cafelimon.websocket.publish").tag("destination", destination).timer().count();
     }
 }
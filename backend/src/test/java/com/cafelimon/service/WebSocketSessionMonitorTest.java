@@ -0,0 +1,148 @@
+package com.cafelimon.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class WebSocketSessionMonitorTest {
+
+    @Mock
+    private WebSocketHandler handler;
+
+    @Mock
+    private WebSocketSession session;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebSocketSessionMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new WebSocketSessionMonitor(meterRegistry);
+    }
+
+    @Test
+    void decoratedHandler_WhenSessionExceedsSendLimits_ShouldCountEviction() throws Exception {
+        WebSocketHandler decorated = monitor.decorate(handler);
+
+        decorated.afterConnectionEstablished(session);
+        decorated.afterConnectionEstablished(session);
+        assertThat(gauge("cafelimon.websocket.sessions.open")).isEqualTo(2.0);
+
+        CloseStatus limitExceeded = CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time 5001 (ms) exceeded");
+        decorated.afterConnectionClosed(session, limitExceeded);
+        decorated.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        assertThat(gauge("cafelimon.websocket.sessions.open")).isZero();
+        assertThat(counter("cafelimon.websocket.sessions.evicted")).isEqualTo(1.0);
+        verify(handler).afterConnectionClosed(session, limitExceeded);
+    }
+
+    @Test
+    void outboundInterceptor_ShouldCountHeartbeatsAndHeartbeatTimeouts() {
+        ChannelInterceptor interceptor = monitor.outboundInterceptor();
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+
+        interceptor.preSend(message(SimpMessageType.HEARTBEAT), channel);
+        interceptor.preSend(message(SimpMessageType.HEARTBEAT), channel);
+        interceptor.preSend(message(SimpMessageType.MESSAGE), channel);
+        // Sin el DISCONNECT original: lo generó el broker al no recibir heartbeats
+        interceptor.preSend(message(SimpMessageType.DISCONNECT_ACK), channel);
+        interceptor.preSend(clientDisconnectAck(), channel);
+
+        assertThat(counter("cafelimon.websocket.heartbeats.sent")).isEqualTo(2.0);
+        assertThat(counter("cafelimon.websocket.heartbeats.missed")).isEqualTo(1.0);
+    }
+
+    @Test
+    void interceptors_WhenPoolRejectsMessage_ShouldCountPerChannel() {
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        outbound.setBeanName("clientOutboundChannel");
+        Message<byte[]> message = message(SimpMessageType.MESSAGE);
+
+        monitor.outboundInterceptor().afterSendCompletion(message, outbound, false,
+                new MessageDeliveryException(message, "rejected"));
+        monitor.outboundInterceptor().afterSendCompletion(message, outbound, true, null);
+
+        assertThat(meterRegistry.get("cafelimon.websocket.messages.rejected")
+                .tag("channel", "clientOutboundChannel").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void inboundInterceptor_ShouldTrackSubscriptionsPerDestination() {
+        ChannelInterceptor interceptor = monitor.inboundInterceptor();
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+
+        interceptor.preSend(subscribe("session-1", "sub-0", "/topic/kitchen/orders"), channel);
+        interceptor.preSend(subscribe("session-1", "sub-1", "/topic/tables/table-1/orders"), channel);
+        interceptor.preSend(subscribe("session-2", "sub-0", "/topic/tables/table-2/orders"), channel);
+        interceptor.preSend(subscribe("session-2", "sub-1", "/topic/kitchen/orders"), channel);
+        assertThat(subscriptions("/topic/kitchen/orders")).isEqualTo(2.0);
+        assertThat(subscriptions(WebSocketService.TABLE_TOPIC_PATTERN)).isEqualTo(2.0);
+
+        SimpMessageHeaderAccessor unsubscribe = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        unsubscribe.setSessionId("session-1");
+        unsubscribe.setSubscriptionId("sub-0");
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], unsubscribe.getMessageHeaders()), channel);
+        interceptor.preSend(message(SimpMessageType.DISCONNECT, "session-2"), channel);
+        // El DISCONNECT puede repetirse al cerrarse la conexión
+        interceptor.preSend(message(SimpMessageType.DISCONNECT, "session-2"), channel);
+
+        assertThat(subscriptions("/topic/kitchen/orders")).isZero();
+        assertThat(subscriptions(WebSocketService.TABLE_TOPIC_PATTERN)).isEqualTo(1.0);
+    }
+
+    private double subscriptions(String destination) {
+        return meterRegistry.get("cafelimon.websocket.subscriptions").tag("destination", destination).gauge().value();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static Message<byte[]> message(SimpMessageType type) {
+        return message(type, "session-1");
+    }
+
+    private static Message<byte[]> message(SimpMessageType type, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> clientDisconnectAck() {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
+        accessor.setSessionId("session-1");
+        accessor.setHeader(SimpMessageHeaderAccessor.DISCONNECT_MESSAGE_HEADER, message(SimpMessageType.DISCONNECT));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}